@@ -0,0 +1,103 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Converts keys or values to and from bytes so ThreeTenOffHeapMap can keep them
+ * outside the Java heap. Codecs read and write at absolute positions and never
+ * move a buffer's position or limit.
+ *
+ * <p>The map compares keys by their bytes, so equal keys must always encode to
+ * the same bytes.
+ *
+ * @author Jacob Strokus
+ *
+ * @param <T> type encoded by the codec.
+ */
+interface Codec<T> {
+
+	/**
+	 * Strings as UTF-16 chars, two bytes per char.
+	 */
+	Codec<String> STRING = new Codec<String>() {
+
+		public int size(String value) {
+			return value.length() * 2;
+		}
+
+		public void write(ByteBuffer buffer, int offset, String value) {
+			for (int i = 0; i < value.length(); i++) {
+				buffer.putChar(offset + 2 * i, value.charAt(i));
+			}
+		}
+
+		public String read(ByteBuffer buffer, int offset, int length) {
+			char[] chars = new char[length / 2];
+			for (int i = 0; i < chars.length; i++) {
+				chars[i] = buffer.getChar(offset + 2 * i);
+			}
+			return new String(chars);
+		}
+	};
+
+	/**
+	 * Integers as four bytes.
+	 */
+	Codec<Integer> INTEGER = new Codec<Integer>() {
+
+		public int size(Integer value) {
+			return Integer.BYTES;
+		}
+
+		public void write(ByteBuffer buffer, int offset, Integer value) {
+			buffer.putInt(offset, value);
+		}
+
+		public Integer read(ByteBuffer buffer, int offset, int length) {
+			return buffer.getInt(offset);
+		}
+	};
+
+	/**
+	 * Longs as eight bytes.
+	 */
+	Codec<Long> LONG = new Codec<Long>() {
+
+		public int size(Long value) {
+			return Long.BYTES;
+		}
+
+		public void write(ByteBuffer buffer, int offset, Long value) {
+			buffer.putLong(offset, value);
+		}
+
+		public Long read(ByteBuffer buffer, int offset, int length) {
+			return buffer.getLong(offset);
+		}
+	};
+
+	/**
+	 * Method to get the number of bytes a value encodes to.
+	 *
+	 * @param value The value, never null.
+	 * @return Number of bytes.
+	 */
+	int size(T value);
+
+	/**
+	 * Method to encode a value into a buffer.
+	 *
+	 * @param buffer The buffer.
+	 * @param offset Position of the first byte.
+	 * @param value  The value, never null.
+	 */
+	void write(ByteBuffer buffer, int offset, T value);
+
+	/**
+	 * Method to decode a value from a buffer.
+	 *
+	 * @param buffer The buffer.
+	 * @param offset Position of the first byte.
+	 * @param length Number of bytes the value was encoded to.
+	 * @return The decoded value.
+	 */
+	T read(ByteBuffer buffer, int offset, int length);
+}
@@ -0,0 +1,592 @@
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Map adapter that indexes graph components by their integer id. One open
+ * addressing table with linear probing keeps the ids in an int[] and the
+ * components and values in parallel Object[]s, so an entry costs one int and
+ * two references (12 bytes per slot with compressed references, 16 per entry
+ * at the maximum load of 3/4) and a lookup probes a single array of ids
+ * without boxing, without calling the component's hashCode() and without
+ * touching the components of other ids. A lookup still checks equals() on the
+ * stored component, so the usual Map contract (id and text) holds.
+ *
+ * <p>Two different components with the same id cannot be stored at once.
+ * Iterators of the views do not support remove(); use the map's remove.
+ *
+ * @author Jacob Strokus
+ *
+ * @param <K> component type of the keys.
+ * @param <V> generic type of the values.
+ */
+class ComponentIdMap<K extends ThreeTenGraphComponent, V> implements Map<K, V> {
+
+	/**
+	 * Id of the component per slot.
+	 */
+	private int[] ids;
+
+	/**
+	 * Key component per slot, null for free slots.
+	 */
+	private Object[] components;
+
+	/**
+	 * Value per slot.
+	 */
+	private Object[] values;
+
+	/**
+	 * Number of mappings.
+	 */
+	private int numElements = 0;
+
+	/**
+	 * Constructor to create an empty map.
+	 */
+	public ComponentIdMap() {
+
+		this(16);
+	}
+
+	/**
+	 * Constructor to create a map presized for the given number of components.
+	 *
+	 * @param expected Number of components expected.
+	 */
+	public ComponentIdMap(int expected) {
+
+		int capacity = IntObjectMap.capacityFor(expected);
+		ids = new int[capacity];
+		components = new Object[capacity];
+		values = new Object[capacity];
+	}
+
+	/**
+	 * Method to find the slot of an id.
+	 *
+	 * @param id The component id.
+	 * @return Slot index, or -1 if no component with that id is in the map.
+	 */
+	private int slotOf(int id) {
+
+		int mask = ids.length - 1;
+		int slot = IntObjectMap.mix(id) & mask;
+		while (components[slot] != null) {
+			if (ids[slot] == id) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Method to get the component stored in a slot.
+	 *
+	 * @param slot The slot.
+	 * @return The component.
+	 */
+	@SuppressWarnings("unchecked")
+	private K componentAt(int slot) {
+
+		return (K) components[slot];
+	}
+
+	/**
+	 * Method to get the value stored in a slot.
+	 *
+	 * @param slot The slot.
+	 * @return The value.
+	 */
+	@SuppressWarnings("unchecked")
+	private V valueAt(int slot) {
+
+		return (V) values[slot];
+	}
+
+	/**
+	 * Method to get the slot of the stored component equal to an object.
+	 *
+	 * @param o Object to look up.
+	 * @return The slot, or -1 if o is not a key of this map.
+	 */
+	private int stored(Object o) {
+
+		if (!(o instanceof ThreeTenGraphComponent)) {
+			return -1;
+		}
+		int slot = slotOf(((ThreeTenGraphComponent) o).getId());
+		return slot >= 0 && components[slot].equals(o) ? slot : -1;
+	}
+
+	/**
+	 * Method to get a value in the map given a key.
+	 *
+	 * @param key The component to look up.
+	 * @return The value, or null if the key is not in the map.
+	 */
+	public V get(Object key) {
+
+		int slot = stored(key);
+		return slot < 0 ? null : valueAt(slot);
+	}
+
+	/**
+	 * Method to get a value in the map given a component id, without needing the
+	 * component itself.
+	 *
+	 * @param id The component id.
+	 * @return The value, or null if no component with that id is in the map.
+	 */
+	public V getById(int id) {
+
+		int slot = slotOf(id);
+		return slot < 0 ? null : valueAt(slot);
+	}
+
+	/**
+	 * Method to get the stored component with the given id.
+	 *
+	 * @param id The component id.
+	 * @return The component, or null if no component with that id is in the map.
+	 */
+	public K keyById(int id) {
+
+		int slot = slotOf(id);
+		return slot < 0 ? null : componentAt(slot);
+	}
+
+	/**
+	 * Returns true if this map contains a mapping for the specified key.
+	 *
+	 * @param key Object to check whether the given key is in the map.
+	 * @return Boolean whether the map contains the key.
+	 */
+	public boolean containsKey(Object key) {
+
+		return stored(key) >= 0;
+	}
+
+	/**
+	 * Associates the specified value with the specified component.
+	 *
+	 * @param key   The component.
+	 * @param value The value.
+	 * @return The previous value for the key, or null if there was none.
+	 * @throws IllegalArgumentException if a different component with the same id
+	 *                                  is already a key.
+	 */
+	public V put(K key, V value) {
+
+		int id = key.getId();
+		int mask = ids.length - 1;
+		int slot = IntObjectMap.mix(id) & mask;
+		while (components[slot] != null) {
+			if (ids[slot] == id) {
+				if (!components[slot].equals(key)) {
+					throw new IllegalArgumentException("Another component already uses id " + id + ".");
+				}
+				V old = valueAt(slot);
+				components[slot] = key;
+				values[slot] = value;
+				return old;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		ids[slot] = id;
+		components[slot] = key;
+		values[slot] = value;
+		if (++numElements > (ids.length >>> 2) * 3) {
+			resize(ids.length * 2);
+		}
+		return null;
+	}
+
+	/**
+	 * Method to remove a pair from the map.
+	 *
+	 * @param key The component to remove.
+	 * @return The value of the pair removed, or null if the key was not found.
+	 */
+	public V remove(Object key) {
+
+		int slot = stored(key);
+		if (slot < 0) {
+			return null;
+		}
+		V old = valueAt(slot);
+		numElements--;
+
+		// shift later entries of the cluster back so no tombstones are left
+		int mask = ids.length - 1;
+		int hole = slot;
+		int next = (hole + 1) & mask;
+		while (components[next] != null) {
+			int home = IntObjectMap.mix(ids[next]) & mask;
+			if (((next - home) & mask) >= ((next - hole) & mask)) {
+				ids[hole] = ids[next];
+				components[hole] = components[next];
+				values[hole] = values[next];
+				hole = next;
+			}
+			next = (next + 1) & mask;
+		}
+		components[hole] = null;
+		values[hole] = null;
+		return old;
+	}
+
+	/**
+	 * Method to move every entry into a table of the given length.
+	 *
+	 * @param capacity New table length (a power of two).
+	 */
+	private void resize(int capacity) {
+
+		int[] oldIds = ids;
+		Object[] oldComponents = components;
+		Object[] oldValues = values;
+		ids = new int[capacity];
+		components = new Object[capacity];
+		values = new Object[capacity];
+
+		int mask = capacity - 1;
+		for (int i = 0; i < oldIds.length; i++) {
+			if (oldComponents[i] != null) {
+				int slot = IntObjectMap.mix(oldIds[i]) & mask;
+				while (components[slot] != null) {
+					slot = (slot + 1) & mask;
+				}
+				ids[slot] = oldIds[i];
+				components[slot] = oldComponents[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+
+	/**
+	 * Copies all of the mappings from the specified map to this map.
+	 *
+	 * @param m Map that extends generic types K and V.
+	 */
+	public void putAll(Map<? extends K, ? extends V> m) {
+
+		for (Map.Entry<? extends K, ? extends V> e : m.entrySet()) {
+			put(e.getKey(), e.getValue());
+		}
+	}
+
+	/**
+	 * Method to get the size of the map.
+	 *
+	 * @return Number of mappings.
+	 */
+	public int size() {
+
+		return numElements;
+	}
+
+	/**
+	 * Method to check if the map is empty.
+	 *
+	 * @return Boolean whether the map is empty.
+	 */
+	public boolean isEmpty() {
+
+		return numElements == 0;
+	}
+
+	/**
+	 * Method to remove every mapping.
+	 */
+	public void clear() {
+
+		Arrays.fill(components, null);
+		Arrays.fill(values, null);
+		numElements = 0;
+	}
+
+	/**
+	 * Returns true if this map maps one or more keys to the specified value. This
+	 * scans every value.
+	 *
+	 * @param value Object to look for.
+	 * @return Boolean whether some key maps to value.
+	 */
+	public boolean containsValue(Object value) {
+
+		for (int i = 0; i < components.length; i++) {
+			if (components[i] != null && Objects.equals(value, values[i])) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Method to get the first used slot at or after the given one.
+	 *
+	 * @param from Slot to start at.
+	 * @return The slot, or -1 if there is none.
+	 */
+	private int nextSlot(int from) {
+
+		for (int i = from; i < components.length; i++) {
+			if (components[i] != null) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Iterator over the used slots of the table.
+	 *
+	 * @param <T> type handed out for each slot.
+	 */
+	private abstract class SlotIterator<T> implements Iterator<T> {
+
+		/**
+		 * The next used slot, or -1.
+		 */
+		private int slot = nextSlot(0);
+
+		/**
+		 * Method to get the element handed out for a slot.
+		 *
+		 * @param slot The slot.
+		 * @return The element.
+		 */
+		abstract T get(int slot);
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public boolean hasNext() {
+			return slot >= 0;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public T next() {
+			if (slot < 0) {
+				throw new NoSuchElementException();
+			}
+			int current = slot;
+			slot = nextSlot(slot + 1);
+			return get(current);
+		}
+	}
+
+	/**
+	 * Returns a Set view of the components in this map.
+	 *
+	 * @return Set containing all the keys in the map.
+	 */
+	public Set<K> keySet() {
+
+		return new AbstractSet<K>() {
+			public Iterator<K> iterator() {
+				return new SlotIterator<K>() {
+					K get(int slot) {
+						return componentAt(slot);
+					}
+				};
+			}
+
+			public int size() {
+				return ComponentIdMap.this.size();
+			}
+
+			public boolean contains(Object o) {
+				return containsKey(o);
+			}
+		};
+	}
+
+	/**
+	 * Returns a Collection view of the values in this map.
+	 *
+	 * @return Collection of values from the map.
+	 */
+	public Collection<V> values() {
+
+		return new AbstractCollection<V>() {
+			public Iterator<V> iterator() {
+				return new SlotIterator<V>() {
+					V get(int slot) {
+						return valueAt(slot);
+					}
+				};
+			}
+
+			public int size() {
+				return ComponentIdMap.this.size();
+			}
+		};
+	}
+
+	/**
+	 * Returns a Set view of the mappings in this map. The entries are read-only
+	 * snapshots of each pair.
+	 *
+	 * @return Set of the mappings contained in the map.
+	 */
+	public Set<Map.Entry<K, V>> entrySet() {
+
+		return new AbstractSet<Map.Entry<K, V>>() {
+			public Iterator<Map.Entry<K, V>> iterator() {
+				return new SlotIterator<Map.Entry<K, V>>() {
+					Map.Entry<K, V> get(int slot) {
+						return new AbstractMap.SimpleImmutableEntry<>(componentAt(slot), valueAt(slot));
+					}
+				};
+			}
+
+			public int size() {
+				return ComponentIdMap.this.size();
+			}
+		};
+	}
+
+	/**
+	 * Compares the specified object with this map for equality.
+	 *
+	 * @param o Object to be compared to.
+	 * @return Boolean whether both maps hold the same mappings.
+	 */
+	public boolean equals(Object o) {
+
+		if (o == this) {
+			return true;
+		}
+		if (!(o instanceof Map) || ((Map<?, ?>) o).size() != size()) {
+			return false;
+		}
+		Map<?, ?> m = (Map<?, ?>) o;
+		for (Map.Entry<K, V> e : entrySet()) {
+			Object v = m.get(e.getKey());
+			if (!Objects.equals(v, e.getValue()) || (v == null && !m.containsKey(e.getKey()))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the hash code value for this map, the sum of the hash codes of its
+	 * entries.
+	 *
+	 * @return Integer representing the hashCode of the map.
+	 */
+	public int hashCode() {
+
+		int h = 0;
+		for (Map.Entry<K, V> e : entrySet()) {
+			h += e.hashCode();
+		}
+		return h;
+	}
+
+	/**
+	 * toString method.
+	 *
+	 * @return String literal representing the data in the map.
+	 */
+	public String toString() {
+
+		StringBuilder s = new StringBuilder();
+		for (Map.Entry<K, V> e : entrySet()) {
+			s.append(e.getKey()).append(":").append(e.getValue()).append("\n");
+		}
+		return s.toString().trim();
+	}
+
+	/**
+	 * Controls the flow of the program. Used for testing purposes.
+	 *
+	 * @param args Command-line arguments supplied as an Array of String Objects.
+	 */
+	public static void main(String[] args) {
+
+		/**
+		 * Nested class that creates Person Objects that extend the
+		 * ThreeTenGraphComponent class.
+		 */
+		class Person extends ThreeTenGraphComponent {
+
+			/**
+			 * Constructor to create Person Objects.
+			 *
+			 * @param id   Integer representing a person's unique id.
+			 * @param name Text of the person.
+			 */
+			public Person(int id, String name) {
+				super(id);
+				setText(name);
+			}
+		}
+
+		ComponentIdMap<Person, String> map = new ComponentIdMap<>();
+		Person ann = new Person(0, "ann");
+		Person bob = new Person(7, "bob");
+		map.put(ann, "a");
+		map.put(bob, "b");
+
+		if (map.size() == 2 && map.get(new Person(7, "bob")).equals("b") && map.get(new Person(7, "rob")) == null
+				&& map.getById(0).equals("a") && map.keyById(7) == bob) {
+			System.out.println("Yay 1");
+		}
+
+		try {
+			map.put(new Person(7, "rob"), "r");
+		} catch (IllegalArgumentException e) {
+			System.out.println("Yay 2");
+		}
+
+		java.util.HashMap<Person, String> expected = new java.util.HashMap<>();
+		expected.put(ann, "a");
+		expected.put(bob, "b");
+		if (map.equals(expected) && expected.equals(map) && map.hashCode() == expected.hashCode()
+				&& map.keySet().equals(expected.keySet()) && map.containsValue("b")) {
+			System.out.println("Yay 3");
+		}
+
+		if (map.remove(new Person(0, "ann")).equals("a") && !map.containsKey(ann) && map.size() == 1) {
+			System.out.println("Yay 4");
+		}
+
+		// random puts and removes, growing from a tiny table, against a HashMap
+		ComponentIdMap<Person, Integer> churn = new ComponentIdMap<>(1);
+		java.util.HashMap<Integer, Integer> byId = new java.util.HashMap<>();
+		java.util.Random random = new java.util.Random(4);
+		boolean same = true;
+		for (int i = 0; i < 200000; i++) {
+			int id = random.nextInt(5000) - 2500;
+			Person p = new Person(id, "p" + id);
+			if (random.nextInt(3) == 0) {
+				same &= Objects.equals(byId.remove(id), churn.remove(p));
+			} else {
+				same &= Objects.equals(byId.put(id, i), churn.put(p, i));
+			}
+		}
+		for (Map.Entry<Person, Integer> e : churn.entrySet()) {
+			int id = e.getKey().getId();
+			same &= e.getValue().equals(byId.get(id)) && churn.keyById(id) == e.getKey();
+		}
+		if (same && churn.size() == byId.size() && churn.getById(2501) == null) {
+			System.out.println("Yay 5");
+		}
+	}
+}
@@ -0,0 +1,184 @@
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Strategy that turns a key into the hash ThreeTenHashMap uses to pick its
+ * bucket. A map keeps one strategy for its whole life, so every key of the map
+ * is hashed the same way.
+ *
+ * <ul>
+ * <li>{@link #IDENTITY} is the key's own hashCode(), the original behavior.</li>
+ * <li>{@link #MURMUR} spreads the bits of hashCode() with the MurmurHash3
+ * finalizer, which helps keys whose hash codes differ only in the high bits or
+ * are multiples of the table length.</li>
+ * <li>{@link #seeded()} hashes Strings and graph components from their content
+ * with a random per map seed, so a set of keys built to collide in one map
+ * (or one run) does not collide in another. Other keys get their hashCode()
+ * mixed with the seed.</li>
+ * </ul>
+ *
+ * @author Jacob Strokus
+ */
+interface HashStrategy {
+
+	/**
+	 * The key's own hashCode().
+	 */
+	HashStrategy IDENTITY = Unseeded.IDENTITY;
+
+	/**
+	 * The key's hashCode() run through the MurmurHash3 32-bit finalizer.
+	 */
+	HashStrategy MURMUR = Unseeded.MURMUR;
+
+	/**
+	 * Method to get the hash of a key. Keys that are equal must get equal hashes.
+	 *
+	 * @param key The key, never null.
+	 * @return The hash of the key.
+	 */
+	int hash(Object key);
+
+	/**
+	 * Method to create a seeded strategy with a random seed.
+	 *
+	 * @return A new seeded strategy.
+	 */
+	static HashStrategy seeded() {
+
+		return seeded(ThreadLocalRandom.current().nextInt());
+	}
+
+	/**
+	 * Method to create a seeded strategy with a given seed, to reproduce a layout.
+	 *
+	 * @param seed The seed.
+	 * @return A new seeded strategy.
+	 */
+	static HashStrategy seeded(int seed) {
+
+		return new Seeded(seed);
+	}
+
+	/**
+	 * Method to mix all bits of a hash into each other (the MurmurHash3
+	 * finalizer). Every input bit affects every output bit.
+	 *
+	 * @param h The hash.
+	 * @return The mixed hash.
+	 */
+	static int fmix(int h) {
+
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+
+	/**
+	 * The strategies that need no state.
+	 */
+	enum Unseeded implements HashStrategy {
+
+		/**
+		 * The key's own hashCode().
+		 */
+		IDENTITY {
+			public int hash(Object key) {
+				return key.hashCode();
+			}
+		},
+
+		/**
+		 * The key's hashCode() run through the MurmurHash3 finalizer.
+		 */
+		MURMUR {
+			public int hash(Object key) {
+				return fmix(key.hashCode());
+			}
+		}
+	}
+
+	/**
+	 * Seeded MurmurHash3 over the characters of Strings and of component text.
+	 */
+	final class Seeded implements HashStrategy {
+
+		/**
+		 * Seed every hash starts from.
+		 */
+		private final int seed;
+
+		/**
+		 * Constructor to create Seeded Objects.
+		 *
+		 * @param seed The seed.
+		 */
+		Seeded(int seed) {
+
+			this.seed = seed;
+		}
+
+		/**
+		 * Method to mix one 32-bit block into a running MurmurHash3 state.
+		 *
+		 * @param h     The state.
+		 * @param block The block.
+		 * @return The new state.
+		 */
+		private static int mixBlock(int h, int block) {
+
+			block *= 0xcc9e2d51;
+			block = Integer.rotateLeft(block, 15);
+			block *= 0x1b873593;
+			h ^= block;
+			h = Integer.rotateLeft(h, 13);
+			return h * 5 + 0xe6546b64;
+		}
+
+		/**
+		 * Method to hash the characters of a String two at a time.
+		 *
+		 * @param h Starting state.
+		 * @param s The String.
+		 * @return The hash, before finalizing.
+		 */
+		private static int mixChars(int h, String s) {
+
+			int length = s.length();
+			int i = 0;
+			for (; i + 1 < length; i += 2) {
+				h = mixBlock(h, s.charAt(i) | (s.charAt(i + 1) << 16));
+			}
+			if (i < length) {
+				h ^= Integer.rotateLeft(s.charAt(i) * 0xcc9e2d51, 15) * 0x1b873593;
+			}
+			return h ^ (length << 1);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public int hash(Object key) {
+
+			if (key instanceof String) {
+				return fmix(mixChars(seed, (String) key));
+			}
+			if (key instanceof ThreeTenGraphComponent) { // equal components share id and text
+				ThreeTenGraphComponent c = (ThreeTenGraphComponent) key;
+				return fmix(mixChars(mixBlock(seed, c.getId()), c.getText()));
+			}
+			return fmix(mixBlock(seed, key.hashCode()));
+		}
+
+		/**
+		 * toString method.
+		 *
+		 * @return String literal naming the strategy.
+		 */
+		public String toString() {
+			return "seeded(" + seed + ")";
+		}
+	}
+}
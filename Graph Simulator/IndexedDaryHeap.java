@@ -0,0 +1,299 @@
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Indexed d-ary min-heap of the int items 0..capacity-1 keyed by doubles. The
+ * heap, the position of every item in it and the keys are three flat arrays
+ * allocated once, so push, poll and clear never allocate. Because an item's
+ * position is known, push can change the key of an item already in the heap
+ * (decrease-key) in O(log_d n).
+ *
+ * <p>A wider node (arity 4 by default) makes the heap shallower and keeps the
+ * children of a node in one or two cache lines, at the price of more
+ * comparisons per level on the way down.
+ *
+ * @author Jacob Strokus
+ */
+class IndexedDaryHeap {
+
+	/**
+	 * Default number of children per node.
+	 */
+	private static final int DEFAULT_ARITY = 4;
+
+	/**
+	 * Number of children per node.
+	 */
+	private final int arity;
+
+	/**
+	 * Items in heap order; the first size are in use.
+	 */
+	private final int[] heap;
+
+	/**
+	 * Position of each item in heap, or -1 if absent.
+	 */
+	private final int[] positions;
+
+	/**
+	 * Key of each item in the heap.
+	 */
+	private final double[] keys;
+
+	/**
+	 * Number of items in the heap.
+	 */
+	private int size = 0;
+
+	/**
+	 * Constructor to create a 4-ary heap of the items 0..capacity-1.
+	 *
+	 * @param capacity Number of items.
+	 */
+	public IndexedDaryHeap(int capacity) {
+
+		this(capacity, DEFAULT_ARITY);
+	}
+
+	/**
+	 * Constructor to create a heap of the items 0..capacity-1.
+	 *
+	 * @param capacity Number of items.
+	 * @param arity    Number of children per node, at least 2.
+	 * @throws IllegalArgumentException if arity is below 2 or capacity negative.
+	 */
+	public IndexedDaryHeap(int capacity, int arity) {
+
+		if (arity < 2 || capacity < 0) {
+			throw new IllegalArgumentException("Bad capacity or arity: " + capacity + ", " + arity);
+		}
+		this.arity = arity;
+		this.heap = new int[capacity];
+		this.positions = new int[capacity];
+		this.keys = new double[capacity];
+		Arrays.fill(positions, -1);
+	}
+
+	/**
+	 * Method to get the number of items in the heap.
+	 *
+	 * @return The size.
+	 */
+	public int size() {
+
+		return size;
+	}
+
+	/**
+	 * Method to check if the heap is empty.
+	 *
+	 * @return Whether it is empty.
+	 */
+	public boolean isEmpty() {
+
+		return size == 0;
+	}
+
+	/**
+	 * Method to check if an item is in the heap.
+	 *
+	 * @param item The item.
+	 * @return Whether it is in the heap.
+	 */
+	public boolean contains(int item) {
+
+		return positions[item] >= 0;
+	}
+
+	/**
+	 * Method to get the key of an item in the heap.
+	 *
+	 * @param item The item, which must be in the heap.
+	 * @return Its key.
+	 */
+	public double keyOf(int item) {
+
+		return keys[item];
+	}
+
+	/**
+	 * Method to insert an item, or change its key if it is already in the heap.
+	 *
+	 * @param item The item.
+	 * @param key  Its key.
+	 */
+	public void push(int item, double key) {
+
+		int at = positions[item];
+		if (at < 0) {
+			at = size++;
+			heap[at] = item;
+			positions[item] = at;
+		} else if (key > keys[item]) {
+			keys[item] = key;
+			siftDown(at);
+			return;
+		}
+		keys[item] = key;
+		siftUp(at);
+	}
+
+	/**
+	 * Method to get the item with the smallest key without removing it.
+	 *
+	 * @return The item.
+	 * @throws IllegalStateException if the heap is empty.
+	 */
+	public int peek() {
+
+		if (size == 0) {
+			throw new IllegalStateException("Heap is empty.");
+		}
+		return heap[0];
+	}
+
+	/**
+	 * Method to get the smallest key.
+	 *
+	 * @return The key, or positive infinity if the heap is empty.
+	 */
+	public double peekKey() {
+
+		return size == 0 ? Double.POSITIVE_INFINITY : keys[heap[0]];
+	}
+
+	/**
+	 * Method to remove the item with the smallest key.
+	 *
+	 * @return The item.
+	 * @throws IllegalStateException if the heap is empty.
+	 */
+	public int poll() {
+
+		int top = peek();
+		positions[top] = -1;
+		int last = heap[--size];
+		if (size > 0) {
+			heap[0] = last;
+			positions[last] = 0;
+			siftDown(0);
+		}
+		return top;
+	}
+
+	/**
+	 * Method to remove every item, in O(size).
+	 */
+	public void clear() {
+
+		for (int i = 0; i < size; i++) {
+			positions[heap[i]] = -1;
+		}
+		size = 0;
+	}
+
+	/**
+	 * Method to move the item at a position up to its place.
+	 *
+	 * @param at The position.
+	 */
+	private void siftUp(int at) {
+
+		int item = heap[at];
+		double key = keys[item];
+		while (at > 0) {
+			int parent = (at - 1) / arity;
+			int p = heap[parent];
+			if (keys[p] <= key) {
+				break;
+			}
+			heap[at] = p;
+			positions[p] = at;
+			at = parent;
+		}
+		heap[at] = item;
+		positions[item] = at;
+	}
+
+	/**
+	 * Method to move the item at a position down to its place.
+	 *
+	 * @param at The position.
+	 */
+	private void siftDown(int at) {
+
+		int item = heap[at];
+		double key = keys[item];
+		while (true) {
+			int first = at * arity + 1;
+			if (first >= size) {
+				break;
+			}
+			int best = first;
+			double bestKey = keys[heap[first]];
+			for (int c = first + 1, end = Math.min(size, first + arity); c < end; c++) {
+				double k = keys[heap[c]];
+				if (k < bestKey) {
+					best = c;
+					bestKey = k;
+				}
+			}
+			if (bestKey >= key) {
+				break;
+			}
+			heap[at] = heap[best];
+			positions[heap[at]] = at;
+			at = best;
+		}
+		heap[at] = item;
+		positions[item] = at;
+	}
+
+	/**
+	 * Main method used for testing purposes.
+	 *
+	 * @param args Command-line arguments supplied as an Array of String Objects.
+	 */
+	public static void main(String[] args) {
+
+		// random pushes and key changes drain in key order
+		Random random = new Random(22);
+		int n = 5000;
+		IndexedDaryHeap heap = new IndexedDaryHeap(n, 3);
+		double[] latest = new double[n];
+		for (int i = 0; i < 20000; i++) {
+			int item = random.nextInt(n);
+			latest[item] = random.nextDouble();
+			heap.push(item, latest[item]);
+		}
+		PriorityQueue<Double> expected = new PriorityQueue<>();
+		for (int item = 0; item < n; item++) {
+			if (heap.contains(item)) {
+				expected.add(latest[item]);
+			}
+		}
+		boolean ordered = heap.size() == expected.size();
+		while (!heap.isEmpty()) {
+			double key = heap.peekKey();
+			int item = heap.poll();
+			ordered &= key == latest[item] && key == expected.poll() && !heap.contains(item);
+		}
+		if (ordered) {
+			System.out.println("Yay 1");
+		}
+
+		// clear empties the heap and it can be reused
+		for (int item = 0; item < 100; item++) {
+			heap.push(item, -item);
+		}
+		heap.clear();
+		heap.push(7, 2.0);
+		heap.push(3, 1.0);
+		if (heap.size() == 2 && !heap.contains(99) && heap.poll() == 3 && heap.poll() == 7
+				&& heap.peekKey() == Double.POSITIVE_INFINITY) {
+			System.out.println("Yay 2");
+		}
+	}
+}
@@ -0,0 +1,286 @@
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Set of primitive ints stored in a single int[] with linear probing. There is
+ * no boxing and no per element object, which makes it a cheap set of graph
+ * component ids.
+ *
+ * <p>Element 0 marks a free slot, so its membership is tracked on the side.
+ *
+ * @author Jacob Strokus
+ */
+class IntHashSet {
+
+	/**
+	 * Element stored in free slots.
+	 */
+	private static final int FREE = 0;
+
+	/**
+	 * Elements per slot, FREE for unused slots.
+	 */
+	private int[] elements;
+
+	/**
+	 * Number of elements in the table, not counting 0.
+	 */
+	private int numElements = 0;
+
+	/**
+	 * Whether 0 is in the set.
+	 */
+	private boolean hasZero = false;
+
+	/**
+	 * Constructor to create an empty set.
+	 */
+	public IntHashSet() {
+
+		this(16);
+	}
+
+	/**
+	 * Constructor to create a set presized for the given number of elements.
+	 *
+	 * @param expected Number of elements expected.
+	 */
+	public IntHashSet(int expected) {
+
+		elements = new int[IntObjectMap.capacityFor(expected)];
+	}
+
+	/**
+	 * Method to find the slot of a non-zero element.
+	 *
+	 * @param e The element.
+	 * @return Slot index, or -1 if the element is not in the set.
+	 */
+	private int slotOf(int e) {
+
+		int mask = elements.length - 1;
+		int slot = IntObjectMap.mix(e) & mask;
+		while (elements[slot] != FREE) {
+			if (elements[slot] == e) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Method to check if the set contains an element.
+	 *
+	 * @param e The element.
+	 * @return Boolean whether e is in the set.
+	 */
+	public boolean contains(int e) {
+
+		return e == FREE ? hasZero : slotOf(e) >= 0;
+	}
+
+	/**
+	 * Add an element to the set.
+	 *
+	 * @param e element to be added.
+	 * @return Boolean whether the element was not already in the set.
+	 */
+	public boolean add(int e) {
+
+		if (e == FREE) {
+			boolean added = !hasZero;
+			hasZero = true;
+			return added;
+		}
+
+		int mask = elements.length - 1;
+		int slot = IntObjectMap.mix(e) & mask;
+		while (elements[slot] != FREE) {
+			if (elements[slot] == e) {
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		elements[slot] = e;
+		if (++numElements > (elements.length >>> 2) * 3) {
+			resize(elements.length * 2);
+		}
+		return true;
+	}
+
+	/**
+	 * Remove an element. Later elements of the cluster are shifted back so no
+	 * tombstones are left.
+	 *
+	 * @param e element to remove.
+	 * @return Boolean whether the element was in the set.
+	 */
+	public boolean remove(int e) {
+
+		if (e == FREE) {
+			boolean removed = hasZero;
+			hasZero = false;
+			return removed;
+		}
+
+		int slot = slotOf(e);
+		if (slot < 0) {
+			return false;
+		}
+		numElements--;
+
+		int mask = elements.length - 1;
+		int hole = slot;
+		int next = (hole + 1) & mask;
+		while (elements[next] != FREE) {
+			int home = IntObjectMap.mix(elements[next]) & mask;
+			if (((next - home) & mask) >= ((next - hole) & mask)) {
+				elements[hole] = elements[next];
+				hole = next;
+			}
+			next = (next + 1) & mask;
+		}
+		elements[hole] = FREE;
+		return true;
+	}
+
+	/**
+	 * Method to move every element into a table of the given length.
+	 *
+	 * @param capacity New table length (a power of two).
+	 */
+	private void resize(int capacity) {
+
+		int[] old = elements;
+		elements = new int[capacity];
+
+		int mask = capacity - 1;
+		for (int e : old) {
+			if (e != FREE) {
+				int slot = IntObjectMap.mix(e) & mask;
+				while (elements[slot] != FREE) {
+					slot = (slot + 1) & mask;
+				}
+				elements[slot] = e;
+			}
+		}
+	}
+
+	/**
+	 * Get the size of the set.
+	 *
+	 * @return Integer representing the number of elements.
+	 */
+	public int size() {
+
+		return hasZero ? numElements + 1 : numElements;
+	}
+
+	/**
+	 * Check if set is empty.
+	 *
+	 * @return Boolean whether set is empty.
+	 */
+	public boolean isEmpty() {
+
+		return size() == 0;
+	}
+
+	/**
+	 * Clear the set, keeping the table length.
+	 */
+	public void clear() {
+
+		Arrays.fill(elements, FREE);
+		numElements = 0;
+		hasZero = false;
+	}
+
+	/**
+	 * Method to pass every element to an action.
+	 *
+	 * @param action Called with each element.
+	 */
+	public void forEach(IntConsumer action) {
+
+		if (hasZero) {
+			action.accept(FREE);
+		}
+		for (int e : elements) {
+			if (e != FREE) {
+				action.accept(e);
+			}
+		}
+	}
+
+	/**
+	 * Method to turn the set into an Array.
+	 *
+	 * @return New array holding every element.
+	 */
+	public int[] toArray() {
+
+		int[] ret = new int[size()];
+		int index = 0;
+		if (hasZero) {
+			ret[index++] = FREE;
+		}
+		for (int e : elements) {
+			if (e != FREE) {
+				ret[index++] = e;
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * toString().
+	 *
+	 * @return String representation of the data.
+	 */
+	public String toString() {
+
+		return Arrays.toString(toArray());
+	}
+
+	/**
+	 * Controls the flow of the program. Used for testing purposes.
+	 *
+	 * @param args Command-line arguments supplied as an Array of String Objects.
+	 */
+	public static void main(String[] args) {
+
+		IntHashSet set = new IntHashSet();
+		if (set.add(5) && set.add(0) && !set.add(5) && set.size() == 2 && set.contains(0) && !set.contains(6)) {
+			System.out.println("Yay 1");
+		}
+
+		if (set.remove(0) && !set.remove(0) && set.size() == 1 && set.toString().equals("[5]")) {
+			System.out.println("Yay 2");
+		}
+
+		java.util.HashSet<Integer> expected = new java.util.HashSet<>();
+		IntHashSet churn = new IntHashSet(1);
+		java.util.Random random = new java.util.Random(11);
+		boolean same = true;
+		for (int i = 0; i < 300000; i++) {
+			int e = random.nextInt(20000) - 10000;
+			if (random.nextInt(3) == 0) {
+				same &= expected.remove(e) == churn.remove(e);
+			} else {
+				same &= expected.add(e) == churn.add(e);
+			}
+		}
+		int[] count = { 0 };
+		churn.forEach(e -> {
+			if (expected.contains(e)) {
+				count[0]++;
+			}
+		});
+		if (same && churn.size() == expected.size() && count[0] == expected.size()) {
+			System.out.println("Yay 3");
+		}
+	}
+}
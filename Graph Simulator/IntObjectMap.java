@@ -0,0 +1,433 @@
+import java.util.Arrays;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Hash map from primitive int keys to generic values. Keys are kept in an int[]
+ * and values in a parallel Object[] using linear probing, so there is no boxing
+ * and no per entry object: an entry costs one int and one reference (about 11
+ * bytes at the maximum load of 3/4 with compressed references), compared to a
+ * boxed key, a TableEntry and a Node in ThreeTenHashMap.
+ *
+ * <p>Key 0 marks a free slot, so a mapping for key 0 is stored on the side.
+ *
+ * @author Jacob Strokus
+ *
+ * @param <V> generic type of the values.
+ */
+class IntObjectMap<V> {
+
+	/**
+	 * Key stored in free slots.
+	 */
+	private static final int FREE = 0;
+
+	/**
+	 * Keys per slot, FREE for unused slots.
+	 */
+	private int[] keys;
+
+	/**
+	 * Values per slot.
+	 */
+	private Object[] values;
+
+	/**
+	 * Number of mappings in the table, not counting key 0.
+	 */
+	private int numElements = 0;
+
+	/**
+	 * Whether key 0 has a mapping.
+	 */
+	private boolean hasZeroKey = false;
+
+	/**
+	 * Value mapped to key 0.
+	 */
+	private V zeroValue;
+
+	/**
+	 * Constructor to create an empty map.
+	 */
+	public IntObjectMap() {
+
+		this(16);
+	}
+
+	/**
+	 * Constructor to create a map presized for the given number of entries.
+	 *
+	 * @param expected Number of entries expected.
+	 */
+	public IntObjectMap(int expected) {
+
+		int capacity = capacityFor(expected);
+		keys = new int[capacity];
+		values = new Object[capacity];
+	}
+
+	/**
+	 * Method to get the power of two table length that holds n entries under the
+	 * maximum load.
+	 *
+	 * @param n Number of entries.
+	 * @return Table length.
+	 */
+	static int capacityFor(int n) {
+
+		long needed = Math.max(4L, (long) n * 4 / 3 + 1);
+		if (needed > (1 << 30)) {
+			return 1 << 30;
+		}
+		return Integer.highestOneBit((int) needed - 1) << 1;
+	}
+
+	/**
+	 * Method to mix the bits of an int key.
+	 *
+	 * @param key The key.
+	 * @return The mixed hash.
+	 */
+	static int mix(int key) {
+
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Method to find the slot of a non-zero key.
+	 *
+	 * @param key The key.
+	 * @return Slot index, or -1 if the key is not in the table.
+	 */
+	private int slotOf(int key) {
+
+		int mask = keys.length - 1;
+		int slot = mix(key) & mask;
+		while (keys[slot] != FREE) {
+			if (keys[slot] == key) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Method to get the value mapped to a key.
+	 *
+	 * @param key The key.
+	 * @return The value, or null if the key has no mapping.
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(int key) {
+
+		if (key == FREE) {
+			return zeroValue;
+		}
+		int slot = slotOf(key);
+		return slot < 0 ? null : (V) values[slot];
+	}
+
+	/**
+	 * Method to check if a key has a mapping.
+	 *
+	 * @param key The key.
+	 * @return Boolean whether the key is in the map.
+	 */
+	public boolean containsKey(int key) {
+
+		return key == FREE ? hasZeroKey : slotOf(key) >= 0;
+	}
+
+	/**
+	 * Method to map a key to a value.
+	 *
+	 * @param key   The key.
+	 * @param value The value.
+	 * @return The previous value for the key, or null if there was none.
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(int key, V value) {
+
+		if (key == FREE) {
+			V old = zeroValue;
+			zeroValue = value;
+			hasZeroKey = true;
+			return old;
+		}
+
+		int mask = keys.length - 1;
+		int slot = mix(key) & mask;
+		while (keys[slot] != FREE) {
+			if (keys[slot] == key) {
+				V old = (V) values[slot];
+				values[slot] = value;
+				return old;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		keys[slot] = key;
+		values[slot] = value;
+		if (++numElements > (keys.length >>> 2) * 3) {
+			resize(keys.length * 2);
+		}
+		return null;
+	}
+
+	/**
+	 * Method to remove the mapping for a key. Later entries of the cluster are
+	 * shifted back so no tombstones are left.
+	 *
+	 * @param key The key.
+	 * @return The removed value, or null if the key had no mapping.
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(int key) {
+
+		if (key == FREE) {
+			V old = zeroValue;
+			zeroValue = null;
+			hasZeroKey = false;
+			return old;
+		}
+
+		int slot = slotOf(key);
+		if (slot < 0) {
+			return null;
+		}
+		V old = (V) values[slot];
+		numElements--;
+
+		int mask = keys.length - 1;
+		int hole = slot;
+		int next = (hole + 1) & mask;
+		while (keys[next] != FREE) {
+			int home = mix(keys[next]) & mask;
+			if (((next - home) & mask) >= ((next - hole) & mask)) {
+				keys[hole] = keys[next];
+				values[hole] = values[next];
+				hole = next;
+			}
+			next = (next + 1) & mask;
+		}
+		keys[hole] = FREE;
+		values[hole] = null;
+		return old;
+	}
+
+	/**
+	 * Method to move every entry into a table of the given length.
+	 *
+	 * @param capacity New table length (a power of two).
+	 */
+	private void resize(int capacity) {
+
+		int[] oldKeys = keys;
+		Object[] oldValues = values;
+		keys = new int[capacity];
+		values = new Object[capacity];
+
+		int mask = capacity - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != FREE) {
+				int slot = mix(oldKeys[i]) & mask;
+				while (keys[slot] != FREE) {
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+
+	/**
+	 * Method to get the number of mappings.
+	 *
+	 * @return Number of keys in the map.
+	 */
+	public int size() {
+
+		return hasZeroKey ? numElements + 1 : numElements;
+	}
+
+	/**
+	 * Method to check if the map is empty.
+	 *
+	 * @return Boolean whether the map is empty.
+	 */
+	public boolean isEmpty() {
+
+		return size() == 0;
+	}
+
+	/**
+	 * Method to remove every mapping, keeping the table length.
+	 */
+	public void clear() {
+
+		Arrays.fill(keys, FREE);
+		Arrays.fill(values, null);
+		numElements = 0;
+		hasZeroKey = false;
+		zeroValue = null;
+	}
+
+	/**
+	 * Method to pass every mapping to an action.
+	 *
+	 * @param action Called with each value and its key.
+	 */
+	@SuppressWarnings("unchecked")
+	public void forEach(ObjIntConsumer<? super V> action) {
+
+		if (hasZeroKey) {
+			action.accept(zeroValue, FREE);
+		}
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != FREE) {
+				action.accept((V) values[i], keys[i]);
+			}
+		}
+	}
+
+	/**
+	 * Method to get the keys of the map.
+	 *
+	 * @return New array holding every key.
+	 */
+	public int[] keys() {
+
+		int[] ret = new int[size()];
+		int index = 0;
+		if (hasZeroKey) {
+			ret[index++] = FREE;
+		}
+		for (int key : keys) {
+			if (key != FREE) {
+				ret[index++] = key;
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Method to get the first cursor position at or after the given one. Cursor
+	 * positions 0 to slots()-1 are table slots and slots() is key 0. Used to walk
+	 * the map without allocating.
+	 *
+	 * @param from Cursor position to start at.
+	 * @return Cursor position of the next mapping, or -1 if there is none.
+	 */
+	int nextCursor(int from) {
+
+		for (int i = from; i < keys.length; i++) {
+			if (keys[i] != FREE) {
+				return i;
+			}
+		}
+		return from <= keys.length && hasZeroKey ? keys.length : -1;
+	}
+
+	/**
+	 * Method to get the key at a cursor position returned by nextCursor.
+	 *
+	 * @param cursor Cursor position.
+	 * @return The key.
+	 */
+	int keyAt(int cursor) {
+
+		return cursor == keys.length ? FREE : keys[cursor];
+	}
+
+	/**
+	 * Method to get the value at a cursor position returned by nextCursor.
+	 *
+	 * @param cursor Cursor position.
+	 * @return The value.
+	 */
+	@SuppressWarnings("unchecked")
+	V valueAt(int cursor) {
+
+		return cursor == keys.length ? zeroValue : (V) values[cursor];
+	}
+
+	/**
+	 * Method to get the number of table slots.
+	 *
+	 * @return Table length.
+	 */
+	int slots() {
+
+		return keys.length;
+	}
+
+	/**
+	 * toString method.
+	 *
+	 * @return String literal representing the data in the map.
+	 */
+	public String toString() {
+
+		StringBuilder s = new StringBuilder();
+		forEach((v, k) -> s.append(k).append(":").append(v).append("\n"));
+		return s.toString().trim();
+	}
+
+	/**
+	 * Controls the flow of the program. Used for testing purposes.
+	 *
+	 * @param args Command-line arguments supplied as an Array of String Objects.
+	 */
+	public static void main(String[] args) {
+
+		IntObjectMap<String> map = new IntObjectMap<>();
+		map.put(1, "one");
+		map.put(0, "zero");
+		map.put(17, "seventeen");
+		map.put(1, "uno");
+
+		if (map.size() == 3 && map.get(1).equals("uno") && map.get(0).equals("zero") && map.get(2) == null
+				&& map.containsKey(0) && !map.containsKey(33)) {
+			System.out.println("Yay 1");
+		}
+
+		if (map.remove(0).equals("zero") && !map.containsKey(0) && map.size() == 2 && map.remove(0) == null) {
+			System.out.println("Yay 2");
+		}
+
+		java.util.HashMap<Integer, Integer> expected = new java.util.HashMap<>();
+		IntObjectMap<Integer> churn = new IntObjectMap<>(1);
+		java.util.Random random = new java.util.Random(7);
+		boolean same = true;
+		for (int i = 0; i < 300000; i++) {
+			int k = random.nextInt(20000) - 10000;
+			if (random.nextInt(3) == 0) {
+				same &= java.util.Objects.equals(expected.remove(k), churn.remove(k));
+			} else {
+				same &= java.util.Objects.equals(expected.put(k, i), churn.put(k, i));
+			}
+		}
+		int[] count = { 0 };
+		churn.forEach((v, k) -> {
+			if (v.equals(expected.get(k))) {
+				count[0]++;
+			}
+		});
+		if (same && churn.size() == expected.size() && count[0] == expected.size()
+				&& churn.keys().length == expected.size()) {
+			System.out.println("Yay 3");
+		}
+
+		int walked = 0;
+		for (int c = churn.nextCursor(0); c >= 0; c = churn.nextCursor(c + 1)) {
+			if (churn.valueAt(c).equals(expected.get(churn.keyAt(c)))) {
+				walked++;
+			}
+		}
+		if (walked == expected.size()) {
+			System.out.println("Yay 4");
+		}
+	}
+}
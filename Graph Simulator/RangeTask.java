@@ -0,0 +1,77 @@
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Fork/join task that splits a range of indexes in halves down to a grain and
+ * runs a body on each leaf range. Shared by ThreeTenHashMap.putAllParallel and
+ * ThreeTenGraphTraversal.
+ *
+ * @author Jacob Strokus
+ */
+final class RangeTask extends RecursiveAction {
+
+	/**
+	 * Serialization id.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Body of a RangeTask.
+	 */
+	interface Body {
+
+		/**
+		 * Method to process the indexes from (inclusive) to to (exclusive).
+		 *
+		 * @param from First index.
+		 * @param to   End index.
+		 */
+		void run(int from, int to);
+	}
+
+	/**
+	 * First index.
+	 */
+	private final int from;
+
+	/**
+	 * End index.
+	 */
+	private final int to;
+
+	/**
+	 * Largest range run without splitting.
+	 */
+	private final int grain;
+
+	/**
+	 * Work to run on each leaf range.
+	 */
+	private final transient Body body;
+
+	/**
+	 * Constructor to create RangeTask Objects.
+	 *
+	 * @param from  First index.
+	 * @param to    End index.
+	 * @param grain Largest range run without splitting.
+	 * @param body  Work to run on each leaf range.
+	 */
+	RangeTask(int from, int to, int grain, Body body) {
+		this.from = from;
+		this.to = to;
+		this.grain = grain;
+		this.body = body;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	protected void compute() {
+		if (to - from <= grain) {
+			body.run(from, to);
+			return;
+		}
+		int mid = (from + to) >>> 1;
+		invokeAll(new RangeTask(from, mid, grain, body), new RangeTask(mid, to, grain, body));
+	}
+}
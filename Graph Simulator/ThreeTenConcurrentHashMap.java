@@ -0,0 +1,1038 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Thread-safe hash map that splits the table into independently locked
+ * segments. Writers only lock the segment their key hashes to, so writers on
+ * different segments never wait for each other, and each segment grows on its
+ * own (resizes of different segments run concurrently). Readers never lock:
+ * bucket heads are read with acquire semantics and chain links and values are
+ * volatile, so a get sees every write that completed before it started.
+ *
+ * <p>putIfAbsent, computeIfAbsent, computeIfPresent, compute, merge and the
+ * conditional remove and replace methods are atomic. The functions passed to
+ * the compute methods run while the segment is locked, so they should be short
+ * and must not update this map. Null keys and values are not allowed. size()
+ * and the view iterators are weakly consistent while other threads write.
+ *
+ * @author Jacob Strokus
+ *
+ * @param <K> generic type.
+ * @param <V> generic type.
+ */
+class ThreeTenConcurrentHashMap<K, V> implements Map<K, V> {
+
+	/**
+	 * Number of segments used when none is given.
+	 */
+	private static final int DEFAULT_CONCURRENCY = 16;
+
+	/**
+	 * Access to table slots with acquire/release semantics.
+	 */
+	private static final VarHandle SLOT = MethodHandles.arrayElementVarHandle(Node[].class);
+
+	/**
+	 * The segments; a key's segment is picked by the high bits of its hash.
+	 */
+	private final Segment<K, V>[] segments;
+
+	/**
+	 * Shift that moves the segment bits of a hash to the bottom.
+	 */
+	private final int segmentShift;
+
+	/**
+	 * Constructor to create a map with 16 slots and 16 segments.
+	 */
+	public ThreeTenConcurrentHashMap() {
+
+		this(16, DEFAULT_CONCURRENCY);
+	}
+
+	/**
+	 * Constructor to create a map with the given total number of slots and
+	 * number of segments (both rounded up to powers of two).
+	 *
+	 * @param size        Number of slots across all segments.
+	 * @param concurrency Number of segments, the number of writers that never
+	 *                    block each other.
+	 * @throws IllegalArgumentException if size or concurrency is less than 1.
+	 */
+	@SuppressWarnings("unchecked")
+	public ThreeTenConcurrentHashMap(int size, int concurrency) {
+
+		if (size < 1 || concurrency < 1) {
+			throw new IllegalArgumentException("Size and concurrency must be positive.");
+		}
+		int numSegments = powerOfTwoAtLeast(Math.min(concurrency, 1 << 16));
+		int perSegment = powerOfTwoAtLeast(Math.max(2, (size + numSegments - 1) / numSegments));
+
+		segments = (Segment<K, V>[]) new Segment<?, ?>[numSegments];
+		for (int i = 0; i < numSegments; i++) {
+			segments[i] = new Segment<>(perSegment);
+		}
+		segmentShift = 32 - Integer.numberOfTrailingZeros(numSegments);
+	}
+
+	/**
+	 * Method to round up to a power of two.
+	 *
+	 * @param n Positive number.
+	 * @return Smallest power of two not below n.
+	 */
+	private static int powerOfTwoAtLeast(int n) {
+
+		return n <= 1 ? 1 : Integer.highestOneBit(n - 1) << 1;
+	}
+
+	/**
+	 * Method to spread the bits of a key's hash code.
+	 *
+	 * @param key The key.
+	 * @return The spread hash.
+	 */
+	private static int hash(Object key) {
+
+		int h = key.hashCode() * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Method to get the segment of a hash.
+	 *
+	 * @param hash Spread hash.
+	 * @return The segment.
+	 */
+	private Segment<K, V> segmentFor(int hash) {
+
+		return segments.length == 1 ? segments[0] : segments[hash >>> segmentShift];
+	}
+
+	/**
+	 * Chain node. key and hash never change; value and next are volatile so
+	 * lock-free readers always see a consistent chain.
+	 *
+	 * @param <K> generic type.
+	 * @param <V> generic type.
+	 */
+	static final class Node<K, V> implements Map.Entry<K, V> {
+
+		/**
+		 * Spread hash of the key.
+		 */
+		final int hash;
+
+		/**
+		 * The key.
+		 */
+		final K key;
+
+		/**
+		 * The value.
+		 */
+		volatile V value;
+
+		/**
+		 * Next node in the chain.
+		 */
+		volatile Node<K, V> next;
+
+		/**
+		 * Constructor to create a node.
+		 *
+		 * @param hash  Spread hash of the key.
+		 * @param key   The key.
+		 * @param value The value.
+		 * @param next  Next node in the chain.
+		 */
+		Node(int hash, K key, V value, Node<K, V> next) {
+			this.hash = hash;
+			this.key = key;
+			this.value = value;
+			this.next = next;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public K getKey() {
+			return key;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public V getValue() {
+			return value;
+		}
+
+		/**
+		 * Not supported: entries of a concurrent map are read-only, use put.
+		 *
+		 * @param value ignored.
+		 * @return never returns.
+		 */
+		public V setValue(V value) {
+			throw new UnsupportedOperationException();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public boolean equals(Object o) {
+			if (!(o instanceof Map.Entry)) {
+				return false;
+			}
+			Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+			return key.equals(e.getKey()) && value.equals(e.getValue());
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public int hashCode() {
+			return key.hashCode() ^ value.hashCode();
+		}
+
+		/**
+		 * toString method.
+		 *
+		 * @return Key and Value pair as String literal.
+		 */
+		public String toString() {
+			return key + ":" + value;
+		}
+	}
+
+	/**
+	 * Method to read a table slot with acquire semantics.
+	 *
+	 * @param <K>   generic type.
+	 * @param <V>   generic type.
+	 * @param table The table.
+	 * @param index Slot index.
+	 * @return First node of the bucket.
+	 */
+	@SuppressWarnings("unchecked")
+	static <K, V> Node<K, V> slotAt(Node<K, V>[] table, int index) {
+
+		return (Node<K, V>) SLOT.getAcquire(table, index);
+	}
+
+	/**
+	 * Method to write a table slot with release semantics.
+	 *
+	 * @param <K>   generic type.
+	 * @param <V>   generic type.
+	 * @param table The table.
+	 * @param index Slot index.
+	 * @param node  New first node of the bucket.
+	 */
+	static <K, V> void setSlot(Node<K, V>[] table, int index, Node<K, V> node) {
+
+		SLOT.setRelease(table, index, node);
+	}
+
+	/**
+	 * One independently locked part of the map: a chained table with its own
+	 * size and resize threshold.
+	 *
+	 * @param <K> generic type.
+	 * @param <V> generic type.
+	 */
+	@SuppressWarnings("serial")
+	static final class Segment<K, V> extends ReentrantLock {
+
+		/**
+		 * The table; replaced (never resized in place) when the segment grows.
+		 */
+		volatile Node<K, V>[] table;
+
+		/**
+		 * Number of mappings in this segment.
+		 */
+		volatile int count;
+
+		/**
+		 * Constructor to create an empty segment.
+		 *
+		 * @param size Number of slots (a power of two).
+		 */
+		@SuppressWarnings("unchecked")
+		Segment(int size) {
+			table = (Node<K, V>[]) new Node<?, ?>[size];
+		}
+
+		/**
+		 * Method to find a node without locking.
+		 *
+		 * @param key  The key.
+		 * @param hash Spread hash of the key.
+		 * @return The node, or null.
+		 */
+		Node<K, V> find(Object key, int hash) {
+			Node<K, V>[] tab = table;
+			for (Node<K, V> n = slotAt(tab, hash & (tab.length - 1)); n != null; n = n.next) {
+				if (n.hash == hash && key.equals(n.key)) {
+					return n;
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * Method to put a mapping. Caller must hold the lock.
+		 *
+		 * @param key          The key.
+		 * @param hash         Spread hash of the key.
+		 * @param value        The value.
+		 * @param onlyIfAbsent Whether to keep an existing value.
+		 * @return The previous value, or null.
+		 */
+		V putLocked(K key, int hash, V value, boolean onlyIfAbsent) {
+			Node<K, V> n = find(key, hash);
+			if (n != null) {
+				V old = n.value;
+				if (!onlyIfAbsent) {
+					n.value = value;
+				}
+				return old;
+			}
+			insertLocked(key, hash, value);
+			return null;
+		}
+
+		/**
+		 * Method to add a node for a key known to be absent. Caller must hold the
+		 * lock.
+		 *
+		 * @param key   The key.
+		 * @param hash  Spread hash of the key.
+		 * @param value The value.
+		 */
+		void insertLocked(K key, int hash, V value) {
+			Node<K, V>[] tab = table;
+			if (count + 1 > tab.length - (tab.length >>> 2)) {
+				tab = grow();
+			}
+			int index = hash & (tab.length - 1);
+			setSlot(tab, index, new Node<>(hash, key, value, slotAt(tab, index)));
+			count = count + 1;
+		}
+
+		/**
+		 * Method to remove a node. Caller must hold the lock.
+		 *
+		 * @param key  The key.
+		 * @param hash Spread hash of the key.
+		 * @return The removed node, or null.
+		 */
+		Node<K, V> removeLocked(Object key, int hash) {
+			Node<K, V>[] tab = table;
+			int index = hash & (tab.length - 1);
+			Node<K, V> pred = null;
+			for (Node<K, V> n = slotAt(tab, index); n != null; pred = n, n = n.next) {
+				if (n.hash == hash && key.equals(n.key)) {
+					if (pred == null) {
+						setSlot(tab, index, n.next);
+					} else {
+						pred.next = n.next;
+					}
+					count = count - 1;
+					return n;
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * Method to double the table. Readers may still be walking the old table,
+		 * so its chains are left intact: the trailing run of each chain that lands
+		 * in one new bucket is shared, and the nodes before it are copied.
+		 * Caller must hold the lock.
+		 *
+		 * @return The new table.
+		 */
+		@SuppressWarnings("unchecked")
+		Node<K, V>[] grow() {
+			Node<K, V>[] oldTab = table;
+			Node<K, V>[] newTab = (Node<K, V>[]) new Node<?, ?>[oldTab.length * 2];
+			int mask = newTab.length - 1;
+
+			for (int i = 0; i < oldTab.length; i++) {
+				Node<K, V> head = slotAt(oldTab, i);
+				if (head == null) {
+					continue;
+				}
+
+				Node<K, V> lastRun = head;
+				int lastIndex = head.hash & mask;
+				for (Node<K, V> n = head.next; n != null; n = n.next) {
+					int index = n.hash & mask;
+					if (index != lastIndex) {
+						lastIndex = index;
+						lastRun = n;
+					}
+				}
+				newTab[lastIndex] = lastRun;
+
+				for (Node<K, V> n = head; n != lastRun; n = n.next) {
+					int index = n.hash & mask;
+					newTab[index] = new Node<>(n.hash, n.key, n.value, newTab[index]);
+				}
+			}
+			table = newTab; // volatile write publishes the filled table
+			return newTab;
+		}
+
+		/**
+		 * Method to remove every mapping. Caller must hold the lock.
+		 */
+		@SuppressWarnings("unchecked")
+		void clearLocked() {
+			table = (Node<K, V>[]) new Node<?, ?>[table.length];
+			count = 0;
+		}
+	}
+
+	/**
+	 * Method to get a value in the map given a key, without locking.
+	 *
+	 * @param key The key passed in to to use to get the corresponding value.
+	 *
+	 * @return V value to be return if matching key. If value not found return null.
+	 */
+	public V get(Object key) {
+
+		int hash = hash(key);
+		Node<K, V> n = segmentFor(hash).find(key, hash);
+		return n == null ? null : n.value;
+	}
+
+	/**
+	 * Returns true if this map contains a mapping for the specified key.
+	 *
+	 * @param key Object to check whether the given key is in the map.
+	 *
+	 * @return Boolean whether the map contains the key.
+	 */
+	public boolean containsKey(Object key) {
+
+		int hash = hash(key);
+		return segmentFor(hash).find(key, hash) != null;
+	}
+
+	/**
+	 * Associates the specified value with the specified key in this map.
+	 *
+	 * @param key   The key.
+	 * @param value The value.
+	 *
+	 * @return The previous value, or null if the key was absent.
+	 */
+	public V put(K key, V value) {
+
+		return putVal(key, value, false);
+	}
+
+	/**
+	 * Atomically maps the key to the value unless it already has a value.
+	 *
+	 * @param key   The key.
+	 * @param value The value.
+	 *
+	 * @return The existing value, or null if the value was added.
+	 */
+	public V putIfAbsent(K key, V value) {
+
+		return putVal(key, value, true);
+	}
+
+	/**
+	 * Method to put a mapping under the segment lock.
+	 *
+	 * @param key          The key.
+	 * @param value        The value.
+	 * @param onlyIfAbsent Whether to keep an existing value.
+	 * @return The previous value, or null.
+	 */
+	private V putVal(K key, V value, boolean onlyIfAbsent) {
+
+		Objects.requireNonNull(value);
+		int hash = hash(key);
+		Segment<K, V> segment = segmentFor(hash);
+		segment.lock();
+		try {
+			return segment.putLocked(key, hash, value, onlyIfAbsent);
+		} finally {
+			segment.unlock();
+		}
+	}
+
+	/**
+	 * Method to remove a pair from the map.
+	 *
+	 * @param key The corresponding key to a value in the map.
+	 *
+	 * @return V the value of the pair removed. If value not found return null.
+	 */
+	public V remove(Object key) {
+
+		int hash = hash(key);
+		Segment<K, V> segment = segmentFor(hash);
+		segment.lock();
+		try {
+			Node<K, V> n = segment.removeLocked(key, hash);
+			return n == null ? null : n.value;
+		} finally {
+			segment.unlock();
+		}
+	}
+
+	/**
+	 * Atomically computes a new value for a key from its current value (null if
+	 * absent). A null result removes the mapping. Runs under the segment lock.
+	 *
+	 * @param key               The key.
+	 * @param remappingFunction Function from key and current value to new value.
+	 *
+	 * @return The new value, or null if the key is now absent.
+	 */
+	public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+
+		int hash = hash(key);
+		Segment<K, V> segment = segmentFor(hash);
+		segment.lock();
+		try {
+			Node<K, V> n = segment.find(key, hash);
+			V value = remappingFunction.apply(key, n == null ? null : n.value);
+			if (value == null) {
+				if (n != null) {
+					segment.removeLocked(key, hash);
+				}
+			} else if (n != null) {
+				n.value = value;
+			} else {
+				segment.insertLocked(key, hash, value);
+			}
+			return value;
+		} finally {
+			segment.unlock();
+		}
+	}
+
+	/**
+	 * Atomically adds a value computed from the key if the key is absent. The
+	 * lock is only taken when the key is not already present.
+	 *
+	 * @param key             The key.
+	 * @param mappingFunction Function computing the value; null adds nothing.
+	 *
+	 * @return The current (existing or computed) value, or null.
+	 */
+	public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+
+		V value = get(key);
+		if (value != null) {
+			return value;
+		}
+		return compute(key, (k, old) -> old != null ? old : mappingFunction.apply(k));
+	}
+
+	/**
+	 * Atomically replaces the value of a present key with one computed from it. A
+	 * null result removes the mapping.
+	 *
+	 * @param key               The key.
+	 * @param remappingFunction Function from key and current value to new value.
+	 *
+	 * @return The new value, or null if the key is now absent.
+	 */
+	public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+
+		if (!containsKey(key)) {
+			return null;
+		}
+		return compute(key, (k, old) -> old == null ? null : remappingFunction.apply(k, old));
+	}
+
+	/**
+	 * Atomically adds the value if the key is absent, otherwise combines it with
+	 * the existing value. A null result removes the mapping.
+	 *
+	 * @param key               The key.
+	 * @param value             The value to add or combine.
+	 * @param remappingFunction Function combining the old and given values.
+	 *
+	 * @return The new value, or null if the key is now absent.
+	 */
+	public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+
+		Objects.requireNonNull(value);
+		return compute(key, (k, old) -> old == null ? value : remappingFunction.apply(old, value));
+	}
+
+	/**
+	 * Atomically removes the key only if it is mapped to the given value.
+	 *
+	 * @param key   The key.
+	 * @param value The expected value.
+	 *
+	 * @return Boolean whether the mapping was removed.
+	 */
+	public boolean remove(Object key, Object value) {
+
+		if (value == null) {
+			return false;
+		}
+		int hash = hash(key);
+		Segment<K, V> segment = segmentFor(hash);
+		segment.lock();
+		try {
+			Node<K, V> n = segment.find(key, hash);
+			if (n == null || !value.equals(n.value)) {
+				return false;
+			}
+			segment.removeLocked(key, hash);
+			return true;
+		} finally {
+			segment.unlock();
+		}
+	}
+
+	/**
+	 * Atomically replaces the value of a key only if it is mapped to the old
+	 * value.
+	 *
+	 * @param key      The key.
+	 * @param oldValue The expected value.
+	 * @param newValue The new value.
+	 *
+	 * @return Boolean whether the value was replaced.
+	 */
+	public boolean replace(K key, V oldValue, V newValue) {
+
+		Objects.requireNonNull(newValue);
+		int hash = hash(key);
+		Segment<K, V> segment = segmentFor(hash);
+		segment.lock();
+		try {
+			Node<K, V> n = segment.find(key, hash);
+			if (n == null || !n.value.equals(oldValue)) {
+				return false;
+			}
+			n.value = newValue;
+			return true;
+		} finally {
+			segment.unlock();
+		}
+	}
+
+	/**
+	 * Atomically replaces the value of a key only if the key is present.
+	 *
+	 * @param key   The key.
+	 * @param value The new value.
+	 *
+	 * @return The previous value, or null if the key was absent.
+	 */
+	public V replace(K key, V value) {
+
+		Objects.requireNonNull(value);
+		int hash = hash(key);
+		Segment<K, V> segment = segmentFor(hash);
+		segment.lock();
+		try {
+			Node<K, V> n = segment.find(key, hash);
+			if (n == null) {
+				return null;
+			}
+			V old = n.value;
+			n.value = value;
+			return old;
+		} finally {
+			segment.unlock();
+		}
+	}
+
+	/**
+	 * Copies all of the mappings from the specified map to this map.
+	 *
+	 * @param m Map that extends generic types K and V.
+	 */
+	public void putAll(Map<? extends K, ? extends V> m) {
+
+		for (Map.Entry<? extends K, ? extends V> e : m.entrySet()) {
+			put(e.getKey(), e.getValue());
+		}
+	}
+
+	/**
+	 * Method to remove every mapping, one segment at a time.
+	 */
+	public void clear() {
+
+		for (Segment<K, V> segment : segments) {
+			segment.lock();
+			try {
+				segment.clearLocked();
+			} finally {
+				segment.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Method to get the number of mappings, summed over the segments without
+	 * locking.
+	 *
+	 * @return Number of elements in the map.
+	 */
+	public int size() {
+
+		long sum = 0;
+		for (Segment<K, V> segment : segments) {
+			sum += segment.count;
+		}
+		return (int) Math.min(sum, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Method to check if the map is empty.
+	 *
+	 * @return Boolean whether the map is empty.
+	 */
+	public boolean isEmpty() {
+
+		for (Segment<K, V> segment : segments) {
+			if (segment.count != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Method to get the number of slots across all segments.
+	 *
+	 * @return number of slots.
+	 */
+	public int getSlots() {
+
+		int slots = 0;
+		for (Segment<K, V> segment : segments) {
+			slots += segment.table.length;
+		}
+		return slots;
+	}
+
+	/**
+	 * Returns true if this map maps one or more keys to the specified value. This
+	 * scans every segment.
+	 *
+	 * @param value Object to check if the map contains.
+	 *
+	 * @return Boolean whether map maps one or more keys to the specified value.
+	 */
+	public boolean containsValue(Object value) {
+
+		for (V v : values()) {
+			if (v.equals(value)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Weakly consistent iterator over every node of every segment.
+	 *
+	 * @param <T> type handed out for each node.
+	 */
+	private abstract class NodeIterator<T> implements Iterator<T> {
+
+		/**
+		 * Segment being walked.
+		 */
+		private int segmentIndex = 0;
+
+		/**
+		 * Table of that segment read when the iterator entered it.
+		 */
+		private Node<K, V>[] table = segments[0].table;
+
+		/**
+		 * Next bucket of the table to walk.
+		 */
+		private int bucket = 0;
+
+		/**
+		 * Next node to hand out.
+		 */
+		private Node<K, V> next;
+
+		/**
+		 * Last node handed out.
+		 */
+		private Node<K, V> last;
+
+		/**
+		 * Constructor to position the iterator on the first node.
+		 */
+		NodeIterator() {
+			advance();
+		}
+
+		/**
+		 * Method to get the element handed out for a node.
+		 *
+		 * @param node The node.
+		 * @return The element.
+		 */
+		abstract T get(Node<K, V> node);
+
+		/**
+		 * Method to move to the next node.
+		 */
+		private void advance() {
+			if (next != null) {
+				next = next.next;
+			}
+			while (next == null) {
+				if (bucket == table.length) {
+					if (++segmentIndex == segments.length) {
+						return;
+					}
+					table = segments[segmentIndex].table;
+					bucket = 0;
+				}
+				next = slotAt(table, bucket++);
+			}
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public boolean hasNext() {
+			return next != null;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public T next() {
+			if (next == null) {
+				throw new NoSuchElementException();
+			}
+			last = next;
+			advance();
+			return get(last);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public void remove() {
+			if (last == null) {
+				throw new IllegalStateException();
+			}
+			ThreeTenConcurrentHashMap.this.remove(last.key);
+			last = null;
+		}
+	}
+
+	/**
+	 * Returns a weakly consistent Set view of the keys contained in this map.
+	 *
+	 * @return Set containing all the keys in the map.
+	 */
+	public Set<K> keySet() {
+
+		return new AbstractSet<K>() {
+			public Iterator<K> iterator() {
+				return new NodeIterator<K>() {
+					K get(Node<K, V> node) {
+						return node.key;
+					}
+				};
+			}
+
+			public int size() {
+				return ThreeTenConcurrentHashMap.this.size();
+			}
+
+			public boolean contains(Object o) {
+				return containsKey(o);
+			}
+
+			public boolean remove(Object o) {
+				return ThreeTenConcurrentHashMap.this.remove(o) != null;
+			}
+		};
+	}
+
+	/**
+	 * Returns a weakly consistent Collection view of the values in this map.
+	 *
+	 * @return Collection of values from the map.
+	 */
+	public Collection<V> values() {
+
+		return new AbstractCollection<V>() {
+			public Iterator<V> iterator() {
+				return new NodeIterator<V>() {
+					V get(Node<K, V> node) {
+						return node.value;
+					}
+				};
+			}
+
+			public int size() {
+				return ThreeTenConcurrentHashMap.this.size();
+			}
+		};
+	}
+
+	/**
+	 * Returns a weakly consistent Set view of the mappings in this map. Entries
+	 * are read-only.
+	 *
+	 * @return Set of the mappings contained in the map.
+	 */
+	public Set<Map.Entry<K, V>> entrySet() {
+
+		return new AbstractSet<Map.Entry<K, V>>() {
+			public Iterator<Map.Entry<K, V>> iterator() {
+				return new NodeIterator<Map.Entry<K, V>>() {
+					Map.Entry<K, V> get(Node<K, V> node) {
+						return node;
+					}
+				};
+			}
+
+			public int size() {
+				return ThreeTenConcurrentHashMap.this.size();
+			}
+		};
+	}
+
+	/**
+	 * Compares the specified object with this map for equality.
+	 *
+	 * @param o Object to be compared to.
+	 *
+	 * @return Boolean whether both maps hold the same mappings.
+	 */
+	public boolean equals(Object o) {
+
+		if (o == this) {
+			return true;
+		}
+		if (!(o instanceof Map) || ((Map<?, ?>) o).size() != size()) {
+			return false;
+		}
+		Map<?, ?> m = (Map<?, ?>) o;
+		for (Map.Entry<K, V> e : entrySet()) {
+			if (!e.getValue().equals(m.get(e.getKey()))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the hash code value for this map, the sum of the hash codes of its
+	 * entries.
+	 *
+	 * @return Integer representing the hashCode of the map.
+	 */
+	public int hashCode() {
+
+		int h = 0;
+		for (Map.Entry<K, V> e : entrySet()) {
+			h += e.hashCode();
+		}
+		return h;
+	}
+
+	/**
+	 * toString method.
+	 *
+	 * @return String literal representing the data in the map.
+	 */
+	public String toString() {
+
+		StringBuilder s = new StringBuilder();
+		for (Map.Entry<K, V> e : entrySet()) {
+			s.append(e).append("\n");
+		}
+		return s.toString().trim();
+	}
+
+	/**
+	 * Controls the flow of the program. Used for testing purposes.
+	 *
+	 * @param args Command-line arguments supplied as an Array of String Objects.
+	 *
+	 * @throws InterruptedException if interrupted while waiting for the workers.
+	 */
+	public static void main(String[] args) throws InterruptedException {
+
+		ThreeTenConcurrentHashMap<String, Integer> st1 = new ThreeTenConcurrentHashMap<>(4, 2);
+		st1.put("a", 1);
+		if (st1.putIfAbsent("a", 2) == 1 && st1.putIfAbsent("b", 3) == null && st1.get("b") == 3
+				&& st1.merge("a", 10, Integer::sum) == 11 && st1.computeIfAbsent("c", k -> 5) == 5
+				&& st1.computeIfAbsent("c", k -> 6) == 5 && st1.size() == 3) {
+			System.out.println("Yay 1");
+		}
+
+		if (st1.merge("c", 0, (o, n) -> null) == null && !st1.containsKey("c") && st1.remove("a", 11)
+				&& !st1.remove("b", 4) && st1.replace("b", 3, 4) && st1.toString().equals("b:4")) {
+			System.out.println("Yay 2");
+		}
+
+		// threads merge counts into shared keys and grow every segment concurrently
+		ThreeTenConcurrentHashMap<Integer, Integer> counts = new ThreeTenConcurrentHashMap<>(2, 8);
+		int threads = 8;
+		int perThread = 50000;
+		Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			final int id = t;
+			workers[t] = new Thread(() -> {
+				for (int i = 0; i < perThread; i++) {
+					counts.merge(i % 1000, 1, Integer::sum);
+					counts.computeIfAbsent(100000 + id * perThread + i, k -> k);
+				}
+			});
+			workers[t].start();
+		}
+		for (Thread w : workers) {
+			w.join();
+		}
+
+		boolean ok = counts.size() == 1000 + threads * perThread;
+		for (int i = 0; i < 1000; i++) {
+			ok &= counts.get(i) == threads * perThread / 1000;
+		}
+		int seen = 0;
+		for (Integer k : counts.keySet()) {
+			ok &= counts.get(k) != null;
+			seen++;
+		}
+		if (ok && seen == counts.size()) {
+			System.out.println("Yay 3");
+		}
+	}
+}
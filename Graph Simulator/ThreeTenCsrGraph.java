@@ -0,0 +1,1000 @@
+import edu.uci.ics.jung.graph.Graph;
+import edu.uci.ics.jung.graph.UndirectedGraph;
+
+import edu.uci.ics.jung.graph.util.Pair;
+import edu.uci.ics.jung.graph.util.EdgeType;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+
+/**
+ * Immutable compressed sparse row (CSR) snapshot of a ThreeTenGraph, made by
+ * ThreeTenGraph.toCsr(). Vertices and edges get dense ids 0..n-1 and 0..m-1
+ * (their rank in the natural ordering of ThreeTenGraphComponent), and the
+ * incidence lives in three int arrays:
+ *
+ * <pre>
+ * neighbors of vertex v:  targets[offsets[v]] .. targets[offsets[v + 1] - 1]
+ * edge to each neighbor:  edgeIds[offsets[v]] .. edgeIds[offsets[v + 1] - 1]
+ * </pre>
+ *
+ * <p>Each row is sorted by target, and a self-loop appears once in its row, so
+ * a row has degree(v) entries. Analytics read the arrays directly with
+ * sequential memory access and no per vertex or per edge objects; they must not
+ * modify them.
+ *
+ * <p>The class is also a read-only Graph over the same arrays: lookups binary
+ * search the sorted vertex and edge arrays (O(log n)), findEdge searches the row
+ * (O(log degree)), and every mutator throws UnsupportedOperationException.
+ *
+ * @author Jacob Strokus
+ *
+ * @param <V> generic type for Vertices.
+ * @param <E> generic type for Edges.
+ */
+class ThreeTenCsrGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphComponent>
+		implements Graph<V, E>, UndirectedGraph<V, E> {
+
+	/**
+	 * Vertices in natural order; the index is the vertex id.
+	 */
+	private final ThreeTenGraphComponent[] vertices;
+
+	/**
+	 * Edges in natural order; the index is the edge id.
+	 */
+	private final ThreeTenGraphComponent[] edges;
+
+	/**
+	 * Start of each vertex's row in targets, plus the total at index n.
+	 */
+	private final int[] offsets;
+
+	/**
+	 * Neighbor ids, row by row.
+	 */
+	private final int[] targets;
+
+	/**
+	 * Id of the edge to each entry of targets.
+	 */
+	private final int[] edgeIds;
+
+	/**
+	 * First endpoint of each edge.
+	 */
+	private final int[] sources;
+
+	/**
+	 * Second endpoint of each edge.
+	 */
+	private final int[] dests;
+
+	/**
+	 * Constructor to freeze a graph into CSR form.
+	 *
+	 * @param graph The graph to copy.
+	 */
+	ThreeTenCsrGraph(ThreeTenGraph<V, E> graph) {
+
+		vertices = graph.getVertices().toArray(new ThreeTenGraphComponent[0]);
+		edges = graph.getEdges().toArray(new ThreeTenGraphComponent[0]);
+		Arrays.sort(vertices);
+		Arrays.sort(edges);
+
+		int n = vertices.length;
+		int m = edges.length;
+		sources = new int[m];
+		dests = new int[m];
+		offsets = new int[n + 1];
+		for (int e = 0; e < m; e++) {
+			@SuppressWarnings("unchecked")
+			Pair<V> ends = graph.getEndpoints((E) edges[e]);
+			sources[e] = Arrays.binarySearch(vertices, ends.getFirst());
+			dests[e] = Arrays.binarySearch(vertices, ends.getSecond());
+			offsets[sources[e] + 1]++;
+			if (dests[e] != sources[e]) {
+				offsets[dests[e] + 1]++;
+			}
+		}
+		for (int v = 0; v < n; v++) {
+			offsets[v + 1] += offsets[v];
+		}
+
+		// fill each row with (target, edge) packed in a long, then sort the rows
+		long[] arcs = new long[offsets[n]];
+		int[] fill = Arrays.copyOf(offsets, n);
+		for (int e = 0; e < m; e++) {
+			arcs[fill[sources[e]]++] = ((long) dests[e] << 32) | e;
+			if (dests[e] != sources[e]) {
+				arcs[fill[dests[e]]++] = ((long) sources[e] << 32) | e;
+			}
+		}
+		targets = new int[arcs.length];
+		edgeIds = new int[arcs.length];
+		for (int v = 0; v < n; v++) {
+			Arrays.sort(arcs, offsets[v], offsets[v + 1]);
+		}
+		for (int i = 0; i < arcs.length; i++) {
+			targets[i] = (int) (arcs[i] >>> 32);
+			edgeIds[i] = (int) arcs[i];
+		}
+	}
+
+	/**
+	 * Method to get the row offsets: vertex v's row is
+	 * [offsets[v], offsets[v + 1]). Not a copy; do not modify.
+	 *
+	 * @return Array of n + 1 offsets.
+	 */
+	public int[] getOffsets() {
+
+		return offsets;
+	}
+
+	/**
+	 * Method to get the neighbor ids of all rows. Not a copy; do not modify.
+	 *
+	 * @return Array of offsets[n] vertex ids.
+	 */
+	public int[] getTargets() {
+
+		return targets;
+	}
+
+	/**
+	 * Method to get the edge id of each entry of getTargets(). Not a copy; do not
+	 * modify.
+	 *
+	 * @return Array of offsets[n] edge ids.
+	 */
+	public int[] getEdgeIds() {
+
+		return edgeIds;
+	}
+
+	/**
+	 * Method to get the dense id of a vertex.
+	 *
+	 * @param vertex The vertex.
+	 * @return Its id, or -1 if vertex is not in the graph.
+	 */
+	public int indexOf(V vertex) {
+
+		return find(vertices, vertex);
+	}
+
+	/**
+	 * Method to get the vertex with a dense id.
+	 *
+	 * @param id The vertex id.
+	 * @return The vertex.
+	 */
+	@SuppressWarnings("unchecked")
+	public V vertexAt(int id) {
+
+		return (V) vertices[id];
+	}
+
+	/**
+	 * Method to get the dense id of an edge.
+	 *
+	 * @param edge The edge.
+	 * @return Its id, or -1 if edge is not in the graph.
+	 */
+	public int edgeIndexOf(E edge) {
+
+		return find(edges, edge);
+	}
+
+	/**
+	 * Method to get the edge with a dense id.
+	 *
+	 * @param id The edge id.
+	 * @return The edge.
+	 */
+	@SuppressWarnings("unchecked")
+	public E edgeAt(int id) {
+
+		return (E) edges[id];
+	}
+
+	/**
+	 * Method to get the id of the first endpoint of an edge.
+	 *
+	 * @param edgeId The edge id.
+	 * @return The vertex id.
+	 */
+	public int sourceAt(int edgeId) {
+
+		return sources[edgeId];
+	}
+
+	/**
+	 * Method to get the id of the second endpoint of an edge.
+	 *
+	 * @param edgeId The edge id.
+	 * @return The vertex id.
+	 */
+	public int targetAt(int edgeId) {
+
+		return dests[edgeId];
+	}
+
+	/**
+	 * Method to get the id of the edge between two vertex ids.
+	 *
+	 * @param v1 The first vertex id.
+	 * @param v2 The second vertex id.
+	 * @return The edge id, or -1 if they are not connected.
+	 */
+	public int edgeBetween(int v1, int v2) {
+
+		int i = Arrays.binarySearch(targets, offsets[v1], offsets[v1 + 1], v2);
+		return i < 0 ? -1 : edgeIds[i];
+	}
+
+	/**
+	 * Method to binary search a sorted component array.
+	 *
+	 * @param sorted    The array.
+	 * @param component The component, may be null.
+	 * @return Its index, or -1 if absent.
+	 */
+	private static int find(ThreeTenGraphComponent[] sorted, ThreeTenGraphComponent component) {
+
+		if (component == null) {
+			return -1;
+		}
+		int i = Arrays.binarySearch(sorted, component);
+		return i < 0 ? -1 : i;
+	}
+
+	/**
+	 * Read-only list over part of a row, mapping ids to vertices or edges.
+	 */
+	private static final class Row<T> extends AbstractList<T> {
+
+		/**
+		 * Ids of the elements: targets or edgeIds.
+		 */
+		private final int[] ids;
+
+		/**
+		 * Components the ids index: vertices or edges.
+		 */
+		private final ThreeTenGraphComponent[] components;
+
+		/**
+		 * First index in ids.
+		 */
+		private final int from;
+
+		/**
+		 * Number of elements.
+		 */
+		private final int size;
+
+		/**
+		 * Constructor to create a row view.
+		 *
+		 * @param ids        targets or edgeIds.
+		 * @param components vertices or edges.
+		 * @param from       First index in ids.
+		 * @param to         Index after the last.
+		 */
+		Row(int[] ids, ThreeTenGraphComponent[] components, int from, int to) {
+
+			this.ids = ids;
+			this.components = components;
+			this.from = from;
+			this.size = to - from;
+		}
+
+		/**
+		 * Method to get an element of the row.
+		 *
+		 * @param index Position in the row.
+		 * @return The component.
+		 */
+		@Override
+		@SuppressWarnings("unchecked")
+		public T get(int index) {
+
+			if (index < 0 || index >= size) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+			}
+			return (T) components[ids[from + index]];
+		}
+
+		/**
+		 * Method to get the length of the row.
+		 *
+		 * @return The number of elements.
+		 */
+		@Override
+		public int size() {
+
+			return size;
+		}
+	}
+
+	/**
+	 * Method to fail a mutation of this read-only graph.
+	 *
+	 * @return Never returns.
+	 * @throws UnsupportedOperationException always.
+	 */
+	private static boolean readOnly() {
+
+		throw new UnsupportedOperationException("CSR snapshots are read-only.");
+	}
+
+	/**
+	 * Returns a view of all edges in this graph. In general, this obeys the
+	 * Collection contract, and therefore makes no guarantees about the ordering of
+	 * the vertices within the set.
+	 *
+	 * @return a Collection view of all edges in this graph.
+	 */
+	@SuppressWarnings("unchecked")
+	public Collection<E> getEdges() {
+
+		return Collections.unmodifiableList((List<E>) Arrays.asList(edges));
+	}
+
+	/**
+	 * Returns a view of all vertices in this graph. In general, this obeys the
+	 * Collection contract, and therefore makes no guarantees about the ordering of
+	 * the vertices within the set.
+	 *
+	 * @return a Collection view of all vertices in this graph.
+	 */
+	@SuppressWarnings("unchecked")
+	public Collection<V> getVertices() {
+
+		return Collections.unmodifiableList((List<V>) Arrays.asList(vertices));
+	}
+
+	/**
+	 * Returns the number of edges in this graph.
+	 *
+	 * @return the number of edges in this graph.
+	 */
+	public int getEdgeCount() {
+
+		return edges.length;
+	}
+
+	/**
+	 * Returns the number of vertices in this graph.
+	 *
+	 * @return the number of vertices in this graph.
+	 */
+	public int getVertexCount() {
+
+		return vertices.length;
+	}
+
+	/**
+	 * Returns the collection of vertices in this graph which are connected to edge.
+	 *
+	 * @param edge the edge whose incident vertices are to be returned.
+	 * @return the collection of vertices which are connected to edge, or null if
+	 *         edge is not present.
+	 */
+	public Collection<V> getIncidentVertices(E edge) {
+
+		int e = edgeIndexOf(edge);
+		if (e < 0) {
+			return null;
+		}
+		List<V> incidentVertices = new ArrayList<>(2);
+		incidentVertices.add(vertexAt(sources[e]));
+		if (dests[e] != sources[e]) {
+			incidentVertices.add(vertexAt(dests[e]));
+		}
+		return incidentVertices;
+	}
+
+	/**
+	 * Returns the collection of vertices which are connected to vertex via any
+	 * edges in this graph. If vertex is connected to itself with a self-loop, then
+	 * it will be included in the collection returned.
+	 *
+	 * @param vertex the vertex whose neighbors are to be returned.
+	 * @return the collection of vertices which are connected to vertex, or null if
+	 *         vertex is not present.
+	 */
+	public Collection<V> getNeighbors(V vertex) {
+
+		int v = indexOf(vertex);
+		return v < 0 ? null : new Row<V>(targets, vertices, offsets[v], offsets[v + 1]);
+	}
+
+	/**
+	 * Returns the collection of edges in this graph which are connected to vertex.
+	 *
+	 * @param vertex the vertex whose incident edges are to be returned.
+	 * @return the collection of edges which are connected to vertex, or null if
+	 *         vertex is not present.
+	 */
+	public Collection<E> getIncidentEdges(V vertex) {
+
+		int v = indexOf(vertex);
+		return v < 0 ? null : new Row<E>(edgeIds, edges, offsets[v], offsets[v + 1]);
+	}
+
+	/**
+	 * Returns an edge that connects v1 to v2.
+	 *
+	 * @param v1 the first endpoint of the returned edge.
+	 * @param v2 the second endpoint of the returned edge.
+	 * @return an edge that connects v1 to v2, or null if no such edge exists (or
+	 *         either vertex is not present).
+	 */
+	public E findEdge(V v1, V v2) {
+
+		int i = indexOf(v1);
+		int j = indexOf(v2);
+		int e = i < 0 || j < 0 ? -1 : edgeBetween(i, j);
+		return e < 0 ? null : edgeAt(e);
+	}
+
+	/**
+	 * Returns all edges that connects v1 to v2.
+	 *
+	 * @param v1 the first endpoint of the returned edges.
+	 * @param v2 the second endpoint of the returned edges.
+	 * @return the edges that connect v1 to v2, empty if there are none, or null if
+	 *         either vertex is not present.
+	 */
+	public Collection<E> findEdgeSet(V v1, V v2) {
+
+		if (!containsVertex(v1) || !containsVertex(v2)) {
+			return null;
+		}
+		ArrayList<E> ret = new ArrayList<>(1);
+		E edge = findEdge(v1, v2);
+		if (edge != null) {
+			ret.add(edge);
+		}
+		return ret;
+	}
+
+	/**
+	 * Not supported: the snapshot is read-only.
+	 *
+	 * @param e  the edge.
+	 * @param v1 the first vertex.
+	 * @param v2 the second vertex.
+	 * @return never returns.
+	 * @throws UnsupportedOperationException always.
+	 */
+	public boolean addEdge(E e, V v1, V v2) {
+
+		return readOnly();
+	}
+
+	/**
+	 * Not supported: the snapshot is read-only.
+	 *
+	 * @param e        the edge.
+	 * @param v1       the first vertex.
+	 * @param v2       the second vertex.
+	 * @param edgeType the edge type.
+	 * @return never returns.
+	 * @throws UnsupportedOperationException always.
+	 */
+	public boolean addEdge(E e, V v1, V v2, EdgeType edgeType) {
+
+		return readOnly();
+	}
+
+	/**
+	 * Not supported: the snapshot is read-only.
+	 *
+	 * @param edge     the edge.
+	 * @param vertices the vertices.
+	 * @return never returns.
+	 * @throws UnsupportedOperationException always.
+	 */
+	public boolean addEdge(E edge, Collection<? extends V> vertices) {
+
+		return readOnly();
+	}
+
+	/**
+	 * Not supported: the snapshot is read-only.
+	 *
+	 * @param edge     the edge.
+	 * @param vertices the vertices.
+	 * @param edgeType the edge type.
+	 * @return never returns.
+	 * @throws UnsupportedOperationException always.
+	 */
+	public boolean addEdge(E edge, Collection<? extends V> vertices, EdgeType edgeType) {
+
+		return readOnly();
+	}
+
+	/**
+	 * Not supported: the snapshot is read-only.
+	 *
+	 * @param vertex the vertex.
+	 * @return never returns.
+	 * @throws UnsupportedOperationException always.
+	 */
+	public boolean addVertex(V vertex) {
+
+		return readOnly();
+	}
+
+	/**
+	 * Not supported: the snapshot is read-only.
+	 *
+	 * @param edge the edge.
+	 * @return never returns.
+	 * @throws UnsupportedOperationException always.
+	 */
+	public boolean removeEdge(E edge) {
+
+		return readOnly();
+	}
+
+	/**
+	 * Not supported: the snapshot is read-only.
+	 *
+	 * @param vertex the vertex.
+	 * @return never returns.
+	 * @throws UnsupportedOperationException always.
+	 */
+	public boolean removeVertex(V vertex) {
+
+		return readOnly();
+	}
+
+	/**
+	 * Returns true if this graph's vertex collection contains vertex.
+	 *
+	 * @param vertex the vertex whose presence is being queried.
+	 * @return true iff this graph contains a vertex vertex.
+	 */
+	public boolean containsVertex(V vertex) {
+
+		return indexOf(vertex) >= 0;
+	}
+
+	/**
+	 * Returns true if this graph's edge collection contains edge.
+	 *
+	 * @param edge the edge whose presence is being queried.
+	 * @return true iff this graph contains an edge edge.
+	 */
+	public boolean containsEdge(E edge) {
+
+		return edgeIndexOf(edge) >= 0;
+	}
+
+	/**
+	 * Returns true if vertex and edge are incident to each other.
+	 *
+	 * @param vertex the vertex.
+	 * @param edge   the edge.
+	 * @return true if vertex and edge are incident to each other.
+	 */
+	public boolean isIncident(V vertex, E edge) {
+
+		int e = edgeIndexOf(edge);
+		int v = indexOf(vertex);
+		return e >= 0 && v >= 0 && (sources[e] == v || dests[e] == v);
+	}
+
+	/**
+	 * Returns true if v1 and v2 share an incident edge.
+	 *
+	 * @param v1 the first vertex to test.
+	 * @param v2 the second vertex to test.
+	 * @return true if v1 and v2 share an incident edge.
+	 */
+	public boolean isNeighbor(V v1, V v2) {
+
+		return findEdge(v1, v2) != null;
+	}
+
+	/**
+	 * Returns true if v1 is a predecessor of v2 in this graph; for undirected
+	 * graphs the same as isNeighbor.
+	 *
+	 * @param v1 the first vertex to be queried.
+	 * @param v2 the second vertex to be queried.
+	 * @return true if v1 is a predecessor of v2.
+	 */
+	public boolean isPredecessor(V v1, V v2) {
+
+		return isNeighbor(v1, v2);
+	}
+
+	/**
+	 * Returns true if v1 is a successor of v2 in this graph; for undirected graphs
+	 * the same as isNeighbor.
+	 *
+	 * @param v1 the first vertex to be queried.
+	 * @param v2 the second vertex to be queried.
+	 * @return true if v1 is a successor of v2.
+	 */
+	public boolean isSuccessor(V v1, V v2) {
+
+		return isNeighbor(v1, v2);
+	}
+
+	/**
+	 * Returns the number of edges incident to vertex. A self-loop counts once.
+	 *
+	 * @param vertex the vertex whose degree is to be returned.
+	 * @return the degree of this node.
+	 * @throws IllegalArgumentException if vertex is not in the graph.
+	 */
+	public int degree(V vertex) {
+
+		int v = indexOf(vertex);
+		if (v < 0) {
+			throw new IllegalArgumentException("Vertex " + vertex + " is not in the graph.");
+		}
+		return offsets[v + 1] - offsets[v];
+	}
+
+	/**
+	 * Returns the number of vertices that are adjacent to vertex.
+	 *
+	 * @param vertex the vertex whose neighbor count is to be returned.
+	 * @return the number of neighboring vertices.
+	 * @throws IllegalArgumentException if vertex is not in the graph.
+	 */
+	public int getNeighborCount(V vertex) {
+
+		return degree(vertex); // one edge per neighbor
+	}
+
+	/**
+	 * Returns the number of incoming edges incident to vertex; for undirected
+	 * graphs the degree.
+	 *
+	 * @param vertex the vertex whose indegree is to be calculated.
+	 * @return the number of incoming edges incident to vertex.
+	 */
+	public int inDegree(V vertex) {
+
+		return degree(vertex);
+	}
+
+	/**
+	 * Returns the number of outgoing edges incident to vertex; for undirected
+	 * graphs the degree.
+	 *
+	 * @param vertex the vertex whose outdegree is to be calculated.
+	 * @return the number of outgoing edges incident to vertex.
+	 */
+	public int outDegree(V vertex) {
+
+		return degree(vertex);
+	}
+
+	/**
+	 * Returns the number of predecessors that vertex has in this graph.
+	 *
+	 * @param vertex the vertex whose predecessor count is to be returned.
+	 * @return the number of predecessors that vertex has in this graph.
+	 */
+	public int getPredecessorCount(V vertex) {
+
+		return degree(vertex);
+	}
+
+	/**
+	 * Returns the number of successors that vertex has in this graph.
+	 *
+	 * @param vertex the vertex whose successor count is to be returned.
+	 * @return the number of successors that vertex has in this graph.
+	 */
+	public int getSuccessorCount(V vertex) {
+
+		return degree(vertex);
+	}
+
+	/**
+	 * Returns the vertex at the other end of edge from vertex.
+	 *
+	 * @param vertex the vertex to be queried.
+	 * @param edge   the edge to be queried.
+	 * @return the vertex at the other end of edge from vertex.
+	 * @throws IllegalArgumentException if vertex and edge are not incident.
+	 */
+	public V getOpposite(V vertex, E edge) {
+
+		int e = edgeIndexOf(edge);
+		int v = indexOf(vertex);
+		if (e < 0 || v < 0 || (sources[e] != v && dests[e] != v)) {
+			throw new IllegalArgumentException(vertex + " is not incident to " + edge);
+		}
+		return vertexAt(sources[e] == v ? dests[e] : sources[e]);
+	}
+
+	/**
+	 * Returns false: undirected graphs have no sources.
+	 *
+	 * @param vertex the vertex to be queried.
+	 * @param edge   the edge to be queried.
+	 * @return false.
+	 */
+	public boolean isSource(V vertex, E edge) {
+
+		return false;
+	}
+
+	/**
+	 * Returns false: undirected graphs have no destinations.
+	 *
+	 * @param vertex the vertex to be queried.
+	 * @param edge   the edge to be queried.
+	 * @return false.
+	 */
+	public boolean isDest(V vertex, E edge) {
+
+		return false;
+	}
+
+	/**
+	 * Returns the number of edges of type edgeType in this graph.
+	 *
+	 * @param edgeType the type of edge for which the count is to be returned.
+	 * @return the number of edges of type edgeType in this graph.
+	 */
+	public int getEdgeCount(EdgeType edgeType) {
+
+		return edgeType == EdgeType.UNDIRECTED ? edges.length : 0;
+	}
+
+	/**
+	 * Returns the collection of edges in this graph which are of type edgeType.
+	 *
+	 * @param edgeType the type of edges to be returned.
+	 * @return the collection of edges which are of type edgeType.
+	 */
+	public Collection<E> getEdges(EdgeType edgeType) {
+
+		return edgeType == EdgeType.UNDIRECTED ? getEdges() : Collections.<E>emptyList();
+	}
+
+	/**
+	 * Returns the number of vertices that are incident to edge. For a self-loop
+	 * this is 1.
+	 *
+	 * @param edge the edge whose incident vertex count is to be returned.
+	 * @return the number of vertices that are incident to edge, 0 if absent.
+	 */
+	public int getIncidentCount(E edge) {
+
+		int e = edgeIndexOf(edge);
+		if (e < 0) {
+			return 0;
+		}
+		return sources[e] == dests[e] ? 1 : 2;
+	}
+
+	/**
+	 * Returns null: undirected graphs have no sources.
+	 *
+	 * @param directedEdge the edge.
+	 * @return null.
+	 */
+	public V getSource(E directedEdge) {
+
+		return null;
+	}
+
+	/**
+	 * Returns null: undirected graphs have no destinations.
+	 *
+	 * @param directedEdge the edge.
+	 * @return null.
+	 */
+	public V getDest(E directedEdge) {
+
+		return null;
+	}
+
+	/**
+	 * Returns the predecessors of vertex; for undirected graphs its neighbors.
+	 *
+	 * @param vertex the vertex whose predecessors are to be returned.
+	 * @return a Collection view of the predecessors of vertex in this graph.
+	 */
+	public Collection<V> getPredecessors(V vertex) {
+
+		return getNeighbors(vertex);
+	}
+
+	/**
+	 * Returns the successors of vertex; for undirected graphs its neighbors.
+	 *
+	 * @param vertex the vertex whose successors are to be returned.
+	 * @return a Collection view of the successors of vertex in this graph.
+	 */
+	public Collection<V> getSuccessors(V vertex) {
+
+		return getNeighbors(vertex);
+	}
+
+	/**
+	 * Returns the incoming edges of vertex; for undirected graphs its incident
+	 * edges.
+	 *
+	 * @param vertex the vertex whose incoming edges are to be returned.
+	 * @return a Collection view of the incoming edges incident to vertex.
+	 */
+	public Collection<E> getInEdges(V vertex) {
+
+		return getIncidentEdges(vertex);
+	}
+
+	/**
+	 * Returns the outgoing edges of vertex; for undirected graphs its incident
+	 * edges.
+	 *
+	 * @param vertex the vertex whose outgoing edges are to be returned.
+	 * @return a Collection view of the outgoing edges incident to vertex.
+	 */
+	public Collection<E> getOutEdges(V vertex) {
+
+		return getIncidentEdges(vertex);
+	}
+
+	/**
+	 * Returns the endpoints of edge as a Pair/<V/>.
+	 *
+	 * @param edge the edge whose endpoints are to be returned.
+	 * @return the endpoints (incident vertices) of edge, or null if edge is not
+	 *         present.
+	 */
+	public Pair<V> getEndpoints(E edge) {
+
+		int e = edgeIndexOf(edge);
+		return e < 0 ? null : new Pair<>(vertexAt(sources[e]), vertexAt(dests[e]));
+	}
+
+	/**
+	 * Returns the edge type of edge in this graph.
+	 *
+	 * @param edge the edge to be evaluated.
+	 * @return the EdgeType of edge.
+	 */
+	public EdgeType getEdgeType(E edge) {
+
+		return EdgeType.UNDIRECTED;
+	}
+
+	/**
+	 * Returns the default edge type for this graph.
+	 *
+	 * @return the default edge type for this graph.
+	 */
+	public EdgeType getDefaultEdgeType() {
+
+		return EdgeType.UNDIRECTED;
+	}
+
+	/**
+	 * toString() Method.
+	 *
+	 * @return Returns a String representation of the snapshot.
+	 */
+	@Override
+	public String toString() {
+
+		return "ThreeTenCsrGraph[vertices=" + vertices.length + ", edges=" + edges.length + "]";
+	}
+
+	/**
+	 * Main method used for testing purposes.
+	 *
+	 * @param args Command-line arguments supplied as an Array of String Objects.
+	 */
+	public static void main(String[] args) {
+
+		/**
+		 * Graph component used for the tests.
+		 */
+		class Item extends ThreeTenGraphComponent {
+
+			/**
+			 * Constructor to create Item Objects.
+			 *
+			 * @param id Integer representing the component id.
+			 */
+			Item(int id) {
+				super(id);
+			}
+		}
+
+		// a random graph with self-loops and isolated vertices
+		Random random = new Random(3);
+		int n = 2000;
+		ThreeTenGraph<Item, Item> graph = new ThreeTenGraph<>();
+		Item[] items = new Item[n];
+		for (int i = 0; i < n; i++) {
+			items[i] = new Item(random.nextInt(1 << 20) * 2);
+			graph.addVertex(items[i]);
+		}
+		for (int e = 0; e < 6000; e++) {
+			graph.addEdge(new Item(e * 2 + 1), items[random.nextInt(n)], items[random.nextInt(n / 2)]);
+		}
+
+		ThreeTenCsrGraph<Item, Item> csr = graph.toCsr();
+		if (csr.getVertexCount() == graph.getVertexCount() && csr.getEdgeCount() == graph.getEdgeCount()
+				&& csr.getOffsets()[csr.getVertexCount()] == csr.getTargets().length) {
+			System.out.println("Yay 1");
+		}
+
+		// every query agrees with the source graph
+		boolean same = true;
+		for (Item v : graph.getVertices()) {
+			same &= csr.degree(v) == graph.degree(v)
+					&& new HashSet<>(csr.getNeighbors(v)).equals(new HashSet<>(graph.getNeighbors(v)))
+					&& new HashSet<>(csr.getIncidentEdges(v))
+							.equals(new HashSet<>(graph.getIncidentEdges(v)));
+			Item w = items[random.nextInt(n)];
+			same &= Objects.equals(csr.findEdge(v, w), graph.findEdge(v, w));
+		}
+		for (Item e : graph.getEdges()) {
+			Pair<Item> p = graph.getEndpoints(e);
+			same &= csr.isIncident(p.getFirst(), e) && csr.getOpposite(p.getFirst(), e).equals(p.getSecond())
+					&& csr.getIncidentCount(e) == graph.getIncidentCount(e) && e.equals(csr.findEdge(p.getSecond(), p.getFirst()));
+		}
+		if (same) {
+			System.out.println("Yay 2");
+		}
+
+		// rows are sorted and agree with the edge endpoints
+		boolean rows = true;
+		int[] offsets = csr.getOffsets();
+		int[] targets = csr.getTargets();
+		int[] edgeIds = csr.getEdgeIds();
+		for (int v = 0; v < csr.getVertexCount(); v++) {
+			for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+				int e = edgeIds[i];
+				rows &= (i == offsets[v] || targets[i - 1] < targets[i])
+						&& (csr.sourceAt(e) == v && csr.targetAt(e) == targets[i]
+								|| csr.targetAt(e) == v && csr.sourceAt(e) == targets[i])
+						&& csr.edgeBetween(targets[i], v) == e;
+			}
+			rows &= csr.indexOf(csr.vertexAt(v)) == v;
+		}
+		if (rows && csr.indexOf(new Item(1)) == -1 && csr.getNeighbors(new Item(1)) == null) {
+			System.out.println("Yay 3");
+		}
+
+		// read-only, and independent of later changes to the source graph
+		boolean refused;
+		try {
+			csr.addVertex(new Item(2));
+			refused = false;
+		} catch (UnsupportedOperationException e) {
+			refused = true;
+		}
+		Item gone = csr.vertexAt(0);
+		int degree = csr.degree(gone);
+		graph.removeVertex(gone);
+		if (refused && csr.containsVertex(gone) && csr.degree(gone) == degree
+				&& csr.getVertexCount() == graph.getVertexCount() + 1) {
+			System.out.println("Yay 4");
+		}
+	}
+}
@@ -0,0 +1,1114 @@
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Class to create bucketized cuckoo hash maps of generic type that implements
+ * the Map interface. Every key has two candidate buckets of four slots, picked
+ * by two independent hashes, and lives in one of them or in a small stash. A
+ * lookup therefore looks at no more than eight slots and the stash, whatever
+ * the load factor, which makes get() worst-case constant time.
+ *
+ * <p>put() places a new key in a free slot of either bucket. When both are full
+ * it evicts a random resident, which moves to its own other bucket and may
+ * evict in turn (a random walk). A walk that gives up leaves the key in hand in
+ * the stash. Once the stash holds more than STASH_LIMIT keys the table is
+ * rebuilt with fresh hash seeds, and doubled if that is not enough. Four slot
+ * buckets let the table fill to over 90% before walks get long.
+ *
+ * <p>Keys must not be null. As with ThreeTenOpenHashMap, keys, values and cached
+ * hash codes live in flat parallel arrays.
+ *
+ * @author Jacob Strokus
+ *
+ * @param <K> generic type.
+ * @param <V> generic type.
+ */
+class ThreeTenCuckooHashMap<K, V> implements Map<K, V> {
+
+	/**
+	 * Slots per bucket.
+	 */
+	static final int BUCKET_SIZE = 4;
+
+	/**
+	 * Most keys the stash holds before the table is rebuilt.
+	 */
+	static final int STASH_LIMIT = 4;
+
+	/**
+	 * Evictions tried before a walk gives up and uses the stash.
+	 */
+	private static final int MAX_KICKS = 256;
+
+	/**
+	 * Largest table, in slots.
+	 */
+	private static final int MAX_SLOTS = 1 << 30;
+
+	/**
+	 * Keys of the slots, null for free slots.
+	 */
+	private Object[] keys;
+
+	/**
+	 * Values of the slots.
+	 */
+	private Object[] values;
+
+	/**
+	 * hashCode() of the key in each slot.
+	 */
+	private int[] hashes;
+
+	/**
+	 * Keys of the stash.
+	 */
+	private Object[] stashKeys = new Object[STASH_LIMIT + 1];
+
+	/**
+	 * Values of the stash.
+	 */
+	private Object[] stashValues = new Object[STASH_LIMIT + 1];
+
+	/**
+	 * hashCode() of the keys in the stash.
+	 */
+	private int[] stashHashes = new int[STASH_LIMIT + 1];
+
+	/**
+	 * Number of keys in the stash.
+	 */
+	private int stashCount = 0;
+
+	/**
+	 * Number of buckets minus one.
+	 */
+	private int bucketMask;
+
+	/**
+	 * Seed of the first bucket hash.
+	 */
+	private int seed1;
+
+	/**
+	 * Seed of the second bucket hash.
+	 */
+	private int seed2;
+
+	/**
+	 * State of the generator that picks eviction victims and new seeds.
+	 */
+	private int random = 0x2545F491;
+
+	/**
+	 * Number of keys in the map.
+	 */
+	private int numElements = 0;
+
+	/**
+	 * Fraction of the slots that may be used before the table doubles.
+	 */
+	private final double maxLoad;
+
+	/**
+	 * Integer representing the original size of the table.
+	 */
+	private final int originalSize;
+
+	/**
+	 * Constructor to create the map with the given size and a maximum load of
+	 * 0.9.
+	 *
+	 * @param size Number of slots in the table, rounded up to a power of two.
+	 */
+	public ThreeTenCuckooHashMap(int size) {
+
+		this(size, 0.9);
+	}
+
+	/**
+	 * Constructor to create the map with the given size and maximum load.
+	 *
+	 * @param size    Number of slots in the table, rounded up to a power of two.
+	 * @param maxLoad Fraction of the slots that may be used before the table
+	 *                doubles, greater than 0 and less than 1.
+	 * @throws IllegalArgumentException if maxLoad is out of range.
+	 */
+	public ThreeTenCuckooHashMap(int size, double maxLoad) {
+
+		if (!(maxLoad > 0 && maxLoad < 1)) {
+			throw new IllegalArgumentException("maxLoad must be in (0, 1): " + maxLoad);
+		}
+		this.maxLoad = maxLoad;
+		this.originalSize = tableSizeFor(size);
+		seed1 = nextRandom();
+		seed2 = nextRandom();
+		allocate(originalSize);
+	}
+
+	/**
+	 * Method to round a requested slot count up to a legal table size (a power of
+	 * two holding at least two buckets).
+	 *
+	 * @param size Requested number of slots.
+	 * @return Legal number of slots.
+	 */
+	private static int tableSizeFor(int size) {
+
+		if (size <= 2 * BUCKET_SIZE) {
+			return 2 * BUCKET_SIZE;
+		}
+		if (size > MAX_SLOTS) {
+			return MAX_SLOTS;
+		}
+		return Integer.highestOneBit(size - 1) << 1;
+	}
+
+	/**
+	 * Method to allocate empty arrays of the given size.
+	 *
+	 * @param size Number of slots (a power of two).
+	 */
+	private void allocate(int size) {
+
+		keys = new Object[size];
+		values = new Object[size];
+		hashes = new int[size];
+		bucketMask = size / BUCKET_SIZE - 1;
+		java.util.Arrays.fill(stashKeys, null);
+		java.util.Arrays.fill(stashValues, null);
+		stashCount = 0;
+	}
+
+	/**
+	 * Method to get the next number of a xorshift generator.
+	 *
+	 * @return Pseudo-random integer.
+	 */
+	private int nextRandom() {
+
+		int x = random;
+		x ^= x << 13;
+		x ^= x >>> 17;
+		x ^= x << 5;
+		random = x;
+		return x;
+	}
+
+	/**
+	 * Method to get the first bucket of a hash code.
+	 *
+	 * @param h hashCode() of the key.
+	 * @return Bucket index.
+	 */
+	private int bucket1(int h) {
+
+		return HashStrategy.fmix(h ^ seed1) & bucketMask;
+	}
+
+	/**
+	 * Method to get the second bucket of a hash code, always different from the
+	 * first.
+	 *
+	 * @param h hashCode() of the key.
+	 * @return Bucket index.
+	 */
+	private int bucket2(int h) {
+
+		int b = HashStrategy.fmix(h ^ seed2) & bucketMask;
+		return b == bucket1(h) ? b ^ 1 : b;
+	}
+
+	/**
+	 * Method to find where a key is stored. Indexes below getSlots() are table
+	 * slots; the rest are stash positions after the table.
+	 *
+	 * @param key The key to find.
+	 * @return Index of the key, or -1 if it is not in the map.
+	 */
+	private int indexOf(Object key) {
+
+		if (key == null) {
+			return -1;
+		}
+		int h = key.hashCode();
+
+		int slot = bucket1(h) * BUCKET_SIZE;
+		for (int end = slot + BUCKET_SIZE; slot < end; slot++) {
+			Object k = keys[slot];
+			if (k != null && hashes[slot] == h && (k == key || key.equals(k))) {
+				return slot;
+			}
+		}
+		slot = bucket2(h) * BUCKET_SIZE;
+		for (int end = slot + BUCKET_SIZE; slot < end; slot++) {
+			Object k = keys[slot];
+			if (k != null && hashes[slot] == h && (k == key || key.equals(k))) {
+				return slot;
+			}
+		}
+		for (int i = 0; i < stashCount; i++) {
+			if (stashHashes[i] == h && key.equals(stashKeys[i])) {
+				return keys.length + i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Method to get the key stored at an index from indexOf().
+	 *
+	 * @param index Table slot or stash position.
+	 * @return The key, or null for a free slot.
+	 */
+	private Object keyAt(int index) {
+
+		return index < keys.length ? keys[index] : stashKeys[index - keys.length];
+	}
+
+	/**
+	 * Method to get the value stored at an index from indexOf().
+	 *
+	 * @param index Table slot or stash position.
+	 * @return The value.
+	 */
+	@SuppressWarnings("unchecked")
+	private V valueAt(int index) {
+
+		return (V) (index < keys.length ? values[index] : stashValues[index - keys.length]);
+	}
+
+	/**
+	 * Method to replace the value stored at an index from indexOf().
+	 *
+	 * @param index Table slot or stash position.
+	 * @param value The new value.
+	 * @return The previous value.
+	 */
+	private V setValueAt(int index, Object value) {
+
+		V old = valueAt(index);
+		if (index < keys.length) {
+			values[index] = value;
+		} else {
+			stashValues[index - keys.length] = value;
+		}
+		return old;
+	}
+
+	/**
+	 * Method to get the value of a key. Looks at two buckets and the stash.
+	 *
+	 * @param key The key.
+	 * @return The value, or null if the key is not in the map.
+	 */
+	public V get(Object key) {
+
+		int index = indexOf(key);
+		return index < 0 ? null : valueAt(index);
+	}
+
+	/**
+	 * Returns true if this map contains a mapping for the specified key.
+	 *
+	 * @param key Object to check whether the given key is in the hash table.
+	 *
+	 * @return Boolean whether the map contains the key.
+	 */
+	public boolean containsKey(Object key) {
+
+		return indexOf(key) >= 0;
+	}
+
+	/**
+	 * Method to add a pair to the table, or update the value of a key already in
+	 * it.
+	 *
+	 * @param key   The key, not null.
+	 * @param value The value.
+	 * @return The previous value for the key, or null if the key is new.
+	 * @throws NullPointerException if key is null.
+	 */
+	public V put(K key, V value) {
+
+		Objects.requireNonNull(key);
+		int index = indexOf(key);
+		if (index >= 0) {
+			return setValueAt(index, value);
+		}
+
+		insertNew(key, value, key.hashCode());
+		numElements++;
+
+		if (numElements > maxFill() || stashOverflow()) {
+			restructure();
+		}
+		return null;
+	}
+
+	/**
+	 * Method to get the number of keys the table may hold before it doubles.
+	 *
+	 * @return Maximum number of keys.
+	 */
+	private int maxFill() {
+
+		return (int) (keys.length * maxLoad);
+	}
+
+	/**
+	 * Method to check whether the stash holds too many keys to keep lookups
+	 * short. Keys whose hash codes are equal can never be spread out, so once the
+	 * table has eight slots per key the stash is just allowed to grow.
+	 *
+	 * @return Boolean whether the table should be rebuilt.
+	 */
+	private boolean stashOverflow() {
+
+		return stashCount > STASH_LIMIT && keys.length < MAX_SLOTS && keys.length <= 8L * numElements;
+	}
+
+	/**
+	 * Method to put a key into a free slot of a bucket.
+	 *
+	 * @param bucket The bucket.
+	 * @param key    The key.
+	 * @param value  The value.
+	 * @param h      hashCode() of the key.
+	 * @return Boolean whether the bucket had a free slot.
+	 */
+	private boolean placeInBucket(int bucket, Object key, Object value, int h) {
+
+		int slot = bucket * BUCKET_SIZE;
+		for (int end = slot + BUCKET_SIZE; slot < end; slot++) {
+			if (keys[slot] == null) {
+				keys[slot] = key;
+				values[slot] = value;
+				hashes[slot] = h;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Method to store a key that is not in the map, by a random walk of evictions
+	 * if both of its buckets are full, falling back to the stash.
+	 *
+	 * @param key   The key.
+	 * @param value The value.
+	 * @param h     hashCode() of the key.
+	 */
+	private void insertNew(Object key, Object value, int h) {
+
+		int target = -1; // bucket the key in hand must go to, -1 for either
+
+		for (int kick = 0;; kick++) {
+
+			int b1 = bucket1(h);
+			int b2 = bucket2(h);
+			if (target != b2 && placeInBucket(b1, key, value, h)) {
+				return;
+			}
+			if (target != b1 && placeInBucket(b2, key, value, h)) {
+				return;
+			}
+			if (kick == MAX_KICKS) {
+				break;
+			}
+
+			// evict a random resident of a full bucket and carry it on
+			int r = nextRandom();
+			int into = target >= 0 ? target : (r & 4) == 0 ? b1 : b2;
+			int slot = into * BUCKET_SIZE + (r & (BUCKET_SIZE - 1));
+
+			Object evictedKey = keys[slot];
+			Object evictedValue = values[slot];
+			int evictedHash = hashes[slot];
+			keys[slot] = key;
+			values[slot] = value;
+			hashes[slot] = h;
+			key = evictedKey;
+			value = evictedValue;
+			h = evictedHash;
+
+			int e1 = bucket1(h);
+			target = into == e1 ? bucket2(h) : e1;
+		}
+
+		if (stashCount == stashKeys.length) {
+			stashKeys = java.util.Arrays.copyOf(stashKeys, 2 * stashCount);
+			stashValues = java.util.Arrays.copyOf(stashValues, 2 * stashCount);
+			stashHashes = java.util.Arrays.copyOf(stashHashes, 2 * stashCount);
+		}
+		stashKeys[stashCount] = key;
+		stashValues[stashCount] = value;
+		stashHashes[stashCount] = h;
+		stashCount++;
+	}
+
+	/**
+	 * Method to rebuild the table after it got too full or the stash overflowed:
+	 * first with new seeds at the same size, then doubling until the keys fit.
+	 */
+	private void restructure() {
+
+		int size = keys.length;
+		while (numElements > (int) (size * maxLoad) && size < MAX_SLOTS) {
+			size *= 2;
+		}
+		for (int attempt = 1;; attempt++) {
+			rebuild(size, nextRandom(), nextRandom());
+			if (!stashOverflow()) {
+				return;
+			}
+			if (attempt % 2 == 0) { // new seeds did not help: grow
+				size *= 2;
+			}
+		}
+	}
+
+	/**
+	 * Method to move every key into a new table with the given size and seeds.
+	 *
+	 * @param size  Number of slots (a power of two).
+	 * @param seed1 Seed of the first bucket hash.
+	 * @param seed2 Seed of the second bucket hash.
+	 */
+	private void rebuild(int size, int seed1, int seed2) {
+
+		Object[] oldKeys = keys;
+		Object[] oldValues = values;
+		int[] oldHashes = hashes;
+		Object[] oldStashKeys = stashKeys.clone();
+		Object[] oldStashValues = stashValues.clone();
+		int[] oldStashHashes = stashHashes.clone();
+		int oldStashCount = stashCount;
+
+		this.seed1 = seed1;
+		this.seed2 = seed2;
+		allocate(size);
+
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != null) {
+				insertNew(oldKeys[i], oldValues[i], oldHashes[i]);
+			}
+		}
+		for (int i = 0; i < oldStashCount; i++) {
+			insertNew(oldStashKeys[i], oldStashValues[i], oldStashHashes[i]);
+		}
+	}
+
+	/**
+	 * Method to remove a pair from the table.
+	 *
+	 * @param key The corresponding key to a value in the map.
+	 *
+	 * @return V the value of the pair removed. If value not found return null.
+	 */
+	public V remove(Object key) {
+
+		int index = indexOf(key);
+		if (index < 0) {
+			return null;
+		}
+		V old = valueAt(index);
+		removeAt(index);
+
+		if (index < keys.length && stashCount > 0) { // a slot opened up: empty the stash into it
+			for (int i = stashCount - 1; i >= 0; i--) {
+				int h = stashHashes[i];
+				if (placeInBucket(bucket1(h), stashKeys[i], stashValues[i], h)
+						|| placeInBucket(bucket2(h), stashKeys[i], stashValues[i], h)) {
+					removeStash(i);
+				}
+			}
+		}
+		return old;
+	}
+
+	/**
+	 * Method to remove the key at an index from indexOf(). A stash position is
+	 * filled with the last stash key; table slots never move.
+	 *
+	 * @param index Table slot or stash position.
+	 */
+	private void removeAt(int index) {
+
+		if (index < keys.length) {
+			keys[index] = null;
+			values[index] = null;
+		} else {
+			removeStash(index - keys.length);
+		}
+		numElements--;
+	}
+
+	/**
+	 * Method to drop a stash position by moving the last stash key into it.
+	 *
+	 * @param i Stash position.
+	 */
+	private void removeStash(int i) {
+
+		int last = --stashCount;
+		stashKeys[i] = stashKeys[last];
+		stashValues[i] = stashValues[last];
+		stashHashes[i] = stashHashes[last];
+		stashKeys[last] = null;
+		stashValues[last] = null;
+	}
+
+	/**
+	 * Method to rehash the current table.
+	 *
+	 * @param size Integer representing the number of slots wanted, rounded up to a
+	 *             power of two.
+	 * @return Boolean whether rehash was success (false if the entries would not
+	 *         fit).
+	 */
+	public boolean rehash(int size) {
+
+		if (size < 1 || numElements > (int) (tableSizeFor(size) * maxLoad)) {
+			return false;
+		}
+		rebuild(tableSizeFor(size), seed1, seed2);
+		if (stashOverflow()) {
+			restructure();
+		}
+		return true;
+	}
+
+	/**
+	 * Method to reset the table to it's original size it had when constructed.
+	 */
+	public void clear() {
+
+		allocate(originalSize);
+		numElements = 0;
+	}
+
+	/**
+	 * Method to check if the table is empty.
+	 *
+	 * @return Boolean expression whether the table is empty or not.
+	 */
+	public boolean isEmpty() {
+
+		return numElements == 0;
+	}
+
+	/**
+	 * Method to get the number of slots in the table.
+	 *
+	 * @return number of slots.
+	 */
+	public int getSlots() {
+
+		return keys.length;
+	}
+
+	/**
+	 * Method to get the number of keys in the stash.
+	 *
+	 * @return keys stored outside their buckets.
+	 */
+	public int getStashSize() {
+
+		return stashCount;
+	}
+
+	/**
+	 * Method to get the fraction of the slots that may be used before the table
+	 * doubles.
+	 *
+	 * @return the maximum load.
+	 */
+	public double getMaxLoad() {
+
+		return maxLoad;
+	}
+
+	/**
+	 * Method to get the size of the table.
+	 *
+	 * @return Number of elements in the table.
+	 */
+	public int size() {
+
+		return numElements;
+	}
+
+	/**
+	 * Returns true if this map maps one or more keys to the specified value. This
+	 * scans the value arrays and runs in O(slots) time.
+	 *
+	 * @param value Object to check if the hash table contains.
+	 *
+	 * @return Boolean whether map maps one or more keys to the specified value.
+	 */
+	public boolean containsValue(Object value) {
+
+		for (int i = 0; i < keys.length + stashCount; i++) {
+			if (keyAt(i) != null && Objects.equals(value, valueAt(i))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Copies all of the mappings from the specified map to this map, growing the
+	 * table once up front.
+	 *
+	 * @param m Map that extends generic types K and V.
+	 */
+	public void putAll(Map<? extends K, ? extends V> m) {
+
+		int size = keys.length;
+		while (size < MAX_SLOTS && numElements + m.size() > (int) (size * maxLoad)) {
+			size <<= 1;
+		}
+		if (size > keys.length) {
+			rebuild(size, seed1, seed2);
+		}
+		for (Map.Entry<? extends K, ? extends V> e : m.entrySet()) {
+			put(e.getKey(), e.getValue());
+		}
+	}
+
+	/**
+	 * Returns a Set view of the keys contained in this map. The set is backed by
+	 * the map, so changes to the map are reflected in the set, and vice-versa.
+	 *
+	 * @return Set containing all the keys in the table.
+	 */
+	public Set<K> keySet() {
+
+		return new AbstractSet<K>() {
+			public Iterator<K> iterator() {
+				return new SlotIterator<K>() {
+					@SuppressWarnings("unchecked")
+					K get(int index) {
+						return (K) keyAt(index);
+					}
+				};
+			}
+
+			public int size() {
+				return numElements;
+			}
+
+			public boolean contains(Object o) {
+				return containsKey(o);
+			}
+
+			public boolean remove(Object o) {
+				int index = indexOf(o);
+				if (index < 0) {
+					return false;
+				}
+				ThreeTenCuckooHashMap.this.remove(o);
+				return true;
+			}
+
+			public void clear() {
+				ThreeTenCuckooHashMap.this.clear();
+			}
+		};
+	}
+
+	/**
+	 * Returns a Collection view of the values contained in this map. The collection
+	 * is backed by the map, so changes to the map are reflected in the collection,
+	 * and vice-versa.
+	 *
+	 * @return Collection of values from the hash table.
+	 */
+	public Collection<V> values() {
+
+		return new AbstractCollection<V>() {
+			public Iterator<V> iterator() {
+				return new SlotIterator<V>() {
+					V get(int index) {
+						return valueAt(index);
+					}
+				};
+			}
+
+			public int size() {
+				return numElements;
+			}
+
+			public boolean contains(Object o) {
+				return containsValue(o);
+			}
+
+			public void clear() {
+				ThreeTenCuckooHashMap.this.clear();
+			}
+		};
+	}
+
+	/**
+	 * Returns a Set view of the mappings contained in this map. The set is backed
+	 * by the map, so changes to the map are reflected in the set, and vice-versa.
+	 *
+	 * @return Set of the mappings contained in the map.
+	 */
+	public Set<Map.Entry<K, V>> entrySet() {
+
+		return new AbstractSet<Map.Entry<K, V>>() {
+			public Iterator<Map.Entry<K, V>> iterator() {
+				return new SlotIterator<Map.Entry<K, V>>() {
+					Map.Entry<K, V> get(int index) {
+						return new SlotEntry(index);
+					}
+				};
+			}
+
+			public int size() {
+				return numElements;
+			}
+
+			public void clear() {
+				ThreeTenCuckooHashMap.this.clear();
+			}
+		};
+	}
+
+	/**
+	 * Entry handed out by the entry set iterator. It reads through to the slot
+	 * while the key is still there, so setValue writes into the table.
+	 */
+	private final class SlotEntry implements Map.Entry<K, V> {
+
+		/**
+		 * Key of this entry.
+		 */
+		private final K key;
+
+		/**
+		 * Index the entry was found at.
+		 */
+		private final int index;
+
+		/**
+		 * Constructor to create an entry for an occupied index.
+		 *
+		 * @param index Table slot or stash position.
+		 */
+		@SuppressWarnings("unchecked")
+		SlotEntry(int index) {
+			this.index = index;
+			this.key = (K) keyAt(index);
+		}
+
+		/**
+		 * Method to check whether the key still sits at the index.
+		 *
+		 * @return Boolean whether index still holds key.
+		 */
+		private boolean inPlace() {
+			return index < keys.length + stashCount && keyAt(index) == key;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public K getKey() {
+			return key;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public V getValue() {
+			return inPlace() ? valueAt(index) : get(key);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public V setValue(V value) {
+			return inPlace() ? setValueAt(index, value) : put(key, value);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public boolean equals(Object o) {
+			if (!(o instanceof Map.Entry)) {
+				return false;
+			}
+			Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+			return key.equals(e.getKey()) && Objects.equals(getValue(), e.getValue());
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public int hashCode() {
+			return key.hashCode() ^ Objects.hashCode(getValue());
+		}
+
+		/**
+		 * toString method.
+		 *
+		 * @return Key and Value pair as String literal.
+		 */
+		public String toString() {
+			return key + ":" + getValue();
+		}
+	}
+
+	/**
+	 * Iterator over the used slots of the table followed by the stash. Removing
+	 * through the iterator never moves table keys; a removed stash position is
+	 * refilled with the last stash key, so that position is examined again.
+	 *
+	 * @param <T> type handed out for each key.
+	 */
+	private abstract class SlotIterator<T> implements Iterator<T> {
+
+		/**
+		 * Next index to look at.
+		 */
+		private int index = 0;
+
+		/**
+		 * Index of the last element returned, or -1.
+		 */
+		private int last = -1;
+
+		/**
+		 * Constructor to position the iterator on the first key.
+		 */
+		SlotIterator() {
+			advance();
+		}
+
+		/**
+		 * Method to get the element handed out for an index.
+		 *
+		 * @param index Table slot or stash position.
+		 * @return The element.
+		 */
+		abstract T get(int index);
+
+		/**
+		 * Method to skip over free slots.
+		 */
+		private void advance() {
+			while (index < keys.length && keys[index] == null) {
+				index++;
+			}
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public boolean hasNext() {
+			return index < keys.length + stashCount;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public T next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			last = index;
+			T ret = get(index++);
+			advance();
+			return ret;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public void remove() {
+			if (last < 0) {
+				throw new IllegalStateException();
+			}
+			removeAt(last);
+			if (last >= keys.length) {
+				index = last; // the last stash key moved here
+			}
+			last = -1;
+		}
+	}
+
+	/**
+	 * Compares the specified object with this map for equality. Returns true if the
+	 * given object is also a map and the two maps represent the same mappings.
+	 *
+	 * @param o Object to be compared to. See if two objects are equal.
+	 *
+	 * @return Boolean whether two objects are equal.
+	 */
+	public boolean equals(Object o) {
+
+		if (o == this) {
+			return true;
+		}
+		if (!(o instanceof Map)) {
+			return false;
+		}
+		Map<?, ?> m = (Map<?, ?>) o;
+		if (m.size() != numElements) {
+			return false;
+		}
+		for (int i = 0; i < keys.length + stashCount; i++) {
+			Object k = keyAt(i);
+			if (k != null) {
+				Object v = m.get(k);
+				if (!Objects.equals(v, valueAt(i)) || (v == null && !m.containsKey(k))) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the hash code value for this map. The hash code of a map is defined
+	 * to be the sum of the hash codes of each entry in the map's entrySet() view.
+	 *
+	 * @return Integer representing the hashCode of the map.
+	 */
+	public int hashCode() {
+
+		int h = 0;
+		for (int i = 0; i < keys.length + stashCount; i++) {
+			Object k = keyAt(i);
+			if (k != null) {
+				h += k.hashCode() ^ Objects.hashCode(valueAt(i));
+			}
+		}
+		return h;
+	}
+
+	/**
+	 * toString method.
+	 *
+	 * @return String literal representing the data in the table.
+	 */
+	public String toString() {
+
+		StringBuilder s = new StringBuilder();
+		for (int i = 0; i < keys.length + stashCount; i++) {
+			Object k = keyAt(i);
+			if (k != null) {
+				s.append(k).append(":").append(valueAt(i)).append("\n");
+			}
+		}
+		return s.toString().trim();
+	}
+
+	/**
+	 * Controls the flow of the program. Used for testing purposes.
+	 *
+	 * @param args Command-line arguments supplied as an Array of String Objects.
+	 */
+	public static void main(String[] args) {
+
+		ThreeTenCuckooHashMap<String, String> st1 = new ThreeTenCuckooHashMap<>(10);
+		st1.put("a", "apple");
+		st1.put("b", "banana");
+		st1.put("banana", "b");
+		st1.put("b", "butter");
+
+		if (st1.getSlots() == 16 && st1.size() == 3 && st1.get("a").equals("apple") && st1.get("b").equals("butter")
+				&& st1.get("c") == null && st1.get(null) == null) {
+			System.out.println("Yay 1");
+		}
+
+		ThreeTenCuckooHashMap<String, Integer> st2 = new ThreeTenCuckooHashMap<>(5);
+		if (st2.put("a", 1) == null && st2.put("b", 2) == null && st2.put("e", 3) == null && st2.put("y", 4) == null
+				&& st2.remove("e").equals(3) && st2.remove("e") == null && st2.size() == 3 && st2.rehash(64)
+				&& st2.getSlots() == 64 && st2.get("y").equals(4) && !st2.rehash(0)) {
+			System.out.println("Yay 2");
+		}
+
+		ThreeTenCuckooHashMap<String, String> st3 = new ThreeTenCuckooHashMap<>(2);
+		st3.put("a", "a");
+		st3.remove("a");
+		if (st3.toString().equals("") && st3.isEmpty()) {
+			st3.put("a", "a");
+			if (st3.toString().equals("a:a")) {
+				System.out.println("Yay 3");
+			}
+		}
+
+		// churn: compare against java.util.HashMap
+		java.util.HashMap<Integer, Integer> expected = new java.util.HashMap<>();
+		ThreeTenCuckooHashMap<Integer, Integer> churn = new ThreeTenCuckooHashMap<>(1, 0.97);
+		java.util.Random random = new java.util.Random(42);
+		boolean same = true;
+		int maxStash = 0;
+		for (int i = 0; i < 200000; i++) {
+			int k = random.nextInt(5000);
+			if (random.nextInt(3) == 0) {
+				same &= Objects.equals(expected.remove(k), churn.remove(k));
+			} else {
+				same &= Objects.equals(expected.put(k, i), churn.put(k, i));
+			}
+			maxStash = Math.max(maxStash, churn.getStashSize());
+		}
+		same &= expected.equals(churn) && churn.equals(expected) && expected.hashCode() == churn.hashCode();
+		if (same && churn.size() == expected.size() && maxStash <= STASH_LIMIT) {
+			System.out.println("Yay 4");
+		}
+
+		// remove every odd key through the iterator
+		int before = churn.size();
+		int removed = 0;
+		for (Iterator<Integer> it = churn.keySet().iterator(); it.hasNext();) {
+			if (it.next() % 2 == 1) {
+				it.remove();
+				removed++;
+			}
+		}
+		expected.keySet().removeIf(k -> k % 2 == 1);
+		if (churn.size() == before - removed && churn.equals(expected)) {
+			System.out.println("Yay 5");
+		}
+
+		// fill to 95% without growing
+		ThreeTenCuckooHashMap<Integer, Integer> full = new ThreeTenCuckooHashMap<>(1 << 16, 0.96);
+		int n = (int) (0.95 * (1 << 16));
+		for (int i = 0; i < n; i++) {
+			full.put(i * 7919, i);
+		}
+		boolean found = full.getSlots() == 1 << 16 && full.getStashSize() <= STASH_LIMIT;
+		for (int i = 0; i < n; i++) {
+			found &= full.get(i * 7919) == i;
+		}
+		if (found && full.get(-1) == null) {
+			System.out.println("Yay 6");
+		}
+
+		// keys that all share one hash code overflow into the stash but stay correct
+		ThreeTenCuckooHashMap<String, Integer> colliding = new ThreeTenCuckooHashMap<>(8);
+		String[] parts = { "Aa", "BB" };
+		for (int i = 0; i < 64; i++) {
+			StringBuilder s = new StringBuilder();
+			for (int bit = 0; bit < 6; bit++) {
+				s.append(parts[(i >> bit) & 1]);
+			}
+			colliding.put(s.toString(), i);
+		}
+		if (colliding.size() == 64 && colliding.get("AaAaAaAaAaAa") == 0 && colliding.get("BBBBBBBBBBBB") == 63
+				&& colliding.getStashSize() == 64 - 2 * BUCKET_SIZE && colliding.getSlots() <= 16 * 64) {
+			System.out.println("Yay 7");
+		}
+	}
+}
@@ -37,6 +37,20 @@ public final class ThreeTenEdge extends ThreeTenGraphComponent {
 		}
 	}
 	
+	/**
+	 *  Creates a new ThreeTenEdge with the given id and no text, for loading
+	 *  saved graphs. edgeCount moves past the id, so edges created
+	 *  later with the default constructor do not reuse it.
+	 *  @param id the identifier for this edge
+	 */
+	public ThreeTenEdge(int id) {
+		super(id);
+		setColor(Color.BLACK);
+		if(edgeCount <= id) {
+			edgeCount = id + 1;
+		}
+	}
+	
 	/**
      * Creates a {@code Factory} that in turn creates an instance of this edge type.
      * @return the created factory
@@ -0,0 +1,371 @@
+import org.apache.commons.collections15.Factory;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Loads edge-list text files into a ThreeTenGraph. Each line holds two integer
+ * vertex ids separated by spaces, tabs, commas or semicolons; further columns
+ * (weights, timestamps) are skipped, a line with a single id adds an isolated
+ * vertex, and lines starting with # or % are comments. A first line that is not
+ * numeric is taken as a CSV header and skipped.
+ *
+ * <p>The file is mapped with FileChannel.map one 64 MB window at a time and
+ * parsed byte by byte, so no String or line buffer is ever created and each
+ * window is unmapped before the next is mapped. Beyond the graph itself the
+ * loader only keeps an IntObjectMap from file ids to vertices (one int and one
+ * reference per vertex), which makes files of 100M edges loadable in the heap
+ * the graph needs anyway.
+ *
+ * <p>Vertices and edges are created with the given factories (by default those
+ * of ThreeTenNode and ThreeTenEdge). Repeated edges are dropped before an edge
+ * is created, as the graph keeps one edge per vertex pair.
+ *
+ * @author Jacob Strokus
+ */
+final class ThreeTenEdgeListLoader {
+
+	/**
+	 * Bytes mapped at a time.
+	 */
+	private static final long WINDOW_BYTES = 1L << 26;
+
+	/**
+	 * No instances.
+	 */
+	private ThreeTenEdgeListLoader() {
+	}
+
+	/**
+	 * Method to load an edge list into a new graph of ThreeTenNodes and
+	 * ThreeTenEdges.
+	 *
+	 * @param file The edge-list file.
+	 * @return The graph.
+	 * @throws IOException if the file cannot be read or is malformed.
+	 */
+	public static ThreeTenGraph<ThreeTenNode, ThreeTenEdge> load(Path file) throws IOException {
+
+		ThreeTenGraph<ThreeTenNode, ThreeTenEdge> graph = new ThreeTenGraph<>();
+		load(file, graph, ThreeTenNode.getFactory(), ThreeTenEdge.getFactory());
+		return graph;
+	}
+
+	/**
+	 * Method to load an edge list into a graph.
+	 *
+	 * @param <V>           generic type for Vertices.
+	 * @param <E>           generic type for Edges.
+	 * @param file          The edge-list file.
+	 * @param graph         The graph to add to.
+	 * @param vertexFactory Creates a vertex for each new file id.
+	 * @param edgeFactory   Creates each new edge.
+	 * @return The vertex created for each file id.
+	 * @throws IOException if the file cannot be read or is malformed.
+	 */
+	public static <V extends ThreeTenGraphComponent, E extends ThreeTenGraphComponent> IntObjectMap<V> load(
+			Path file, ThreeTenGraph<V, E> graph, Factory<V> vertexFactory, Factory<E> edgeFactory)
+			throws IOException {
+
+		Parser<V, E> parser = new Parser<>(file, graph, vertexFactory, edgeFactory);
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			for (long start = 0; start < size; start += WINDOW_BYTES) {
+				MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, start,
+						Math.min(WINDOW_BYTES, size - start));
+				parser.feed(window);
+				ThreeTenOffHeapMap.free(window);
+			}
+		}
+		parser.finish();
+		return parser.vertices;
+	}
+
+	/**
+	 * Byte-at-a-time parser whose state carries over window boundaries.
+	 *
+	 * @param <V> generic type for Vertices.
+	 * @param <E> generic type for Edges.
+	 */
+	private static final class Parser<V extends ThreeTenGraphComponent, E extends ThreeTenGraphComponent> {
+
+		/**
+		 * The file, for error messages.
+		 */
+		private final Path file;
+
+		/**
+		 * The graph to add to.
+		 */
+		private final ThreeTenGraph<V, E> graph;
+
+		/**
+		 * Creates the vertices.
+		 */
+		private final Factory<V> vertexFactory;
+
+		/**
+		 * Creates the edges.
+		 */
+		private final Factory<E> edgeFactory;
+
+		/**
+		 * Vertex of each file id.
+		 */
+		final IntObjectMap<V> vertices = new IntObjectMap<>();
+
+		/**
+		 * Current line number.
+		 */
+		private long line = 1;
+
+		/**
+		 * Ids read on the current line.
+		 */
+		private int ids = 0;
+
+		/**
+		 * The first id of the current line.
+		 */
+		private int first;
+
+		/**
+		 * Magnitude of the number being read.
+		 */
+		private long value = 0;
+
+		/**
+		 * Whether a number is being read.
+		 */
+		private boolean inNumber = false;
+
+		/**
+		 * Whether the number being read has a minus sign.
+		 */
+		private boolean negative = false;
+
+		/**
+		 * Whether the rest of the line is skipped.
+		 */
+		private boolean skipping = false;
+
+		/**
+		 * Constructor to create Parser Objects.
+		 *
+		 * @param file          The file.
+		 * @param graph         The graph to add to.
+		 * @param vertexFactory Creates the vertices.
+		 * @param edgeFactory   Creates the edges.
+		 */
+		Parser(Path file, ThreeTenGraph<V, E> graph, Factory<V> vertexFactory, Factory<E> edgeFactory) {
+			this.file = file;
+			this.graph = graph;
+			this.vertexFactory = vertexFactory;
+			this.edgeFactory = edgeFactory;
+		}
+
+		/**
+		 * Method to parse a window of the file.
+		 *
+		 * @param window The bytes.
+		 * @throws IOException if the bytes are malformed.
+		 */
+		void feed(MappedByteBuffer window) throws IOException {
+
+			for (int i = 0, limit = window.limit(); i < limit; i++) {
+				byte b = window.get(i);
+				if (b == '\n') {
+					endLine();
+				} else if (skipping) {
+					continue;
+				} else if (b >= '0' && b <= '9') {
+					value = value * 10 + (b - '0');
+					if (value > Integer.MAX_VALUE + 1L) {
+						throw error("number out of int range");
+					}
+					inNumber = true;
+				} else if (b == '-' && !inNumber && !negative) {
+					negative = true;
+				} else if (b == ' ' || b == '\t' || b == ',' || b == ';' || b == '\r') {
+					endNumber();
+				} else if (ids == 0 && !inNumber && !negative && (b == '#' || b == '%' || line == 1)) {
+					skipping = true; // comment, or a header on the first line
+				} else {
+					throw error("unexpected character '" + (char) (b & 0xFF) + "'");
+				}
+			}
+		}
+
+		/**
+		 * Method to end the number being read, if any.
+		 *
+		 * @throws IOException if it is a lone minus sign or out of range.
+		 */
+		private void endNumber() throws IOException {
+
+			if (!inNumber) {
+				if (negative) {
+					throw error("minus sign without a number");
+				}
+				return;
+			}
+			long number = negative ? -value : value;
+			if (number > Integer.MAX_VALUE) {
+				throw error("number out of int range");
+			}
+			if (ids == 0) {
+				first = (int) number;
+			} else if (ids == 1) {
+				addEdge(first, (int) number);
+			}
+			if (++ids == 2) {
+				skipping = true; // further columns
+			}
+			value = 0;
+			inNumber = false;
+			negative = false;
+		}
+
+		/**
+		 * Method to end the current line.
+		 *
+		 * @throws IOException if the line is malformed.
+		 */
+		private void endLine() throws IOException {
+
+			if (!skipping) {
+				endNumber();
+			}
+			if (ids == 1) {
+				vertex(first);
+			}
+			line++;
+			ids = 0;
+			skipping = false;
+		}
+
+		/**
+		 * Method to end the input.
+		 *
+		 * @throws IOException if the last line is malformed.
+		 */
+		void finish() throws IOException {
+
+			endLine();
+		}
+
+		/**
+		 * Method to get the vertex of a file id, creating it if needed.
+		 *
+		 * @param id The file id.
+		 * @return The vertex.
+		 */
+		private V vertex(int id) {
+
+			V vertex = vertices.get(id);
+			if (vertex == null) {
+				vertex = vertexFactory.create();
+				graph.addVertex(vertex);
+				vertices.put(id, vertex);
+			}
+			return vertex;
+		}
+
+		/**
+		 * Method to add the edge between two file ids, unless it exists.
+		 *
+		 * @param a The first file id.
+		 * @param b The second file id.
+		 */
+		private void addEdge(int a, int b) {
+
+			V v1 = vertex(a);
+			V v2 = vertex(b);
+			if (graph.findEdge(v1, v2) == null) {
+				graph.addEdge(edgeFactory.create(), v1, v2);
+			}
+		}
+
+		/**
+		 * Method to describe a parse error.
+		 *
+		 * @param message What is wrong.
+		 * @return The exception to throw.
+		 */
+		private IOException error(String message) {
+
+			return new IOException(file + " line " + line + ": " + message);
+		}
+	}
+
+	/**
+	 * Main method used for testing purposes.
+	 *
+	 * @param args Command-line arguments supplied as an Array of String Objects.
+	 * @throws IOException if the temporary files cannot be written.
+	 */
+	public static void main(String[] args) throws IOException {
+
+		// every supported layout in one small file
+		Path small = Files.createTempFile("edges", ".csv");
+		Files.write(small, ("source,target,weight\r\n" + "# comment\n" + "1,2,0.5\r\n" + "2;3\n" + "3\t1\t7\n"
+				+ "% another comment\n" + "  4   4\n" + "5\n" + "2 1\n" + "-6, 1\n" + "\n" + "7 8").getBytes(StandardCharsets.US_ASCII));
+		ThreeTenNode.nodeCount = 0;
+		ThreeTenEdge.edgeCount = 0;
+		ThreeTenGraph<ThreeTenNode, ThreeTenEdge> graph = load(small);
+		if (graph.getVertexCount() == 8 && graph.getEdgeCount() == 6 && graph.componentCount() == 4
+				&& ThreeTenEdge.edgeCount == 6) {
+			System.out.println("Yay 1");
+		}
+
+		// a larger random file against a set of the pairs
+		Path large = Files.createTempFile("edges", ".txt");
+		Random random = new Random(24);
+		Set<Long> pairs = new HashSet<>();
+		int n = 50000;
+		try (Writer out = Files.newBufferedWriter(large, StandardCharsets.US_ASCII)) {
+			for (int i = 0; i < 300000; i++) {
+				int a = random.nextInt(n);
+				int b = random.nextInt(n);
+				out.write(a + " " + b + "\n");
+				pairs.add((long) Math.min(a, b) << 32 | Math.max(a, b));
+			}
+		}
+		ThreeTenGraph<ThreeTenNode, ThreeTenEdge> big = new ThreeTenGraph<>();
+		long start = System.nanoTime();
+		IntObjectMap<ThreeTenNode> ids = load(large, big, ThreeTenNode.getFactory(), ThreeTenEdge.getFactory());
+		long millis = (System.nanoTime() - start) / 1000000;
+		boolean same = big.getEdgeCount() == pairs.size() && big.getVertexCount() == ids.size();
+		for (long pair : pairs) {
+			if (big.findEdge(ids.get((int) (pair >>> 32)), ids.get((int) pair)) == null) {
+				same = false;
+			}
+		}
+		if (same) {
+			System.out.println("Yay 2 (" + pairs.size() + " edges in " + millis + " ms)");
+		}
+
+		// malformed input names the line
+		Path bad = Files.createTempFile("edges", ".txt");
+		Files.write(bad, "1 2\n3 x\n".getBytes(StandardCharsets.US_ASCII));
+		try {
+			load(bad);
+		} catch (IOException e) {
+			if (e.getMessage().endsWith("line 2: unexpected character 'x'")) {
+				System.out.println("Yay 3");
+			}
+		}
+		Files.delete(small);
+		Files.delete(large);
+		Files.delete(bad);
+	}
+}
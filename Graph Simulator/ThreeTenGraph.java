@@ -6,22 +6,31 @@ import edu.uci.ics.jung.graph.util.EdgeType;
 
 import org.apache.commons.collections15.Factory;
 
-import java.util.Arrays;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.Collection;
 
-//Uncomment the following lines if you want to use the java.util version
-//import java.util.HashMap; //or use ThreeTenHashMap!
-//import java.util.HashSet; //or use ThreeTenHashSet!
-
-import java.util.NoSuchElementException;
-
 /**
  * This class creates a graph objects to power the simulator. This class extends
  * the ThreeTenGraphComponent for vertices and extends the
  * ThreeTenGraphComponent class for edges. This class implements the Graph and
  * undirectedGraph interfaces. Main method used for testing purposes.
+ *
+ * <p>Each vertex has a record mapping every neighbor to the edge between them,
+ * and each edge maps to its endpoints. Both indexes are ComponentIdMaps keyed
+ * by component id, so no two vertices and no two edges may share an id. Most
+ * vertices have few neighbors, so a record is two short arrays searched
+ * linearly and only becomes a ComponentIdMap past LINEAR_DEGREE neighbors.
+ * findEdge,
+ * getEndpoints, degree and the contains/add/remove edge methods are O(1);
+ * getNeighbors, getIncidentEdges and removeVertex are O(degree). Like JUNG's
+ * UndirectedSparseGraph, at most one edge joins two vertices.
+ *
+ * <p>isConnected and componentCount answer from a union-find over the
+ * vertices, built on the first such query and then kept up to date by
+ * addVertex and addEdge. Removals that may split a component drop it, and the
+ * next query rebuilds it in O(V + E); removing self-loops and isolated
+ * vertices keeps it.
  * 
  * @author Jacob Strokus
  *
@@ -32,54 +41,260 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 		implements Graph<V, E>, UndirectedGraph<V, E> {
 
 	/**
-	 * Integer representing the number of vertices in the graph.
+	 * Most neighbors a vertex record keeps in arrays before it switches to a
+	 * ComponentIdMap.
+	 */
+	private static final int LINEAR_DEGREE = 8;
+
+	/**
+	 * Record of each vertex: its neighbors, each mapped to the edge joining them.
+	 * A self-loop maps the vertex to itself.
 	 */
-	private int numVertices;
+	private ComponentIdMap<V, Incidence<V, E>> adjacency;
 
 	/**
-	 * Integer representing the number of edges in the graph.
+	 * Endpoints of each edge.
 	 */
-	private int numEdges;
+	private ComponentIdMap<E, Pair<V>> endpoints;
 
 	/**
-	 * Mapping for graph representing an adjacency list.
+	 * Connected components of the vertices, or null until the next query needs
+	 * them.
 	 */
-	private HashMap<V, E> adjacencyList;
+	private ThreeTenUnionFind<V> connectivity;
 
 	/**
 	 * Creates a new graph. Initializing all appropriate instance variables.
 	 */
-	@SuppressWarnings("unchecked")
 	public ThreeTenGraph() {
 
-		adjacencyList = new HashMap<V, E>();
-		numVertices = numEdges = 0;
+		this(0, 0);
+	}
+
+	/**
+	 * Creates a new graph presized for the given numbers of vertices and edges, so
+	 * filling it does not rehash.
+	 *
+	 * @param expectedVertices Number of vertices expected.
+	 * @param expectedEdges    Number of edges expected.
+	 */
+	public ThreeTenGraph(int expectedVertices, int expectedEdges) {
 
+		adjacency = new ComponentIdMap<V, Incidence<V, E>>(expectedVertices);
+		endpoints = new ComponentIdMap<E, Pair<V>>(expectedEdges);
 	}
 
 	/**
-	 * Returns a view of all edges in this graph. In general, this obeys the
-	 * Collection contract, and therefore makes no guarantees about the ordering of
-	 * the vertices within the set.
-	 * 
-	 * @return a Collection view of all edges in this graph.
+	 * Class to create the record of a vertex: each neighbor mapped to the edge
+	 * joining them. Up to LINEAR_DEGREE neighbors sit in two parallel arrays,
+	 * allocated on the first edge and searched linearly, which costs a few words
+	 * per neighbor instead of a map with its tables. Past that the record moves
+	 * to a ComponentIdMap and stays there.
+	 *
+	 * @param <V> generic type for Vertices.
+	 * @param <E> generic type for Edges.
 	 */
-	public Collection<E> getEdges() {
+	private static final class Incidence<V extends ThreeTenGraphComponent, E> {
+
+		/**
+		 * Neighbors in slots 0 to size - 1, null once the map is in use.
+		 */
+		private Object[] neighbors;
+
+		/**
+		 * Edge to the neighbor in the same slot, null once the map is in use.
+		 */
+		private Object[] edges;
+
+		/**
+		 * Number of neighbors while the arrays are in use.
+		 */
+		private int size;
+
+		/**
+		 * Neighbors mapped to edges once there are more than LINEAR_DEGREE, null
+		 * before.
+		 */
+		private ComponentIdMap<V, E> map;
+
+		/**
+		 * Method to find the slot of a neighbor in the arrays.
+		 *
+		 * @param neighbor The neighbor.
+		 * @return Its slot, or -1 if it is not a neighbor.
+		 */
+		private int slotOf(Object neighbor) {
+
+			for (int i = 0; i < size; i++) {
+				if (neighbors[i].equals(neighbor)) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * Method to get the edge to a neighbor.
+		 *
+		 * @param neighbor The neighbor.
+		 * @return The edge, or null if it is not a neighbor.
+		 */
+		@SuppressWarnings("unchecked")
+		E get(Object neighbor) {
+
+			if (map != null) {
+				return map.get(neighbor);
+			}
+			int i = slotOf(neighbor);
+			return i < 0 ? null : (E) edges[i];
+		}
+
+		/**
+		 * Method to check for a neighbor.
+		 *
+		 * @param neighbor The neighbor.
+		 * @return Whether it is a neighbor.
+		 */
+		boolean containsKey(Object neighbor) {
+
+			return map != null ? map.containsKey(neighbor) : slotOf(neighbor) >= 0;
+		}
+
+		/**
+		 * Method to map a neighbor to an edge, replacing any edge it had.
+		 *
+		 * @param neighbor The neighbor.
+		 * @param edge     The edge to it.
+		 */
+		@SuppressWarnings("unchecked")
+		void put(V neighbor, E edge) {
+
+			if (map != null) {
+				map.put(neighbor, edge);
+				return;
+			}
+			int slot = slotOf(neighbor);
+			if (slot >= 0) {
+				edges[slot] = edge;
+				return;
+			}
+			if (size == LINEAR_DEGREE) {
+				map = new ComponentIdMap<V, E>(LINEAR_DEGREE * 2);
+				for (int i = 0; i < size; i++) {
+					map.put((V) neighbors[i], (E) edges[i]);
+				}
+				map.put(neighbor, edge);
+				neighbors = null;
+				edges = null;
+				size = 0;
+				return;
+			}
+			if (neighbors == null) {
+				neighbors = new Object[2];
+				edges = new Object[2];
+			} else if (size == neighbors.length) {
+				neighbors = Arrays.copyOf(neighbors, size * 2);
+				edges = Arrays.copyOf(edges, size * 2);
+			}
+			neighbors[size] = neighbor;
+			edges[size] = edge;
+			size++;
+		}
+
+		/**
+		 * Method to remove a neighbor. The last neighbor moves into its slot.
+		 *
+		 * @param neighbor The neighbor.
+		 */
+		void remove(Object neighbor) {
+
+			if (map != null) {
+				map.remove(neighbor);
+				return;
+			}
+			int i = slotOf(neighbor);
+			if (i >= 0) {
+				size--;
+				neighbors[i] = neighbors[size];
+				edges[i] = edges[size];
+				neighbors[size] = null;
+				edges[size] = null;
+			}
+		}
+
+		/**
+		 * Method to get the number of neighbors.
+		 *
+		 * @return The number of neighbors.
+		 */
+		int size() {
+
+			return map != null ? map.size() : size;
+		}
+
+		/**
+		 * Method to copy the neighbors into a new list.
+		 *
+		 * @return The neighbors.
+		 */
+		@SuppressWarnings("unchecked")
+		ArrayList<V> neighbors() {
 
-		System.out.println("getEdges()");
+			if (map != null) {
+				return new ArrayList<>(map.keySet());
+			}
+			ArrayList<V> list = new ArrayList<>(size);
+			for (int i = 0; i < size; i++) {
+				list.add((V) neighbors[i]);
+			}
+			return list;
+		}
 
-		Collection<E> edges = new ArrayList<>();
+		/**
+		 * Method to copy the edges into a new list.
+		 *
+		 * @return The edges.
+		 */
+		@SuppressWarnings("unchecked")
+		ArrayList<E> edges() {
 
-		for (E edge : adjacencyList.values()) {
-			if (edge == null) {
-				continue;
-			} else {
-				edges.add(edge);
+			if (map != null) {
+				return new ArrayList<>(map.values());
+			}
+			ArrayList<E> list = new ArrayList<>(size);
+			for (int i = 0; i < size; i++) {
+				list.add((E) edges[i]);
 			}
+			return list;
+		}
+	}
 
+	/**
+	 * Method to get the record of a vertex that must be in the graph.
+	 * 
+	 * @param vertex The vertex.
+	 * @return Its record.
+	 * @throws IllegalArgumentException if vertex is not in the graph.
+	 */
+	private Incidence<V, E> record(V vertex) {
+
+		Incidence<V, E> record = vertex == null ? null : adjacency.get(vertex);
+		if (record == null) {
+			throw new IllegalArgumentException("Vertex " + vertex + " is not in the graph.");
 		}
+		return record;
+	}
 
-		return edges;
+	/**
+	 * Returns a view of all edges in this graph. In general, this obeys the
+	 * Collection contract, and therefore makes no guarantees about the ordering of
+	 * the vertices within the set.
+	 * 
+	 * @return a Collection view of all edges in this graph.
+	 */
+	public Collection<E> getEdges() {
+
+		return new ArrayList<>(endpoints.keySet());
 	}
 
 	/**
@@ -91,13 +306,7 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 	 */
 	public Collection<V> getVertices() {
 
-		Collection<V> vertices = new ArrayList<>();
-
-		for (V vertex : adjacencyList.keySet()) {
-			vertices.add(vertex);
-		}
-
-		return vertices;
+		return new ArrayList<>(adjacency.keySet());
 	}
 
 	/**
@@ -107,7 +316,7 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 	 */
 	public int getEdgeCount() {
 
-		return numEdges;
+		return endpoints.size();
 	}
 
 	/**
@@ -117,7 +326,7 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 	 */
 	public int getVertexCount() {
 
-		return numVertices;
+		return adjacency.size();
 	}
 
 	/**
@@ -134,16 +343,16 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 	 */
 	public Collection<V> getIncidentVertices(E edge) {
 
-		Collection<V> incidentVertices = new ArrayList<>();
-
-		for (V vertex : adjacencyList.keySet()) {
-
-			if (!(adjacencyList.get(vertex) == null) && adjacencyList.get(vertex).equals(edge)) {
-
-				incidentVertices.add(vertex);
-			}
+		Pair<V> ends = edge == null ? null : endpoints.get(edge);
+		if (ends == null) {
+			return null;
 		}
 
+		Collection<V> incidentVertices = new ArrayList<>(2);
+		incidentVertices.add(ends.getFirst());
+		if (!ends.getSecond().equals(ends.getFirst())) { // a self-loop has one endpoint
+			incidentVertices.add(ends.getSecond());
+		}
 		return incidentVertices;
 	}
 
@@ -158,41 +367,8 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 	 */
 	public Collection<V> getNeighbors(V vertex) {
 
-		Collection<V> neighbors = new ArrayList<>();
-
-		if (adjacencyList.get(vertex) != null) { // make sure the vertex has an edge ( and therefore at least 1 neighbor)
-													
-
-			for (E edge : adjacencyList.values()) {
-
-				if (edge == null) {
-					continue;
-				}
-				if (adjacencyList.get(vertex).equals(edge)) { // if the edge that is connected to the vertex passed in equals the one in the list
-															
-
-					// we know that it is a neighbor so we need to
-					// get the vertex connected by the edge
-					for (V v : adjacencyList.keySet()) {
-
-						if (!(adjacencyList.get(v) == null) && adjacencyList.get(v).equals(edge) && !v.equals(vertex)) {
-
-							if (!neighbors.contains(v)) { // if not already in neighbor list, add it
-
-								neighbors.add(v);
-							}
-
-						}
-					}
-
-				}
-			}
-
-		} else {
-			neighbors = null;
-		}
-
-		return neighbors;
+		Incidence<V, E> record = vertex == null ? null : adjacency.get(vertex);
+		return record == null ? null : record.neighbors();
 	}
 
 	/**
@@ -204,23 +380,8 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 	 */
 	public Collection<E> getIncidentEdges(V vertex) {
 
-		Collection<E> incidentEdges = new ArrayList<>();
-
-		for (V v : adjacencyList.keySet()) {
-
-			if (!(adjacencyList.get(vertex) == null) && adjacencyList.get(vertex).equals(adjacencyList.get(v))) {
-
-				E connectingEdge = adjacencyList.get(v);
-
-				if (!(incidentEdges.contains(connectingEdge))) {
-
-					incidentEdges.add(connectingEdge);
-				}
-
-			}
-		}
-
-		return incidentEdges;
+		Incidence<V, E> record = vertex == null ? null : adjacency.get(vertex);
+		return record == null ? null : record.edges();
 	}
 
 	/**
@@ -248,23 +409,8 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 	 */
 	public E findEdge(V v1, V v2) {
 
-		E edgeToReturn = null;
-
-		if (!adjacencyList.containsKey(v1) || !adjacencyList.containsKey(v2)) { // if one or both vertices are not in graph return null
-																			
-
-		} else {
-			E e1 = adjacencyList.get(v1);
-			E e2 = adjacencyList.get(v2);
-
-			if (!(adjacencyList.get(v1) == null) && this.isIncident(v1, e2) && !(adjacencyList.get(v2) == null)
-					&& this.isIncident(v2, e1)) { // if 'u' is incident to both v1 and v2
-
-				edgeToReturn = e1; // they are connected
-			}
-		}
-
-		return edgeToReturn;
+		Incidence<V, E> record = v1 == null || v2 == null ? null : adjacency.get(v1);
+		return record == null ? null : record.get(v2);
 	}
 
 	/**
@@ -280,19 +426,41 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 	 * @param e  the edge to be added.
 	 * @param v1 the first vertex to be connected.
 	 * @param v2 the second vertex to be connected.
-	 * @return true if the add is successful, false otherwise.
-	 *
-	 *
+	 * @return true if the add is successful, false if e is already in the graph
+	 *         with these endpoints or v1 and v2 are already connected.
+	 * @throws IllegalArgumentException if e or a vertex is null, a vertex is not
+	 *                                  in the graph, e already connects other
+	 *                                  vertices, or another edge has e's id.
 	 */
 	public boolean addEdge(E e, V v1, V v2) {
 
-		if (!adjacencyList.containsKey(v1) || !adjacencyList.containsKey(v2)) {
+		if (e == null) {
+			throw new IllegalArgumentException("Edge is null.");
+		}
+		if (v1 == null || v2 == null || !adjacency.containsKey(v1) || !adjacency.containsKey(v2)) {
 			throw new IllegalArgumentException("One or both of the vertices do not exist in the graph.");
 		}
 
-		adjacencyList.put(v1, e);
-		adjacencyList.put(v2, e);
-		numEdges++;
+		Pair<V> ends = endpoints.get(e);
+		if (ends != null) {
+			if ((ends.getFirst().equals(v1) && ends.getSecond().equals(v2))
+					|| (ends.getFirst().equals(v2) && ends.getSecond().equals(v1))) {
+				return false;
+			}
+			throw new IllegalArgumentException("Edge " + e + " already connects other vertices.");
+		}
+
+		Incidence<V, E> record1 = adjacency.get(v1);
+		if (record1.containsKey(v2)) { // no parallel edges
+			return false;
+		}
+
+		endpoints.put(e, new Pair<>(v1, v2));
+		record1.put(v2, e);
+		adjacency.get(v2).put(v1, e); // the same entry again for a self-loop
+		if (connectivity != null) {
+			connectivity.union(v1, v2);
+		}
 
 		return true;
 	}
@@ -300,7 +468,8 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 	/**
 	 * Adds vertex to this graph. Fails if vertex is null or already in the graph.
 	 * Also fails if the vertex violates and constraints given in the project (such
-	 * as ID restrictions).
+	 * as ID restrictions): another vertex with the same id is already in the
+	 * graph.
 	 * 
 	 * @param vertex the vertex to add.
 	 * @return true if the add is successful, and false otherwise.
@@ -308,19 +477,19 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 	 */
 	public boolean addVertex(V vertex) {
 
-		System.out.println("AddVertex()");
-
 		if (vertex == null) {
 
 			throw new IllegalArgumentException("Vertex is null.");
 
-		} else if (adjacencyList.containsKey(vertex)) {
+		} else if (adjacency.keyById(vertex.getId()) != null) {
 
 			return false;
 		}
 
-		adjacencyList.put(vertex, adjacencyList.get(vertex));
-		numVertices++;
+		adjacency.put(vertex, new Incidence<V, E>());
+		if (connectivity != null) {
+			connectivity.add(vertex);
+		}
 
 		return true;
 	}
@@ -334,30 +503,17 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 	 */
 	public boolean removeEdge(E edge) {
 
-		if (edge == null || !adjacencyList.containsValue(edge)) {
+		Pair<V> ends = edge == null ? null : endpoints.remove(edge);
+		if (ends == null) {
 			return false;
 		}
-		Collection<V> keysForRemove = new ArrayList<>();
-
-		for (V vertex : adjacencyList.keySet()) {
-
-			if (vertex == null) {
-				continue;
-			}
-
-			if (!(adjacencyList.get(vertex) == null) && adjacencyList.get(vertex).equals(edge)) {
-
-				keysForRemove.add(vertex);
-
-			}
 
+		adjacency.get(ends.getFirst()).remove(ends.getSecond());
+		adjacency.get(ends.getSecond()).remove(ends.getFirst());
+		if (!ends.getFirst().equals(ends.getSecond())) {
+			connectivity = null; // the endpoints may have come apart
 		}
 
-		for (V vert : keysForRemove) {
-			adjacencyList.remove(vert, edge);
-		}
-		numEdges--;
-
 		return true;
 	}
 
@@ -378,25 +534,69 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 	 * @return true if the removal is successful, false otherwise.
 	 */
 	public boolean removeVertex(V vertex) {
-		if (vertex == null || !adjacencyList.containsKey(vertex)) {
+
+		Incidence<V, E> record = vertex == null ? null : adjacency.get(vertex);
+		if (record == null) {
 			return false;
 		}
 
-		adjacencyList.remove(vertex);
-
-		for (V vertices : adjacencyList.keySet()) {
+		for (E edge : record.edges()) {
+			removeEdge(edge);
+		}
+		adjacency.remove(vertex);
+		if (connectivity != null) { // only self-loops were removed: vertex is alone
+			connectivity.removeSingleton(vertex);
+		}
 
-			E edge = adjacencyList.get(vertices);
+		return true;
+	}
 
-			if (this.isIncident(vertex, edge)) {
+	/**
+	 * Method to get the union-find of the vertices, rebuilding it if a removal
+	 * dropped it.
+	 * 
+	 * @return The union-find.
+	 */
+	private ThreeTenUnionFind<V> connectivity() {
 
-				adjacencyList.remove(vertex, edge);
+		if (connectivity == null) {
+			ThreeTenUnionFind<V> sets = new ThreeTenUnionFind<>(adjacency.size());
+			for (V vertex : adjacency.keySet()) {
+				sets.add(vertex);
 			}
+			for (Pair<V> ends : endpoints.values()) {
+				sets.union(ends.getFirst(), ends.getSecond());
+			}
+			connectivity = sets;
 		}
+		return connectivity;
+	}
 
-		numVertices--;
+	/**
+	 * Method to check if a path joins two vertices, in near-constant amortized
+	 * time.
+	 * 
+	 * @param v1 The first vertex.
+	 * @param v2 The second vertex.
+	 * @return Whether they are in the same connected component.
+	 * @throws IllegalArgumentException if a vertex is not in the graph.
+	 */
+	public boolean isConnected(V v1, V v2) {
 
-		return true;
+		record(v1);
+		record(v2);
+		return connectivity().connected(v1, v2);
+	}
+
+	/**
+	 * Method to get the number of connected components, in constant amortized
+	 * time.
+	 * 
+	 * @return The number of components; isolated vertices count one each.
+	 */
+	public int componentCount() {
+
+		return connectivity().count();
 	}
 
 	/**
@@ -483,7 +683,7 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 		}
 
 		for (Person p : graph1.getVertices()) {
-			graph1.addEdge(new Cat((int) (Math.random() * 100)), p, p);
+			graph1.addEdge(new Cat(p.getId()), p, p); // distinct edges, one per self-loop
 		}
 
 		if (graph1.getVertexCount() == 3 && graph1.getEdgeCount() == 3) {
@@ -571,11 +771,108 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 
 		System.out.println("\nCheck findEdge() for nodes[0] and nodes[9]: " + graph3.findEdge(nodes[0], nodes[9]));
 
-		if (graph3.addEdge(edges[0], nodes[1], nodes[1])) {
+		if (graph3.addEdge(new IntComponent(7), nodes[1], nodes[1])) {
 			System.out.println("Yay 7! self looping!");
 		}
-	
-		 
+
+		// incidence: one edge per vertex pair, endpoints and degree kept per vertex
+		boolean rejected;
+		try {
+			graph3.addEdge(edges[0], nodes[2], nodes[3]);
+			rejected = false;
+		} catch (IllegalArgumentException e) {
+			rejected = true;
+		}
+		if (rejected && !graph3.addEdge(edges[0], nodes[1], nodes[0])
+				&& !graph3.addEdge(new IntComponent(8), nodes[0], nodes[9])
+				&& graph3.getEndpoints(edges[2]).getSecond().equals(nodes[4])
+				&& graph3.degree(nodes[0]) == 2 && graph3.degree(nodes[1]) == 2
+				&& graph3.getIncidentCount(edges[1]) == 1 && graph3.findEdgeSet(nodes[5], nodes[6]).isEmpty()
+				&& graph3.removeVertex(nodes[9]) && graph3.getEdgeCount() == 5 && graph3.degree(nodes[0]) == 1
+				&& graph3.findEdge(nodes[8], nodes[9]) == null && !graph3.containsEdge(edges[4])) {
+			System.out.println("Yay 8");
+		}
+
+		// connectivity follows additions and removals
+		ThreeTenGraph<IntComponent, IntComponent> graph4 = new ThreeTenGraph<>();
+		for (IntComponent n : nodes) {
+			graph4.addVertex(n);
+		}
+		boolean connected = graph4.componentCount() == 10;
+		for (int i = 0; i + 1 < nodes.length; i++) {
+			graph4.addEdge(new IntComponent(100 + i), nodes[i], nodes[i + 1]);
+		}
+		graph4.addEdge(new IntComponent(99), nodes[4], nodes[4]);
+		connected &= graph4.componentCount() == 1 && graph4.isConnected(nodes[0], nodes[9]);
+		graph4.removeEdge(new IntComponent(99)); // a self-loop keeps the union-find
+		graph4.removeEdge(new IntComponent(104)); // splits 0..4 from 5..9
+		connected &= graph4.componentCount() == 2 && !graph4.isConnected(nodes[0], nodes[9])
+				&& graph4.isConnected(nodes[0], nodes[4]);
+		graph4.removeVertex(nodes[7]);
+		graph4.addVertex(new IntComponent(77));
+		connected &= graph4.componentCount() == 4;
+		graph4.removeVertex(new IntComponent(77));
+		graph4.addEdge(new IntComponent(200), nodes[0], nodes[9]);
+		connected &= graph4.componentCount() == 2 && graph4.isConnected(nodes[4], nodes[8]);
+		try {
+			graph4.isConnected(nodes[0], nodes[7]);
+			connected = false;
+		} catch (IllegalArgumentException e) {
+			// nodes[7] was removed
+		}
+		if (connected) {
+			System.out.println("Yay 9");
+		}
+
+		// a hub outgrows the array record and keeps every edge
+		ThreeTenGraph<IntComponent, IntComponent> graph5 = new ThreeTenGraph<>();
+		IntComponent hub = new IntComponent(0);
+		graph5.addVertex(hub);
+		Collection<IntComponent> spokes = new ArrayList<>();
+		for (int i = 1; i <= 3 * LINEAR_DEGREE; i++) {
+			IntComponent leaf = new IntComponent(i);
+			graph5.addVertex(leaf);
+			graph5.addEdge(new IntComponent(1000 + i), hub, leaf);
+			spokes.add(leaf);
+			if (i == LINEAR_DEGREE / 2) {
+				graph5.addEdge(new IntComponent(999), hub, hub);
+				spokes.add(hub);
+			}
+		}
+		boolean kept = graph5.degree(hub) == 3 * LINEAR_DEGREE + 1 && graph5.getNeighbors(hub).containsAll(spokes)
+				&& graph5.getIncidentEdges(hub).size() == 3 * LINEAR_DEGREE + 1
+				&& graph5.findEdge(hub, hub).equals(new IntComponent(999))
+				&& graph5.findEdge(new IntComponent(LINEAR_DEGREE), hub).equals(new IntComponent(1000 + LINEAR_DEGREE));
+		for (int i = 1; i <= LINEAR_DEGREE; i++) {
+			graph5.removeVertex(new IntComponent(2 * i));
+		}
+		kept &= graph5.degree(hub) == 2 * LINEAR_DEGREE + 1 && graph5.findEdge(hub, new IntComponent(2)) == null
+				&& graph5.findEdge(hub, new IntComponent(3)).equals(new IntComponent(1003))
+				&& graph5.degree(new IntComponent(3)) == 1 && graph5.removeVertex(hub)
+				&& graph5.getEdgeCount() == 0 && graph5.getVertexCount() == 2 * LINEAR_DEGREE;
+		if (kept) {
+			System.out.println("Yay 10");
+		}
+
+		// vertices and edges are indexed by id, so a second component with a used id is turned away
+		ThreeTenGraph<IntComponent, IntComponent> graph6 = new ThreeTenGraph<>();
+		IntComponent named = new IntComponent(1);
+		named.setText("one");
+		IntComponent other = new IntComponent(2);
+		IntComponent link = new IntComponent(3);
+		boolean clash = graph6.addVertex(named) && graph6.addVertex(other) && !graph6.addVertex(new IntComponent(1))
+				&& graph6.addEdge(link, named, other);
+		IntComponent twin = new IntComponent(3);
+		twin.setText("three");
+		try {
+			graph6.addEdge(twin, other, other);
+			clash = false;
+		} catch (IllegalArgumentException expected) {
+			clash &= graph6.getEdgeCount() == 1 && graph6.degree(other) == 1 && graph6.getVertexCount() == 2;
+		}
+		if (clash) {
+			System.out.println("Yay 11");
+		}
 
 	}
 
@@ -587,7 +884,7 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 	 * @return true iff this graph contains a vertex vertex.
 	 */
 	public boolean containsVertex(V vertex) {
-		return getVertices().contains(vertex);
+		return vertex != null && adjacency.containsKey(vertex);
 	}
 
 	/**
@@ -598,7 +895,7 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 	 * @return true iff this graph contains an edge edge.
 	 */
 	public boolean containsEdge(E edge) {
-		return getEdges().contains(edge);
+		return edge != null && endpoints.containsKey(edge);
 	}
 
 	/**
@@ -611,7 +908,8 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 	 * @return true if vertex and edge are incident to each other.
 	 */
 	public boolean isIncident(V vertex, E edge) {
-		return getIncidentEdges(vertex).contains(edge);
+		Pair<V> ends = edge == null ? null : endpoints.get(edge);
+		return ends != null && (ends.getFirst().equals(vertex) || ends.getSecond().equals(vertex));
 	}
 
 	/**
@@ -623,7 +921,7 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 	 * @return true if v1 and v2 share an incident edge.
 	 */
 	public boolean isNeighbor(V v1, V v2) {
-		return getNeighbors(v1).contains(v2);
+		return findEdge(v1, v2) != null;
 	}
 
 	/**
@@ -668,10 +966,10 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 	 * 
 	 * @param vertex the vertex whose degree is to be returned.
 	 * @return the degree of this node.
-	 *
+	 * @throws IllegalArgumentException if vertex is not in the graph.
 	 */
 	public int degree(V vertex) {
-		return getIncidentEdges(vertex).size();
+		return record(vertex).size();
 	}
 
 	/**
@@ -682,9 +980,10 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 	 * 
 	 * @param vertex the vertex whose neighbor count is to be returned.
 	 * @return the number of neighboring vertices.
+	 * @throws IllegalArgumentException if vertex is not in the graph.
 	 */
 	public int getNeighborCount(V vertex) {
-		return getNeighbors(vertex).size();
+		return record(vertex).size(); // one edge per neighbor
 	}
 
 	/**
@@ -695,7 +994,7 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 	 * @return the number of incoming edges incident to vertex.
 	 */
 	public int inDegree(V vertex) {
-		return getInEdges(vertex).size();
+		return degree(vertex);
 	}
 
 	/**
@@ -706,7 +1005,7 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 	 * @return the number of outgoing edges incident to vertex.
 	 */
 	public int outDegree(V vertex) {
-		return getOutEdges(vertex).size();
+		return degree(vertex);
 	}
 
 	/**
@@ -717,7 +1016,7 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 	 * @return the number of predecessors that vertex has in this graph.
 	 */
 	public int getPredecessorCount(V vertex) {
-		return getPredecessors(vertex).size();
+		return getNeighborCount(vertex);
 	}
 
 	/**
@@ -728,7 +1027,7 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 	 * @return the number of successors that vertex has in this graph.
 	 */
 	public int getSuccessorCount(V vertex) {
-		return getSuccessors(vertex).size();
+		return getNeighborCount(vertex);
 	}
 
 	/**
@@ -738,9 +1037,13 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 	 * @param vertex the vertex to be queried.
 	 * @param edge   the edge to be queried.
 	 * @return the vertex at the other end of edge from vertex.
+	 * @throws IllegalArgumentException if vertex and edge are not incident.
 	 */
 	public V getOpposite(V vertex, E edge) {
-		Pair<V> p = getEndpoints(edge);
+		Pair<V> p = edge == null ? null : endpoints.get(edge);
+		if (p == null || !isIncident(vertex, edge)) {
+			throw new IllegalArgumentException(vertex + " is not incident to " + edge);
+		}
 		if (p.getFirst().equals(vertex)) {
 			return p.getSecond();
 		} else {
@@ -768,13 +1071,15 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 	 *
 	 */
 	public Collection<E> findEdgeSet(V v1, V v2) {
-		E edge = findEdge(v1, v2);
-		if (edge == null) {
+		if (!containsVertex(v1) || !containsVertex(v2)) {
 			return null;
 		}
 
-		ArrayList<E> ret = new ArrayList<>();
-		ret.add(edge);
+		ArrayList<E> ret = new ArrayList<>(1);
+		E edge = findEdge(v1, v2);
+		if (edge != null) {
+			ret.add(edge);
+		}
 		return ret;
 
 	}
@@ -927,7 +1232,11 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 	 * @return the number of vertices that are incident to edge.
 	 */
 	public int getIncidentCount(E edge) {
-		return getIncidentVertices(edge).size();
+		Pair<V> ends = edge == null ? null : endpoints.get(edge);
+		if (ends == null) {
+			return 0;
+		}
+		return ends.getFirst().equals(ends.getSecond()) ? 1 : 2;
 	}
 
 	/**
@@ -1011,12 +1320,21 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 	 * Returns the endpoints of edge as a Pair/<V/>.
 	 * 
 	 * @param edge the edge whose endpoints are to be returned.
-	 * @return the endpoints (incident vertices) of edge.
+	 * @return the endpoints (incident vertices) of edge, or null if edge is not
+	 *         present.
 	 */
-	@SuppressWarnings("unchecked")
 	public Pair<V> getEndpoints(E edge) {
-		Object[] ends = getIncidentVertices(edge).toArray();
-		return new Pair<>((V) ends[0], (V) ends[1]);
+		return edge == null ? null : endpoints.get(edge);
+	}
+
+	/**
+	 * Method to freeze this graph into an immutable compressed sparse row snapshot
+	 * for analytics. Later changes to this graph do not affect the snapshot.
+	 *
+	 * @return The snapshot, also a read-only Graph.
+	 */
+	public ThreeTenCsrGraph<V, E> toCsr() {
+		return new ThreeTenCsrGraph<>(this);
 	}
 
 	/**
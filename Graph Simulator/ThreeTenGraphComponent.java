@@ -11,7 +11,7 @@ import java.awt.Color;
  *  @author Katherine (Raven) Russell
  *  @author Jacob Strokus
  */
-public abstract class ThreeTenGraphComponent {
+public abstract class ThreeTenGraphComponent implements Comparable<ThreeTenGraphComponent> {
 	/**
 	 *  The component id (for debugging purposes).
 	 */
@@ -37,6 +37,13 @@ public abstract class ThreeTenGraphComponent {
 	 */
 	public ThreeTenGraphComponent(int id) { this.id = id; }
 	
+	/**
+	 *  Gets the identifier of this component.
+	 *  
+	 *  @return the id
+	 */
+	public int getId() { return id; }
+	
 	/**
 	 *  Gets the current color of this component.
 	 *  
@@ -104,4 +111,17 @@ public abstract class ThreeTenGraphComponent {
 	public final int hashCode() {
 		return text.hashCode()+id;
 	}
+	
+	/**
+	 *  Components are ordered by id, then by text. This agrees with equals,
+	 *  and lets hash tables keep colliding components in sorted trees.
+	 *  
+	 *  @param o the component to compare to
+	 *  @return negative, zero or positive as this component sorts before, with or after o
+	 */
+	@Override
+	public final int compareTo(ThreeTenGraphComponent o) {
+		int c = Integer.compare(this.id, o.id);
+		return c != 0 ? c : this.text.compareTo(o.text);
+	}
 }
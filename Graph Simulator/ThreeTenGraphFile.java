@@ -0,0 +1,677 @@
+import java.awt.Color;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntFunction;
+import java.util.zip.CRC32C;
+
+/**
+ * Compact binary file format for a ThreeTenGraph, with a writer and a reader
+ * that rebuilds the graph in one sequential pass over the file.
+ *
+ * <p>Layout (version 1), all counts and indexes as unsigned LEB128 varints and
+ * differences as zigzag varints:
+ *
+ * <pre>
+ * header     magic "310G", version, vertex count n, edge count m (4 byte ints)
+ * labels     count, then per label: UTF-8 length and bytes
+ * colors     count, then per color: 0 for null, or 1 and the ARGB int
+ * vertices   n times: id - previous id, label index, color index
+ * edges      m times: id - previous id, label index, color index
+ * adjacency  per vertex v: number of edges to vertices w &gt;= v, then per edge:
+ *            w - previous w (starting at v), edge index - previous edge index
+ * checksum   CRC32C of everything above (4 byte int)
+ * </pre>
+ *
+ * <p>Vertices and edges are written in their natural order (as in
+ * ThreeTenCsrGraph), so ids are ascending and their differences small, and
+ * every edge is stored once, from its lower endpoint. Labels and colors repeat
+ * a lot in simulator graphs, so each is stored once in a table.
+ *
+ * <p>The reader checks the checksum while it reads and builds the graph
+ * presized from the header, so it never rehashes. Every count is checked
+ * against the bytes left in the file before anything is allocated for it, so
+ * a damaged count fails with an IOException like a damaged checksum. ThreeTenHashMapBenchmark
+ * graphio compares load times with the text formats.
+ *
+ * @author Jacob Strokus
+ */
+final class ThreeTenGraphFile {
+
+	/**
+	 * First four bytes of a graph file.
+	 */
+	private static final int MAGIC = 0x33313047; // "310G"
+
+	/**
+	 * Version of the file format.
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * Bytes buffered between the file and the codec.
+	 */
+	private static final int BUFFER_BYTES = 1 << 16;
+
+	/**
+	 * No instances.
+	 */
+	private ThreeTenGraphFile() {
+	}
+
+	/**
+	 * Buffered writer of varints that checksums what it writes.
+	 */
+	private static final class Output {
+
+		/**
+		 * The file.
+		 */
+		private final OutputStream out;
+
+		/**
+		 * Bytes not yet written.
+		 */
+		private final byte[] buffer = new byte[BUFFER_BYTES];
+
+		/**
+		 * Number of bytes in buffer.
+		 */
+		private int size = 0;
+
+		/**
+		 * Checksum of the bytes written.
+		 */
+		final CRC32C crc = new CRC32C();
+
+		/**
+		 * Constructor to create Output Objects.
+		 *
+		 * @param out The file.
+		 */
+		Output(OutputStream out) {
+			this.out = out;
+		}
+
+		/**
+		 * Method to write a byte.
+		 *
+		 * @param b The byte.
+		 * @throws IOException if writing fails.
+		 */
+		void writeByte(int b) throws IOException {
+			if (size == buffer.length) {
+				flush();
+			}
+			buffer[size++] = (byte) b;
+		}
+
+		/**
+		 * Method to write a four byte int.
+		 *
+		 * @param v The int.
+		 * @throws IOException if writing fails.
+		 */
+		void writeInt(int v) throws IOException {
+			for (int shift = 24; shift >= 0; shift -= 8) {
+				writeByte(v >>> shift);
+			}
+		}
+
+		/**
+		 * Method to write an unsigned varint.
+		 *
+		 * @param v The value.
+		 * @throws IOException if writing fails.
+		 */
+		void writeVarint(int v) throws IOException {
+			while ((v & ~0x7F) != 0) {
+				writeByte((v & 0x7F) | 0x80);
+				v >>>= 7;
+			}
+			writeByte(v);
+		}
+
+		/**
+		 * Method to write a signed varint.
+		 *
+		 * @param v The value.
+		 * @throws IOException if writing fails.
+		 */
+		void writeZigzag(int v) throws IOException {
+			writeVarint((v << 1) ^ (v >> 31));
+		}
+
+		/**
+		 * Method to write bytes.
+		 *
+		 * @param bytes The bytes.
+		 * @throws IOException if writing fails.
+		 */
+		void writeBytes(byte[] bytes) throws IOException {
+			for (byte b : bytes) {
+				writeByte(b);
+			}
+		}
+
+		/**
+		 * Method to write out the buffer.
+		 *
+		 * @throws IOException if writing fails.
+		 */
+		void flush() throws IOException {
+			crc.update(buffer, 0, size);
+			out.write(buffer, 0, size);
+			size = 0;
+		}
+	}
+
+	/**
+	 * Buffered reader of varints that checksums what it reads.
+	 */
+	private static final class Input {
+
+		/**
+		 * The file.
+		 */
+		private final FileChannel channel;
+
+		/**
+		 * Offset of the checksum, where the data ends.
+		 */
+		private final long end;
+
+		/**
+		 * Bytes read from the file but not yet decoded.
+		 */
+		private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+
+		/**
+		 * Bytes read from the file so far.
+		 */
+		private long read = 0;
+
+		/**
+		 * Checksum of the bytes read.
+		 */
+		final CRC32C crc = new CRC32C();
+
+		/**
+		 * Constructor to create Input Objects.
+		 *
+		 * @param channel The file.
+		 * @param end     Offset of the checksum.
+		 */
+		Input(FileChannel channel, long end) {
+			this.channel = channel;
+			this.end = end;
+			buffer.limit(0);
+		}
+
+		/**
+		 * Method to read a byte.
+		 *
+		 * @return The byte, 0 to 255.
+		 * @throws IOException if the data ends.
+		 */
+		int readByte() throws IOException {
+			if (!buffer.hasRemaining()) {
+				if (read >= end) {
+					throw new IOException("truncated graph file");
+				}
+				buffer.clear();
+				buffer.limit((int) Math.min(BUFFER_BYTES, end - read));
+				while (buffer.hasRemaining()) {
+					if (channel.read(buffer) < 0) {
+						throw new IOException("truncated graph file");
+					}
+				}
+				buffer.flip();
+				crc.update(buffer.array(), 0, buffer.limit());
+				read += buffer.limit();
+			}
+			return buffer.get() & 0xFF;
+		}
+
+		/**
+		 * Method to read a four byte int.
+		 *
+		 * @return The int.
+		 * @throws IOException if the data ends.
+		 */
+		int readInt() throws IOException {
+			int v = 0;
+			for (int i = 0; i < 4; i++) {
+				v = (v << 8) | readByte();
+			}
+			return v;
+		}
+
+		/**
+		 * Method to read an unsigned varint.
+		 *
+		 * @return The value.
+		 * @throws IOException if the data ends or the varint is too long.
+		 */
+		int readVarint() throws IOException {
+			int v = 0;
+			for (int shift = 0; shift < 35; shift += 7) {
+				int b = readByte();
+				v |= (b & 0x7F) << shift;
+				if (b < 0x80) {
+					return v;
+				}
+			}
+			throw new IOException("damaged graph file: varint too long");
+		}
+
+		/**
+		 * Method to read a signed varint.
+		 *
+		 * @return The value.
+		 * @throws IOException if the data ends or the varint is too long.
+		 */
+		int readZigzag() throws IOException {
+			int z = readVarint();
+			return (z >>> 1) ^ -(z & 1);
+		}
+
+		/**
+		 * Method to read an index below a bound.
+		 *
+		 * @param bound The bound.
+		 * @return The index.
+		 * @throws IOException if the index is out of range.
+		 */
+		int readIndex(int bound) throws IOException {
+			int i = readVarint();
+			if (i < 0 || i >= bound) {
+				throw new IOException("damaged graph file: index " + i + " of " + bound);
+			}
+			return i;
+		}
+
+		/**
+		 * Method to read a count of items that take at least bytesEach bytes each,
+		 * so damaged counts are rejected before anything is allocated for them.
+		 *
+		 * @param bytesEach Fewest bytes each item takes in the file.
+		 * @return The count.
+		 * @throws IOException if the count is negative or the items cannot fit in
+		 *                     the bytes left.
+		 */
+		int readCount(int bytesEach) throws IOException {
+			int count = readVarint();
+			checkFits(count, bytesEach);
+			return count;
+		}
+
+		/**
+		 * Method to check that count items of at least bytesEach bytes each fit in
+		 * the bytes left before the checksum.
+		 *
+		 * @param count     Number of items.
+		 * @param bytesEach Fewest bytes each item takes in the file.
+		 * @throws IOException if the count is negative or too large.
+		 */
+		void checkFits(long count, int bytesEach) throws IOException {
+			long left = end - read + buffer.remaining();
+			if (count < 0 || count * bytesEach > left) {
+				throw new IOException("damaged graph file: count " + count + " with " + left + " bytes left");
+			}
+		}
+
+		/**
+		 * Method to check that every byte before the checksum was read.
+		 *
+		 * @return Whether the data is used up.
+		 */
+		boolean done() {
+			return read == end && !buffer.hasRemaining();
+		}
+	}
+
+	/**
+	 * Method to write a graph to a file.
+	 *
+	 * @param <V>   generic type for Vertices.
+	 * @param <E>   generic type for Edges.
+	 * @param graph The graph.
+	 * @param file  The file, replaced if it exists.
+	 * @throws IOException if the file cannot be written.
+	 */
+	public static <V extends ThreeTenGraphComponent, E extends ThreeTenGraphComponent> void write(
+			ThreeTenGraph<V, E> graph, Path file) throws IOException {
+
+		ThreeTenCsrGraph<V, E> csr = graph.toCsr();
+		int n = csr.getVertexCount();
+		int m = csr.getEdgeCount();
+
+		// label and color tables, in order of first use
+		ThreeTenHashMap<String, Integer> labelIndex = new ThreeTenHashMap<>(16);
+		ThreeTenHashMap<Integer, Integer> colorIndex = new ThreeTenHashMap<>(16);
+		List<String> labels = new ArrayList<>();
+		List<Color> colors = new ArrayList<>();
+		Integer nullColor = null;
+		int[] vertexLabels = new int[n];
+		int[] vertexColors = new int[n];
+		int[] edgeLabels = new int[m];
+		int[] edgeColors = new int[m];
+		for (int i = 0; i < n + m; i++) {
+			ThreeTenGraphComponent c = i < n ? csr.vertexAt(i) : csr.edgeAt(i - n);
+			Integer label = labelIndex.get(c.getText());
+			if (label == null) {
+				label = labels.size();
+				labelIndex.put(c.getText(), label);
+				labels.add(c.getText());
+			}
+			Color color = c.getColor();
+			Integer colorId = color == null ? nullColor : colorIndex.get(color.getRGB());
+			if (colorId == null) {
+				colorId = colors.size();
+				if (color == null) {
+					nullColor = colorId;
+				} else {
+					colorIndex.put(color.getRGB(), colorId);
+				}
+				colors.add(color);
+			}
+			if (i < n) {
+				vertexLabels[i] = label;
+				vertexColors[i] = colorId;
+			} else {
+				edgeLabels[i - n] = label;
+				edgeColors[i - n] = colorId;
+			}
+		}
+
+		try (OutputStream stream = Files.newOutputStream(file)) {
+			Output out = new Output(stream);
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(n);
+			out.writeInt(m);
+
+			out.writeVarint(labels.size());
+			for (String label : labels) {
+				byte[] bytes = label.getBytes(StandardCharsets.UTF_8);
+				out.writeVarint(bytes.length);
+				out.writeBytes(bytes);
+			}
+			out.writeVarint(colors.size());
+			for (Color color : colors) {
+				if (color == null) {
+					out.writeByte(0);
+				} else {
+					out.writeByte(1);
+					out.writeInt(color.getRGB());
+				}
+			}
+
+			int previous = 0;
+			for (int v = 0; v < n; v++) {
+				out.writeZigzag(csr.vertexAt(v).getId() - previous);
+				previous = csr.vertexAt(v).getId();
+				out.writeVarint(vertexLabels[v]);
+				out.writeVarint(vertexColors[v]);
+			}
+			previous = 0;
+			for (int e = 0; e < m; e++) {
+				out.writeZigzag(csr.edgeAt(e).getId() - previous);
+				previous = csr.edgeAt(e).getId();
+				out.writeVarint(edgeLabels[e]);
+				out.writeVarint(edgeColors[e]);
+			}
+
+			// rows are sorted, so the upper half of a row is its tail
+			int[] offsets = csr.getOffsets();
+			int[] targets = csr.getTargets();
+			int[] edgeIds = csr.getEdgeIds();
+			int previousEdge = 0;
+			for (int v = 0; v < n; v++) {
+				int from = offsets[v];
+				while (from < offsets[v + 1] && targets[from] < v) {
+					from++;
+				}
+				out.writeVarint(offsets[v + 1] - from);
+				int previousTarget = v;
+				for (int i = from; i < offsets[v + 1]; i++) {
+					out.writeVarint(targets[i] - previousTarget);
+					previousTarget = targets[i];
+					out.writeZigzag(edgeIds[i] - previousEdge);
+					previousEdge = edgeIds[i];
+				}
+			}
+			out.flush();
+			int checksum = (int) out.crc.getValue();
+			stream.write(new byte[] { (byte) (checksum >>> 24), (byte) (checksum >>> 16), (byte) (checksum >>> 8),
+				(byte) checksum });
+		}
+	}
+
+	/**
+	 * Method to read a graph of ThreeTenNodes and ThreeTenEdges.
+	 *
+	 * @param file The file.
+	 * @return The graph.
+	 * @throws IOException if the file cannot be read or is damaged.
+	 */
+	public static ThreeTenGraph<ThreeTenNode, ThreeTenEdge> read(Path file) throws IOException {
+
+		return read(file, ThreeTenNode::new, ThreeTenEdge::new);
+	}
+
+	/**
+	 * Method to read a graph. The components are created from their ids, then
+	 * given their labels and colors.
+	 *
+	 * @param <V>           generic type for Vertices.
+	 * @param <E>           generic type for Edges.
+	 * @param file          The file.
+	 * @param vertexFactory Creates a vertex with a given id.
+	 * @param edgeFactory   Creates an edge with a given id.
+	 * @return The graph.
+	 * @throws IOException if the file cannot be read or is damaged.
+	 */
+	public static <V extends ThreeTenGraphComponent, E extends ThreeTenGraphComponent> ThreeTenGraph<V, E> read(
+			Path file, IntFunction<? extends V> vertexFactory, IntFunction<? extends E> edgeFactory)
+			throws IOException {
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long end = channel.size() - Integer.BYTES;
+			if (end < 4 * Integer.BYTES) {
+				throw new IOException(file + " is not a ThreeTenGraph file.");
+			}
+			Input in = new Input(channel, end);
+			if (in.readInt() != MAGIC) {
+				throw new IOException(file + " is not a ThreeTenGraph file.");
+			}
+			if (in.readInt() != VERSION) {
+				throw new IOException(file + " has an unsupported graph file version.");
+			}
+			int n = in.readInt();
+			int m = in.readInt();
+			if (n < 0 || m < 0) {
+				throw new IOException(file + " is a damaged graph file.");
+			}
+			// a vertex takes at least 3 bytes and its adjacency count 1, an edge 3
+			// bytes and its adjacency entry 2
+			in.checkFits(4L * n + 5L * m, 1);
+
+			String[] labels = new String[in.readCount(1)];
+			for (int i = 0; i < labels.length; i++) {
+				byte[] bytes = new byte[in.readCount(1)];
+				for (int b = 0; b < bytes.length; b++) {
+					bytes[b] = (byte) in.readByte();
+				}
+				labels[i] = new String(bytes, StandardCharsets.UTF_8);
+			}
+			Color[] colors = new Color[in.readCount(1)];
+			for (int i = 0; i < colors.length; i++) {
+				colors[i] = in.readByte() == 0 ? null : new Color(in.readInt(), true);
+			}
+
+			ThreeTenGraph<V, E> graph = new ThreeTenGraph<>(n, m);
+			List<V> vertices = new ArrayList<>(n);
+			int id = 0;
+			for (int v = 0; v < n; v++) {
+				id += in.readZigzag();
+				V vertex = vertexFactory.apply(id);
+				vertex.setText(labels[in.readIndex(labels.length)]);
+				vertex.setColor(colors[in.readIndex(colors.length)]);
+				if (!graph.addVertex(vertex)) {
+					throw new IOException(file + " is a damaged graph file: vertex " + vertex + " repeats.");
+				}
+				vertices.add(vertex);
+			}
+			List<E> edges = new ArrayList<>(m);
+			id = 0;
+			for (int e = 0; e < m; e++) {
+				id += in.readZigzag();
+				E edge = edgeFactory.apply(id);
+				edge.setText(labels[in.readIndex(labels.length)]);
+				edge.setColor(colors[in.readIndex(colors.length)]);
+				edges.add(edge);
+			}
+
+			int edge = 0;
+			for (int v = 0; v < n; v++) {
+				int target = v;
+				for (int k = in.readIndex(n - v + 1); k > 0; k--) {
+					target += in.readVarint();
+					edge += in.readZigzag();
+					if (target < v || target >= n || edge < 0 || edge >= m || graph.containsEdge(edges.get(edge))
+							|| !graph.addEdge(edges.get(edge), vertices.get(v), vertices.get(target))) {
+						throw new IOException(file + " is a damaged graph file: bad edge at vertex " + v);
+					}
+				}
+			}
+
+			ByteBuffer trailer = ByteBuffer.allocate(Integer.BYTES);
+			channel.read(trailer, end);
+			if (!in.done() || graph.getEdgeCount() != m || trailer.hasRemaining()
+					|| trailer.getInt(0) != (int) in.crc.getValue()) {
+				throw new IOException(file + " is a damaged graph file: checksum mismatch.");
+			}
+			return graph;
+		}
+	}
+
+	/**
+	 * Main method used for testing purposes.
+	 *
+	 * @param args Command-line arguments supplied as an Array of String Objects.
+	 * @throws IOException if the temporary files cannot be written.
+	 */
+	public static void main(String[] args) throws IOException {
+
+		// a random graph with labels, colors, self-loops and negative ids
+		Random random = new Random(25);
+		ThreeTenGraph<ThreeTenNode, ThreeTenEdge> graph = new ThreeTenGraph<>();
+		List<ThreeTenNode> nodes = new ArrayList<>();
+		for (int i = 0; i < 5000; i++) {
+			ThreeTenNode node = new ThreeTenNode(i % 7 == 0 ? -i : i * 3);
+			node.setText(i % 3 == 0 ? "" : "node " + (i % 40) + " \u00e9");
+			node.setColor(i % 5 == 0 ? Color.RED : i % 11 == 0 ? null : new Color(i % 256, 0, 0, 128));
+			if (graph.addVertex(node)) {
+				nodes.add(node);
+			}
+		}
+		for (int i = 0; i < 20000; i++) {
+			ThreeTenEdge edge = new ThreeTenEdge(random.nextInt());
+			edge.setText("e" + (i % 10));
+			if (!graph.containsEdge(edge)) {
+				graph.addEdge(edge, nodes.get(random.nextInt(nodes.size())), nodes.get(random.nextInt(nodes.size())));
+			}
+		}
+
+		Path file = Files.createTempFile("graph", ".310g");
+		write(graph, file);
+		ThreeTenGraph<ThreeTenNode, ThreeTenEdge> copy = read(file);
+		boolean same = copy.getVertexCount() == graph.getVertexCount() && copy.getEdgeCount() == graph.getEdgeCount();
+		ThreeTenCsrGraph<ThreeTenNode, ThreeTenEdge> a = graph.toCsr();
+		ThreeTenCsrGraph<ThreeTenNode, ThreeTenEdge> b = copy.toCsr();
+		for (int v = 0; v < a.getVertexCount() && same; v++) {
+			ThreeTenNode x = a.vertexAt(v);
+			ThreeTenNode y = b.vertexAt(v);
+			same = x.equals(y) && (x.getColor() == null ? y.getColor() == null : x.getColor().equals(y.getColor()))
+					&& copy.degree(y) == graph.degree(x);
+		}
+		for (int e = 0; e < a.getEdgeCount() && same; e++) {
+			ThreeTenEdge x = a.edgeAt(e);
+			ThreeTenEdge y = b.edgeAt(e);
+			same = x.equals(y) && x.getColor().equals(y.getColor())
+					&& Math.min(a.sourceAt(e), a.targetAt(e)) == Math.min(b.sourceAt(e), b.targetAt(e))
+					&& Math.max(a.sourceAt(e), a.targetAt(e)) == Math.max(b.sourceAt(e), b.targetAt(e));
+		}
+		if (same) {
+			System.out.println("Yay 1 (" + Files.size(file) + " bytes for " + graph.getEdgeCount() + " edges)");
+		}
+
+		// any flipped byte is caught
+		byte[] bytes = Files.readAllBytes(file);
+		int caught = 0;
+		for (int k = 0; k < 50; k++) {
+			byte[] damaged = bytes.clone();
+			damaged[random.nextInt(damaged.length)] ^= 1 << random.nextInt(8);
+			Files.write(file, damaged);
+			try {
+				read(file);
+			} catch (IOException e) {
+				caught++;
+			}
+		}
+		Files.write(file, java.util.Arrays.copyOf(bytes, bytes.length - 7));
+		try {
+			read(file);
+		} catch (IOException e) {
+			caught++;
+		}
+		// damaged counts are caught before anything is allocated for them
+		byte[] header = java.util.Arrays.copyOf(bytes, 16);
+		byte[][] counts = { { -1, -1, -1, -1, 0x0F }, // -1 labels
+				{ 1, -1, -1, -1, -1, 0x07 }, // a label of Integer.MAX_VALUE bytes
+				{ 0, -1, -1, -1, -1, 0x07 } }; // Integer.MAX_VALUE colors
+		for (byte[] count : counts) {
+			byte[] damaged = java.util.Arrays.copyOf(header, 16 + count.length + 64);
+			System.arraycopy(count, 0, damaged, 16, count.length);
+			Files.write(file, damaged);
+			try {
+				read(file);
+			} catch (IOException e) {
+				caught++;
+			}
+		}
+		byte[] huge = bytes.clone();
+		huge[8] = 0x7F; // 0x7FFFFFFF vertices
+		huge[9] = huge[10] = huge[11] = -1;
+		Files.write(file, huge);
+		try {
+			read(file);
+		} catch (IOException e) {
+			caught++;
+		}
+		if (caught == 55) {
+			System.out.println("Yay 2");
+		}
+
+		// an empty graph round-trips, and new nodes do not reuse loaded ids
+		write(new ThreeTenGraph<ThreeTenNode, ThreeTenEdge>(), file);
+		ThreeTenNode.nodeCount = 0;
+		read(file);
+		write(graph, file);
+		read(file);
+		if (read(file).getVertexCount() == graph.getVertexCount() && new ThreeTenNode().getId() > 3 * 4999) {
+			System.out.println("Yay 3");
+		}
+		Files.delete(file);
+	}
+}
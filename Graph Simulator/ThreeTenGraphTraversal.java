@@ -0,0 +1,637 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Parallel traversals over a ThreeTenCsrGraph, run on a fork/join pool. Every
+ * result is a primitive int array indexed by the dense vertex ids of the
+ * snapshot (see ThreeTenCsrGraph.indexOf and vertexAt).
+ *
+ * <p>bfs is level-synchronous and direction-optimizing (Beamer et al.): it
+ * expands the frontier top-down, claiming unvisited neighbors with a
+ * compare-and-set, while the frontier is small, and switches to bottom-up steps,
+ * where every unvisited vertex looks for a parent in the frontier, once the
+ * frontier's edges outnumber the unexplored edges by ALPHA. It switches back
+ * when the frontier shrinks below n / BETA vertices.
+ *
+ * <p>components is Shiloach-Vishkin: hook the root of the larger label onto
+ * the smaller one across every edge, then shorten the label trees by pointer
+ * jumping, until no edge joins two labels. Each vertex ends up labelled with
+ * the smallest id of its component.
+ *
+ * <p>The snapshot is immutable, so one traversal object can run any number of
+ * traversals, also at the same time.
+ *
+ * @author Jacob Strokus
+ *
+ * @param <V> generic type for Vertices.
+ * @param <E> generic type for Edges.
+ */
+class ThreeTenGraphTraversal<V extends ThreeTenGraphComponent, E extends ThreeTenGraphComponent> {
+
+	/**
+	 * Switch to bottom-up when the frontier has more than 1/ALPHA of the
+	 * unexplored edges.
+	 */
+	private static final int ALPHA = 14;
+
+	/**
+	 * Switch back to top-down when the frontier has fewer than n/BETA vertices.
+	 */
+	private static final int BETA = 24;
+
+	/**
+	 * Vertices, or edges, handled by one task.
+	 */
+	private static final int GRAIN = 1 << 11;
+
+	/**
+	 * Atomic access to the elements of an int[].
+	 */
+	private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+
+	/**
+	 * The snapshot traversed.
+	 */
+	private final ThreeTenCsrGraph<V, E> graph;
+
+	/**
+	 * Pool that runs the tasks.
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * Top-down to bottom-up threshold.
+	 */
+	private final int alpha;
+
+	/**
+	 * Bottom-up to top-down threshold.
+	 */
+	private final int beta;
+
+	/**
+	 * Levels the last bfs expanded top-down, for testing. Not meaningful while
+	 * several searches run on this object at once.
+	 */
+	int topDownSteps;
+
+	/**
+	 * Levels the last bfs expanded bottom-up, for testing.
+	 */
+	int bottomUpSteps;
+
+	/**
+	 * Row offsets of the snapshot.
+	 */
+	private final int[] offsets;
+
+	/**
+	 * Neighbor ids of the snapshot.
+	 */
+	private final int[] targets;
+
+	/**
+	 * Constructor to traverse a CSR snapshot of a graph on the common pool.
+	 *
+	 * @param graph The graph.
+	 */
+	public ThreeTenGraphTraversal(ThreeTenGraph<V, E> graph) {
+
+		this(graph.toCsr(), ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Constructor to traverse a snapshot on the given pool.
+	 *
+	 * @param graph The snapshot.
+	 * @param pool  Pool that runs the tasks.
+	 */
+	public ThreeTenGraphTraversal(ThreeTenCsrGraph<V, E> graph, ForkJoinPool pool) {
+
+		this(graph, pool, ALPHA, BETA);
+	}
+
+	/**
+	 * Constructor with the direction switch thresholds, for testing. alpha 0
+	 * never goes bottom-up; beta 0 never comes back, so with alpha
+	 * Integer.MAX_VALUE every level is expanded bottom-up unless the source has
+	 * no edges.
+	 *
+	 * @param graph The snapshot.
+	 * @param pool  Pool that runs the tasks.
+	 * @param alpha Top-down to bottom-up threshold.
+	 * @param beta  Bottom-up to top-down threshold.
+	 */
+	ThreeTenGraphTraversal(ThreeTenCsrGraph<V, E> graph, ForkJoinPool pool, int alpha, int beta) {
+
+		this.graph = graph;
+		this.pool = pool;
+		this.alpha = alpha;
+		this.beta = beta;
+		this.offsets = graph.getOffsets();
+		this.targets = graph.getTargets();
+	}
+
+	/**
+	 * Method to get the snapshot traversed, to map ids to vertices.
+	 *
+	 * @return The snapshot.
+	 */
+	public ThreeTenCsrGraph<V, E> getGraph() {
+
+		return graph;
+	}
+
+	/**
+	 * Frontier of a BFS level.
+	 */
+	private static final class Frontier {
+
+		/**
+		 * Vertex ids, or null after a bottom-up step.
+		 */
+		final int[] vertices;
+
+		/**
+		 * Number of vertices.
+		 */
+		final int size;
+
+		/**
+		 * Sum of their degrees.
+		 */
+		final long edges;
+
+		/**
+		 * Constructor to create Frontier Objects.
+		 *
+		 * @param vertices Vertex ids, or null.
+		 * @param size     Number of vertices.
+		 * @param edges    Sum of their degrees.
+		 */
+		Frontier(int[] vertices, int size, long edges) {
+			this.vertices = vertices;
+			this.size = size;
+			this.edges = edges;
+		}
+	}
+
+	/**
+	 * Method to run a breadth-first search from a vertex.
+	 *
+	 * @param source  The start vertex.
+	 * @param parents Array of at least n ints that receives each vertex's BFS
+	 *                parent (the source is its own, unreached vertices get -1),
+	 *                or null.
+	 * @return The level (hop distance) of each vertex id, -1 if unreachable.
+	 * @throws IllegalArgumentException if source is not in the graph.
+	 */
+	public int[] bfs(V source, int[] parents) {
+
+		int s = graph.indexOf(source);
+		if (s < 0) {
+			throw new IllegalArgumentException("Vertex " + source + " is not in the graph.");
+		}
+		return bfs(s, parents);
+	}
+
+	/**
+	 * Method to run a breadth-first search from a vertex id.
+	 *
+	 * @param source  Id of the start vertex.
+	 * @param parents Array of at least n ints that receives each vertex's BFS
+	 *                parent (the source is its own, unreached vertices get -1),
+	 *                or null.
+	 * @return The level (hop distance) of each vertex id, -1 if unreachable.
+	 * @throws IllegalArgumentException if source is not a vertex id or parents is
+	 *                                  too short.
+	 */
+	public int[] bfs(int source, int[] parents) {
+
+		int n = graph.getVertexCount();
+		if (source < 0 || source >= n) {
+			throw new IllegalArgumentException("No vertex id " + source);
+		}
+		if (parents != null && parents.length < n) {
+			throw new IllegalArgumentException("parents holds " + parents.length + " of " + n + " vertices");
+		}
+
+		int[] levels = new int[n];
+		Arrays.fill(levels, -1);
+		if (parents != null) {
+			Arrays.fill(parents, 0, n, -1);
+			parents[source] = source;
+		}
+		levels[source] = 0;
+
+		Frontier frontier = new Frontier(new int[] { source }, 1, degree(source));
+		long unexplored = targets.length - frontier.edges;
+		boolean bottomUp = false;
+		topDownSteps = 0;
+		bottomUpSteps = 0;
+		for (int depth = 0; frontier.size > 0; depth++) {
+			if (bottomUp) {
+				if (beta > 0 && (long) frontier.size * beta < n) {
+					bottomUp = false;
+					frontier = gather(levels, depth);
+				}
+			} else if (frontier.edges * alpha > unexplored) {
+				bottomUp = true;
+			}
+			if (bottomUp) {
+				bottomUpSteps++;
+				frontier = bottomUpStep(levels, parents, depth);
+			} else {
+				topDownSteps++;
+				frontier = topDownStep(frontier, levels, parents, depth);
+			}
+			unexplored -= frontier.edges;
+		}
+		return levels;
+	}
+
+	/**
+	 * Method to expand a frontier top-down: each frontier vertex claims its
+	 * unvisited neighbors.
+	 *
+	 * @param frontier Vertices at depth.
+	 * @param levels   Levels so far.
+	 * @param parents  Parents so far, or null.
+	 * @param depth    Level of the frontier.
+	 * @return The vertices at depth + 1.
+	 */
+	private Frontier topDownStep(Frontier frontier, int[] levels, int[] parents, int depth) {
+
+		int[] vertices = frontier.vertices;
+		int size = frontier.size;
+		int parts = (size + GRAIN - 1) / GRAIN;
+		int[][] found = new int[parts][];
+		int[] counts = new int[parts];
+		long[] edges = new long[parts];
+		pool.invoke(new RangeTask(0, parts, 1, (from, to) -> {
+			for (int p = from; p < to; p++) {
+				int[] out = new int[16];
+				int count = 0;
+				long sum = 0;
+				for (int k = p * GRAIN, end = Math.min(size, k + GRAIN); k < end; k++) {
+					int u = vertices[k];
+					for (int i = offsets[u]; i < offsets[u + 1]; i++) {
+						int w = targets[i];
+						if (levels[w] < 0 && INTS.compareAndSet(levels, w, -1, depth + 1)) {
+							if (parents != null) {
+								parents[w] = u;
+							}
+							if (count == out.length) {
+								out = Arrays.copyOf(out, count * 2);
+							}
+							out[count++] = w;
+							sum += degree(w);
+						}
+					}
+				}
+				found[p] = out;
+				counts[p] = count;
+				edges[p] = sum;
+			}
+		}));
+		return concat(found, counts, edges);
+	}
+
+	/**
+	 * Method to expand a frontier bottom-up: each unvisited vertex looks for a
+	 * neighbor at depth and stops at the first one.
+	 *
+	 * @param levels  Levels so far.
+	 * @param parents Parents so far, or null.
+	 * @param depth   Level of the frontier.
+	 * @return The size and edges of the vertices at depth + 1, without the list.
+	 */
+	private Frontier bottomUpStep(int[] levels, int[] parents, int depth) {
+
+		int n = levels.length;
+		int parts = (n + GRAIN - 1) / GRAIN;
+		int[] counts = new int[parts];
+		long[] edges = new long[parts];
+		// levels[w] only ever changes from -1 to depth + 1 here, so reading it
+		// while another task writes it never mistakes w for a frontier vertex
+		pool.invoke(new RangeTask(0, parts, 1, (from, to) -> {
+			for (int p = from; p < to; p++) {
+				int count = 0;
+				long sum = 0;
+				for (int v = p * GRAIN, end = Math.min(n, v + GRAIN); v < end; v++) {
+					if (levels[v] >= 0) {
+						continue;
+					}
+					for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+						int w = targets[i];
+						if (levels[w] == depth) {
+							levels[v] = depth + 1;
+							if (parents != null) {
+								parents[v] = w;
+							}
+							count++;
+							sum += degree(v);
+							break;
+						}
+					}
+				}
+				counts[p] = count;
+				edges[p] = sum;
+			}
+		}));
+
+		int size = 0;
+		long sum = 0;
+		for (int p = 0; p < parts; p++) {
+			size += counts[p];
+			sum += edges[p];
+		}
+		return new Frontier(null, size, sum);
+	}
+
+	/**
+	 * Method to list the vertices at a level, to go back to top-down.
+	 *
+	 * @param levels Levels so far.
+	 * @param depth  The level.
+	 * @return The vertices at depth.
+	 */
+	private Frontier gather(int[] levels, int depth) {
+
+		int n = levels.length;
+		int parts = (n + GRAIN - 1) / GRAIN;
+		int[][] found = new int[parts][];
+		int[] counts = new int[parts];
+		long[] edges = new long[parts];
+		pool.invoke(new RangeTask(0, parts, 1, (from, to) -> {
+			for (int p = from; p < to; p++) {
+				int[] out = new int[16];
+				int count = 0;
+				long sum = 0;
+				for (int v = p * GRAIN, end = Math.min(n, v + GRAIN); v < end; v++) {
+					if (levels[v] == depth) {
+						if (count == out.length) {
+							out = Arrays.copyOf(out, count * 2);
+						}
+						out[count++] = v;
+						sum += degree(v);
+					}
+				}
+				found[p] = out;
+				counts[p] = count;
+				edges[p] = sum;
+			}
+		}));
+		return concat(found, counts, edges);
+	}
+
+	/**
+	 * Method to join the vertices found by the tasks of a step.
+	 *
+	 * @param found  Vertices found by each task.
+	 * @param counts Number found by each task.
+	 * @param edges  Sum of their degrees for each task.
+	 * @return The joined frontier.
+	 */
+	private static Frontier concat(int[][] found, int[] counts, long[] edges) {
+
+		int size = 0;
+		long sum = 0;
+		for (int p = 0; p < found.length; p++) {
+			size += counts[p];
+			sum += edges[p];
+		}
+		int[] vertices = new int[size];
+		for (int p = 0, at = 0; p < found.length; at += counts[p], p++) {
+			System.arraycopy(found[p], 0, vertices, at, counts[p]);
+		}
+		return new Frontier(vertices, size, sum);
+	}
+
+	/**
+	 * Method to get the degree of a vertex id.
+	 *
+	 * @param v The vertex id.
+	 * @return Its degree.
+	 */
+	private int degree(int v) {
+
+		return offsets[v + 1] - offsets[v];
+	}
+
+	/**
+	 * Method to find the connected components.
+	 *
+	 * @return The component label of each vertex id: the smallest vertex id of its
+	 *         component.
+	 */
+	public int[] components() {
+
+		int n = graph.getVertexCount();
+		int m = graph.getEdgeCount();
+		int[] labels = new int[n];
+		int vertexParts = (n + GRAIN - 1) / GRAIN;
+		int edgeParts = (m + GRAIN - 1) / GRAIN;
+		pool.invoke(new RangeTask(0, n, GRAIN, (from, to) -> {
+			for (int v = from; v < to; v++) {
+				labels[v] = v;
+			}
+		}));
+
+		boolean[] hooked = new boolean[edgeParts];
+		boolean changed = true;
+		while (changed) {
+			Arrays.fill(hooked, false);
+			// hook: the root of the larger label joins the smaller label
+			pool.invoke(new RangeTask(0, edgeParts, 1, (from, to) -> {
+				for (int p = from; p < to; p++) {
+					for (int e = p * GRAIN, end = Math.min(m, e + GRAIN); e < end; e++) {
+						int lu = labels[graph.sourceAt(e)];
+						int lw = labels[graph.targetAt(e)];
+						if (lu == lw) {
+							continue;
+						}
+						int high = Math.max(lu, lw);
+						int low = Math.min(lu, lw);
+						if (labels[high] == high && INTS.compareAndSet(labels, high, high, low)) {
+							hooked[p] = true;
+						}
+					}
+				}
+			}));
+			// pointer jumping: point every vertex at its root
+			pool.invoke(new RangeTask(0, vertexParts, 1, (from, to) -> {
+				for (int p = from; p < to; p++) {
+					for (int v = p * GRAIN, end = Math.min(n, v + GRAIN); v < end; v++) {
+						while (labels[v] != labels[labels[v]]) {
+							labels[v] = labels[labels[v]];
+						}
+					}
+				}
+			}));
+			changed = false;
+			for (boolean h : hooked) {
+				changed |= h;
+			}
+		}
+		return labels;
+	}
+
+	/**
+	 * Method to count the components of a labelling made by components().
+	 *
+	 * @param labels The component labels.
+	 * @return The number of components.
+	 */
+	public static int countComponents(int[] labels) {
+
+		int count = 0;
+		for (int v = 0; v < labels.length; v++) {
+			if (labels[v] == v) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Method to run a plain sequential BFS, for the tests.
+	 *
+	 * @param csr    The snapshot.
+	 * @param source Id of the start vertex.
+	 * @return The level of each vertex id, -1 if unreachable.
+	 */
+	private static int[] sequentialBfs(ThreeTenCsrGraph<?, ?> csr, int source) {
+
+		int[] offsets = csr.getOffsets();
+		int[] targets = csr.getTargets();
+		int[] levels = new int[csr.getVertexCount()];
+		Arrays.fill(levels, -1);
+		levels[source] = 0;
+		ArrayDeque<Integer> queue = new ArrayDeque<>();
+		queue.add(source);
+		while (!queue.isEmpty()) {
+			int u = queue.poll();
+			for (int i = offsets[u]; i < offsets[u + 1]; i++) {
+				if (levels[targets[i]] < 0) {
+					levels[targets[i]] = levels[u] + 1;
+					queue.add(targets[i]);
+				}
+			}
+		}
+		return levels;
+	}
+
+	/**
+	 * Main method used for testing purposes.
+	 *
+	 * @param args Command-line arguments supplied as an Array of String Objects.
+	 */
+	public static void main(String[] args) {
+
+		/**
+		 * Graph component used for the tests.
+		 */
+		class Item extends ThreeTenGraphComponent {
+
+			/**
+			 * Constructor to create Item Objects.
+			 *
+			 * @param id Integer representing the component id.
+			 */
+			Item(int id) {
+				super(id);
+			}
+		}
+
+		// a sparse part with many small components and a dense core
+		Random random = new Random(21);
+		int n = 20000;
+		ThreeTenGraph<Item, Item> graph = new ThreeTenGraph<>();
+		Item[] items = new Item[n];
+		for (int i = 0; i < n; i++) {
+			items[i] = new Item(i);
+			graph.addVertex(items[i]);
+		}
+		int edgeId = 0;
+		for (int i = 0; i < n / 2; i++) {
+			graph.addEdge(new Item(edgeId++), items[i], items[random.nextInt(n / 2)]);
+		}
+		for (int i = 0; i < 60000; i++) {
+			graph.addEdge(new Item(edgeId++), items[random.nextInt(2000)], items[random.nextInt(2000)]);
+		}
+		for (int i = n / 2; i + 1 < n; i += 3) {
+			graph.addEdge(new Item(edgeId++), items[i], items[i + 1]);
+		}
+
+		ThreeTenCsrGraph<Item, Item> csr = graph.toCsr();
+		ForkJoinPool pool = new ForkJoinPool(4);
+		ThreeTenGraphTraversal<Item, Item> auto = new ThreeTenGraphTraversal<>(csr, pool);
+		ThreeTenGraphTraversal<Item, Item> topDown = new ThreeTenGraphTraversal<>(csr, pool, 0, BETA);
+		ThreeTenGraphTraversal<Item, Item> bottomUp = new ThreeTenGraphTraversal<>(csr, pool, Integer.MAX_VALUE, 0);
+
+		// every direction policy gives the sequential levels
+		boolean same = true;
+		for (int source : new int[] { 0, 1, 1999, n / 2 + 1, n - 1 }) {
+			int[] expected = sequentialBfs(csr, source);
+			same &= Arrays.equals(expected, auto.bfs(source, null)) && Arrays.equals(expected, topDown.bfs(source, null))
+					&& topDown.bottomUpSteps == 0 && Arrays.equals(expected, bottomUp.bfs(source, null))
+					&& (bottomUp.topDownSteps == 0) == (bottomUp.bottomUpSteps > 0); // never comes back
+		}
+		if (same) {
+			System.out.println("Yay 1");
+		}
+
+		// parents are one level up and adjacent
+		int[] parents = new int[n];
+		int[] levels = auto.bfs(items[5], parents);
+		boolean tree = parents[csr.indexOf(items[5])] == csr.indexOf(items[5]);
+		for (int v = 0; v < n; v++) {
+			if (levels[v] > 0) {
+				tree &= levels[parents[v]] == levels[v] - 1 && csr.edgeBetween(v, parents[v]) >= 0;
+			} else if (levels[v] < 0) {
+				tree &= parents[v] == -1;
+			}
+		}
+		if (tree) {
+			System.out.println("Yay 2");
+		}
+
+		// components agree with reachability
+		int[] labels = auto.components();
+		boolean components = true;
+		int count = 0;
+		int[] seen = new int[n];
+		Arrays.fill(seen, -1);
+		for (int v = 0; v < n; v++) {
+			if (seen[v] >= 0) {
+				continue;
+			}
+			count++;
+			int[] reach = sequentialBfs(csr, v);
+			for (int w = 0; w < n; w++) {
+				if (reach[w] >= 0) {
+					seen[w] = v;
+					components &= labels[w] == v; // v is the smallest id reached
+				}
+			}
+		}
+		if (components && countComponents(labels) == count) {
+			System.out.println("Yay 3");
+		}
+
+		// an empty graph and an isolated vertex
+		ThreeTenGraph<Item, Item> empty = new ThreeTenGraph<>();
+		ThreeTenGraphTraversal<Item, Item> none = new ThreeTenGraphTraversal<>(empty);
+		empty.addVertex(items[0]);
+		ThreeTenGraphTraversal<Item, Item> one = new ThreeTenGraphTraversal<>(empty);
+		if (none.components().length == 0 && one.bfs(0, null)[0] == 0 && countComponents(one.components()) == 1) {
+			System.out.println("Yay 4");
+		}
+		pool.shutdown();
+	}
+}
@@ -1,6 +1,13 @@
-import java.util.Collection; //for returning in the values() function only
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 
 //import java.util.ArrayList; //for returning in the values() function only
@@ -31,16 +38,169 @@ class ThreeTenHashMap<K, V> implements Map<K, V> {
 	 */
 	private int originalSize;
 
+	/**
+	 * Live view of the keys, created on first use.
+	 */
+	private Set<K> keyView;
+
+	/**
+	 * Live view of the values, created on first use.
+	 */
+	private Collection<V> valueView;
+
+	/**
+	 * Live view of the entries, created on first use.
+	 */
+	private Set<Map.Entry<K, V>> entryView;
+
+	/**
+	 * Number of old buckets migrated by each put/get/remove during an incremental
+	 * resize.
+	 */
+	private static final int MIGRATE_BUCKETS = 8;
+
+	/**
+	 * Chain length at which a bucket is turned into a balanced tree.
+	 */
+	static final int TREEIFY_THRESHOLD = 8;
+
+	/**
+	 * Bucket size at or below which a tree bucket is turned back into a chain.
+	 */
+	static final int UNTREEIFY_THRESHOLD = 6;
+
+	/**
+	 * Smallest table that may hold tree buckets. Smaller tables just have long
+	 * chains until they grow.
+	 */
+	static final int MIN_TREEIFY_SLOTS = 64;
+
+	/**
+	 * Insertion number handed to the next TreeNode, used to order nodes whose
+	 * keys hash and compare the same.
+	 */
+	private long treeSeq = 0;
+
+	/**
+	 * Strategy that hashes the keys of this map.
+	 */
+	private final HashStrategy strategy;
+
+	/**
+	 * Keys per slot at which the table doubles.
+	 */
+	private double growLoad = 2;
+
+	/**
+	 * Keys per slot below which the table halves, 0 (the default) for never.
+	 */
+	private double shrinkLoad = 0;
+
+	/**
+	 * Smallest map putAllParallel copies with more than one thread.
+	 */
+	static final int PARALLEL_PUT_THRESHOLD = 1 << 13;
+
+	/**
+	 * Keys hashed per leaf task of putAllParallel.
+	 */
+	private static final int PARALLEL_GRAIN = 1 << 12;
+
+	/**
+	 * Counters kept while metrics are enabled, null otherwise.
+	 */
+	private ThreeTenHashMapMetrics metrics;
+
+	/**
+	 * Number of keys mapped to each non-null value while the value index is
+	 * enabled, null otherwise.
+	 */
+	private ThreeTenHashMap<Object, int[]> valueCounts;
+
+	/**
+	 * Number of keys mapped to null while the value index is enabled.
+	 */
+	private int nullValues;
+
+	/**
+	 * Persistent copy of the mappings while snapshots are enabled, null
+	 * otherwise. Replaced (never changed) by every write, so other threads may
+	 * read it at any time.
+	 */
+	private volatile ThreeTenPersistentHashMap<K, V> shadow;
+
+	/**
+	 * Whether writes must update the value index or the snapshot.
+	 */
+	private boolean tracked;
+
+	/**
+	 * Whether the table grows incrementally instead of in one rehash.
+	 */
+	private final boolean incremental;
+
+	/**
+	 * Table being drained into storage during an incremental resize, or null if no
+	 * resize is in progress.
+	 */
+	private Node<K, V>[] oldStorage;
+
+	/**
+	 * Next bucket of oldStorage to migrate.
+	 */
+	private int migrateIndex;
+
 	/**
 	 * Constructor to create the HashMap with given size.
 	 * 
 	 * @param size Number of slots in the table (storage).
 	 */
-	@SuppressWarnings("unchecked")
 	public ThreeTenHashMap(int size) {
 
+		this(size, false);
+	}
+
+	/**
+	 * Constructor to create the HashMap with given size and resize mode. When
+	 * incremental is true, growing (or shrinking) the table allocates the new
+	 * table but leaves the entries where they are; every later put/get/remove then
+	 * moves a bounded number of old buckets, so no single operation pays for the
+	 * whole rehash.
+	 * 
+	 * @param size        Number of slots in the table (storage).
+	 * @param incremental Whether to resize incrementally.
+	 */
+	public ThreeTenHashMap(int size, boolean incremental) {
+
+		this(size, incremental, HashStrategy.IDENTITY);
+	}
+
+	/**
+	 * Constructor to create the HashMap with given size and hash strategy.
+	 * 
+	 * @param size     Number of slots in the table (storage).
+	 * @param strategy Strategy that hashes the keys.
+	 */
+	public ThreeTenHashMap(int size, HashStrategy strategy) {
+
+		this(size, false, strategy);
+	}
+
+	/**
+	 * Constructor to create the HashMap with given size, resize mode and hash
+	 * strategy.
+	 * 
+	 * @param size        Number of slots in the table (storage).
+	 * @param incremental Whether to resize incrementally.
+	 * @param strategy    Strategy that hashes the keys.
+	 */
+	@SuppressWarnings("unchecked")
+	public ThreeTenHashMap(int size, boolean incremental, HashStrategy strategy) {
+
 		storage = (Node<K, V>[]) new Node[size];
 		originalSize = size;
+		this.incremental = incremental;
+		this.strategy = Objects.requireNonNull(strategy);
 	}
 
 	/**
@@ -51,238 +211,1615 @@ class ThreeTenHashMap<K, V> implements Map<K, V> {
 	public void clear() {
 
 		storage = (Node<K, V>[]) new Node[originalSize];
+		oldStorage = null;
+		numElements = 0;
+		if (metrics != null) {
+			metrics.resetChains(storage.length);
+		}
+
+		if (valueCounts != null) {
+			valueCounts.clear();
+			nullValues = 0;
+		}
+		if (shadow != null) {
+			shadow = ThreeTenPersistentHashMap.empty(strategy);
+		}
 	}
 
 	/**
-	 * Method to check if the table is empty.
+	 * Method to check whether an incremental resize is in progress.
 	 * 
-	 * @return Boolean expression whether the table is empty or not. This method
-	 *         runs in O(1) time.
+	 * @return Boolean whether entries are still being moved out of the old table.
 	 */
-	public boolean isEmpty() {
+	public boolean isRehashing() {
 
-		if (storage == null || numElements == 0 || storage.length < 1) {
-			return true;
-		}
-		return false;
+		return oldStorage != null;
 	}
 
 	/**
-	 * Method to get the number of slots in the table. This method runs in O(1)
-	 * time.
+	 * Method to get the strategy that hashes the keys of this map.
 	 * 
-	 * @return number of slots.
+	 * @return The hash strategy.
 	 */
-	public int getSlots() {
+	public HashStrategy getHashStrategy() {
 
-		return storage.length;
+		return strategy;
 	}
 
 	/**
-	 * Method to get the size of the table. This method runs in O(1) time.
+	 * Method to get the hash of a key from the map's strategy. Nodes cache this
+	 * value so it is only computed once per put.
 	 * 
-	 * @return Number of elements in the table.
+	 * @param key The key.
+	 * @return The hash of the key.
 	 */
-	public int size() {
-		return numElements;
+	private int hash(Object key) {
+
+		return strategy.hash(key);
 	}
 
 	/**
-	 * Method to get a value in the table given a key.
+	 * Method to get the bucket a hash belongs in for a table of the given length.
+	 * Power of two tables take the low bits with a mask instead of a division;
+	 * other tables keep the absolute remainder (taken after the remainder, so
+	 * Integer.MIN_VALUE is safe). Either way, doubling sends bucket i to i or i + n.
 	 * 
-	 * @param key The key passed in to to use to get the corresponding value.
-	 *
-	 * @return V value to be return if matching key. If value not found return null.
+	 * @param hash   The hash of the key.
+	 * @param length Number of slots in the table.
+	 * @return Index of the bucket.
 	 */
-	public V get(Object key) {
+	private static int indexFor(int hash, int length) {
 
-		V toReturn = null;
-
-		int index = Math.abs(key.hashCode() % storage.length);
-
-		if (storage[index] == null) {
-
-		} else if (storage[index].entry.key.equals(key)) {
-
-			toReturn = storage[index].entry.value;
+		if ((length & (length - 1)) == 0) {
+			return hash & (length - 1);
+		}
+		return Math.abs(hash % length);
+	}
 
-		} else {
+	/**
+	 * Method to measure how well the keys spread over the table. Completes any
+	 * incremental resize first.
+	 * 
+	 * @return A snapshot of the bucket lengths and probe counts.
+	 */
+	public Diagnostics diagnostics() {
 
-			Node<K, V> current = storage[index];
+		completeMigration();
 
-			while (current.next != null) {
+		int[] lengths = new int[storage.length];
+		int maxChain = 0;
+		int treeBuckets = 0;
+		long probes = 0;
 
-				current = current.next;
+		for (int i = 0; i < storage.length; i++) {
 
-				if (current.entry.key.equals(key)) {
+			if (storage[i] instanceof TreeNode) {
+				treeBuckets++;
+				probes += treeProbes((TreeNode<K, V>) storage[i], 1);
+			}
 
-					toReturn = current.entry.value;
+			int length = 0;
+			for (Node<K, V> n = storage[i]; n != null; n = n.next) {
+				length++;
+				if (!(storage[i] instanceof TreeNode)) {
+					probes += length; // the n-th node of a chain takes n probes
 				}
 			}
+			lengths[i] = length;
+			maxChain = Math.max(maxChain, length);
 		}
 
-		return toReturn;
+		int[] histogram = new int[maxChain + 1];
+		for (int length : lengths) {
+			histogram[length]++;
+		}
 
+		double observed = numElements == 0 ? 0 : (double) probes / numElements;
+		double expected = numElements == 0 ? 0 : 1 + (numElements - 1) / (2.0 * storage.length);
+
+		return new Diagnostics(strategy, storage.length, numElements, histogram, treeBuckets, observed, expected);
 	}
 
 	/**
-	 * Method to get the keys in the table. This method runs in O(n + m) time.
+	 * Method to add up the probes needed to find every node of a tree, where a
+	 * node at depth d takes d probes.
 	 * 
-	 * @return Set containing all the keys in the table.
+	 * @param node  Root of the (sub)tree, may be null.
+	 * @param depth Depth of the root.
+	 * @return The total number of probes.
 	 */
-	public Set<K> keySet() {
+	private static long treeProbes(TreeNode<?, ?> node, int depth) {
 
-		ThreeTenHashSet<K> keys = new ThreeTenHashSet<K>();
+		if (node == null) {
+			return 0;
+		}
+		return depth + treeProbes(node.left, depth + 1) + treeProbes(node.right, depth + 1);
+	}
 
-		for (int i = 0; i < storage.length; i++) {
+	/**
+	 * Method to get the table that currently holds a key. During an incremental
+	 * resize a key lives in the old table until its old bucket has been migrated.
+	 * 
+	 * @param hash The hash of the key.
+	 * @return The table to search for the key.
+	 */
+	private Node<K, V>[] tableFor(int hash) {
 
-			Node<K, V> current = storage[i];
+		if (oldStorage != null && oldStorage[indexFor(hash, oldStorage.length)] != null) {
+			return oldStorage;
+		}
+		return storage;
+	}
 
-			if (current == null) {
+	/**
+	 * Method to split one bucket of a table into a table of twice the size. For
+	 * any length n, a hash in bucket i of the old table lands in bucket i or i + n
+	 * of the new one, so the chain is cut into a low and a high list (keeping
+	 * their order) and both are stored with no allocation. Both target buckets
+	 * must be empty. Halves of a tree bucket are rebuilt as trees or turned back
+	 * into chains depending on their size.
+	 * 
+	 * @param node  First node of the old bucket.
+	 * @param table Table of twice the old length.
+	 * @param index Index of the old bucket.
+	 */
+	private void splitBucket(Node<K, V> node, Node<K, V>[] table, int index) {
 
-				continue;
+		boolean wasTree = node instanceof TreeNode;
 
-			} else {
+		Node<K, V> loHead = null;
+		Node<K, V> loTail = null;
+		Node<K, V> hiHead = null;
+		Node<K, V> hiTail = null;
+		int loCount = 0;
+		int hiCount = 0;
 
-				keys.add(current.entry.key);
+		while (node != null) {
 
-				while (current.next != null) {
+			Node<K, V> next = node.next;
+			node.next = null;
 
-					current = current.next;
-					keys.add(current.entry.key);
+			if (indexFor(node.hash, table.length) == index) {
+				if (loTail == null) {
+					loHead = node;
+				} else {
+					loTail.next = node;
 				}
-
+				loTail = node;
+				loCount++;
+			} else {
+				if (hiTail == null) {
+					hiHead = node;
+				} else {
+					hiTail.next = node;
+				}
+				hiTail = node;
+				hiCount++;
 			}
-
+			node = next;
 		}
 
-		return keys;
+		int hiIndex = index + table.length / 2;
+		table[index] = loHead;
+		table[hiIndex] = hiHead;
 
+		if (wasTree || loCount >= TREEIFY_THRESHOLD) {
+			normalizeBucket(table, index);
+		}
+		if (wasTree || hiCount >= TREEIFY_THRESHOLD) {
+			normalizeBucket(table, hiIndex);
+		}
 	}
 
 	/**
-	 * Method to remove a pair from the table.
+	 * Method to move every node of one old bucket into the new table, keeping their
+	 * relative order. Nodes are relinked, not copied. A growing table splits the
+	 * bucket in two. A table shrinking to exactly half appends it to the one new
+	 * bucket that the old buckets i and i + n/2 share; any other shrink (from an
+	 * odd or trimmed length, or down to the original size) sends each node to its
+	 * own bucket.
 	 * 
-	 * @param key The corresponding key to a value in the map.
-	 *
-	 * @return V the value of the pair removed. If value not found return null.
+	 * @param index Bucket of oldStorage to migrate.
 	 */
-	public V remove(Object key) {
-
-		V valueToReturn = null;
-
-		int index = Math.abs(key.hashCode() % storage.length); // get the index of an item
+	private void migrateBucket(int index) {
 
-		if (storage[index] == null) { // null check
+		Node<K, V> node = oldStorage[index];
+		if (node == null) {
+			return;
+		}
+		oldStorage[index] = null;
+
+		if (storage.length > oldStorage.length) {
+			splitBucket(node, storage, index); // nothing reaches these buckets before this
+			if (metrics != null) {
+				int lo = chainLength(storage[index]);
+				int hi = chainLength(storage[index + oldStorage.length]);
+				metrics.recordChain(lo + hi, 0);
+				metrics.recordChain(0, lo);
+				metrics.recordChain(0, hi);
+			}
+			return;
+		}
 
-		} else if (storage[index].entry.key.equals(key)) { // O(1) check
+		if (oldStorage.length != storage.length * 2) {
+			scatterBucket(node, storage);
+			return;
+		}
 
-			valueToReturn = storage[index].entry.value;
+		int target = indexFor(node.hash, storage.length);
+		int moved = metrics == null ? 0 : chainLength(node);
+		int before = metrics == null ? 0 : chainLength(storage[target]);
+		mergeBucket(node, storage, target);
+		if (metrics != null) {
+			metrics.recordChain(moved, 0);
+			metrics.recordChain(before, before + moved);
+		}
+	}
 
-			storage[index] = storage[index].next; // correct linked list
+	/**
+	 * Method to append the nodes of an old bucket to a bucket of a smaller table.
+	 * The result is made a tree or a plain chain depending on its length.
+	 * 
+	 * @param node  First node of the old bucket.
+	 * @param table The smaller table.
+	 * @param index Index of the bucket in table.
+	 */
+	private void mergeBucket(Node<K, V> node, Node<K, V>[] table, int index) {
 
-			numElements--;
+		boolean trees = node instanceof TreeNode || table[index] instanceof TreeNode;
+		int count = 0;
 
+		if (table[index] == null) {
+			table[index] = node;
 		} else {
-
-			Node<K, V> current = storage[index];
-
-			while (current.next != null) { // O(n) check
-
-				Node<K, V> previous = current;
-
-				current = current.next;
-
-				if (current.entry.key.equals(key)) {
-
-					valueToReturn = current.entry.value;
-					previous.next = current.next; // correct linked list
-					current = null;
-					numElements--;
-					break;
-				}
+			Node<K, V> tail = table[index];
+			count++;
+			while (tail.next != null) {
+				tail = tail.next;
+				count++;
 			}
+			tail.next = node;
+		}
+		for (Node<K, V> n = node; n != null; n = n.next) {
+			count++;
 		}
 
-		return valueToReturn;
+		if (trees || count >= TREEIFY_THRESHOLD) {
+			normalizeBucket(table, index);
+		}
 	}
 
 	/**
-	 * Method to put elments into the hash table using seperate chaining.
+	 * Method to append each node of an old bucket to the bucket its hash picks in
+	 * a smaller table, for shrinks where the old bucket may not map to a single
+	 * new one. Buckets that receive tree nodes or grow long are made a tree or a
+	 * plain chain again.
 	 * 
-	 * @param key   The key associated with a value in a pair.
-	 * @param value The value associated with a key in a pair.
-	 * @return v The value added to the table.
+	 * @param node  First node of the old bucket.
+	 * @param table The smaller table.
 	 */
-	private V putNoExpand(K key, V value) {
-
-		Integer hashedKey = Math.abs(key.hashCode() % storage.length);
-
-		TableEntry<K, V> te = new TableEntry<K, V>(key, value);
+	private void scatterBucket(Node<K, V> node, Node<K, V>[] table) {
 
-		Node<K, V> addToStorage = new Node<K, V>(te);
+		boolean wasTree = node instanceof TreeNode;
+		int moved = chainLength(node);
+		if (metrics != null) {
+			metrics.recordChain(moved, 0);
+		}
 
-		V valueToReturn = null;
+		int[] pending = null; // buckets to normalize once every node is in place
+		int numPending = 0;
+		while (node != null) {
+			Node<K, V> next = node.next;
+			node.next = null;
 
-		if (storage[hashedKey] != null && storage[hashedKey].entry.key.equals(key)) { // if the key already exists
+			int index = indexFor(node.hash, table.length);
+			int count = 1;
+			if (table[index] == null) {
+				table[index] = node;
+			} else {
+				Node<K, V> tail = table[index];
+				while (tail.next != null) {
+					tail = tail.next;
+					count++;
+				}
+				tail.next = node;
+				count++;
+			}
+			if (metrics != null) {
+				metrics.recordChain(count - 1, count);
+			}
+			if (wasTree || table[index] instanceof TreeNode || count >= TREEIFY_THRESHOLD) {
+				if (pending == null) {
+					pending = new int[moved];
+				}
+				if (numPending == 0 || pending[numPending - 1] != index) {
+					pending[numPending++] = index;
+				}
+			}
+			node = next;
+		}
 
-			storage[hashedKey].entry.value = addToStorage.entry.value; // update value
+		for (int i = 0; i < numPending; i++) {
+			normalizeBucket(table, pending[i]);
+		}
+	}
 
-			valueToReturn = storage[hashedKey].entry.value;
+	/**
+	 * Method to migrate the next few old buckets. Finishes the resize once every
+	 * old bucket has been moved.
+	 */
+	private void migrateStep() {
 
-		} else {
+		if (oldStorage == null) {
+			return;
+		}
+		long start = metrics == null ? 0 : System.nanoTime();
+		int end = Math.min(migrateIndex + MIGRATE_BUCKETS, oldStorage.length);
+		for (; migrateIndex < end; migrateIndex++) {
+			migrateBucket(migrateIndex);
+		}
+		if (migrateIndex == oldStorage.length) {
+			oldStorage = null;
+		}
+		if (metrics != null) {
+			metrics.recordMigration(System.nanoTime() - start);
+		}
+	}
 
-			if (storage[hashedKey] == null) { // if key does not exist
+	/**
+	 * Method to finish an incremental resize in one go. Used by operations that
+	 * walk the whole table anyway.
+	 */
+	private void completeMigration() {
 
-				storage[hashedKey] = addToStorage; // add new element
-				valueToReturn = addToStorage.entry.value;
+		if (oldStorage == null) {
+			return;
+		}
+		long start = metrics == null ? 0 : System.nanoTime();
+		for (; migrateIndex < oldStorage.length; migrateIndex++) {
+			migrateBucket(migrateIndex);
+		}
+		oldStorage = null;
+		if (metrics != null) {
+			metrics.recordMigration(System.nanoTime() - start);
+		}
+	}
 
-			} else {
+	/**
+	 * Method to start an incremental resize into a table of twice or half the
+	 * size. Only the new (empty) table is allocated here.
+	 * 
+	 * @param size Number of slots in the new table.
+	 */
+	@SuppressWarnings("unchecked")
+	private void startMigration(int size) {
+
+		completeMigration();
+		oldStorage = storage;
+		storage = (Node<K, V>[]) new Node<?, ?>[size];
+		migrateIndex = 0;
+		if (metrics != null) {
+			metrics.recordRehash(0, oldStorage.length, storage.length, numElements, true);
+		}
+	}
 
-				Node<K, V> current = storage[hashedKey];
+	/**
+	 * Method to turn metrics on or off. Turning them on starts every counter at
+	 * zero; while they are off the map keeps no counters at all.
+	 * 
+	 * @param enabled Whether to keep metrics.
+	 */
+	public void setMetricsEnabled(boolean enabled) {
 
-				while (current.next != null) { // walk through link list
+		if (!enabled) {
+			metrics = null;
+		} else if (metrics == null) {
+			metrics = new ThreeTenHashMapMetrics();
+			countChains();
+		}
+	}
 
-					current = current.next;
+	/**
+	 * Method to recount the chain lengths kept by the metrics. Walks both tables,
+	 * so it is only used where the whole table is walked anyway.
+	 */
+	private void countChains() {
 
+		metrics.resetChains(storage.length);
+		for (Node<K, V>[] table : tables()) {
+			for (Node<K, V> head : table) {
+				if (head != null) {
+					metrics.recordChain(0, chainLength(head));
 				}
-				current.next = addToStorage; // append to the end
 			}
-
-			numElements++; // increment counter
-			valueToReturn = null;
 		}
-
-		return valueToReturn;
 	}
 
 	/**
-	 * Controls the flow of the program. Used for testing purposes.
+	 * Method to get the number of nodes in a bucket, in O(1) time for a tree
+	 * bucket.
 	 * 
-	 * @param args Command-line arguments supplied as an Array of String Objects.
+	 * @param head First node of the bucket, may be null.
+	 * @return Number of nodes.
 	 */
-	public static void main(String[] args) {
-		// main method for testing, edit as much as you want
-		ThreeTenHashMap<String, String> st1 = new ThreeTenHashMap<>(10);
-		ThreeTenHashMap<String, Integer> st2 = new ThreeTenHashMap<>(5);
-		ThreeTenHashMap<Integer, Integer> st5 = new ThreeTenHashMap<>(10);
-
-		st1.put("a", "apple");
-		st1.put("b", "banana");
-		st1.put("banana", "b");
-		st1.put("b", "butter");
+	private static int chainLength(Node<?, ?> head) {
 
-		if (st1.toString().equals("a:apple\nbanana:b\nb:butter") && st1.toStringDebug().equals(
-				"[0]: null\n[1]: null\n[2]: null\n[3]: null\n[4]: null\n[5]: null\n[6]: null\n[7]: [a:apple]->[banana:b]->null\n[8]: [b:butter]->null\n[9]: null")) {
-			System.out.println("Yay 1");
+		if (head instanceof TreeNode) {
+			return ((TreeNode<?, ?>) head).size;
 		}
-
-		if (st1.getSlots() == 10 && st1.size() == 3 && st1.get("a").equals("apple")) {
-			System.out.println("Yay 2");
+		int length = 0;
+		for (Node<?, ?> n = head; n != null; n = n.next) {
+			length++;
 		}
+		return length;
+	}
 
-		st2.rehash(1);
-		st2.put("a", 1);
+	/**
+	 * Method to get a snapshot of the metrics. Only reads counters: chain lengths
+	 * are kept up to date by every operation that changes a bucket, so this takes
+	 * the same time for any size of map and can be polled.
+	 * 
+	 * @return The snapshot, or null if metrics are not enabled.
+	 */
+	public ThreeTenHashMapMetrics.Snapshot metrics() {
+
+		if (metrics == null) {
+			return null;
+		}
+		return metrics.snapshot();
+	}
+
+	/**
+	 * Method to check if the table is empty.
+	 * 
+	 * @return Boolean expression whether the table is empty or not. This method
+	 *         runs in O(1) time.
+	 */
+	public boolean isEmpty() {
+
+		if (storage == null || numElements == 0 || storage.length < 1) {
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Method to get the number of slots in the table. This method runs in O(1)
+	 * time.
+	 * 
+	 * @return number of slots.
+	 */
+	public int getSlots() {
+
+		return storage.length;
+	}
+
+	/**
+	 * Method to estimate the bytes this map holds in its tables, nodes and
+	 * entries, not counting keys and values. Sizes are those of a 64-bit JVM with
+	 * compressed references: 4 bytes per slot and a 16 byte array header, 24
+	 * bytes per Node and per TableEntry, and 56 per TreeNode. Walks both tables,
+	 * so it takes time linear in the slots.
+	 *
+	 * @return Estimated bytes.
+	 */
+	long tableBytes() {
+
+		long bytes = 24L * size();
+		for (Node<K, V>[] table : tables()) {
+			bytes += (16 + 4L * table.length + 7) & ~7L;
+			for (Node<K, V> head : table) {
+				bytes += (head instanceof TreeNode ? 56L : 24L) * chainLength(head);
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * Method to get the size of the table. This method runs in O(1) time.
+	 * 
+	 * @return Number of elements in the table.
+	 */
+	public int size() {
+		return numElements;
+	}
+
+	/**
+	 * Method to get a value in the table given a key.
+	 * 
+	 * @param key The key passed in to to use to get the corresponding value.
+	 *
+	 * @return V value to be return if matching key. If value not found return null.
+	 */
+	public V get(Object key) {
+
+		V toReturn = null;
+
+		Node<K, V> node = metrics == null ? findNode(key) : findNodeCounting(key);
+
+		if (node != null) {
+
+			toReturn = node.entry.value;
+		}
+
+		migrateStep();
+
+		return toReturn;
+
+	}
+
+	/**
+	 * Method to find the node holding a key, in whichever table holds it.
+	 * 
+	 * @param key The key.
+	 * @return The node, or null if the key is not in the map.
+	 */
+	private Node<K, V> findNode(Object key) {
+
+		int hash = hash(key);
+
+		Node<K, V>[] table = tableFor(hash);
+
+		Node<K, V> current = table[indexFor(hash, table.length)];
+
+		if (current instanceof TreeNode) {
+
+			return findTreeNode((TreeNode<K, V>) current, hash, key);
+		}
+
+		while (current != null) {
+
+			if (current.hash == hash && current.entry.key.equals(key)) {
+
+				return current;
+			}
+			current = current.next;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Method to find the node holding a key while counting the nodes looked at.
+	 * Used instead of findNode() when metrics are enabled.
+	 * 
+	 * @param key The key.
+	 * @return The node, or null if the key is not in the map.
+	 */
+	private Node<K, V> findNodeCounting(Object key) {
+
+		int hash = hash(key);
+		Node<K, V>[] table = tableFor(hash);
+		Node<K, V> current = table[indexFor(hash, table.length)];
+
+		if (current instanceof TreeNode) {
+
+			metrics.recordGet(((TreeNode<K, V>) current).height);
+			return findTreeNode((TreeNode<K, V>) current, hash, key);
+		}
+
+		int probes = 0;
+		while (current != null) {
+
+			probes++;
+			if (current.hash == hash && current.entry.key.equals(key)) {
+
+				break;
+			}
+			current = current.next;
+		}
+
+		metrics.recordGet(probes);
+		return current;
+	}
+
+	/**
+	 * Method to get the keys in the table. The set is a live view backed by the
+	 * map: it copies nothing, its iterator walks the buckets directly, and
+	 * removing from it removes from the map. This method runs in O(1) time.
+	 * 
+	 * @return Set containing all the keys in the table.
+	 */
+	public Set<K> keySet() {
+
+		if (keyView == null) {
+			keyView = new KeyView();
+		}
+		return keyView;
+	}
+
+	/**
+	 * Iterator that walks the chains of the table bucket by bucket. An incremental
+	 * resize is finished first so only one table has to be walked. Plain chains
+	 * are followed in place; the nodes of a tree bucket are copied out when the
+	 * iterator reaches it, because removing from a tree moves its new root to the
+	 * front of the chain (or turns the bucket back into a chain of new nodes), so
+	 * the chain cannot be followed across remove(), and remove() never shrinks the
+	 * table. remove() is supported; other changes to the map during iteration are
+	 * not.
+	 * 
+	 * @param <T> type handed out for each node.
+	 */
+	private abstract class BucketIterator<T> implements Iterator<T> {
+
+		/**
+		 * Table being walked.
+		 */
+		private final Node<K, V>[] table;
+
+		/**
+		 * Next bucket to look at.
+		 */
+		private int bucket = 0;
+
+		/**
+		 * Next node to hand out.
+		 */
+		private Node<K, V> next;
+
+		/**
+		 * Last node handed out, for remove().
+		 */
+		private Node<K, V> last;
+
+		/**
+		 * Nodes of the tree bucket being walked, or null in a plain chain.
+		 */
+		private Node<K, V>[] captured;
+
+		/**
+		 * Position in captured of the node after next.
+		 */
+		private int capturedIndex;
+
+		/**
+		 * Constructor to position the iterator on the first node.
+		 */
+		BucketIterator() {
+			completeMigration();
+			table = storage;
+			findNext();
+		}
+
+		/**
+		 * Method to get the element handed out for a node.
+		 * 
+		 * @param node The node.
+		 * @return The element.
+		 */
+		abstract T get(Node<K, V> node);
+
+		/**
+		 * Method to move to the first node of the next non-empty bucket.
+		 */
+		@SuppressWarnings("unchecked")
+		private void findNext() {
+			while (next == null && bucket < table.length) {
+				next = table[bucket++];
+				if (next instanceof TreeNode) {
+					int count = 0;
+					for (Node<K, V> n = next; n != null; n = n.next) {
+						count++;
+					}
+					captured = (Node<K, V>[]) new Node<?, ?>[count];
+					count = 0;
+					for (Node<K, V> n = next; n != null; n = n.next) {
+						captured[count++] = n;
+					}
+					capturedIndex = 1;
+				}
+			}
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public boolean hasNext() {
+			return next != null;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public T next() {
+			if (next == null) {
+				throw new NoSuchElementException();
+			}
+			last = next;
+			if (captured == null) {
+				next = next.next;
+			} else if (capturedIndex < captured.length) {
+				next = captured[capturedIndex++];
+			} else {
+				next = null;
+				captured = null;
+			}
+			findNext();
+			return get(last);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public void remove() {
+			if (last == null) {
+				throw new IllegalStateException();
+			}
+			removeNoShrink(last.entry.key);
+			last = null;
+		}
+	}
+
+	/**
+	 * Live Set view of the keys.
+	 */
+	private final class KeyView extends AbstractSet<K> {
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public Iterator<K> iterator() {
+			return new BucketIterator<K>() {
+				K get(Node<K, V> node) {
+					return node.entry.key;
+				}
+			};
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public int size() {
+			return numElements;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public boolean contains(Object o) {
+			return findNode(o) != null;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public boolean remove(Object o) {
+			if (findNode(o) == null) {
+				return false;
+			}
+			ThreeTenHashMap.this.remove(o);
+			return true;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public void clear() {
+			ThreeTenHashMap.this.clear();
+		}
+	}
+
+	/**
+	 * Live Collection view of the values.
+	 */
+	private final class ValueView extends AbstractCollection<V> {
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public Iterator<V> iterator() {
+			return new BucketIterator<V>() {
+				V get(Node<K, V> node) {
+					return node.entry.value;
+				}
+			};
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public int size() {
+			return numElements;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public void clear() {
+			ThreeTenHashMap.this.clear();
+		}
+	}
+
+	/**
+	 * Entry handed out by the entry view while the value index or snapshots are
+	 * enabled. It writes through to the map's TableEntry and keeps them in step.
+	 */
+	private final class TrackedEntry implements Map.Entry<K, V> {
+
+		/**
+		 * The map's own entry.
+		 */
+		private final TableEntry<K, V> entry;
+
+		/**
+		 * Constructor to create TrackedEntry Objects.
+		 * 
+		 * @param entry The map's own entry.
+		 */
+		TrackedEntry(TableEntry<K, V> entry) {
+			this.entry = entry;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public K getKey() {
+			return entry.key;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public V getValue() {
+			return entry.value;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public V setValue(V value) {
+			V old = entry.setValue(value);
+			if (tracked) {
+				trackPut(entry.key, old, value, false);
+			}
+			return old;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public boolean equals(Object o) {
+			return entry.equals(o);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public int hashCode() {
+			return entry.hashCode();
+		}
+
+		/**
+		 * toString method.
+		 * 
+		 * @return Key and Value pair as String literal.
+		 */
+		public String toString() {
+			return entry.toString();
+		}
+	}
+
+	/**
+	 * Live Set view of the entries. The entries are the map's own TableEntry
+	 * objects, so setValue writes through; while the value index or snapshots are
+	 * enabled they are wrapped in TrackedEntry so setValue also updates those.
+	 */
+	private final class EntryView extends AbstractSet<Map.Entry<K, V>> {
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public Iterator<Map.Entry<K, V>> iterator() {
+			return new BucketIterator<Map.Entry<K, V>>() {
+				Map.Entry<K, V> get(Node<K, V> node) {
+					return tracked ? new TrackedEntry(node.entry) : node.entry;
+				}
+			};
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public int size() {
+			return numElements;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public boolean contains(Object o) {
+			if (!(o instanceof Map.Entry)) {
+				return false;
+			}
+			Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+			Node<K, V> node = findNode(e.getKey());
+			return node != null && Objects.equals(node.entry.value, e.getValue());
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public boolean remove(Object o) {
+			if (!contains(o)) {
+				return false;
+			}
+			ThreeTenHashMap.this.remove(((Map.Entry<?, ?>) o).getKey());
+			return true;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public void clear() {
+			ThreeTenHashMap.this.clear();
+		}
+	}
+
+	/**
+	 * Method to remove a pair from the table.
+	 * 
+	 * @param key The corresponding key to a value in the map.
+	 *
+	 * @return V the value of the pair removed. If value not found return null.
+	 */
+	public V remove(Object key) {
+
+		V valueToReturn = removeNoShrink(key);
+		shrinkIfSparse();
+		return valueToReturn;
+	}
+
+	/**
+	 * Method to remove a pair without shrinking the table, for iterators that are
+	 * walking its buckets.
+	 * 
+	 * @param key The key of the pair.
+	 * @return The value of the pair removed, or null if the key was not found.
+	 */
+	private V removeNoShrink(Object key) {
+
+		V valueToReturn = null;
+		int before = numElements;
+
+		if (metrics != null) {
+			metrics.recordRemove();
+		}
+
+		int hash = hash(key);
+
+		Node<K, V>[] table = tableFor(hash); // the old table while its bucket is unmigrated
+
+		int index = indexFor(hash, table.length); // get the index of an item
+
+		int chainBefore = metrics == null ? 0 : chainLength(table[index]);
+
+		if (table[index] instanceof TreeNode) { // O(log n) tree bucket
+
+			TreeNode<K, V> node = findTreeNode((TreeNode<K, V>) table[index], hash, key);
+
+			if (node != null) {
+
+				valueToReturn = node.entry.value;
+				removeTreeNode(table, index, node);
+				numElements--;
+			}
+
+		} else if (table[index] == null) { // null check
+
+		} else if (table[index].hash == hash && table[index].entry.key.equals(key)) { // O(1) check
+
+			valueToReturn = table[index].entry.value;
+
+			table[index] = table[index].next; // correct linked list
+
+			numElements--;
+
+		} else {
+
+			Node<K, V> current = table[index];
+
+			while (current.next != null) { // O(n) check
+
+				Node<K, V> previous = current;
+
+				current = current.next;
+
+				if (current.hash == hash && current.entry.key.equals(key)) {
+
+					valueToReturn = current.entry.value;
+					previous.next = current.next; // correct linked list
+					current = null;
+					numElements--;
+					break;
+				}
+			}
+		}
+
+		if (tracked && numElements < before) {
+			trackRemove(key, valueToReturn);
+		}
+		if (metrics != null && numElements < before) {
+			metrics.recordChain(chainBefore, chainBefore - 1);
+		}
+
+		migrateStep();
+
+		return valueToReturn;
+	}
+
+	/**
+	 * Method to halve the table once fewer than shrinkLoad keys per slot are left,
+	 * never going below the size the map was created with. In incremental mode the
+	 * entries move over the following operations, as when growing; the table may
+	 * have any length after trimToSize(), so they are placed by their own hash.
+	 * Skipped while an incremental resize is in progress.
+	 */
+	private void shrinkIfSparse() {
+
+		if (numElements < shrinkLoad * storage.length && storage.length > originalSize && oldStorage == null) {
+			int size = Math.max(originalSize, storage.length / 2);
+			if (incremental) {
+				startMigration(size);
+				migrateStep();
+			} else {
+				rehash(size);
+			}
+		}
+	}
+
+	/**
+	 * Method to set when the table grows and shrinks. The table doubles once there
+	 * are growLoad keys per slot and halves (down to its original size) once there
+	 * are fewer than shrinkLoad. shrinkLoad must be under half of growLoad, so a
+	 * table that just grew or shrank is never at the other threshold; at least n/2
+	 * operations come between a resize and the next one in the other direction.
+	 * The defaults are 2 and 0: tables only grow unless shrinking is asked for
+	 * here. In incremental mode a shrink is spread over later operations like a
+	 * grow.
+	 * 
+	 * @param growLoad   Keys per slot at which the table doubles.
+	 * @param shrinkLoad Keys per slot below which the table halves, 0 to never
+	 *                   shrink.
+	 * @throws IllegalArgumentException if the thresholds are out of range or too
+	 *                                  close together.
+	 */
+	public void setLoadFactors(double growLoad, double shrinkLoad) {
+
+		if (!(growLoad > 0) || !(shrinkLoad >= 0) || shrinkLoad * 2 >= growLoad) {
+			throw new IllegalArgumentException("Need growLoad > 2 * shrinkLoad >= 0.");
+		}
+		this.growLoad = growLoad;
+		this.shrinkLoad = shrinkLoad;
+		while ((numElements / (double) storage.length) >= growLoad) {
+			rehash(storage.length * 2);
+		}
+	}
+
+	/**
+	 * Method to get the keys per slot at which the table doubles.
+	 * 
+	 * @return The grow threshold.
+	 */
+	public double getGrowLoad() {
+
+		return growLoad;
+	}
+
+	/**
+	 * Method to get the keys per slot below which the table halves.
+	 * 
+	 * @return The shrink threshold, 0 if the table never shrinks.
+	 */
+	public double getShrinkLoad() {
+
+		return shrinkLoad;
+	}
+
+	/**
+	 * Method to shrink the table to the fewest slots that keep the keys at half
+	 * the grow threshold, releasing the rest. Unlike automatic shrinking this may
+	 * go below the original size. Power of two tables stay powers of two.
+	 */
+	public void trimToSize() {
+
+		completeMigration();
+
+		long slots = Math.max(1, (long) Math.ceil(numElements / (growLoad / 2)));
+		if ((storage.length & (storage.length - 1)) == 0) {
+			slots = slots == 1 ? 1 : Long.highestOneBit(slots - 1) << 1;
+		}
+		if (slots < storage.length) {
+			rehash((int) slots);
+		}
+	}
+
+	/**
+	 * Method to put elments into the hash table using seperate chaining.
+	 * 
+	 * @param key   The key associated with a value in a pair.
+	 * @param value The value associated with a key in a pair.
+	 * @return v The previous value for the key, or null if the key is new.
+	 */
+	private V putNoExpand(K key, V value) {
+
+		int hash = hash(key);
+
+		int hashedKey = indexFor(hash, storage.length);
+
+		if (storage[hashedKey] instanceof TreeNode) {
+
+			return putTreeNode(hashedKey, hash, key, value);
+		}
+
+		Node<K, V> current = storage[hashedKey];
+		Node<K, V> tail = null;
+		int chainLength = 0;
+
+		while (current != null) { // walk through link list
+
+			if (current.hash == hash && current.entry.key.equals(key)) { // if the key already exists
+
+				V valueToReturn = current.entry.value;
+				current.entry.value = value; // update value
+				if (tracked) {
+					trackPut(key, valueToReturn, value, false);
+				}
+				return valueToReturn;
+			}
+			tail = current;
+			current = current.next;
+			chainLength++;
+		}
+
+		Node<K, V> addToStorage = new Node<K, V>(new TableEntry<K, V>(key, value));
+		addToStorage.hash = hash;
+
+		if (tail == null) { // if bucket is empty
+
+			storage[hashedKey] = addToStorage; // add new element
+
+		} else {
+
+			tail.next = addToStorage; // append to the end
+		}
+
+		numElements++; // increment counter
+		if (tracked) {
+			trackPut(key, null, value, true);
+		}
+		if (metrics != null) {
+			metrics.recordChain(chainLength, chainLength + 1);
+		}
+
+		if (chainLength + 1 >= TREEIFY_THRESHOLD && storage.length >= MIN_TREEIFY_SLOTS) {
+
+			treeify(storage, hashedKey);
+		}
+
+		return null;
+	}
+
+	/**
+	 * Method to put a pair into a tree bucket of storage.
+	 * 
+	 * @param index Index of the tree bucket.
+	 * @param hash  Hash of the key.
+	 * @param key   The key.
+	 * @param value The value.
+	 * @return The previous value for the key, or null if the key is new.
+	 */
+	private V putTreeNode(int index, int hash, K key, V value) {
+
+		TreeNode<K, V> root = (TreeNode<K, V>) storage[index];
+		TreeNode<K, V> existing = findTreeNode(root, hash, key);
+
+		if (existing != null) {
+
+			V valueToReturn = existing.entry.value;
+			existing.entry.value = value;
+			if (tracked) {
+				trackPut(key, valueToReturn, value, false);
+			}
+			return valueToReturn;
+		}
+
+		TreeNode<K, V> node = new TreeNode<K, V>(new TableEntry<K, V>(key, value), hash, treeSeq++);
+		int count = root.size;
+
+		node.next = root.next; // link right after the root
+		node.prev = root;
+		if (root.next != null) {
+			((TreeNode<K, V>) root.next).prev = node;
+		}
+		root.next = node;
+
+		root = insertTree(root, node);
+		moveRootToFront(storage, index, root);
+		root.size = count + 1;
+		numElements++;
+		if (metrics != null) {
+			metrics.recordChain(count, count + 1);
+		}
+		if (tracked) {
+			trackPut(key, null, value, true);
+		}
+
+		return null;
+	}
+
+	/**
+	 * Method to order two tree nodes: by hash, then by compareTo() if the keys are
+	 * mutually comparable, then by insertion number. No two nodes are ever equal.
+	 * 
+	 * @param a First node.
+	 * @param b Second node.
+	 * @return Negative, zero or positive as a sorts before, at or after b.
+	 */
+	private static int treeOrder(TreeNode<?, ?> a, TreeNode<?, ?> b) {
+
+		if (a.hash != b.hash) {
+			return Integer.compare(a.hash, b.hash);
+		}
+		int c = compareKeys(a.entry.key, b.entry.key);
+		if (c != 0) {
+			return c;
+		}
+		return Long.compare(a.seq, b.seq);
+	}
+
+	/**
+	 * Method to compare two keys of the same Comparable class.
+	 * 
+	 * @param a First key.
+	 * @param b Second key.
+	 * @return The result of compareTo(), or 0 if the keys are not comparable.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static int compareKeys(Object a, Object b) {
+
+		if (a instanceof Comparable && a.getClass() == b.getClass()) {
+			return ((Comparable) a).compareTo(b);
+		}
+		return 0;
+	}
+
+	/**
+	 * Method to find a key in a tree bucket. Runs in O(log n) unless many keys
+	 * share a hash and are not comparable, in which case both subtrees of such
+	 * nodes are searched.
+	 * 
+	 * @param node Root of the (sub)tree.
+	 * @param hash Hash of the key.
+	 * @param key  The key.
+	 * @return The node holding the key, or null.
+	 */
+	private static <K, V> TreeNode<K, V> findTreeNode(TreeNode<K, V> node, int hash, Object key) {
+
+		while (node != null) {
+
+			if (hash < node.hash) {
+				node = node.left;
+			} else if (hash > node.hash) {
+				node = node.right;
+			} else if (node.entry.key.equals(key)) {
+				return node;
+			} else {
+				int c = compareKeys(key, node.entry.key);
+				if (c < 0) {
+					node = node.left;
+				} else if (c > 0) {
+					node = node.right;
+				} else {
+					TreeNode<K, V> found = findTreeNode(node.right, hash, key);
+					if (found != null) {
+						return found;
+					}
+					node = node.left;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Method to get the height of a (sub)tree.
+	 * 
+	 * @param node Root of the (sub)tree, may be null.
+	 * @return The height, 0 for an empty tree.
+	 */
+	private static int height(TreeNode<?, ?> node) {
+
+		return node == null ? 0 : node.height;
+	}
+
+	/**
+	 * Method to restore the AVL balance of a node whose subtrees are balanced.
+	 * 
+	 * @param node The node.
+	 * @return Root of the balanced subtree.
+	 */
+	private static <K, V> TreeNode<K, V> balance(TreeNode<K, V> node) {
+
+		int diff = height(node.left) - height(node.right);
+
+		if (diff > 1) {
+			if (height(node.left.left) < height(node.left.right)) {
+				node.left = rotateLeft(node.left);
+			}
+			node = rotateRight(node);
+		} else if (diff < -1) {
+			if (height(node.right.right) < height(node.right.left)) {
+				node.right = rotateRight(node.right);
+			}
+			node = rotateLeft(node);
+		} else {
+			node.height = 1 + Math.max(height(node.left), height(node.right));
+		}
+		return node;
+	}
+
+	/**
+	 * Method to rotate a subtree to the right.
+	 * 
+	 * @param node Root of the subtree.
+	 * @return New root of the subtree.
+	 */
+	private static <K, V> TreeNode<K, V> rotateRight(TreeNode<K, V> node) {
+
+		TreeNode<K, V> left = node.left;
+		node.left = left.right;
+		left.right = node;
+		node.height = 1 + Math.max(height(node.left), height(node.right));
+		left.height = 1 + Math.max(height(left.left), height(left.right));
+		return left;
+	}
+
+	/**
+	 * Method to rotate a subtree to the left.
+	 * 
+	 * @param node Root of the subtree.
+	 * @return New root of the subtree.
+	 */
+	private static <K, V> TreeNode<K, V> rotateLeft(TreeNode<K, V> node) {
+
+		TreeNode<K, V> right = node.right;
+		node.right = right.left;
+		right.left = node;
+		node.height = 1 + Math.max(height(node.left), height(node.right));
+		right.height = 1 + Math.max(height(right.left), height(right.right));
+		return right;
+	}
+
+	/**
+	 * Method to insert a node into an AVL tree.
+	 * 
+	 * @param root Root of the (sub)tree, may be null.
+	 * @param node Node to insert.
+	 * @return New root of the (sub)tree.
+	 */
+	private static <K, V> TreeNode<K, V> insertTree(TreeNode<K, V> root, TreeNode<K, V> node) {
+
+		if (root == null) {
+			node.left = null;
+			node.right = null;
+			node.height = 1;
+			return node;
+		}
+		if (treeOrder(node, root) < 0) {
+			root.left = insertTree(root.left, node);
+		} else {
+			root.right = insertTree(root.right, node);
+		}
+		return balance(root);
+	}
+
+	/**
+	 * Method to delete a node from an AVL tree.
+	 * 
+	 * @param root Root of the (sub)tree.
+	 * @param node Node to delete; it must be in the tree.
+	 * @return New root of the (sub)tree.
+	 */
+	private static <K, V> TreeNode<K, V> deleteTree(TreeNode<K, V> root, TreeNode<K, V> node) {
+
+		if (root == node) {
+			if (root.left == null) {
+				return root.right;
+			}
+			if (root.right == null) {
+				return root.left;
+			}
+			TreeNode<K, V> successor = root.right;
+			while (successor.left != null) {
+				successor = successor.left;
+			}
+			successor.right = deleteTree(root.right, successor);
+			successor.left = root.left;
+			return balance(successor);
+		}
+		if (treeOrder(node, root) < 0) {
+			root.left = deleteTree(root.left, node);
+		} else {
+			root.right = deleteTree(root.right, node);
+		}
+		return balance(root);
+	}
+
+	/**
+	 * Method to make the tree root the first node of its bucket's chain, which is
+	 * how a bucket is recognised as a tree.
+	 * 
+	 * @param table The table.
+	 * @param index Index of the bucket.
+	 * @param root  Root of the bucket's tree.
+	 */
+	private static <K, V> void moveRootToFront(Node<K, V>[] table, int index, TreeNode<K, V> root) {
+
+		Node<K, V> head = table[index];
+		if (head == root) {
+			return;
+		}
+		root.prev.next = root.next; // unlink
+		if (root.next != null) {
+			((TreeNode<K, V>) root.next).prev = root.prev;
+		}
+		root.next = head; // relink at the front
+		root.prev = null;
+		((TreeNode<K, V>) head).prev = root;
+		table[index] = root;
+	}
+
+	/**
+	 * Method to remove a node from a tree bucket. Small trees are turned back
+	 * into chains.
+	 * 
+	 * @param table The table holding the bucket.
+	 * @param index Index of the bucket.
+	 * @param node  Node to remove.
+	 */
+	private void removeTreeNode(Node<K, V>[] table, int index, TreeNode<K, V> node) {
+
+		TreeNode<K, V> root = (TreeNode<K, V>) table[index];
+		int count = root.size;
+
+		if (node.prev == null) { // unlink from the chain
+			table[index] = node.next;
+		} else {
+			node.prev.next = node.next;
+		}
+		if (node.next != null) {
+			((TreeNode<K, V>) node.next).prev = node.prev;
+		}
+
+		root = deleteTree(root, node);
+		if (root == null) {
+			table[index] = null;
+			return;
+		}
+		moveRootToFront(table, index, root);
+		root.size = count - 1;
+
+		if (root.height <= 3) { // at most 7 nodes left
+			normalizeBucket(table, index);
+		}
+	}
+
+	/**
+	 * Method to turn a bucket into a tree, reusing any TreeNodes already in it.
+	 * The chain order is kept apart from the root moving to the front.
+	 * 
+	 * @param table The table.
+	 * @param index Index of the bucket.
+	 */
+	private void treeify(Node<K, V>[] table, int index) {
+
+		TreeNode<K, V> root = null;
+		TreeNode<K, V> head = null;
+		TreeNode<K, V> tail = null;
+		int count = 0;
+
+		for (Node<K, V> n = table[index]; n != null; n = n.next) {
+
+			TreeNode<K, V> t = n instanceof TreeNode ? (TreeNode<K, V>) n
+					: new TreeNode<K, V>(n.entry, n.hash, treeSeq++);
+			t.prev = tail;
+			if (tail == null) {
+				head = t;
+			} else {
+				tail.next = t;
+			}
+			tail = t;
+			count++;
+		}
+		if (tail == null) {
+			return;
+		}
+		tail.next = null;
+
+		for (TreeNode<K, V> t = head; t != null; t = (TreeNode<K, V>) t.next) {
+			root = insertTree(root, t);
+		}
+		table[index] = head;
+		moveRootToFront(table, index, root);
+		root.size = count;
+	}
+
+	/**
+	 * Method to turn a bucket back into a chain of plain Nodes.
+	 * 
+	 * @param table The table.
+	 * @param index Index of the bucket.
+	 */
+	private static <K, V> void untreeify(Node<K, V>[] table, int index) {
+
+		Node<K, V> head = null;
+		Node<K, V> tail = null;
+
+		for (Node<K, V> n = table[index]; n != null; n = n.next) {
+			Node<K, V> plain = new Node<K, V>(n.entry);
+			plain.hash = n.hash;
+			if (tail == null) {
+				head = plain;
+			} else {
+				tail.next = plain;
+			}
+			tail = plain;
+		}
+		table[index] = head;
+	}
+
+	/**
+	 * Method to give a bucket the right shape after nodes were moved into or out
+	 * of it: a tree if it is long enough (and the table big enough), otherwise a
+	 * chain of plain Nodes.
+	 * 
+	 * @param table The table.
+	 * @param index Index of the bucket.
+	 */
+	private void normalizeBucket(Node<K, V>[] table, int index) {
+
+		int count = 0;
+		boolean hasTreeNodes = false;
+		for (Node<K, V> n = table[index]; n != null; n = n.next) {
+			count++;
+			hasTreeNodes |= n instanceof TreeNode;
+		}
+
+		if (table.length >= MIN_TREEIFY_SLOTS
+				&& (count >= TREEIFY_THRESHOLD || (hasTreeNodes && count > UNTREEIFY_THRESHOLD))) {
+			treeify(table, index);
+		} else if (hasTreeNodes) {
+			untreeify(table, index);
+		}
+	}
+
+	/**
+	 * Controls the flow of the program. Used for testing purposes.
+	 * 
+	 * @param args Command-line arguments supplied as an Array of String Objects.
+	 */
+	public static void main(String[] args) {
+		// main method for testing, edit as much as you want
+		ThreeTenHashMap<String, String> st1 = new ThreeTenHashMap<>(10);
+		ThreeTenHashMap<String, Integer> st2 = new ThreeTenHashMap<>(5);
+		ThreeTenHashMap<Integer, Integer> st5 = new ThreeTenHashMap<>(10);
+
+		st1.put("a", "apple");
+		st1.put("b", "banana");
+		st1.put("banana", "b");
+		st1.put("b", "butter");
+
+		if (st1.toString().equals("a:apple\nbanana:b\nb:butter") && st1.toStringDebug().equals(
+				"[0]: null\n[1]: null\n[2]: null\n[3]: null\n[4]: null\n[5]: null\n[6]: null\n[7]: [a:apple]->[banana:b]->null\n[8]: [b:butter]->null\n[9]: null")) {
+			System.out.println("Yay 1");
+		}
+
+		if (st1.getSlots() == 10 && st1.size() == 3 && st1.get("a").equals("apple")) {
+			System.out.println("Yay 2");
+		}
+
+		st2.rehash(1);
+		st2.put("a", 1);
 		st2.put("b", 2);
 
 		if (st2.toString().equals("b:2\na:1") && st2.toStringDebug().equals("[0]: [b:2]->null\n[1]: [a:1]->null")
@@ -323,70 +1860,836 @@ class ThreeTenHashMap<K, V> implements Map<K, V> {
 		System.out.println(st5.toStringDebug());
 		System.out.println("----------------");
 
-		if (st5.size() == 5 && st5.getSlots() == 10) {
-			System.out.println("Yay 7");
+		if (st5.size() == 5 && st5.getSlots() == 10) {
+			System.out.println("Yay 7");
+		}
+
+		st5.remove(4, 12);
+		if (st5.size() == 4) {
+			System.out.println("Yay 8");
+		}
+
+		Set<Integer> keys = st5.keySet();
+		keys.forEach(key -> System.out.println(key));
+
+		if (st5.get(11).equals(18)) {
+			System.out.println("Yay 9");
+		}
+
+		if (st5.remove(4) == null) {
+			System.out.println("Yay 10");
+		}
+
+		System.out.println(st5.toStringDebug());
+
+		st5.remove(1);
+		st5.put(1, 17);
+		System.out.println("\n----------\n" + st5.toStringDebug());
+
+		// incremental resize: same answers as java.util.HashMap while the table grows
+		ThreeTenHashMap<Integer, Integer> st6 = new ThreeTenHashMap<>(2, true);
+		java.util.HashMap<Integer, Integer> expected = new java.util.HashMap<>();
+		boolean same = true;
+		boolean sawRehash = false;
+		for (int i = 0; i < 100000; i++) {
+			int k = (i * 7919) % 60000;
+			if (i % 5 == 4) {
+				same &= java.util.Objects.equals(expected.remove(k), st6.remove(k));
+			} else {
+				same &= java.util.Objects.equals(expected.put(k, i), st6.put(k, i));
+			}
+			same &= java.util.Objects.equals(expected.get(k / 2), st6.get(k / 2));
+			sawRehash |= st6.isRehashing();
+		}
+		if (same && sawRehash && st6.size() == expected.size() && st6.keySet().size() == expected.size()
+				&& !st6.isRehashing()) {
+			System.out.println("Yay 11");
+		}
+
+		// live views: no copies, changes show through in both directions
+		Set<Integer> liveKeys = st6.keySet();
+		int evens = 0;
+		for (Iterator<Integer> it = liveKeys.iterator(); it.hasNext();) {
+			if (it.next() % 2 == 0) {
+				it.remove();
+				evens++;
+			}
+		}
+		expected.keySet().removeIf(k -> k % 2 == 0);
+		st6.put(-1, -1);
+		expected.put(-1, -1);
+		for (Map.Entry<Integer, Integer> e : st6.entrySet()) {
+			e.setValue(e.getValue() + 1);
+		}
+		expected.replaceAll((k, v) -> v + 1);
+		if (evens > 0 && liveKeys == st6.keySet() && liveKeys.contains(-1) && liveKeys.equals(expected.keySet())
+				&& st6.entrySet().equals(expected.entrySet()) && st6.values().size() == expected.size()
+				&& st6.get(-1) == 0) {
+			System.out.println("Yay 12");
+		}
+
+		// pathological collisions: every key has the same hash code
+		ThreeTenHashMap<String, Integer> st7 = new ThreeTenHashMap<>(64);
+		String[] colliding = { "" };
+		for (int bits = 0; bits < 12; bits++) { // "Aa" and "BB" have the same hash code
+			String[] next = new String[colliding.length * 2];
+			for (int i = 0; i < colliding.length; i++) {
+				next[2 * i] = colliding[i] + "Aa";
+				next[2 * i + 1] = colliding[i] + "BB";
+			}
+			colliding = next;
+		}
+		for (int i = 0; i < colliding.length; i++) {
+			st7.put(colliding[i], i);
+		}
+		int bucket = indexFor(colliding[0].hashCode(), st7.storage.length);
+		boolean found = st7.storage[bucket] instanceof TreeNode
+				&& ((TreeNode<String, Integer>) st7.storage[bucket]).height <= 2 * 12;
+		for (int i = 0; i < colliding.length; i++) {
+			found &= st7.get(colliding[i]) == i;
+		}
+		for (int i = 0; i < colliding.length - 3; i++) {
+			found &= st7.remove(colliding[i]) == i;
+		}
+		if (found && st7.size() == 3 && !(st7.storage[bucket] instanceof TreeNode) && st7.get(colliding[0]) == null
+				&& st7.get(colliding[colliding.length - 1]) == colliding.length - 1) {
+			System.out.println("Yay 13");
+		}
+
+		// the same keys under each hash strategy
+		HashStrategy[] strategies = { HashStrategy.IDENTITY, HashStrategy.MURMUR, HashStrategy.seeded(42) };
+		boolean spread = true;
+		for (HashStrategy strategy : strategies) {
+			ThreeTenHashMap<Integer, Integer> st8 = new ThreeTenHashMap<>(1024, strategy);
+			for (int i = 0; i < 4096; i++) {
+				st8.put(i << 10, i); // every key is a multiple of the table length
+			}
+			Diagnostics d = st8.diagnostics();
+			for (int i = 0; i < 4096; i++) {
+				spread &= st8.get(i << 10) == i;
+			}
+			spread &= d.getSize() == 4096 && d.getSlots() == st8.getSlots()
+					&& (strategy == HashStrategy.IDENTITY ? d.getMaxChain() >= 1024 && d.getTreeBuckets() > 0
+							: d.getMaxChain() < 32 && d.getObservedProbes() < 2 * d.getExpectedProbes());
+		}
+		ThreeTenHashMap<String, Integer> st9 = new ThreeTenHashMap<>(64, HashStrategy.seeded(7));
+		for (int i = 0; i < colliding.length; i++) { // colliding Strings spread again
+			st9.put(colliding[i], i);
+		}
+		if (spread && st9.diagnostics().getMaxChain() < 16 && st9.get(colliding[5]) == 5) {
+			System.out.println("Yay 14");
+		}
+
+		ThreeTenHashMap<Integer, Integer> st10 = new ThreeTenHashMap<>(4, true);
+		boolean quiet = st10.metrics() == null;
+		st10.setMetricsEnabled(true);
+		for (int i = 0; i < 1000; i++) {
+			st10.put(i, i);
+		}
+		for (int i = 0; i < 2000; i++) {
+			st10.get(i);
+		}
+		st10.remove(5);
+		ThreeTenHashMapMetrics.Snapshot m = st10.metrics();
+		if (quiet && m.getPuts() == 1000 && m.getGets() == 2000 && m.getRemoves() == 1 && m.getRehashes() == 7
+				&& m.getMeanProbesPerGet() > 0 && m.getMaxChain() >= 2 && m.getSize() == 999
+				&& m.getLoadHistory().length == 8 && m.getLoad() == 999 / 512.0) {
+			st10.setMetricsEnabled(false);
+			if (st10.metrics() == null) {
+				System.out.println("Yay 15");
+			}
+		}
+
+		java.util.HashMap<String, Integer> source = new java.util.HashMap<>();
+		for (int i = 0; i < 100000; i++) {
+			source.put("key" + i, i);
+		}
+		for (int i = 0; i < 64; i++) { // one bucket long enough to treeify
+			source.put(colliding[i], -i);
+		}
+		ThreeTenHashMap<String, Integer> st11 = new ThreeTenHashMap<>(4);
+		ThreeTenHashMap<String, Integer> st12 = new ThreeTenHashMap<>(4);
+		st11.put("key1", -1);
+		st12.put("key1", -1);
+		st11.setMetricsEnabled(true);
+		st11.putAll(source);
+		st12.putAllParallel(source, new ForkJoinPool(4));
+		boolean loaded = st11.size() == source.size() && st12.size() == source.size()
+				&& st11.metrics().getRehashes() == 1 && st12.get("key1") == 1
+				&& st12.storage[indexFor(colliding[0].hashCode(), st12.storage.length)] instanceof TreeNode;
+		for (Map.Entry<String, Integer> e : source.entrySet()) {
+			loaded &= e.getValue().equals(st11.get(e.getKey())) && e.getValue().equals(st12.get(e.getKey()));
+		}
+		if (loaded) {
+			System.out.println("Yay 16");
+		}
+
+		// memory after a large delete wave: with and without shrinking
+		ThreeTenHashMap<Integer, Integer> st13 = new ThreeTenHashMap<>(8);
+		ThreeTenHashMap<Integer, Integer> st14 = new ThreeTenHashMap<>(8);
+		st13.setLoadFactors(2, 0.25);
+		for (int i = 0; i < 100000; i++) {
+			st13.put(i, i);
+			st14.put(i, i);
+		}
+		int highWater = st13.getSlots();
+		for (int i = 100; i < 100000; i++) {
+			st13.remove(i);
+			st14.remove(i);
+		}
+		boolean kept = st13.get(99) == 99 && st13.size() == 100 && st14.size() == 100 && st14.getShrinkLoad() == 0;
+		if (kept && highWater == 65536 && st14.getSlots() == highWater && st13.getSlots() <= 512
+				&& st13.getSlots() >= 100 / 2) {
+			st14.trimToSize();
+			if (st14.getSlots() == 128 && st14.get(42) == 42) {
+				System.out.println("Yay 17");
+			}
+		}
+		try {
+			st13.setLoadFactors(1, 0.5);
+		} catch (IllegalArgumentException e) {
+			System.out.println("Yay 18");
+		}
+
+		// containsKey, and containsValue with and without the value index
+		ThreeTenHashMap<Integer, String> st15 = new ThreeTenHashMap<>(4, true);
+		for (int i = 0; i < 10000; i++) {
+			st15.put(i, "v" + (i % 100));
+		}
+		boolean scanned = st15.containsKey(9999) && !st15.containsKey(10000) && !st15.containsKey(null)
+				&& st15.containsValue("v5") && !st15.containsValue("x") && !st15.containsValue(null);
+		st15.setValueIndexEnabled(true);
+		for (int i = 5; i < 10000; i += 100) {
+			st15.remove(i);
+		}
+		st15.put(5, null);
+		for (Map.Entry<Integer, String> e : st15.entrySet()) {
+			if ("v7".equals(e.getValue())) {
+				e.setValue("w");
+			}
+		}
+		boolean indexed = !st15.containsValue("v5") && !st15.containsValue("v7") && st15.containsValue("w")
+				&& st15.containsValue(null) && st15.containsValue("v99");
+		st15.setValueIndexEnabled(false);
+		boolean unindexed = !st15.containsValue("v5") && !st15.containsValue("v7") && st15.containsValue("w")
+				&& st15.containsValue(null);
+		st15.setValueIndexEnabled(true);
+		st15.clear();
+		if (scanned && indexed && unindexed && !st15.containsValue("w") && !st15.containsValue(null)) {
+			System.out.println("Yay 19");
+		}
+
+		// snapshots stay as they were while the map changes
+		ThreeTenHashMap<String, Integer> st16 = new ThreeTenHashMap<>(4);
+		for (int i = 0; i < 1000; i++) {
+			st16.put("k" + i, i);
+		}
+		boolean refused = false;
+		try {
+			st16.snapshot();
+		} catch (IllegalStateException e) {
+			refused = !st16.isSnapshotsEnabled();
+		}
+		st16.setSnapshotsEnabled(true);
+		ThreeTenPersistentHashMap<String, Integer> first = st16.snapshot();
+		st16.put("k1", -1);
+		st16.remove("k2");
+		st16.entrySet().iterator().next().setValue(null);
+		ThreeTenPersistentHashMap<String, Integer> second = st16.snapshot();
+		st16.clear();
+		if (refused && first.size() == 1000 && first.get("k1") == 1 && first.get("k2") == 2 && second.size() == 999
+				&& second.get("k1") == -1 && !second.containsKey("k2") && second.containsValue(null)
+				&& st16.snapshot().isEmpty() && st16.snapshot() == st16.snapshot()) {
+			System.out.println("Yay 20");
+		}
+
+		// removing through the iterator while a bucket is a tree
+		ThreeTenHashMap<String, Integer> st17 = new ThreeTenHashMap<>(64);
+		for (int i = 0; i < 256; i++) {
+			st17.put(colliding[i], i);
+		}
+		int visits = 0;
+		for (Iterator<String> it = st17.keySet().iterator(); it.hasNext(); visits++) {
+			it.next();
+			it.remove();
+		}
+		java.util.Random random = new java.util.Random(7);
+		java.util.HashMap<String, Integer> remaining = new java.util.HashMap<>();
+		for (int i = 0; i < 2000; i++) {
+			String key = i % 3 == 0 ? "key" + i : colliding[i];
+			st17.put(key, i);
+			remaining.put(key, i);
+		}
+		int expectedVisits = st17.size();
+		int fuzzVisits = 0;
+		for (Iterator<Map.Entry<String, Integer>> it = st17.entrySet().iterator(); it.hasNext(); fuzzVisits++) {
+			Map.Entry<String, Integer> e = it.next();
+			if (random.nextBoolean()) {
+				it.remove();
+				remaining.remove(e.getKey());
+			}
+		}
+		if (visits == 256 && fuzzVisits == expectedVisits && st17.size() == remaining.size()
+				&& st17.keySet().equals(remaining.keySet())) {
+			System.out.println("Yay 21");
+		}
+
+		// chain metrics are counters that match a walk of the buckets
+		boolean exact = true;
+		for (int mode = 0; mode < 2; mode++) {
+			ThreeTenHashMap<String, Integer> st18 = new ThreeTenHashMap<>(64, mode == 1);
+			st18.put("before", 0);
+			st18.setMetricsEnabled(true);
+			for (int i = 0; i < 30000 && exact; i++) {
+				String key = i % 4 == 0 ? colliding[random.nextInt(600)] : "k" + random.nextInt(5000);
+				if (random.nextInt(3) == 0) {
+					st18.remove(key);
+				} else {
+					st18.put(key, i);
+				}
+				if (i == 20000) {
+					st18.putAllParallel(source, new ForkJoinPool(4));
+				} else if (i == 25000) {
+					st18.clear();
+				}
+				if (i % 499 == 0) {
+					int longest = 0;
+					int buckets = 0;
+					for (Node<String, Integer>[] table : st18.tables()) {
+						for (Node<String, Integer> head : table) {
+							int length = 0;
+							for (Node<String, Integer> n = head; n != null; n = n.next) {
+								length++;
+							}
+							longest = Math.max(longest, length);
+							buckets += length > 0 ? 1 : 0;
+						}
+					}
+					ThreeTenHashMapMetrics.Snapshot snap = st18.metrics();
+					exact &= snap.getMaxChain() == longest && snap.getSize() == st18.size()
+							&& snap.getSlots() == st18.getSlots()
+							&& (buckets == 0 || snap.getMeanChain() == st18.size() / (double) buckets);
+				}
+			}
+		}
+		if (exact) {
+			System.out.println("Yay 22");
+		}
+
+		// shrinking in incremental mode moves the entries over later operations
+		ThreeTenHashMap<String, Integer> st19 = new ThreeTenHashMap<>(64, true);
+		st19.setLoadFactors(2, 0.25);
+		java.util.HashMap<String, Integer> mirror = new java.util.HashMap<>();
+		for (int i = 0; i < 40000; i++) {
+			String key = i < 2000 ? colliding[i] : "s" + i;
+			st19.put(key, i);
+			mirror.put(key, i);
+		}
+		int peak = st19.getSlots();
+		boolean stepped = false;
+		boolean agrees = true;
+		java.util.List<String> order = new java.util.ArrayList<>(mirror.keySet());
+		java.util.Collections.shuffle(order, random);
+		for (int i = 0; i < order.size(); i++) {
+			if (i % 20 != 0) { // remove 95% of the keys
+				agrees &= Objects.equals(st19.remove(order.get(i)), mirror.remove(order.get(i)));
+			}
+			String key = colliding[random.nextInt(2000)]; // while tree buckets change too
+			if (random.nextInt(3) == 0) {
+				agrees &= Objects.equals(st19.put(key, i), mirror.put(key, i));
+			}
+			agrees &= Objects.equals(st19.get(key), mirror.get(key));
+			stepped |= st19.isRehashing() && st19.getSlots() < peak;
+		}
+		for (Map.Entry<String, Integer> e : mirror.entrySet()) {
+			agrees &= e.getValue().equals(st19.get(e.getKey()));
+		}
+		if (agrees && stepped && st19.size() == mirror.size() && st19.getSlots() <= peak / 4) {
+			System.out.println("Yay 23");
+		}
+
+		// shrinking from a trimmed or odd length places every node by its own hash
+		ThreeTenHashMap<Integer, Integer> st20 = new ThreeTenHashMap<>(10, true);
+		for (int i = 0; i < 1000; i++) {
+			st20.put(i, i);
+		}
+		for (int i = 101; i < 1000; i++) {
+			st20.remove(i);
+		}
+		st20.trimToSize();
+		boolean trimmed = st20.getSlots() == 101;
+		st20.setLoadFactors(2, 0.25);
+		for (int i = 101; i < 2000; i++) {
+			st20.put(i, i);
+		}
+		boolean grew = st20.getSlots() == 1616;
+		for (int i = 0; i < 2000; i++) {
+			if (i % 101 >= 5 || i >= 404) { // keep 4 keys in each of 5 buckets of 101
+				st20.remove(i);
+			}
+		}
+		boolean reachable = st20.size() == 20 && st20.getSlots() == 50;
+		for (int i = 0; i < 404; i++) {
+			reachable &= i % 101 >= 5 || Objects.equals(st20.get(i), i);
+		}
+		ThreeTenHashMap<Integer, Integer> st21 = new ThreeTenHashMap<>(10, true);
+		st21.setLoadFactors(2, 0.25);
+		st21.put(18, 18);
+		st21.put(5, 5);
+		st21.put(7, 7);
+		st21.rehash(12);
+		st21.remove(7); // 12 slots shrink to the original 10
+		st21.put(18, -18);
+		reachable &= st21.getSlots() == 10 && st21.size() == 2 && Objects.equals(st21.get(18), -18)
+				&& Objects.equals(st21.get(5), 5);
+		ThreeTenHashMap<String, Integer> st22 = new ThreeTenHashMap<>(10, true);
+		st22.setLoadFactors(2, 0.25);
+		java.util.HashMap<String, Integer> mirror2 = new java.util.HashMap<>();
+		for (int i = 0; i < 3000; i++) {
+			String key = i % 3 == 0 ? colliding[i] : "t" + i;
+			st22.put(key, i);
+			mirror2.put(key, i);
+			if (i == 1500) {
+				st22.trimToSize(); // 751 slots
+			}
+		}
+		java.util.List<String> order2 = new java.util.ArrayList<>(mirror2.keySet());
+		java.util.Collections.shuffle(order2, random);
+		for (int i = 0; i < order2.size() - 30; i++) {
+			reachable &= Objects.equals(st22.remove(order2.get(i)), mirror2.remove(order2.get(i)));
+		}
+		for (Map.Entry<String, Integer> e : mirror2.entrySet()) {
+			reachable &= e.getValue().equals(st22.get(e.getKey()));
+		}
+		if (trimmed && grew && reachable && st22.size() == 30 && st22.getSlots() < 751) {
+			System.out.println("Yay 24");
+		}
+
+	}
+
+	/**
+	 * Returns a Collection view of the values contained in this map. The collection
+	 * is backed by the map, so changes to the map are reflected in the collection,
+	 * and vice-versa.
+	 *
+	 * @return Collection of values from the hash table.
+	 */
+	public Collection<V> values() {
+
+		if (valueView == null) {
+			valueView = new ValueView();
+		}
+		return valueView;
+	}
+
+	/**
+	 * Copies all of the mappings from the specified map to this map. The table is
+	 * grown once, up front, to hold both maps, so the copy triggers no rehash of
+	 * its own. An incremental resize in progress is finished first.
+	 *
+	 * @param m Map that extends generic types K and V.
+	 */
+	public void putAll(Map<? extends K, ? extends V> m) {
+
+		completeMigration();
+		presize(numElements + m.size());
+		if (metrics != null) {
+			metrics.recordPuts(m.size());
+		}
+
+		for (Map.Entry<? extends K, ? extends V> e : m.entrySet()) {
+			putNoExpand(e.getKey(), e.getValue());
+		}
+		while ((numElements / (double) storage.length) >= growLoad) { // only if m.size() was wrong
+			rehash(storage.length * 2);
+		}
+	}
+
+	/**
+	 * Copies all of the mappings from the specified map to this map using the
+	 * common fork/join pool.
+	 *
+	 * @param m Map that extends generic types K and V.
+	 * @see #putAllParallel(Map, ForkJoinPool)
+	 */
+	public void putAllParallel(Map<? extends K, ? extends V> m) {
+
+		putAllParallel(m, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Copies all of the mappings from the specified map to this map in parallel.
+	 * After growing the table once (as putAll does), the keys are hashed in
+	 * parallel and sorted by target bucket into one range of buckets per task, so
+	 * tasks fill disjoint buckets without locking. Keys landing in tree buckets
+	 * and chains that grow long enough to treeify are handled afterwards on the
+	 * calling thread. Small maps, and all maps while the value index or snapshots
+	 * are enabled, are copied with putAll.
+	 *
+	 * <p>m must not change while this runs, and this map must not be used by
+	 * other threads until it returns.
+	 *
+	 * @param m    Map that extends generic types K and V.
+	 * @param pool Pool that runs the tasks.
+	 */
+	@SuppressWarnings("unchecked")
+	public void putAllParallel(Map<? extends K, ? extends V> m, ForkJoinPool pool) {
+
+		int n = m.size();
+		if (n < PARALLEL_PUT_THRESHOLD || pool.getParallelism() < 2 || tracked) {
+			putAll(m);
+			return;
+		}
+
+		completeMigration();
+		presize(numElements + n);
+		if (metrics != null) {
+			metrics.recordPuts(n);
+		}
+
+		Map.Entry<K, V>[] entries = (Map.Entry<K, V>[]) m.entrySet().toArray(new Map.Entry<?, ?>[0]);
+		n = entries.length;
+		Node<K, V>[] table = storage;
+		int slots = table.length;
+		int parts = Math.min(slots, pool.getParallelism() * 8);
+
+		// phase 1: hash every key and find its partition
+		int[] hashes = new int[n];
+		int[] partOf = new int[n];
+		pool.invoke(new RangeTask(0, n, PARALLEL_GRAIN, (from, to) -> {
+			for (int i = from; i < to; i++) {
+				hashes[i] = hash(entries[i].getKey());
+				partOf[i] = (int) ((long) indexFor(hashes[i], slots) * parts / slots);
+			}
+		}));
+
+		// counting sort of the entries by partition
+		int[] start = new int[parts + 1];
+		for (int i = 0; i < n; i++) {
+			start[partOf[i] + 1]++;
+		}
+		for (int p = 0; p < parts; p++) {
+			start[p + 1] += start[p];
+		}
+		int[] order = new int[n];
+		int[] fill = Arrays.copyOf(start, parts);
+		for (int i = 0; i < n; i++) {
+			order[fill[partOf[i]]++] = i;
+		}
+
+		// phase 2: every partition fills its own buckets
+		int[] added = new int[parts];
+		IntHashSet[] longBuckets = new IntHashSet[parts];
+		IntHashSet[] deferred = new IntHashSet[parts];
+		pool.invoke(new RangeTask(0, parts, 1, (from, to) -> {
+			for (int p = from; p < to; p++) {
+				for (int k = start[p]; k < start[p + 1]; k++) {
+					int i = order[k];
+					int index = indexFor(hashes[i], slots);
+					int length = bulkInsert(table, index, hashes[i], entries[i].getKey(), entries[i].getValue());
+					if (length < 0) {
+						added[p]++;
+						length = -length;
+					}
+					if (length == Integer.MAX_VALUE) {
+						deferred[p] = deferred[p] == null ? new IntHashSet() : deferred[p];
+						deferred[p].add(i);
+					} else if (length >= TREEIFY_THRESHOLD && slots >= MIN_TREEIFY_SLOTS) {
+						longBuckets[p] = longBuckets[p] == null ? new IntHashSet() : longBuckets[p];
+						longBuckets[p].add(index);
+					}
+				}
+			}
+		}));
+
+		for (int p = 0; p < parts; p++) {
+			numElements += added[p];
+			if (longBuckets[p] != null) {
+				longBuckets[p].forEach(index -> normalizeBucket(table, index));
+			}
+			if (deferred[p] != null) {
+				deferred[p].forEach(i -> putNoExpand(entries[i].getKey(), entries[i].getValue()));
+			}
+		}
+		if (metrics != null) {
+			countChains(); // the tasks could not report their chains
+		}
+		while ((numElements / (double) storage.length) >= growLoad) {
+			rehash(storage.length * 2);
+		}
+	}
+
+	/**
+	 * Method to grow the table, by doubling, until it holds the given number of
+	 * keys below the load limit.
+	 *
+	 * @param expected Number of keys the table must hold.
+	 */
+	private void presize(int expected) {
+
+		int slots = storage.length;
+		while (expected / (double) slots >= growLoad && slots <= (1 << 29)) {
+			slots *= 2;
+		}
+		if (slots != storage.length) {
+			rehash(slots);
+		}
+	}
+
+	/**
+	 * Method to put a pair into a plain chain of a table, for putAllParallel.
+	 * Touches nothing but the one bucket, so tasks working on different buckets
+	 * can run at the same time.
+	 *
+	 * @param table The table.
+	 * @param index Index of the bucket.
+	 * @param hash  Hash of the key.
+	 * @param key   The key.
+	 * @param value The value.
+	 * @return The chain length after the put, negated if the key was new, or
+	 *         Integer.MAX_VALUE if the bucket is a tree and nothing was done.
+	 */
+	private static <K, V> int bulkInsert(Node<K, V>[] table, int index, int hash, K key, V value) {
+
+		Node<K, V> current = table[index];
+		if (current instanceof TreeNode) {
+			return Integer.MAX_VALUE;
+		}
+
+		Node<K, V> tail = null;
+		int length = 0;
+		while (current != null) {
+			if (current.hash == hash && current.entry.key.equals(key)) {
+				current.entry.value = value;
+				for (; current != null; current = current.next) {
+					length++;
+				}
+				return length;
+			}
+			tail = current;
+			current = current.next;
+			length++;
+		}
+
+		Node<K, V> node = new Node<K, V>(new TableEntry<K, V>(key, value));
+		node.hash = hash;
+		if (tail == null) {
+			table[index] = node;
+		} else {
+			tail.next = node;
+		}
+		return -(length + 1);
+	}
+
+	/**
+	 * Returns true if this map maps one or more keys to the specified value. More
+	 * formally, returns true if and only if this map contains at least one mapping
+	 * to a value v such that (value==null ? v==null : value.equals(v)). This scans
+	 * every bucket unless the value index is enabled, in which case it is a single
+	 * hash lookup.
+	 * 
+	 * @param value Object to check if the hash table contains.
+	 *
+	 * @return Boolean whether map maps one or more keys to the specified value.
+	 */
+	public boolean containsValue(Object value) {
+
+		if (valueCounts != null) { // O(1) with the value index
+			return value == null ? nullValues > 0 : valueCounts.containsKey(value);
+		}
+
+		for (Node<K, V>[] table : tables()) {
+			for (Node<K, V> head : table) {
+				for (Node<K, V> current = head; current != null; current = current.next) {
+					if (Objects.equals(value, current.entry.value)) {
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Method to turn the value index on or off. While it is on the map keeps the
+	 * number of keys mapped to each value, so containsValue() is a hash lookup
+	 * instead of a scan of every bucket; every put, remove and setValue through
+	 * the entry view pays one extra lookup to keep it current, and putAllParallel
+	 * falls back to putAll. Turning it on counts the existing values once.
+	 * 
+	 * @param enabled Whether to keep the value index.
+	 */
+	public void setValueIndexEnabled(boolean enabled) {
+
+		if (!enabled) {
+			valueCounts = null;
+			nullValues = 0;
+			tracked = shadow != null;
+			return;
+		}
+		if (valueCounts != null) {
+			return;
+		}
+
+		valueCounts = new ThreeTenHashMap<Object, int[]>(Math.max(originalSize, 1), strategy);
+		nullValues = 0;
+		for (Node<K, V>[] table : tables()) {
+			for (Node<K, V> head : table) {
+				for (Node<K, V> current = head; current != null; current = current.next) {
+					indexValue(current.entry.value);
+				}
+			}
+		}
+		tracked = true;
+	}
+
+	/**
+	 * Method to check whether the value index is on.
+	 * 
+	 * @return Boolean whether containsValue() uses the value index.
+	 */
+	public boolean isValueIndexEnabled() {
+		return valueCounts != null;
+	}
+
+	/**
+	 * Method to turn snapshots on or off. Snapshots are off by default. While
+	 * they are on the map keeps a ThreeTenPersistentHashMap copy of its mappings
+	 * that every put and remove replaces by path copying, which adds O(log32 n)
+	 * time and a few small node allocations to each write, so snapshot() costs
+	 * nothing and can be called from any thread. Turning them on copies the
+	 * mappings once, O(n), by walking the map, so it must be called on the
+	 * thread that writes the map and not while another thread changes it.
+	 * 
+	 * @param enabled Whether to keep the snapshot.
+	 */
+	public void setSnapshotsEnabled(boolean enabled) {
+
+		if (!enabled) {
+			shadow = null;
+			tracked = valueCounts != null;
+			return;
 		}
-
-		st5.remove(4, 12);
-		if (st5.size() == 4) {
-			System.out.println("Yay 8");
+		if (shadow == null) {
+			shadow = ThreeTenPersistentHashMap.copyOf(this, strategy);
+			tracked = true;
 		}
+	}
 
-		Set<Integer> keys = st5.keySet();
-		keys.forEach(key -> System.out.println(key));
+	/**
+	 * Method to check whether snapshots are on.
+	 * 
+	 * @return Boolean whether snapshot() returns the maintained copy.
+	 */
+	public boolean isSnapshotsEnabled() {
+		return shadow != null;
+	}
 
-		if (st5.get(11).equals(18)) {
-			System.out.println("Yay 9");
-		}
+	/**
+	 * Method to get an immutable point-in-time copy of the mappings. Later writes
+	 * to this map do not change it, and it can be read by any number of threads
+	 * without locking. This returns the copy maintained while snapshots are
+	 * enabled, see setSnapshotsEnabled(), and may be called from any thread,
+	 * even while another thread writes the map.
+	 * 
+	 * @return The snapshot.
+	 * @throws IllegalStateException If snapshots are not enabled.
+	 */
+	public ThreeTenPersistentHashMap<K, V> snapshot() {
 
-		if (st5.remove(4) == null) {
-			System.out.println("Yay 10");
+		ThreeTenPersistentHashMap<K, V> s = shadow;
+		if (s == null) {
+			throw new IllegalStateException("Snapshots are not enabled.");
 		}
+		return s;
+	}
 
-		System.out.println(st5.toStringDebug());
+	/**
+	 * Method to update the value index and snapshot after a key was mapped to a
+	 * value.
+	 * 
+	 * @param key   The key.
+	 * @param old   The previous value, ignored if added.
+	 * @param value The new value.
+	 * @param added Whether the key is new.
+	 */
+	private void trackPut(K key, V old, V value, boolean added) {
 
-		st5.remove(1);
-		st5.put(1, 17);
-		System.out.println("\n----------\n" + st5.toStringDebug());
+		if (valueCounts != null) {
+			if (!added) {
+				unindexValue(old);
+			}
+			indexValue(value);
+		}
+		if (shadow != null) {
+			shadow = shadow.plus(key, value);
+		}
+	}
+
+	/**
+	 * Method to update the value index and snapshot after a key was removed.
+	 * 
+	 * @param key The key.
+	 * @param old The value it was mapped to.
+	 */
+	private void trackRemove(Object key, V old) {
 
+		if (valueCounts != null) {
+			unindexValue(old);
+		}
+		if (shadow != null) {
+			shadow = shadow.minus(key);
+		}
 	}
 
 	/**
-	 * Returns a Collection view of the values contained in this map. The collection
-	 * is backed by the map, so changes to the map are reflected in the collection,
-	 * and vice-versa.
-	 *
-	 * @return Collection of values from the hash table.
+	 * Method to count one more key mapped to a value in the value index.
+	 * 
+	 * @param value The value, may be null.
 	 */
-	public Collection<V> values() {
+	private void indexValue(V value) {
 
-		throw new UnsupportedOperationException();
+		if (value == null) {
+			nullValues++;
+			return;
+		}
+		int[] count = valueCounts.get(value);
+		if (count == null) {
+			valueCounts.put(value, new int[] { 1 });
+		} else {
+			count[0]++;
+		}
 	}
 
 	/**
-	 * Copies all of the mappings from the specified map to this map.
-	 *
-	 * @param m Map that extends generic types K and V.
+	 * Method to count one less key mapped to a value in the value index, dropping
+	 * the value once no key maps to it.
+	 * 
+	 * @param value The value, may be null.
 	 */
-	public void putAll(Map<? extends K, ? extends V> m) {
-		System.out.println("Error in put all");
-		throw new UnsupportedOperationException();
+	private void unindexValue(V value) {
+
+		if (value == null) {
+			nullValues--;
+			return;
+		}
+		int[] count = valueCounts.get(value);
+		if (--count[0] == 0) {
+			valueCounts.remove(value);
+		}
 	}
 
 	/**
-	 * Returns true if this map maps one or more keys to the specified value. More
-	 * formally, returns true if and only if this map contains at least one mapping
-	 * to a value v such that (value==null ? v==null : value.equals(v)). This
-	 * operation will probably require time linear in the map size for most
-	 * implementations of the Map interface.
+	 * Method to get the tables holding entries: storage, and oldStorage while an
+	 * incremental resize is in progress.
 	 * 
-	 * @param value Object to check if the hash table contains.
-	 *
-	 * @return Boolean whether map maps one or more keys to the specified value.
+	 * @return Array of one or two tables.
 	 */
-	public boolean containsValue(Object value) {
-		System.out.println("Error in containsValue()");
-		throw new UnsupportedOperationException();
+	@SuppressWarnings("unchecked")
+	private Node<K, V>[][] tables() {
+		Node<?, ?>[][] tables = oldStorage == null ? new Node<?, ?>[][] { storage }
+				: new Node<?, ?>[][] { storage, oldStorage };
+		return (Node<K, V>[][]) tables;
 	}
 
 	/**
@@ -396,8 +2699,11 @@ class ThreeTenHashMap<K, V> implements Map<K, V> {
 	 * @return Set of the mappings contained in the map.
 	 */
 	public Set<Map.Entry<K, V>> entrySet() {
-		System.out.println("Error in entryset()");
-		throw new UnsupportedOperationException();
+
+		if (entryView == null) {
+			entryView = new EntryView();
+		}
+		return entryView;
 	}
 
 	/**
@@ -432,8 +2738,16 @@ class ThreeTenHashMap<K, V> implements Map<K, V> {
 	 * @return Boolean whether the map contains the key.
 	 */
 	public boolean containsKey(Object key) {
-		System.out.println("Error in containsKey()");
-		throw new UnsupportedOperationException();
+
+		if (key == null) {
+			return false;
+		}
+
+		boolean found = findNode(key) != null;
+
+		migrateStep();
+
+		return found;
 	}
 
 	/**
@@ -457,6 +2771,12 @@ class ThreeTenHashMap<K, V> implements Map<K, V> {
 		 */
 		public Node<K, V> next;
 
+		/**
+		 * Cached hash code of the entry's key, so resizing and lookups never call
+		 * hashCode() on stored keys again.
+		 */
+		public int hash;
+
 		/**
 		 * Constructor to create Node Objects given an entry.
 		 * 
@@ -488,6 +2808,227 @@ class ThreeTenHashMap<K, V> implements Map<K, V> {
 		}
 	}
 
+	/**
+	 * Node of a tree bucket. Tree nodes keep their chain links (with a back link
+	 * for O(1) unlinking) so chain walks work the same on every bucket, and are
+	 * also linked into an AVL tree ordered by hash. The root is always the first
+	 * node of the bucket.
+	 * 
+	 * @param <K> generic type.
+	 * @param <V> generic type.
+	 */
+	static final class TreeNode<K, V> extends Node<K, V> {
+
+		/**
+		 * Previous node in the chain, null for the root.
+		 */
+		TreeNode<K, V> prev;
+
+		/**
+		 * Left child in the tree.
+		 */
+		TreeNode<K, V> left;
+
+		/**
+		 * Right child in the tree.
+		 */
+		TreeNode<K, V> right;
+
+		/**
+		 * Height of the subtree rooted here.
+		 */
+		int height = 1;
+
+		/**
+		 * Number of nodes in the bucket, kept on the root only.
+		 */
+		int size;
+
+		/**
+		 * Insertion number, the last tie breaker of the tree order.
+		 */
+		final long seq;
+
+		/**
+		 * Constructor to create TreeNode Objects.
+		 * 
+		 * @param entry TableEntry Object.
+		 * @param hash  Cached hash of the key.
+		 * @param seq   Insertion number.
+		 */
+		TreeNode(TableEntry<K, V> entry, int hash, long seq) {
+			super(entry);
+			this.hash = hash;
+			this.seq = seq;
+		}
+	}
+
+	/**
+	 * Snapshot of how the keys of a map spread over its buckets, used to pick a
+	 * hash strategy for a key type. Probe counts are the average number of nodes
+	 * looked at to find a key that is in the map: observed in this table, and
+	 * expected if the hash spread the keys uniformly at random.
+	 */
+	public static final class Diagnostics {
+
+		/**
+		 * Strategy the map hashes with.
+		 */
+		private final HashStrategy strategy;
+
+		/**
+		 * Number of buckets.
+		 */
+		private final int slots;
+
+		/**
+		 * Number of keys.
+		 */
+		private final int size;
+
+		/**
+		 * Number of buckets per bucket length.
+		 */
+		private final int[] histogram;
+
+		/**
+		 * Number of buckets stored as trees.
+		 */
+		private final int treeBuckets;
+
+		/**
+		 * Average probes per successful lookup in this table.
+		 */
+		private final double observedProbes;
+
+		/**
+		 * Average probes per successful lookup under uniform hashing.
+		 */
+		private final double expectedProbes;
+
+		/**
+		 * Constructor to create Diagnostics Objects.
+		 * 
+		 * @param strategy       Strategy the map hashes with.
+		 * @param slots          Number of buckets.
+		 * @param size           Number of keys.
+		 * @param histogram      Number of buckets per bucket length.
+		 * @param treeBuckets    Number of buckets stored as trees.
+		 * @param observedProbes Average probes per lookup in this table.
+		 * @param expectedProbes Average probes per lookup under uniform hashing.
+		 */
+		Diagnostics(HashStrategy strategy, int slots, int size, int[] histogram, int treeBuckets,
+				double observedProbes, double expectedProbes) {
+			this.strategy = strategy;
+			this.slots = slots;
+			this.size = size;
+			this.histogram = histogram;
+			this.treeBuckets = treeBuckets;
+			this.observedProbes = observedProbes;
+			this.expectedProbes = expectedProbes;
+		}
+
+		/**
+		 * Method to get the strategy the map hashes with.
+		 * 
+		 * @return The hash strategy.
+		 */
+		public HashStrategy getStrategy() {
+			return strategy;
+		}
+
+		/**
+		 * Method to get the number of buckets.
+		 * 
+		 * @return Number of slots in the table.
+		 */
+		public int getSlots() {
+			return slots;
+		}
+
+		/**
+		 * Method to get the number of keys.
+		 * 
+		 * @return Number of keys in the map.
+		 */
+		public int getSize() {
+			return size;
+		}
+
+		/**
+		 * Method to get the bucket length distribution.
+		 * 
+		 * @return New array where element i is the number of buckets holding i keys.
+		 */
+		public int[] getBucketLengths() {
+			return histogram.clone();
+		}
+
+		/**
+		 * Method to get the length of the longest bucket.
+		 * 
+		 * @return The longest bucket length.
+		 */
+		public int getMaxChain() {
+			return histogram.length - 1;
+		}
+
+		/**
+		 * Method to get the number of empty buckets.
+		 * 
+		 * @return Number of buckets holding no key.
+		 */
+		public int getEmptyBuckets() {
+			return histogram[0];
+		}
+
+		/**
+		 * Method to get the number of buckets stored as trees.
+		 * 
+		 * @return Number of tree buckets.
+		 */
+		public int getTreeBuckets() {
+			return treeBuckets;
+		}
+
+		/**
+		 * Method to get the average probes per successful lookup in this table.
+		 * 
+		 * @return Observed probes per lookup.
+		 */
+		public double getObservedProbes() {
+			return observedProbes;
+		}
+
+		/**
+		 * Method to get the average probes per successful lookup if keys were spread
+		 * uniformly at random: 1 + (n - 1) / 2m for n keys in m buckets.
+		 * 
+		 * @return Expected probes per lookup.
+		 */
+		public double getExpectedProbes() {
+			return expectedProbes;
+		}
+
+		/**
+		 * toString method.
+		 * 
+		 * @return String literal summarizing the snapshot.
+		 */
+		public String toString() {
+
+			StringBuilder s = new StringBuilder();
+			s.append(String.format("%s: %d keys in %d slots, max chain %d, %d trees, probes %.3f (expected %.3f)%n",
+					strategy, size, slots, getMaxChain(), treeBuckets, observedProbes, expectedProbes));
+			for (int i = 0; i < histogram.length; i++) {
+				if (histogram[i] != 0) {
+					s.append("  length ").append(i).append(": ").append(histogram[i]).append(" buckets\n");
+				}
+			}
+			return s.toString().trim();
+		}
+	}
+
 	/**
 	 * Class to create TableEntry Objects given a key and a value pair.
 	 * 
@@ -496,7 +3037,7 @@ class ThreeTenHashMap<K, V> implements Map<K, V> {
 	 * @param <K> generic type.
 	 * @param <V> generic type.
 	 */
-	public static class TableEntry<K, V> {
+	public static class TableEntry<K, V> implements Map.Entry<K, V> {
 
 		/**
 		 * generic type representing a key.
@@ -531,6 +3072,52 @@ class ThreeTenHashMap<K, V> implements Map<K, V> {
 			
 		}
 
+		/**
+		 * {@inheritDoc}
+		 */
+		public K getKey() {
+			return key;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public V getValue() {
+			return value;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public V setValue(V value) {
+			V old = this.value;
+			this.value = value;
+			return old;
+		}
+
+		/**
+		 * Entries are equal if both their keys and their values are equal.
+		 * 
+		 * @param o Object to be compared to.
+		 * @return Boolean whether o is an equal entry.
+		 */
+		public boolean equals(Object o) {
+			if (!(o instanceof Map.Entry)) {
+				return false;
+			}
+			Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+			return Objects.equals(key, e.getKey()) && Objects.equals(value, e.getValue());
+		}
+
+		/**
+		 * The hash code of an entry as defined by Map.Entry.
+		 * 
+		 * @return Integer representing the hashCode of the entry.
+		 */
+		public int hashCode() {
+			return Objects.hashCode(key) ^ Objects.hashCode(value);
+		}
+
 		/**
 		 * toString method.
 		 * 
@@ -546,9 +3133,12 @@ class ThreeTenHashMap<K, V> implements Map<K, V> {
 	 * 
 	 * @return TableEntry Array.
 	 */
-	public TableEntry[] toArray() {
+	@SuppressWarnings("unchecked")
+	public TableEntry<K, V>[] toArray() {
 
-		TableEntry[] collection = new TableEntry[this.numElements];
+		completeMigration();
+
+		TableEntry<K, V>[] collection = (TableEntry<K, V>[]) new TableEntry<?, ?>[this.numElements];
 		int index = 0;
 		for (int i = 0; i < storage.length; i++) {
 			if (storage[i] != null) {
@@ -570,6 +3160,8 @@ class ThreeTenHashMap<K, V> implements Map<K, V> {
 	 */
 	public String toString() {
 
+		completeMigration();
+
 		StringBuilder s = new StringBuilder();
 		for (int i = 0; i < storage.length; i++) {
 			Node<K, V> curr = storage[i];
@@ -593,6 +3185,8 @@ class ThreeTenHashMap<K, V> implements Map<K, V> {
 	 */
 	public String toStringDebug() {
 
+		completeMigration();
+
 		StringBuilder s = new StringBuilder();
 		for (int i = 0; i < storage.length; i++) {
 			Node<K, V> curr = storage[i];
@@ -608,29 +3202,81 @@ class ThreeTenHashMap<K, V> implements Map<K, V> {
 	}
 
 	/**
-	 * Method to rehash the current table.
+	 * Method to rehash the current table. Existing nodes are moved into the new
+	 * table using their cached hashes; no entries are allocated and no hashCode()
+	 * is called. Doubling splits each chain in place, any other size appends
+	 * nodes in order using a table of chain tails.
 	 * 
-	 * @param size Integer representing the number of elements in the table.
+	 * @param size Integer representing the number of slots in the new table.
 	 * @return Boolean whether rehash was success.
 	 */
-	@SuppressWarnings("unchecked")
 	public boolean rehash(int size) {
 
 		if (size < 1)
 			return false;
 
+		completeMigration();
+
+		if (metrics == null) {
+			relink(size);
+		} else {
+			int oldSlots = storage.length;
+			long start = System.nanoTime();
+			relink(size);
+			metrics.recordRehash(System.nanoTime() - start, oldSlots, size, numElements, false);
+			countChains();
+		}
+		return true;
+	}
+
+	/**
+	 * Method to move every node into a new table of the given size.
+	 * 
+	 * @param size Number of slots in the new table.
+	 */
+	@SuppressWarnings("unchecked")
+	private void relink(int size) {
+
 		Node<K, V>[] oldTable = storage;
 		storage = (Node<K, V>[]) new Node[size];
-		numElements = 0;
+
+		if (size == oldTable.length * 2) {
+
+			for (int i = 0; i < oldTable.length; i++) {
+				if (oldTable[i] != null) {
+					splitBucket(oldTable[i], storage, i);
+				}
+			}
+			return;
+		}
+
+		Node<K, V>[] tails = (Node<K, V>[]) new Node<?, ?>[size];
+		boolean hadTrees = false;
 
 		for (Node<K, V> node : oldTable) {
+			hadTrees |= node instanceof TreeNode;
 			while (node != null) {
-				putNoExpand(node.entry.key, node.entry.value);
-				node = node.next;
+				Node<K, V> next = node.next;
+				node.next = null;
+
+				int index = indexFor(node.hash, size);
+				if (tails[index] == null) {
+					storage[index] = node;
+				} else {
+					tails[index].next = node;
+				}
+				tails[index] = node;
+				node = next;
 			}
 		}
 
-		return true;
+		if (hadTrees || size >= MIN_TREEIFY_SLOTS) { // chains may now be too long or too short
+			for (int i = 0; i < size; i++) {
+				if (storage[i] != null) {
+					normalizeBucket(storage, i);
+				}
+			}
+		}
 	}
 
 	/**
@@ -646,9 +3292,26 @@ class ThreeTenHashMap<K, V> implements Map<K, V> {
 	 */
 	public V put(K key, V value) {
 
+		if (metrics != null) {
+			metrics.recordPut();
+		}
+
+		if (!incremental) {
+			V ret = putNoExpand(key, value);
+			while ((numElements / (double) storage.length) >= growLoad) {
+				rehash(storage.length * 2);
+			}
+			return ret;
+		}
+
+		if (oldStorage != null) {
+			migrateBucket(indexFor(hash(key), oldStorage.length)); // the key now only lives in storage
+		}
 		V ret = putNoExpand(key, value);
-		while ((numElements / (double) storage.length) >= 2) {
-			rehash(storage.length * 2);
+		migrateStep();
+		if ((numElements / (double) storage.length) >= growLoad) {
+			startMigration(storage.length * 2);
+			migrateStep();
 		}
 		return ret;
 	}
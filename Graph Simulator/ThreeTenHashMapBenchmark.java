@@ -0,0 +1,637 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Command-line benchmarks for ThreeTenHashMap. Each scenario prints wall time
+ * and the bytes allocated by the benchmark thread. Large sizes need a big heap,
+ * for example: java -Xmx6g ThreeTenHashMapBenchmark rehash 10000000
+ *
+ * @author Jacob Strokus
+ */
+class ThreeTenHashMapBenchmark {
+
+	/**
+	 * Number of untimed rounds before the measured round.
+	 */
+	private static final int WARMUP_ROUNDS = 2;
+
+	/**
+	 * Graph component used as a key, so hashCode() is the real
+	 * text.hashCode()+id computation.
+	 */
+	private static final class Key extends ThreeTenGraphComponent {
+
+		/**
+		 * Constructor to create Key Objects.
+		 *
+		 * @param id Integer representing the component id.
+		 */
+		Key(int id) {
+			super(id);
+			setText("vertex" + (id & 1023));
+		}
+	}
+
+	/**
+	 * Method to get the number of bytes allocated by this thread so far.
+	 *
+	 * @return allocated bytes, or -1 if the JVM cannot report them.
+	 */
+	static long allocatedBytes() {
+
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+
+	/**
+	 * Method to print one measurement.
+	 *
+	 * @param label Name of the measurement.
+	 * @param nanos Elapsed time in nanoseconds.
+	 * @param bytes Bytes allocated.
+	 */
+	static void report(String label, long nanos, long bytes) {
+
+		System.out.printf("%-28s %10.2f ms %14d bytes%n", label, nanos / 1e6, bytes);
+	}
+
+	/**
+	 * Method to build a map holding n component keys without resizing.
+	 *
+	 * @param n Number of entries.
+	 * @return The filled map.
+	 */
+	private static ThreeTenHashMap<Key, Integer> filled(int n) {
+
+		ThreeTenHashMap<Key, Integer> map = new ThreeTenHashMap<>(n);
+		for (int i = 0; i < n; i++) {
+			map.put(new Key(i), i);
+		}
+		return map;
+	}
+
+	/**
+	 * Method to compare doubling a table with rehash() (nodes are relinked using
+	 * their cached hashes) against rebuilding it with put() (one new entry and
+	 * one hashCode() call per element, which is what rehash used to do).
+	 *
+	 * @param n Number of entries.
+	 */
+	@SuppressWarnings("unchecked")
+	static void rehash(int n) {
+
+		System.out.println("rehash of " + n + " entries, " + n + " -> " + (2 * n) + " slots");
+
+		for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+
+			ThreeTenHashMap<Key, Integer> map = filled(n);
+			ThreeTenHashMap.TableEntry<Key, Integer>[] entries = map.toArray();
+
+			long bytes = allocatedBytes();
+			long start = System.nanoTime();
+			map.rehash(2 * n);
+			long relinkNanos = System.nanoTime() - start;
+			long relinkBytes = allocatedBytes() - bytes;
+
+			bytes = allocatedBytes();
+			start = System.nanoTime();
+			ThreeTenHashMap<Key, Integer> copy = new ThreeTenHashMap<>(2 * n);
+			for (ThreeTenHashMap.TableEntry<Key, Integer> e : entries) {
+				copy.put(e.key, e.value);
+			}
+			long copyNanos = System.nanoTime() - start;
+			long copyBytes = allocatedBytes() - bytes;
+
+			if (round == WARMUP_ROUNDS) {
+				report("relink (rehash)", relinkNanos, relinkBytes);
+				report("re-put into new table", copyNanos, copyBytes);
+				System.out.printf("saved %.1f%% time, %d bytes%n", 100.0 * (copyNanos - relinkNanos) / copyNanos,
+						copyBytes - relinkBytes);
+			}
+			if (map.size() != copy.size()) {
+				throw new IllegalStateException("sizes differ");
+			}
+		}
+	}
+
+	/**
+	 * Method to measure get/put throughput of ThreeTenConcurrentHashMap from 1 up
+	 * to maxThreads threads, next to the single-threaded ThreeTenHashMap. Every
+	 * thread runs the same mix (7 of 8 gets, 1 of 8 puts) over the n preloaded keys.
+	 *
+	 * @param n          Number of entries.
+	 * @param maxThreads Largest number of threads to try.
+	 * @throws InterruptedException if interrupted while waiting for the workers.
+	 */
+	static void concurrent(int n, int maxThreads) throws InterruptedException {
+
+		int opsPerThread = 2_000_000;
+		Integer[] keys = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			keys[i] = i;
+		}
+
+		ThreeTenHashMap<Integer, Integer> single = new ThreeTenHashMap<>(n);
+		ThreeTenConcurrentHashMap<Integer, Integer> shared = new ThreeTenConcurrentHashMap<>(n, 64);
+		for (Integer k : keys) {
+			single.put(k, k);
+			shared.put(k, k);
+		}
+
+		System.out.println("7/8 get, 1/8 put over " + n + " keys, " + opsPerThread + " ops per thread");
+		for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+			long start = System.nanoTime();
+			mix(single, keys, opsPerThread, 1);
+			long nanos = System.nanoTime() - start;
+			if (round == WARMUP_ROUNDS) {
+				System.out.printf("%-28s %12.0f ops/s%n", "ThreeTenHashMap, 1 thread", opsPerThread / (nanos / 1e9));
+			}
+		}
+
+		for (int threads = 1; threads <= maxThreads; threads *= 2) {
+			double best = 0;
+			for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+				Thread[] workers = new Thread[threads];
+				for (int t = 0; t < threads; t++) {
+					final int seed = t + 1;
+					workers[t] = new Thread(() -> mix(shared, keys, opsPerThread, seed));
+				}
+				long start = System.nanoTime();
+				for (Thread w : workers) {
+					w.start();
+				}
+				for (Thread w : workers) {
+					w.join();
+				}
+				long nanos = System.nanoTime() - start;
+				best = Math.max(best, (double) threads * opsPerThread / (nanos / 1e9));
+			}
+			System.out.printf("%-28s %12.0f ops/s%n", "concurrent, " + threads + " threads", best);
+		}
+	}
+
+	/**
+	 * Method to compare the hash strategies on component keys: prints each map's
+	 * diagnostics and the time to look every key up once.
+	 *
+	 * @param n Number of entries.
+	 */
+	static void hashing(int n) {
+
+		Key[] keys = new Key[n];
+		for (int i = 0; i < n; i++) {
+			keys[i] = new Key(i);
+		}
+
+		HashStrategy[] strategies = { HashStrategy.IDENTITY, HashStrategy.MURMUR, HashStrategy.seeded() };
+		for (HashStrategy strategy : strategies) {
+
+			ThreeTenHashMap<Key, Integer> map = new ThreeTenHashMap<>(n, strategy);
+			for (int i = 0; i < n; i++) {
+				map.put(keys[i], i);
+			}
+			System.out.println(map.diagnostics());
+
+			long nanos = 0;
+			for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+				long start = System.nanoTime();
+				for (Key k : keys) {
+					if (map.get(k) == null) {
+						throw new IllegalStateException("missing key");
+					}
+				}
+				nanos = System.nanoTime() - start;
+			}
+			report("get all, " + strategy, nanos, 0);
+		}
+	}
+
+	/**
+	 * Method to compare loading n component keys into an empty map one put() at a
+	 * time (doubling the table as it fills) against putAll() and
+	 * putAllParallel().
+	 *
+	 * @param n Number of entries.
+	 */
+	static void bulk(int n) {
+
+		java.util.HashMap<Key, Integer> source = new java.util.HashMap<>(n * 2);
+		for (int i = 0; i < n; i++) {
+			source.put(new Key(i), i);
+		}
+
+		System.out.println("bulk load of " + n + " entries into an empty map");
+		for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+
+			long bytes = allocatedBytes();
+			long start = System.nanoTime();
+			ThreeTenHashMap<Key, Integer> one = new ThreeTenHashMap<>(16);
+			for (Map.Entry<Key, Integer> e : source.entrySet()) {
+				one.put(e.getKey(), e.getValue());
+			}
+			long putNanos = System.nanoTime() - start;
+			long putBytes = allocatedBytes() - bytes;
+
+			bytes = allocatedBytes();
+			start = System.nanoTime();
+			ThreeTenHashMap<Key, Integer> all = new ThreeTenHashMap<>(16);
+			all.putAll(source);
+			long allNanos = System.nanoTime() - start;
+			long allBytes = allocatedBytes() - bytes;
+
+			start = System.nanoTime();
+			ThreeTenHashMap<Key, Integer> parallel = new ThreeTenHashMap<>(16);
+			parallel.putAllParallel(source);
+			long parallelNanos = System.nanoTime() - start;
+
+			if (round == WARMUP_ROUNDS) {
+				report("put() loop", putNanos, putBytes);
+				report("putAll", allNanos, allBytes);
+				report("putAllParallel", parallelNanos, -1); // allocations happen on pool threads
+			}
+			if (one.size() != n || all.size() != n || parallel.size() != n) {
+				throw new IllegalStateException("sizes differ");
+			}
+		}
+	}
+
+	/**
+	 * Method to show the memory a map keeps after a delete wave: n keys are put,
+	 * all but 1% are removed, and the bytes the map keeps in its tables, nodes
+	 * and entries are printed with shrinking turned on, with the default of no
+	 * shrinking, and after trimToSize(). The bytes are counted from the table
+	 * rather than read from the heap, which moves with collections.
+	 *
+	 * @param n Number of entries.
+	 */
+	static void churn(int n) {
+
+		System.out.println("put " + n + " keys, remove 99% of them");
+		String[] labels = { "shrink below 0.25", "no shrink (default)", "no shrink + trimToSize" };
+		for (int mode = 0; mode < labels.length; mode++) {
+
+			ThreeTenHashMap<Key, Integer> map = new ThreeTenHashMap<>(16);
+			if (mode == 0) {
+				map.setLoadFactors(2, 0.25);
+			}
+			Key[] keys = new Key[n];
+			for (int i = 0; i < n; i++) {
+				keys[i] = new Key(i);
+				map.put(keys[i], i);
+			}
+			for (int i = n / 100; i < n; i++) {
+				map.remove(keys[i]);
+			}
+			if (mode == 2) {
+				map.trimToSize();
+			}
+			System.out.printf("%-28s %10d slots %14d bytes in table%n", labels[mode], map.getSlots(), map.tableBytes());
+			if (map.size() != n / 100) {
+				throw new IllegalStateException("wrong size");
+			}
+		}
+	}
+
+	/**
+	 * Method to compare get() latency of ThreeTenCuckooHashMap and ThreeTenHashMap
+	 * at rising load factors. For each load both maps get the same number of
+	 * slots and the same keys; every lookup of a present key, then of an absent
+	 * key, is timed on its own and the percentiles are printed. Each timing
+	 * includes one System.nanoTime() call, shown in the "timer" row.
+	 *
+	 * @param n Number of slots.
+	 */
+	static void cuckoo(int n) {
+
+		double[] loads = { 0.5, 0.8, 0.9, 0.95 };
+		int slots = Integer.highestOneBit(Math.max(n, 8) - 1) << 1;
+		int lookups = Math.min(slots, 1 << 20);
+		long[] nanos = new long[lookups];
+
+		java.util.Random random = new java.util.Random(17);
+		int[] order = new int[lookups];
+
+		System.out.println("get latency in ns, " + slots + " slots");
+		System.out.printf("%-28s %8s %8s %8s %8s %8s%n", "", "p50", "p90", "p99", "p99.9", "max");
+
+		for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+			for (int l = 0; l < lookups; l++) {
+				long start = System.nanoTime();
+				nanos[l] = System.nanoTime() - start;
+			}
+		}
+		percentiles("timer", nanos);
+
+		for (double load : loads) {
+
+			int size = (int) (slots * load);
+			Integer[] present = new Integer[size];
+			Integer[] absent = new Integer[size];
+			for (int i = 0; i < size; i++) {
+				present[i] = random.nextInt();
+				absent[i] = present[i] ^ 0x40000000;
+			}
+
+			ThreeTenCuckooHashMap<Integer, Integer> cuckoo = new ThreeTenCuckooHashMap<>(slots, 0.96);
+			ThreeTenHashMap<Integer, Integer> chained = new ThreeTenHashMap<>(slots);
+			for (int i = 0; i < size; i++) {
+				cuckoo.put(present[i], i);
+				chained.put(present[i], i);
+			}
+			for (int l = 0; l < lookups; l++) {
+				order[l] = random.nextInt(size);
+			}
+			List<Map<Integer, Integer>> maps = Arrays.asList(cuckoo, chained);
+			String[] names = { "cuckoo", "chained" };
+
+			for (int m = 0; m < maps.size(); m++) {
+				Map<Integer, Integer> map = maps.get(m);
+				String label = String.format("%s, load %.2f", names[m], size / (double) slots);
+				for (Integer[] keys : new Integer[][] { present, absent }) {
+					long sink = 0;
+					for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+						for (int l = 0; l < lookups; l++) {
+							Integer key = keys[order[l]];
+							long start = System.nanoTime();
+							Integer v = map.get(key);
+							nanos[l] = System.nanoTime() - start;
+							sink += v == null ? 1 : v;
+						}
+					}
+					percentiles(keys == present ? label + " hit" : label + " miss", nanos);
+					if (sink == 42) {
+						System.out.print("");
+					}
+				}
+			}
+			System.out.println("cuckoo stash " + cuckoo.getStashSize() + ", chained max chain "
+					+ chained.diagnostics().getMaxChain());
+		}
+	}
+
+	/**
+	 * Method to measure get, put and remove+put throughput and allocation of
+	 * ThreeTenHashMap and java.util.HashMap for each key type, with all lookups
+	 * hitting and with half of them missing (put always overwrites a present
+	 * key). A quick version of
+	 * threeten.jmh.ThreeTenHashMapJmh for machines without JMH.
+	 *
+	 * @param n Number of entries.
+	 */
+	static void ops(int n) {
+
+		int lookups = 1 << 20;
+		String[] keyTypes = { "Integer", "String", "Component" };
+		double[] hitRatios = { 1.0, 0.5 };
+
+		System.out.printf("%-44s %12s %12s %12s %8s%n", n + " entries", "get ops/s", "put ops/s", "rm+put ops/s",
+				"B/op");
+		for (String keyType : keyTypes) {
+
+			Object[] keys = new Object[n];
+			Object[] absent = new Object[n];
+			for (int i = 0; i < n; i++) {
+				keys[i] = keyType.equals("Integer") ? (Object) i
+						: keyType.equals("String") ? "vertex" + i : new Key(i);
+				absent[i] = keyType.equals("Integer") ? (Object) (n + i)
+						: keyType.equals("String") ? "vertex" + (n + i) : new Key(n + i);
+			}
+
+			for (double hitRatio : hitRatios) {
+				java.util.Random random = new java.util.Random(42);
+				Object[] sequence = new Object[lookups];
+				Object[] hits = new Object[lookups];
+				for (int l = 0; l < lookups; l++) {
+					sequence[l] = (random.nextDouble() < hitRatio ? keys : absent)[random.nextInt(n)];
+					hits[l] = keys[random.nextInt(n)];
+				}
+
+				List<Map<Object, Object>> maps = Arrays.asList(new ThreeTenHashMap<>(16), new java.util.HashMap<>());
+				for (Map<Object, Object> map : maps) {
+					for (Object k : keys) {
+						map.put(k, k);
+					}
+					long[] nanos = new long[3];
+					long bytes = 0;
+					long sink = 0;
+					for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+						bytes = allocatedBytes();
+						long start = System.nanoTime();
+						for (Object k : sequence) {
+							sink += map.get(k) == null ? 0 : 1;
+						}
+						nanos[0] = System.nanoTime() - start;
+						start = System.nanoTime();
+						for (Object k : hits) {
+							map.put(k, k);
+						}
+						nanos[1] = System.nanoTime() - start;
+						start = System.nanoTime();
+						for (Object k : sequence) {
+							Object v = map.remove(k);
+							if (v != null) {
+								map.put(k, v);
+							}
+						}
+						nanos[2] = System.nanoTime() - start;
+						bytes = allocatedBytes() - bytes;
+					}
+					String label = String.format("%s, %s keys, %.0f%% hits", map.getClass().getSimpleName(), keyType,
+							100 * hitRatio);
+					System.out.printf("%-44s %12.0f %12.0f %12.0f %8.1f%n", label, lookups * 1e9 / nanos[0],
+							lookups * 1e9 / nanos[1], lookups * 1e9 / nanos[2], bytes / (3.0 * lookups));
+					if (sink == 42) {
+						System.out.print("");
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Method to print the percentiles of a set of timings.
+	 *
+	 * @param label Name of the row.
+	 * @param nanos Timings in nanoseconds, sorted in place.
+	 */
+	private static void percentiles(String label, long[] nanos) {
+
+		Arrays.sort(nanos);
+		int last = nanos.length - 1;
+		System.out.printf("%-28s %8d %8d %8d %8d %8d%n", label, nanos[(int) (last * 0.5)], nanos[(int) (last * 0.9)],
+				nanos[(int) (last * 0.99)], nanos[(int) (last * 0.999)], nanos[last]);
+	}
+
+	/**
+	 * Method to run the get/put mix on a map.
+	 *
+	 * @param map  The map.
+	 * @param keys The keys to use.
+	 * @param ops  Number of operations.
+	 * @param seed Seed of the key sequence.
+	 */
+	private static void mix(Map<Integer, Integer> map, Integer[] keys, int ops, int seed) {
+
+		int x = seed * 0x9E3779B9;
+		long sink = 0;
+		for (int i = 0; i < ops; i++) {
+			x ^= x << 13;
+			x ^= x >>> 17;
+			x ^= x << 5;
+			Integer key = keys[(x & 0x7fffffff) % keys.length];
+			if ((x & 7) != 0) {
+				Integer v = map.get(key);
+				sink += v == null ? 0 : v;
+			} else {
+				map.put(key, i);
+			}
+		}
+		if (sink == 42) {
+			System.out.print("");
+		}
+	}
+
+	/**
+	 * Method to compare reloading a graph of n edges over n / 4 vertices from the
+	 * binary ThreeTenGraphFile format against the text edge list, parsed by
+	 * ThreeTenEdgeListLoader and by a plain BufferedReader and String.split loop.
+	 * The edge list carries no labels or colors, so the binary file holds more.
+	 *
+	 * @param n Number of edges.
+	 * @throws IOException if the temporary files cannot be written.
+	 */
+	static void graphio(int n) throws IOException {
+
+		int vertices = Math.max(n / 4, 1);
+		ThreeTenGraph<ThreeTenNode, ThreeTenEdge> graph = new ThreeTenGraph<>(vertices, n);
+		List<ThreeTenNode> nodes = new ArrayList<>(vertices);
+		for (int i = 0; i < vertices; i++) {
+			ThreeTenNode node = new ThreeTenNode(i);
+			node.setText("v" + (i % 100));
+			graph.addVertex(node);
+			nodes.add(node);
+		}
+		java.util.Random random = new java.util.Random(25);
+		for (int i = 0; i < n; i++) {
+			graph.addEdge(new ThreeTenEdge(i), nodes.get(random.nextInt(vertices)), nodes.get(random.nextInt(vertices)));
+		}
+
+		Path binary = Files.createTempFile("graph", ".310g");
+		Path text = Files.createTempFile("graph", ".txt");
+		ThreeTenGraphFile.write(graph, binary);
+		try (Writer out = Files.newBufferedWriter(text, StandardCharsets.US_ASCII)) {
+			for (ThreeTenEdge edge : graph.getEdges()) {
+				out.write(graph.getEndpoints(edge).getFirst().getId() + " "
+						+ graph.getEndpoints(edge).getSecond().getId() + "\n");
+			}
+		}
+		System.out.println(graph.getVertexCount() + " vertices, " + graph.getEdgeCount() + " edges; binary "
+				+ Files.size(binary) + " bytes, text " + Files.size(text) + " bytes");
+
+		for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+
+			long bytes = allocatedBytes();
+			long start = System.nanoTime();
+			int loaded = ThreeTenGraphFile.read(binary).getEdgeCount();
+			long binaryNanos = System.nanoTime() - start;
+			long binaryBytes = allocatedBytes() - bytes;
+
+			bytes = allocatedBytes();
+			start = System.nanoTime();
+			loaded += ThreeTenEdgeListLoader.load(text).getEdgeCount();
+			long loaderNanos = System.nanoTime() - start;
+			long loaderBytes = allocatedBytes() - bytes;
+
+			bytes = allocatedBytes();
+			start = System.nanoTime();
+			ThreeTenGraph<ThreeTenNode, ThreeTenEdge> split = new ThreeTenGraph<>();
+			IntObjectMap<ThreeTenNode> ids = new IntObjectMap<>();
+			try (BufferedReader in = Files.newBufferedReader(text, StandardCharsets.US_ASCII)) {
+				for (String line = in.readLine(); line != null; line = in.readLine()) {
+					String[] fields = line.split(" ");
+					ThreeTenNode[] ends = new ThreeTenNode[2];
+					for (int k = 0; k < 2; k++) {
+						int id = Integer.parseInt(fields[k]);
+						ends[k] = ids.get(id);
+						if (ends[k] == null) {
+							ends[k] = new ThreeTenNode();
+							split.addVertex(ends[k]);
+							ids.put(id, ends[k]);
+						}
+					}
+					split.addEdge(new ThreeTenEdge(), ends[0], ends[1]);
+				}
+			}
+			loaded += split.getEdgeCount();
+			long splitNanos = System.nanoTime() - start;
+			long splitBytes = allocatedBytes() - bytes;
+
+			if (loaded != 3 * graph.getEdgeCount()) {
+				throw new IllegalStateException("edge counts differ");
+			}
+			if (round == WARMUP_ROUNDS) {
+				report("binary (ThreeTenGraphFile)", binaryNanos, binaryBytes);
+				report("edge list (mapped loader)", loaderNanos, loaderBytes);
+				report("edge list (split)", splitNanos, splitBytes);
+			}
+		}
+		Files.delete(binary);
+		Files.delete(text);
+	}
+
+	/**
+	 * Controls the flow of the program. The first argument picks the scenario, the
+	 * second the number of entries and the third (concurrent only) the largest
+	 * thread count.
+	 *
+	 * @param args Command-line arguments supplied as an Array of String Objects.
+	 * @throws InterruptedException if interrupted while waiting for workers.
+	 * @throws IOException if the graphio files cannot be written.
+	 */
+	public static void main(String[] args) throws InterruptedException, IOException {
+
+		String scenario = args.length > 0 ? args[0] : "rehash";
+		int n = args.length > 1 ? Integer.parseInt(args[1]) : 10_000_000;
+
+		switch (scenario) {
+		case "rehash":
+			rehash(n);
+			break;
+		case "churn":
+			churn(n);
+			break;
+		case "bulk":
+			bulk(n);
+			break;
+		case "hashing":
+			hashing(n);
+			break;
+		case "ops":
+			ops(n);
+			break;
+		case "cuckoo":
+			cuckoo(n);
+			break;
+		case "graphio":
+			graphio(n);
+			break;
+		case "concurrent":
+			concurrent(n, args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors());
+			break;
+		default:
+			System.out.println("Usage: ThreeTenHashMapBenchmark rehash|concurrent|hashing|bulk|churn|cuckoo|ops|graphio [entries] [threads]");
+		}
+	}
+}
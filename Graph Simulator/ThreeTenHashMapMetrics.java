@@ -0,0 +1,655 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+import java.util.Arrays;
+
+/**
+ * Counters a ThreeTenHashMap keeps once metrics are enabled with
+ * setMetricsEnabled(true). A map without metrics holds no instance of this
+ * class, so the only cost left is one null check per operation.
+ *
+ * <p>The chain lengths are counters too: the map reports every change of a
+ * bucket's length (by put, remove and incremental migration) and recounts after
+ * a full rehash, which walks the table anyway, so a snapshot never walks the
+ * buckets. The longest chain comes from a histogram of chain lengths.
+ *
+ * <p>Rehashes are also committed as JFR events (threeten.Rehash). A
+ * threeten.MapMetrics event is committed for every snapshot and, while the map
+ * is in use, once a second (the clock is read every 1024 operations), when the
+ * load factor is sampled as well, so a flight recording shows them next to GC
+ * and allocation data without anyone polling the map.
+ *
+ * @author Jacob Strokus
+ */
+class ThreeTenHashMapMetrics {
+
+	/**
+	 * Number of load factor samples kept.
+	 */
+	static final int LOAD_SAMPLES = 64;
+
+	/**
+	 * Nanoseconds between periodic MapMetrics events.
+	 */
+	private static final long EVENT_PERIOD_NANOS = 1_000_000_000L;
+
+	/**
+	 * Operations between reads of the clock, a power of two.
+	 */
+	private static final int EVENT_CHECK_OPS = 1024;
+
+	/**
+	 * Number of get() calls.
+	 */
+	private long gets;
+
+	/**
+	 * Nodes looked at by get() calls.
+	 */
+	private long getProbes;
+
+	/**
+	 * Number of put() calls.
+	 */
+	private long puts;
+
+	/**
+	 * Number of remove() calls.
+	 */
+	private long removes;
+
+	/**
+	 * Number of rehashes (full, or incremental resizes started).
+	 */
+	private long rehashes;
+
+	/**
+	 * Nanoseconds spent rehashing, including incremental migration steps.
+	 */
+	private long rehashNanos;
+
+	/**
+	 * Time (System.nanoTime()) of each load sample, in a ring.
+	 */
+	private final long[] sampleTimes = new long[LOAD_SAMPLES];
+
+	/**
+	 * Load factor of each sample, in a ring.
+	 */
+	private final double[] sampleLoads = new double[LOAD_SAMPLES];
+
+	/**
+	 * Number of samples taken so far.
+	 */
+	private long samples;
+
+	/**
+	 * Number of buckets of each chain length.
+	 */
+	private int[] chains = new int[16];
+
+	/**
+	 * Number of non-empty buckets.
+	 */
+	private int buckets;
+
+	/**
+	 * Length of the longest bucket.
+	 */
+	private int maxChain;
+
+	/**
+	 * Number of keys, the sum of the chain lengths.
+	 */
+	private int size;
+
+	/**
+	 * Slots of the current table.
+	 */
+	private int slots;
+
+	/**
+	 * Operations since the clock was last read.
+	 */
+	private int ticks;
+
+	/**
+	 * Time (System.nanoTime()) of the last periodic event.
+	 */
+	private long lastEvent = System.nanoTime();
+
+	/**
+	 * Method to count a get().
+	 *
+	 * @param probes Nodes looked at.
+	 */
+	void recordGet(int probes) {
+
+		gets++;
+		getProbes += probes;
+		tick();
+	}
+
+	/**
+	 * Method to count a put().
+	 */
+	void recordPut() {
+
+		puts++;
+		tick();
+	}
+
+	/**
+	 * Method to count the puts of a bulk load.
+	 *
+	 * @param n Number of pairs loaded.
+	 */
+	void recordPuts(long n) {
+
+		puts += n;
+		tick();
+	}
+
+	/**
+	 * Method to count a remove().
+	 */
+	void recordRemove() {
+
+		removes++;
+		tick();
+	}
+
+	/**
+	 * Method to add time spent moving entries between tables.
+	 *
+	 * @param nanos Elapsed nanoseconds.
+	 */
+	void recordMigration(long nanos) {
+
+		rehashNanos += nanos;
+	}
+
+	/**
+	 * Method to count a rehash, sample the load factor and emit a JFR event.
+	 *
+	 * @param nanos       Elapsed nanoseconds (0 when an incremental resize starts).
+	 * @param oldSlots    Slots before.
+	 * @param newSlots    Slots after.
+	 * @param size        Number of keys.
+	 * @param incremental Whether entries move incrementally from here on.
+	 */
+	void recordRehash(long nanos, int oldSlots, int newSlots, int size, boolean incremental) {
+
+		rehashes++;
+		rehashNanos += nanos;
+		slots = newSlots;
+		sampleLoad(size / (double) newSlots);
+
+		RehashEvent event = new RehashEvent();
+		if (event.shouldCommit()) {
+			event.oldSlots = oldSlots;
+			event.newSlots = newSlots;
+			event.size = size;
+			event.incremental = incremental;
+			event.rehashTime = nanos;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Method to record the load factor at this time.
+	 *
+	 * @param load Keys per slot.
+	 */
+	void sampleLoad(double load) {
+
+		int i = (int) (samples++ % LOAD_SAMPLES);
+		sampleTimes[i] = System.nanoTime();
+		sampleLoads[i] = load;
+	}
+
+	/**
+	 * Method to forget every chain, as for an empty table.
+	 *
+	 * @param slots Slots of the table.
+	 */
+	void resetChains(int slots) {
+
+		Arrays.fill(chains, 0);
+		buckets = 0;
+		maxChain = 0;
+		size = 0;
+		this.slots = slots;
+	}
+
+	/**
+	 * Method to record that a bucket changed length.
+	 *
+	 * @param before Length before, 0 for a bucket that was empty.
+	 * @param after  Length after, 0 for a bucket that is now empty.
+	 */
+	void recordChain(int before, int after) {
+
+		if (before > 0) {
+			chains[before]--;
+			buckets--;
+		}
+		if (after > 0) {
+			if (after >= chains.length) {
+				chains = Arrays.copyOf(chains, Math.max(after + 1, chains.length * 2));
+			}
+			chains[after]++;
+			buckets++;
+			maxChain = Math.max(maxChain, after);
+		}
+		size += after - before;
+		while (maxChain > 0 && chains[maxChain] == 0) {
+			maxChain--;
+		}
+	}
+
+	/**
+	 * Method to count an operation, sampling the load factor and committing a
+	 * MapMetrics event once a period has passed since the last one.
+	 */
+	private void tick() {
+
+		if ((++ticks & (EVENT_CHECK_OPS - 1)) != 0) {
+			return;
+		}
+		long now = System.nanoTime();
+		if (now - lastEvent >= EVENT_PERIOD_NANOS) {
+			lastEvent = now;
+			sampleLoad(slots == 0 ? 0 : size / (double) slots);
+			commitEvent();
+		}
+	}
+
+	/**
+	 * Method to commit a MapMetrics event with the current counters, if JFR is
+	 * recording it.
+	 */
+	private void commitEvent() {
+
+		MetricsEvent event = new MetricsEvent();
+		if (event.shouldCommit()) {
+			event.gets = gets;
+			event.meanProbes = gets == 0 ? 0 : getProbes / (double) gets;
+			event.rehashes = rehashes;
+			event.rehashNanos = rehashNanos;
+			event.slots = slots;
+			event.size = size;
+			event.maxChain = maxChain;
+			event.load = slots == 0 ? 0 : size / (double) slots;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Method to build a snapshot of the counters. Runs in O(LOAD_SAMPLES) time,
+	 * whatever the size of the map.
+	 *
+	 * @return The snapshot.
+	 */
+	Snapshot snapshot() {
+
+		sampleLoad(size / (double) slots);
+
+		int count = (int) Math.min(samples, LOAD_SAMPLES);
+		long[] times = new long[count];
+		double[] loads = new double[count];
+		for (int k = 0; k < count; k++) { // oldest first
+			int i = (int) ((samples - count + k) % LOAD_SAMPLES);
+			times[k] = sampleTimes[i];
+			loads[k] = sampleLoads[i];
+		}
+
+		Snapshot s = new Snapshot(gets, getProbes, puts, removes, rehashes, rehashNanos, slots, size, maxChain,
+				buckets == 0 ? 0 : size / (double) buckets, times, loads);
+
+		commitEvent();
+		return s;
+	}
+
+	/**
+	 * Immutable copy of the counters at one point in time.
+	 */
+	public static final class Snapshot {
+
+		/**
+		 * Number of get() calls.
+		 */
+		private final long gets;
+
+		/**
+		 * Nodes looked at by get() calls.
+		 */
+		private final long getProbes;
+
+		/**
+		 * Number of put() calls.
+		 */
+		private final long puts;
+
+		/**
+		 * Number of remove() calls.
+		 */
+		private final long removes;
+
+		/**
+		 * Number of rehashes.
+		 */
+		private final long rehashes;
+
+		/**
+		 * Nanoseconds spent rehashing.
+		 */
+		private final long rehashNanos;
+
+		/**
+		 * Slots of the table.
+		 */
+		private final int slots;
+
+		/**
+		 * Number of keys.
+		 */
+		private final int size;
+
+		/**
+		 * Longest bucket.
+		 */
+		private final int maxChain;
+
+		/**
+		 * Mean length of the non-empty buckets.
+		 */
+		private final double meanChain;
+
+		/**
+		 * Times of the load samples.
+		 */
+		private final long[] loadTimes;
+
+		/**
+		 * Load factor samples, oldest first.
+		 */
+		private final double[] loads;
+
+		/**
+		 * Constructor to create Snapshot Objects.
+		 *
+		 * @param gets        Number of get() calls.
+		 * @param getProbes   Nodes looked at by get() calls.
+		 * @param puts        Number of put() calls.
+		 * @param removes     Number of remove() calls.
+		 * @param rehashes    Number of rehashes.
+		 * @param rehashNanos Nanoseconds spent rehashing.
+		 * @param slots       Slots of the table.
+		 * @param size        Number of keys.
+		 * @param maxChain    Longest bucket.
+		 * @param meanChain   Mean length of the non-empty buckets.
+		 * @param loadTimes   Times of the load samples.
+		 * @param loads       Load factor samples.
+		 */
+		Snapshot(long gets, long getProbes, long puts, long removes, long rehashes, long rehashNanos, int slots,
+				int size, int maxChain, double meanChain, long[] loadTimes, double[] loads) {
+			this.gets = gets;
+			this.getProbes = getProbes;
+			this.puts = puts;
+			this.removes = removes;
+			this.rehashes = rehashes;
+			this.rehashNanos = rehashNanos;
+			this.slots = slots;
+			this.size = size;
+			this.maxChain = maxChain;
+			this.meanChain = meanChain;
+			this.loadTimes = loadTimes;
+			this.loads = loads;
+		}
+
+		/**
+		 * Method to get the number of get() calls.
+		 *
+		 * @return Number of gets.
+		 */
+		public long getGets() {
+			return gets;
+		}
+
+		/**
+		 * Method to get the number of nodes get() looked at. For a tree bucket the
+		 * tree height is counted, an upper bound of the nodes visited.
+		 *
+		 * @return Total probes.
+		 */
+		public long getGetProbes() {
+			return getProbes;
+		}
+
+		/**
+		 * Method to get the mean number of nodes looked at per get().
+		 *
+		 * @return Probes per get, 0 if there were no gets.
+		 */
+		public double getMeanProbesPerGet() {
+			return gets == 0 ? 0 : getProbes / (double) gets;
+		}
+
+		/**
+		 * Method to get the number of put() calls.
+		 *
+		 * @return Number of puts.
+		 */
+		public long getPuts() {
+			return puts;
+		}
+
+		/**
+		 * Method to get the number of remove() calls.
+		 *
+		 * @return Number of removes.
+		 */
+		public long getRemoves() {
+			return removes;
+		}
+
+		/**
+		 * Method to get the number of rehashes.
+		 *
+		 * @return Number of rehashes.
+		 */
+		public long getRehashes() {
+			return rehashes;
+		}
+
+		/**
+		 * Method to get the time spent rehashing.
+		 *
+		 * @return Cumulative nanoseconds.
+		 */
+		public long getRehashNanos() {
+			return rehashNanos;
+		}
+
+		/**
+		 * Method to get the number of slots.
+		 *
+		 * @return Slots of the table.
+		 */
+		public int getSlots() {
+			return slots;
+		}
+
+		/**
+		 * Method to get the number of keys.
+		 *
+		 * @return Number of keys.
+		 */
+		public int getSize() {
+			return size;
+		}
+
+		/**
+		 * Method to get the current load factor.
+		 *
+		 * @return Keys per slot.
+		 */
+		public double getLoad() {
+			return size / (double) slots;
+		}
+
+		/**
+		 * Method to get the longest bucket.
+		 *
+		 * @return Length of the longest bucket.
+		 */
+		public int getMaxChain() {
+			return maxChain;
+		}
+
+		/**
+		 * Method to get the mean length of the non-empty buckets.
+		 *
+		 * @return Mean chain length.
+		 */
+		public double getMeanChain() {
+			return meanChain;
+		}
+
+		/**
+		 * Method to get the times of the load samples, taken at every rehash and
+		 * snapshot and once a second while the map is in use.
+		 *
+		 * @return New array of System.nanoTime() values, oldest first.
+		 */
+		public long[] getLoadTimes() {
+			return loadTimes.clone();
+		}
+
+		/**
+		 * Method to get the load factor samples matching getLoadTimes().
+		 *
+		 * @return New array of keys per slot, oldest first.
+		 */
+		public double[] getLoadHistory() {
+			return loads.clone();
+		}
+
+		/**
+		 * toString method.
+		 *
+		 * @return String literal summarizing the snapshot.
+		 */
+		public String toString() {
+			return String.format(
+					"size %d, slots %d, load %.2f, max chain %d, mean chain %.2f, gets %d (%.2f probes), puts %d, removes %d, rehashes %d (%.3f ms)",
+					size, slots, getLoad(), maxChain, meanChain, gets, getMeanProbesPerGet(), puts, removes, rehashes,
+					rehashNanos / 1e6);
+		}
+	}
+
+	/**
+	 * JFR event committed for every rehash.
+	 */
+	@Name("threeten.Rehash")
+	@Label("ThreeTenHashMap Rehash")
+	@Category("ThreeTen")
+	@Description("A ThreeTenHashMap moved to a table of a new size")
+	static final class RehashEvent extends Event {
+
+		/**
+		 * Slots before.
+		 */
+		@Label("Old Slots")
+		int oldSlots;
+
+		/**
+		 * Slots after.
+		 */
+		@Label("New Slots")
+		int newSlots;
+
+		/**
+		 * Number of keys.
+		 */
+		@Label("Size")
+		int size;
+
+		/**
+		 * Whether entries move incrementally.
+		 */
+		@Label("Incremental")
+		boolean incremental;
+
+		/**
+		 * Time the rehash took.
+		 */
+		@Label("Rehash Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long rehashTime;
+	}
+
+	/**
+	 * JFR event committed for every metrics snapshot, and once a second while the
+	 * map is in use.
+	 */
+	@Name("threeten.MapMetrics")
+	@Label("ThreeTenHashMap Metrics")
+	@Category("ThreeTen")
+	static final class MetricsEvent extends Event {
+
+		/**
+		 * Number of gets.
+		 */
+		@Label("Gets")
+		long gets;
+
+		/**
+		 * Mean probes per get.
+		 */
+		@Label("Mean Probes")
+		double meanProbes;
+
+		/**
+		 * Number of rehashes.
+		 */
+		@Label("Rehashes")
+		long rehashes;
+
+		/**
+		 * Time spent rehashing.
+		 */
+		@Label("Rehash Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long rehashNanos;
+
+		/**
+		 * Slots of the table.
+		 */
+		@Label("Slots")
+		int slots;
+
+		/**
+		 * Number of keys.
+		 */
+		@Label("Size")
+		int size;
+
+		/**
+		 * Longest bucket.
+		 */
+		@Label("Max Chain")
+		int maxChain;
+
+		/**
+		 * Keys per slot.
+		 */
+		@Label("Load")
+		double load;
+	}
+}
@@ -0,0 +1,770 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Read-only map over a snapshot file written from any map. Opening a snapshot
+ * maps the file with FileChannel.map and reads only its header, so it takes the
+ * same time for any size; pages are read in by the operating system as lookups
+ * touch them. thaw() copies the snapshot into a mutable ThreeTenHashMap.
+ *
+ * <p>The file holds a 32 byte header (magic, version, slots, size, data
+ * length), an index of 16 byte slots (hash, key length, record offset + 1)
+ * filled with linear probing, and the records: [value length][key][value]. The
+ * hash is computed from the encoded key bytes, so it does not depend on
+ * hashCode() being stable across runs. Records never cross a 1 GB boundary so
+ * each GB of data can be mapped as one buffer.
+ *
+ * <p>Lookups allocate their own scratch buffer, so a snapshot can be read from
+ * many threads at once.
+ *
+ * @author Jacob Strokus
+ *
+ * @param <K> generic type of the keys.
+ * @param <V> generic type of the values.
+ */
+class ThreeTenHashMapSnapshot<K, V> implements Map<K, V>, AutoCloseable {
+
+	/**
+	 * First four bytes of a snapshot file.
+	 */
+	private static final int MAGIC = 0x33313048; // "310H"
+
+	/**
+	 * Version of the file format.
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * Bytes of the header.
+	 */
+	private static final int HEADER_BYTES = 32;
+
+	/**
+	 * Bytes per index slot.
+	 */
+	private static final int SLOT_BYTES = 16;
+
+	/**
+	 * Largest index, in slots.
+	 */
+	private static final int MAX_SLOTS = 1 << 26;
+
+	/**
+	 * log2 of the bytes of data mapped per buffer.
+	 */
+	private static final int REGION_SHIFT = 30;
+
+	/**
+	 * Bytes of data mapped per buffer.
+	 */
+	private static final long REGION_BYTES = 1L << REGION_SHIFT;
+
+	/**
+	 * Codec of the keys.
+	 */
+	private final Codec<K> keyCodec;
+
+	/**
+	 * Codec of the values.
+	 */
+	private final Codec<V> valueCodec;
+
+	/**
+	 * Mapped index.
+	 */
+	private MappedByteBuffer index;
+
+	/**
+	 * Mapped data, one buffer per GB.
+	 */
+	private MappedByteBuffer[] regions;
+
+	/**
+	 * Number of slots in the index.
+	 */
+	private final int slots;
+
+	/**
+	 * Number of keys.
+	 */
+	private final int numElements;
+
+	/**
+	 * Constructor to create a snapshot over mapped buffers.
+	 *
+	 * @param keyCodec    Codec of the keys.
+	 * @param valueCodec  Codec of the values.
+	 * @param index       Mapped index.
+	 * @param regions     Mapped data.
+	 * @param slots       Number of slots in the index.
+	 * @param numElements Number of keys.
+	 */
+	private ThreeTenHashMapSnapshot(Codec<K> keyCodec, Codec<V> valueCodec, MappedByteBuffer index,
+			MappedByteBuffer[] regions, int slots, int numElements) {
+
+		this.keyCodec = keyCodec;
+		this.valueCodec = valueCodec;
+		this.index = index;
+		this.regions = regions;
+		this.slots = slots;
+		this.numElements = numElements;
+	}
+
+	/**
+	 * Method to hash encoded key bytes with MurmurHash3.
+	 *
+	 * @param buffer Buffer holding the key.
+	 * @param offset Position of the first byte.
+	 * @param length Number of bytes.
+	 * @return The hash.
+	 */
+	static int hashBytes(ByteBuffer buffer, int offset, int length) {
+
+		int h = length;
+		int i = 0;
+		for (; i + Integer.BYTES <= length; i += Integer.BYTES) {
+			int block = buffer.getInt(offset + i) * 0xcc9e2d51;
+			h ^= Integer.rotateLeft(block, 15) * 0x1b873593;
+			h = Integer.rotateLeft(h, 13) * 5 + 0xe6546b64;
+		}
+		int tail = 0;
+		for (int shift = 0; i < length; i++, shift += 8) {
+			tail |= (buffer.get(offset + i) & 0xff) << shift;
+		}
+		h ^= Integer.rotateLeft(tail * 0xcc9e2d51, 15) * 0x1b873593;
+		return HashStrategy.fmix(h);
+	}
+
+	/**
+	 * Method to write a map to a snapshot file, replacing the file if it exists.
+	 *
+	 * @param <K>        generic type of the keys.
+	 * @param <V>        generic type of the values.
+	 * @param map        The map, without null keys or values.
+	 * @param file       The file.
+	 * @param keyCodec   Codec of the keys.
+	 * @param valueCodec Codec of the values.
+	 * @throws IOException if the file cannot be written.
+	 */
+	public static <K, V> void write(Map<K, V> map, Path file, Codec<K> keyCodec, Codec<V> valueCodec)
+			throws IOException {
+
+		int slots = IntObjectMap.capacityFor(map.size());
+		if (slots > MAX_SLOTS) {
+			throw new IllegalArgumentException("Too many keys for one snapshot.");
+		}
+		ByteBuffer index = ByteBuffer.allocate(slots * SLOT_BYTES);
+		ByteBuffer out = ByteBuffer.allocateDirect(1 << 20);
+		ByteBuffer record = ByteBuffer.allocate(64);
+		long dataStart = HEADER_BYTES + (long) slots * SLOT_BYTES;
+		long dataEnd = 0;
+		int count = 0;
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+
+			channel.position(dataStart);
+			for (Map.Entry<K, V> e : map.entrySet()) {
+
+				int keyLength = keyCodec.size(e.getKey());
+				int valueLength = valueCodec.size(e.getValue());
+				int length = Integer.BYTES + keyLength + valueLength;
+				if (length > REGION_BYTES) {
+					throw new IllegalArgumentException("Record of " + length + " bytes is too big.");
+				}
+				if (record.capacity() < length) {
+					record = ByteBuffer.allocate(Math.max(length, record.capacity() * 2));
+				}
+				record.clear();
+				record.putInt(0, valueLength);
+				keyCodec.write(record, Integer.BYTES, e.getKey());
+				valueCodec.write(record, Integer.BYTES + keyLength, e.getValue());
+				record.limit(length);
+
+				long padding = (dataEnd & (REGION_BYTES - 1)) + length > REGION_BYTES
+						? REGION_BYTES - (dataEnd & (REGION_BYTES - 1))
+						: 0;
+				for (long p = 0; p < padding; p++) { // records never cross a region
+					if (!out.hasRemaining()) {
+						drain(channel, out);
+					}
+					out.put((byte) 0);
+				}
+				dataEnd += padding;
+
+				int hash = hashBytes(record, Integer.BYTES, keyLength);
+				int mask = slots - 1;
+				int slot = hash & mask;
+				while (index.getLong(slot * SLOT_BYTES + 8) != 0) {
+					slot = (slot + 1) & mask;
+				}
+				index.putInt(slot * SLOT_BYTES, hash);
+				index.putInt(slot * SLOT_BYTES + 4, keyLength);
+				index.putLong(slot * SLOT_BYTES + 8, dataEnd + 1);
+
+				while (record.hasRemaining()) {
+					if (!out.hasRemaining()) {
+						drain(channel, out);
+					}
+					int n = Math.min(out.remaining(), record.remaining());
+					out.put(out.position(), record, record.position(), n);
+					out.position(out.position() + n);
+					record.position(record.position() + n);
+				}
+				dataEnd += length;
+				count++;
+			}
+			drain(channel, out);
+			ThreeTenOffHeapMap.free(out);
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+			header.putInt(MAGIC).putInt(VERSION).putInt(slots).putInt(count).putLong(dataEnd).putLong(0);
+			header.flip();
+			channel.position(0);
+			channel.write(header);
+			index.clear();
+			while (index.hasRemaining()) {
+				channel.write(index);
+			}
+			channel.force(false);
+		}
+	}
+
+	/**
+	 * Method to write out and empty a buffer.
+	 *
+	 * @param channel The channel.
+	 * @param out     The buffer.
+	 * @throws IOException if the write fails.
+	 */
+	private static void drain(FileChannel channel, ByteBuffer out) throws IOException {
+
+		out.flip();
+		while (out.hasRemaining()) {
+			channel.write(out);
+		}
+		out.clear();
+	}
+
+	/**
+	 * Method to open a snapshot file. Only the header is read.
+	 *
+	 * @param <K>        generic type of the keys.
+	 * @param <V>        generic type of the values.
+	 * @param file       The file.
+	 * @param keyCodec   Codec of the keys, as used to write the file.
+	 * @param valueCodec Codec of the values, as used to write the file.
+	 * @return The snapshot.
+	 * @throws IOException if the file cannot be read or is not a snapshot.
+	 */
+	public static <K, V> ThreeTenHashMapSnapshot<K, V> open(Path file, Codec<K> keyCodec, Codec<V> valueCodec)
+			throws IOException {
+
+		Objects.requireNonNull(keyCodec);
+		Objects.requireNonNull(valueCodec);
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+			while (header.hasRemaining() && channel.read(header) >= 0) {
+			}
+			header.flip();
+			if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC) {
+				throw new IOException(file + " is not a ThreeTenHashMap snapshot.");
+			}
+			if (header.getInt() != VERSION) {
+				throw new IOException(file + " has an unsupported snapshot version.");
+			}
+			int slots = header.getInt();
+			int size = header.getInt();
+			long dataLength = header.getLong();
+			long dataStart = HEADER_BYTES + (long) slots * SLOT_BYTES;
+			if (slots <= 0 || slots > MAX_SLOTS || Integer.bitCount(slots) != 1 || size < 0
+					|| dataStart + dataLength > channel.size()) {
+				throw new IOException(file + " is a damaged snapshot.");
+			}
+
+			MappedByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES,
+					(long) slots * SLOT_BYTES);
+			MappedByteBuffer[] regions = new MappedByteBuffer[(int) ((dataLength + REGION_BYTES - 1) >>> REGION_SHIFT)];
+			for (int i = 0; i < regions.length; i++) {
+				long start = (long) i << REGION_SHIFT;
+				regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, dataStart + start,
+						Math.min(REGION_BYTES, dataLength - start));
+			}
+			return new ThreeTenHashMapSnapshot<>(keyCodec, valueCodec, index, regions, slots, size);
+		}
+	}
+
+	/**
+	 * Method to copy the snapshot into a new mutable map.
+	 *
+	 * @return A ThreeTenHashMap holding every pair.
+	 */
+	public ThreeTenHashMap<K, V> thaw() {
+
+		ThreeTenHashMap<K, V> map = new ThreeTenHashMap<>(Math.max(1, numElements));
+		for (int slot = 0; slot < slots; slot++) {
+			if (offsetAt(slot) >= 0) {
+				map.put(keyAt(slot), valueAt(slot));
+			}
+		}
+		return map;
+	}
+
+	/**
+	 * Method to unmap the file now, if the JVM allows it. The snapshot cannot be
+	 * used afterwards.
+	 */
+	public void close() {
+
+		if (index != null) {
+			ThreeTenOffHeapMap.free(index);
+			for (MappedByteBuffer region : regions) {
+				ThreeTenOffHeapMap.free(region);
+			}
+			index = null;
+			regions = null;
+		}
+	}
+
+	/**
+	 * Method to get the record offset stored in a slot.
+	 *
+	 * @param slot The slot.
+	 * @return Offset of the record in the data, or -1 if the slot is empty.
+	 */
+	private long offsetAt(int slot) {
+
+		if (index == null) {
+			throw new IllegalStateException("The snapshot was closed.");
+		}
+		return index.getLong(slot * SLOT_BYTES + 8) - 1;
+	}
+
+	/**
+	 * Method to get the region holding a record.
+	 *
+	 * @param offset Offset of the record.
+	 * @return The region.
+	 */
+	private ByteBuffer regionOf(long offset) {
+
+		return regions[(int) (offset >>> REGION_SHIFT)];
+	}
+
+	/**
+	 * Method to decode the key of the record in a slot.
+	 *
+	 * @param slot The slot.
+	 * @return The key.
+	 */
+	private K keyAt(int slot) {
+
+		long offset = offsetAt(slot);
+		int within = (int) (offset & (REGION_BYTES - 1));
+		return keyCodec.read(regionOf(offset), within + Integer.BYTES, index.getInt(slot * SLOT_BYTES + 4));
+	}
+
+	/**
+	 * Method to decode the value of the record in a slot.
+	 *
+	 * @param slot The slot.
+	 * @return The value.
+	 */
+	private V valueAt(int slot) {
+
+		long offset = offsetAt(slot);
+		ByteBuffer region = regionOf(offset);
+		int within = (int) (offset & (REGION_BYTES - 1));
+		int keyLength = index.getInt(slot * SLOT_BYTES + 4);
+		return valueCodec.read(region, within + Integer.BYTES + keyLength, region.getInt(within));
+	}
+
+	/**
+	 * Method to find the slot of a key.
+	 *
+	 * @param key The key, possibly of the wrong type.
+	 * @return The slot, or -1 if the key is not in the snapshot.
+	 */
+	@SuppressWarnings("unchecked")
+	private int slotOf(Object key) {
+
+		if (key == null) {
+			return -1;
+		}
+		ByteBuffer encoded;
+		int length;
+		try {
+			length = keyCodec.size((K) key);
+			encoded = ByteBuffer.allocate(length);
+			keyCodec.write(encoded, 0, (K) key);
+		} catch (ClassCastException e) {
+			return -1;
+		}
+		int hash = hashBytes(encoded, 0, length);
+
+		int mask = slots - 1;
+		int slot = hash & mask;
+		long offset;
+		while ((offset = offsetAt(slot)) >= 0) {
+			int base = slot * SLOT_BYTES;
+			if (index.getInt(base) == hash && index.getInt(base + 4) == length) {
+				ByteBuffer region = regionOf(offset);
+				int start = (int) (offset & (REGION_BYTES - 1)) + Integer.BYTES;
+				if (region.slice(start, length).equals(encoded)) {
+					return slot;
+				}
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Method to get a value in the snapshot given a key.
+	 *
+	 * @param key The key.
+	 * @return A decoded copy of the value, or null if the key is not in the map.
+	 */
+	public V get(Object key) {
+
+		int slot = slotOf(key);
+		return slot < 0 ? null : valueAt(slot);
+	}
+
+	/**
+	 * Returns true if this map contains a mapping for the specified key.
+	 *
+	 * @param key Object to check whether the given key is in the map.
+	 * @return Boolean whether the map contains the key.
+	 */
+	public boolean containsKey(Object key) {
+
+		return slotOf(key) >= 0;
+	}
+
+	/**
+	 * Returns true if this map maps one or more keys to the specified value. This
+	 * decodes every value.
+	 *
+	 * @param value Object to look for.
+	 * @return Boolean whether some key maps to value.
+	 */
+	public boolean containsValue(Object value) {
+
+		for (V v : values()) {
+			if (v.equals(value)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Method to get the size of the map.
+	 *
+	 * @return Number of mappings.
+	 */
+	public int size() {
+
+		return numElements;
+	}
+
+	/**
+	 * Method to check if the map is empty.
+	 *
+	 * @return Boolean whether the map is empty.
+	 */
+	public boolean isEmpty() {
+
+		return numElements == 0;
+	}
+
+	/**
+	 * Snapshots are read-only.
+	 *
+	 * @param key   The key.
+	 * @param value The value.
+	 * @return Never returns.
+	 * @throws UnsupportedOperationException always.
+	 */
+	public V put(K key, V value) {
+
+		throw new UnsupportedOperationException("The snapshot is read-only; use thaw().");
+	}
+
+	/**
+	 * Snapshots are read-only.
+	 *
+	 * @param key The key.
+	 * @return Never returns.
+	 * @throws UnsupportedOperationException always.
+	 */
+	public V remove(Object key) {
+
+		throw new UnsupportedOperationException("The snapshot is read-only; use thaw().");
+	}
+
+	/**
+	 * Snapshots are read-only.
+	 *
+	 * @param m Map that extends generic types K and V.
+	 * @throws UnsupportedOperationException always.
+	 */
+	public void putAll(Map<? extends K, ? extends V> m) {
+
+		throw new UnsupportedOperationException("The snapshot is read-only; use thaw().");
+	}
+
+	/**
+	 * Snapshots are read-only.
+	 *
+	 * @throws UnsupportedOperationException always.
+	 */
+	public void clear() {
+
+		throw new UnsupportedOperationException("The snapshot is read-only; use thaw().");
+	}
+
+	/**
+	 * Iterator over the used slots of the index.
+	 *
+	 * @param <T> type handed out for each slot.
+	 */
+	private abstract class SlotIterator<T> implements Iterator<T> {
+
+		/**
+		 * Next used slot, or slots if there is none.
+		 */
+		private int slot = advance(0);
+
+		/**
+		 * Method to get the element handed out for a slot.
+		 *
+		 * @param slot The slot.
+		 * @return The element.
+		 */
+		abstract T get(int slot);
+
+		/**
+		 * Method to find the first used slot at or after the given one.
+		 *
+		 * @param from Slot to start at.
+		 * @return The used slot, or slots if there is none.
+		 */
+		private int advance(int from) {
+			while (from < slots && offsetAt(from) < 0) {
+				from++;
+			}
+			return from;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public boolean hasNext() {
+			return slot < slots;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public T next() {
+			if (slot >= slots) {
+				throw new NoSuchElementException();
+			}
+			T element = get(slot);
+			slot = advance(slot + 1);
+			return element;
+		}
+	}
+
+	/**
+	 * Returns a Set view of the keys in this snapshot.
+	 *
+	 * @return Set containing all the keys in the map.
+	 */
+	public Set<K> keySet() {
+
+		return new AbstractSet<K>() {
+			public Iterator<K> iterator() {
+				return new SlotIterator<K>() {
+					K get(int slot) {
+						return keyAt(slot);
+					}
+				};
+			}
+
+			public int size() {
+				return numElements;
+			}
+
+			public boolean contains(Object o) {
+				return containsKey(o);
+			}
+		};
+	}
+
+	/**
+	 * Returns a Collection view of the values in this snapshot.
+	 *
+	 * @return Collection of values from the map.
+	 */
+	public Collection<V> values() {
+
+		return new AbstractCollection<V>() {
+			public Iterator<V> iterator() {
+				return new SlotIterator<V>() {
+					V get(int slot) {
+						return valueAt(slot);
+					}
+				};
+			}
+
+			public int size() {
+				return numElements;
+			}
+		};
+	}
+
+	/**
+	 * Returns a Set view of the mappings in this snapshot.
+	 *
+	 * @return Set of the mappings contained in the map.
+	 */
+	public Set<Map.Entry<K, V>> entrySet() {
+
+		return new AbstractSet<Map.Entry<K, V>>() {
+			public Iterator<Map.Entry<K, V>> iterator() {
+				return new SlotIterator<Map.Entry<K, V>>() {
+					Map.Entry<K, V> get(int slot) {
+						return new AbstractMap.SimpleImmutableEntry<>(keyAt(slot), valueAt(slot));
+					}
+				};
+			}
+
+			public int size() {
+				return numElements;
+			}
+		};
+	}
+
+	/**
+	 * Compares the specified object with this map for equality.
+	 *
+	 * @param o Object to be compared to.
+	 * @return Boolean whether both maps hold the same mappings.
+	 */
+	public boolean equals(Object o) {
+
+		if (o == this) {
+			return true;
+		}
+		if (!(o instanceof Map) || ((Map<?, ?>) o).size() != size()) {
+			return false;
+		}
+		Map<?, ?> m = (Map<?, ?>) o;
+		for (Map.Entry<K, V> e : entrySet()) {
+			if (!e.getValue().equals(m.get(e.getKey()))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the hash code value for this map, the sum of the hash codes of its
+	 * entries.
+	 *
+	 * @return Integer representing the hashCode of the map.
+	 */
+	public int hashCode() {
+
+		int h = 0;
+		for (Map.Entry<K, V> e : entrySet()) {
+			h += e.hashCode();
+		}
+		return h;
+	}
+
+	/**
+	 * toString method.
+	 *
+	 * @return String literal representing the data in the map.
+	 */
+	public String toString() {
+
+		StringBuilder s = new StringBuilder();
+		for (Map.Entry<K, V> e : entrySet()) {
+			s.append(e.getKey()).append(":").append(e.getValue()).append("\n");
+		}
+		return s.toString().trim();
+	}
+
+	/**
+	 * Controls the flow of the program. Used for testing purposes.
+	 *
+	 * @param args Command-line arguments supplied as an Array of String Objects.
+	 * @throws IOException if the temporary file cannot be used.
+	 */
+	public static void main(String[] args) throws IOException {
+
+		Path file = Files.createTempFile("threeten", ".snapshot");
+		try {
+			ThreeTenHashMap<String, Integer> map = new ThreeTenHashMap<>(16);
+			for (int i = 0; i < 50000; i++) {
+				map.put("vertex" + i, i);
+			}
+			write(map, file, Codec.STRING, Codec.INTEGER);
+
+			try (ThreeTenHashMapSnapshot<String, Integer> snapshot = open(file, Codec.STRING, Codec.INTEGER)) {
+
+				if (snapshot.size() == 50000 && snapshot.get("vertex123") == 123 && snapshot.get("vertex") == null
+						&& snapshot.get(123) == null && snapshot.containsKey("vertex49999")) {
+					System.out.println("Yay 1");
+				}
+
+				if (snapshot.equals(map) && snapshot.keySet().equals(map.keySet())
+						&& snapshot.hashCode() == new java.util.HashMap<>(map).hashCode()) {
+					System.out.println("Yay 2");
+				}
+
+				ThreeTenHashMap<String, Integer> thawed = snapshot.thaw();
+				thawed.put("extra", -1);
+				if (thawed.size() == 50001 && thawed.get("vertex7") == 7) {
+					System.out.println("Yay 3");
+				}
+
+				try {
+					snapshot.put("extra", -1);
+				} catch (UnsupportedOperationException e) {
+					System.out.println("Yay 4");
+				}
+			}
+
+			Files.write(file, new byte[] { 1, 2, 3 });
+			try {
+				open(file, Codec.STRING, Codec.INTEGER);
+			} catch (IOException e) {
+				System.out.println("Yay 5");
+			}
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+}
@@ -1,10 +1,20 @@
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.ConcurrentModificationException;
 import java.util.Set;
 import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
 
 /**
  * This class represents a Set (an unordered collection with no duplicates).
- * 
+ *
+ * <p>Elements are kept in their own table: an Object[] of elements and an int[]
+ * of their cached hashes, using linear probing with backward-shift deletion.
+ * An element costs one reference and one int, with no entry or node objects,
+ * and hashCode() is called once per add. Null elements are not allowed.
+ *
  * @author Jacob Strokus
  *
  * @param <E> generic type.
@@ -12,167 +22,645 @@ import java.util.Iterator;
 class ThreeTenHashSet<E> implements Set<E> {
 
 	/**
-	 * {@inheritDoc}
+	 * Number of elements a set created without a size is presized for.
 	 */
-	public boolean removeAll(Collection<?> c) {
-		throw new UnsupportedOperationException();
-	}
+	private static final int DEFAULT_EXPECTED = 8;
 
 	/**
-	 * {@inheritDoc}
+	 * Elements per slot, null for free slots.
 	 */
-	public boolean retainAll(Collection<?> c) {
-		throw new UnsupportedOperationException();
-	}
+	private Object[] elements;
 
 	/**
-	 * {@inheritDoc}
+	 * Cached hash of the element in each slot.
 	 */
-	public <T> T[] toArray(T[] a) {
-		throw new UnsupportedOperationException();
+	private int[] hashes;
+
+	/**
+	 * Number of elements.
+	 */
+	private int numElements = 0;
+
+	/**
+	 * Number of slots the set was created with.
+	 */
+	private final int originalCapacity;
+
+	/**
+	 * Number of structural changes, to fail fast in iterators.
+	 */
+	private int modCount = 0;
+
+	/**
+	 * Constructor to create an empty set.
+	 */
+	public ThreeTenHashSet() {
+
+		this(DEFAULT_EXPECTED);
 	}
 
 	/**
-	 * {@inheritDoc}
+	 * Constructor to create a set presized for the given number of elements, so
+	 * adding them never resizes.
+	 *
+	 * @param expected Number of elements expected.
 	 */
-	public boolean addAll(Collection<? extends E> c) {
-		throw new UnsupportedOperationException();
+	public ThreeTenHashSet(int expected) {
+
+		originalCapacity = IntObjectMap.capacityFor(expected);
+		elements = new Object[originalCapacity];
+		hashes = new int[originalCapacity];
 	}
 
 	/**
-	 * {@inheritDoc}
+	 * Constructor to create a set holding the elements of a collection.
+	 *
+	 * @param c The collection.
 	 */
-	public boolean containsAll(Collection<?> c) {
-		throw new UnsupportedOperationException();
+	public ThreeTenHashSet(Collection<? extends E> c) {
+
+		this(c.size());
+		addAll(c);
 	}
 
 	/**
-	 * {@inheritDoc}
+	 * Method to get the hash of an element.
+	 *
+	 * @param o The element.
+	 * @return The spread hash code.
 	 */
-	public boolean equals(Object o) {
-		throw new UnsupportedOperationException();
+	private static int hash(Object o) {
+
+		return HashStrategy.fmix(o.hashCode());
 	}
 
 	/**
-	 * {@inheritDoc}
+	 * Method to find the slot of an element.
+	 *
+	 * @param o    The element.
+	 * @param hash Its hash.
+	 * @return The slot, or -(free slot) - 1 if the element is not in the set.
 	 */
-	public int hashCode() {
-		throw new UnsupportedOperationException();
+	private int find(Object o, int hash) {
+
+		int mask = elements.length - 1;
+		int slot = hash & mask;
+		Object e;
+		while ((e = elements[slot]) != null) {
+			if (hashes[slot] == hash && (e == o || e.equals(o))) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -slot - 1;
 	}
 
 	/**
-	 * Instance of ThreeTenHashMap to be used in this class.
+	 * Method to add an element whose hash is known.
+	 *
+	 * @param e    The element.
+	 * @param hash Its hash.
+	 * @return Boolean whether the element was not already in the set.
 	 */
-	private ThreeTenHashMap<E, E> storage = new ThreeTenHashMap<>(5);
+	private boolean add(Object e, int hash) {
+
+		int slot = find(e, hash);
+		if (slot >= 0) {
+			return false;
+		}
+		slot = -slot - 1;
+		elements[slot] = e;
+		hashes[slot] = hash;
+		modCount++;
+		if (++numElements > (elements.length >>> 2) * 3) {
+			resize(elements.length * 2);
+		}
+		return true;
+	}
 
 	/**
-	 * Add an element to the map.
-	 * 
+	 * Add an element to the set.
+	 *
 	 * @param e element to be added.
-	 * 
+	 *
 	 * @return Boolean whether add was successful.
 	 */
 	public boolean add(E e) {
-		
-		return storage.put(e, e) == null;
+
+		return add(e, hash(e));
+	}
+
+	/**
+	 * Method to make room for the given number of elements without resizing.
+	 *
+	 * @param expected Number of elements the table must hold.
+	 */
+	private void ensureCapacity(int expected) {
+
+		int capacity = IntObjectMap.capacityFor(expected);
+		if (capacity > elements.length) {
+			resize(capacity);
+		}
+	}
+
+	/**
+	 * Method to move every element into a table of the given length, using the
+	 * cached hashes.
+	 *
+	 * @param capacity New table length (a power of two).
+	 */
+	private void resize(int capacity) {
+
+		Object[] oldElements = elements;
+		int[] oldHashes = hashes;
+		elements = new Object[capacity];
+		hashes = new int[capacity];
+
+		int mask = capacity - 1;
+		for (int i = 0; i < oldElements.length; i++) {
+			if (oldElements[i] != null) {
+				int slot = oldHashes[i] & mask;
+				while (elements[slot] != null) {
+					slot = (slot + 1) & mask;
+				}
+				elements[slot] = oldElements[i];
+				hashes[slot] = oldHashes[i];
+			}
+		}
 	}
 
 	/**
-	 * Clear the map.
+	 * Method to empty a slot, shifting later elements of its cluster back so no
+	 * tombstones are left.
+	 *
+	 * @param slot    The slot.
+	 * @param wrapped If not null, receives the elements moved from before slot to
+	 *                at or after it (only possible when the cluster wraps around
+	 *                the end of the table).
+	 */
+	private void removeAt(int slot, List<Object> wrapped) {
+
+		numElements--;
+		modCount++;
+
+		int mask = elements.length - 1;
+		int hole = slot;
+		int next = (hole + 1) & mask;
+		while (elements[next] != null) {
+			int home = hashes[next] & mask;
+			if (((next - home) & mask) >= ((next - hole) & mask)) {
+				if (wrapped != null && next < slot && hole >= slot) {
+					wrapped.add(elements[next]);
+				}
+				elements[hole] = elements[next];
+				hashes[hole] = hashes[next];
+				hole = next;
+			}
+			next = (next + 1) & mask;
+		}
+		elements[hole] = null;
+	}
+
+	/**
+	 * Clear the set, releasing the table.
 	 */
 	public void clear() {
-		
-		storage = new ThreeTenHashMap<>(5);
+
+		elements = new Object[originalCapacity];
+		hashes = new int[originalCapacity];
+		numElements = 0;
+		modCount++;
 	}
 
 	/**
-	 * Check if Map contains a specific object.
-	 * 
-	 * @param o Object to check if in Map.
-	 * 
-	 * @return Boolean whether object o is in map.
+	 * Check if the set contains a specific object.
+	 *
+	 * @param o Object to check if in the set.
+	 *
+	 * @return Boolean whether object o is in the set.
 	 */
 	public boolean contains(Object o) {
-		
-		return storage.get(o) != null;
+
+		return o != null && find(o, hash(o)) >= 0;
 	}
 
 	/**
-	 * Check if map is empty.
-	 * 
-	 * @return Boolean whether map is empty.
+	 * Check if set is empty.
+	 *
+	 * @return Boolean whether set is empty.
 	 */
 	public boolean isEmpty() {
-		
-		return size() == 0;
+
+		return numElements == 0;
 	}
 
 	/**
 	 * Remove an object.
-	 * 
+	 *
 	 * @param o Object to remove.
-	 * 
+	 *
 	 * @return Boolean whether object was removed.
 	 */
 	public boolean remove(Object o) {
-		
-		return storage.remove(o) != null;
+
+		if (o == null) {
+			return false;
+		}
+		int slot = find(o, hash(o));
+		if (slot < 0) {
+			return false;
+		}
+		removeAt(slot, null);
+		return true;
 	}
 
 	/**
-	 * Get the size of the map.
-	 * 
-	 * @return Integer representing the size of the map.
+	 * Get the size of the set.
+	 *
+	 * @return Integer representing the size of the set.
 	 */
 	public int size() {
-		
-		return storage.size();
+
+		return numElements;
+	}
+
+	/**
+	 * Adds every element of a collection. The table is grown once, up front;
+	 * elements of another ThreeTenHashSet are added with their cached hashes.
+	 *
+	 * @param c The collection.
+	 * @return Boolean whether the set changed.
+	 */
+	@SuppressWarnings("unchecked")
+	public boolean addAll(Collection<? extends E> c) {
+
+		ensureCapacity(numElements + c.size());
+		boolean changed = false;
+
+		if (c instanceof ThreeTenHashSet) {
+			ThreeTenHashSet<? extends E> other = (ThreeTenHashSet<? extends E>) c;
+			for (int i = 0; i < other.elements.length; i++) {
+				if (other.elements[i] != null) {
+					changed |= add(other.elements[i], other.hashes[i]);
+				}
+			}
+			return changed;
+		}
+
+		for (E e : c) {
+			changed |= add(e);
+		}
+		return changed;
+	}
+
+	/**
+	 * Checks that every element of a collection is in the set. A larger
+	 * ThreeTenHashSet is rejected by size alone; a smaller one is checked with
+	 * its cached hashes.
+	 *
+	 * @param c The collection.
+	 * @return Boolean whether the set contains every element of c.
+	 */
+	public boolean containsAll(Collection<?> c) {
+
+		if (c instanceof ThreeTenHashSet) {
+			ThreeTenHashSet<?> other = (ThreeTenHashSet<?>) c;
+			if (other.numElements > numElements) {
+				return false;
+			}
+			for (int i = 0; i < other.elements.length; i++) {
+				if (other.elements[i] != null && find(other.elements[i], other.hashes[i]) < 0) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		for (Object o : c) {
+			if (!contains(o)) {
+				return false;
+			}
+		}
+		return true;
 	}
 
 	/**
-	 * Method to turn the HashMap into an Array.
-	 * 
-	 * @return Array of Objects converted from HashMap.
+	 * Removes every element that is also in a collection. Whichever of the two is
+	 * smaller is walked: a large collection is probed once per element of this
+	 * set, a small one removes its elements directly.
+	 *
+	 * @param c The collection.
+	 * @return Boolean whether the set changed.
+	 */
+	public boolean removeAll(Collection<?> c) {
+
+		if (c instanceof Set && c.size() > numElements) {
+			return retain(c, false);
+		}
+
+		int before = numElements;
+		if (c instanceof ThreeTenHashSet) {
+			ThreeTenHashSet<?> other = (ThreeTenHashSet<?>) c;
+			for (int i = 0; i < other.elements.length; i++) {
+				if (other.elements[i] != null) {
+					int slot = find(other.elements[i], other.hashes[i]);
+					if (slot >= 0) {
+						removeAt(slot, null);
+					}
+				}
+			}
+		} else {
+			for (Object o : c) {
+				remove(o);
+			}
+		}
+		return numElements != before;
+	}
+
+	/**
+	 * Removes every element that is not in a collection.
+	 *
+	 * @param c The collection.
+	 * @return Boolean whether the set changed.
+	 */
+	public boolean retainAll(Collection<?> c) {
+
+		return retain(c, true);
+	}
+
+	/**
+	 * Method to keep only the elements whose membership in a collection matches.
+	 * The kept elements are copied into a fresh table in one pass with their
+	 * cached hashes, instead of being removed one at a time.
+	 *
+	 * @param c    The collection.
+	 * @param keep Whether to keep the elements that are in c (otherwise the ones
+	 *             that are not).
+	 * @return Boolean whether the set changed.
+	 */
+	private boolean retain(Collection<?> c, boolean keep) {
+
+		Object[] oldElements = elements;
+		int[] oldHashes = hashes;
+		int kept = 0;
+		boolean[] keeps = new boolean[oldElements.length];
+		for (int i = 0; i < oldElements.length; i++) {
+			if (oldElements[i] != null && c.contains(oldElements[i]) == keep) {
+				keeps[i] = true;
+				kept++;
+			}
+		}
+		if (kept == numElements) {
+			return false;
+		}
+
+		int capacity = Math.max(originalCapacity, IntObjectMap.capacityFor(kept));
+		elements = new Object[capacity];
+		hashes = new int[capacity];
+		int mask = capacity - 1;
+		for (int i = 0; i < oldElements.length; i++) {
+			if (keeps[i]) {
+				int slot = oldHashes[i] & mask;
+				while (elements[slot] != null) {
+					slot = (slot + 1) & mask;
+				}
+				elements[slot] = oldElements[i];
+				hashes[slot] = oldHashes[i];
+			}
+		}
+		numElements = kept;
+		modCount++;
+		return true;
+	}
+
+	/**
+	 * Method to turn the set into an Array.
+	 *
+	 * @return Array holding every element.
 	 */
 	public Object[] toArray() {
-		
-		ThreeTenHashMap.TableEntry[] arr = storage.toArray();
-		Object[] ret = new Object[arr.length];
-		for (int i = 0; i < arr.length; i++) {
-			ret[i] = arr[i].key;
+
+		Object[] ret = new Object[numElements];
+		int index = 0;
+		for (Object e : elements) {
+			if (e != null) {
+				ret[index++] = e;
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T[] toArray(T[] a) {
+
+		T[] ret = a.length >= numElements ? a
+				: (T[]) java.lang.reflect.Array.newInstance(a.getClass().getComponentType(), numElements);
+		int index = 0;
+		for (Object e : elements) {
+			if (e != null) {
+				ret[index++] = (T) e;
+			}
+		}
+		if (ret.length > numElements) {
+			ret[numElements] = null;
 		}
 		return ret;
 	}
 
+	/**
+	 * Compares the specified object with this set for equality.
+	 *
+	 * @param o Object to be compared to.
+	 * @return Boolean whether o is a set with the same elements.
+	 */
+	public boolean equals(Object o) {
+
+		if (o == this) {
+			return true;
+		}
+		if (!(o instanceof Set) || ((Set<?>) o).size() != numElements) {
+			return false;
+		}
+		return containsAll((Set<?>) o);
+	}
+
+	/**
+	 * Returns the hash code value for this set, the sum of the hash codes of its
+	 * elements.
+	 *
+	 * @return Integer representing the hashCode of the set.
+	 */
+	public int hashCode() {
+
+		int h = 0;
+		for (Object e : elements) {
+			if (e != null) {
+				h += e.hashCode();
+			}
+		}
+		return h;
+	}
+
 	/**
 	 * toString().
-	 * 
+	 *
 	 * @return String representation of the data.
 	 */
 	public String toString() {
-		
-		return storage.toString();
+
+		return Arrays.toString(toArray());
 	}
 
 	/**
-	 * Method to create an Iterator to iterate over the set.
-	 * 
+	 * Method to create an Iterator to iterate over the set. The iterator walks
+	 * the table directly and supports remove().
+	 *
 	 * @return Iterator of generic type E.
 	 */
 	public Iterator<E> iterator() {
-		
+
 		return new Iterator<E>() {
-			private Object[] values = toArray();
-			private int currentLoc = 0;
+
+			/**
+			 * Slot to look at next.
+			 */
+			private int slot = 0;
+
+			/**
+			 * Slot of the last element handed out, or -1.
+			 */
+			private int last = -1;
+
+			/**
+			 * Elements seen already that remove() moved ahead of the cursor.
+			 */
+			private List<Object> seen;
+
+			/**
+			 * Modification count the iterator expects.
+			 */
+			private int expectedModCount = modCount;
+
+			public boolean hasNext() {
+				while (slot < elements.length) {
+					Object e = elements[slot];
+					if (e != null && !(seen != null && removeSeen(e))) {
+						return true;
+					}
+					slot++;
+				}
+				return false;
+			}
+
+			/**
+			 * Method to drop an element from seen.
+			 *
+			 * @param e The element.
+			 * @return Boolean whether e was in seen.
+			 */
+			private boolean removeSeen(Object e) {
+				for (int i = 0; i < seen.size(); i++) {
+					if (seen.get(i) == e) {
+						seen.remove(i);
+						return true;
+					}
+				}
+				return false;
+			}
 
 			@SuppressWarnings("unchecked")
 			public E next() {
-				return (E) values[currentLoc++];
+				if (modCount != expectedModCount) {
+					throw new ConcurrentModificationException();
+				}
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				last = slot;
+				return (E) elements[slot++];
 			}
 
-			public boolean hasNext() {
-				return currentLoc != values.length;
+			public void remove() {
+				if (last < 0) {
+					throw new IllegalStateException();
+				}
+				if (modCount != expectedModCount) {
+					throw new ConcurrentModificationException();
+				}
+				if (seen == null) {
+					seen = new ArrayList<>();
+				}
+				removeAt(last, seen);
+				expectedModCount = modCount;
+				slot = last; // an unseen element may have moved into the emptied slot
+				last = -1;
 			}
 		};
 	}
+
+	/**
+	 * Controls the flow of the program. Used for testing purposes.
+	 *
+	 * @param args Command-line arguments supplied as an Array of String Objects.
+	 */
+	public static void main(String[] args) {
+
+		ThreeTenHashSet<String> set = new ThreeTenHashSet<>();
+		if (set.add("a") && set.add("b") && !set.add("a") && set.size() == 2 && set.contains("b")
+				&& !set.contains("c") && !set.contains(null)) {
+			System.out.println("Yay 1");
+		}
+
+		ThreeTenHashSet<String> other = new ThreeTenHashSet<>(Arrays.asList("b", "c", "d"));
+		if (set.addAll(other) && set.size() == 4 && set.containsAll(other) && !other.containsAll(set)
+				&& set.removeAll(Arrays.asList("c", "x")) && set.size() == 3 && set.retainAll(other)
+				&& set.equals(new java.util.HashSet<>(Arrays.asList("b", "d")))
+				&& set.hashCode() == new java.util.HashSet<>(Arrays.asList("b", "d")).hashCode()) {
+			System.out.println("Yay 2");
+		}
+
+		java.util.HashSet<Integer> expected = new java.util.HashSet<>();
+		ThreeTenHashSet<Integer> churn = new ThreeTenHashSet<>(1);
+		java.util.Random random = new java.util.Random(13);
+		boolean same = true;
+		for (int i = 0; i < 300000; i++) {
+			int e = random.nextInt(20000);
+			if (random.nextInt(3) == 0) {
+				same &= expected.remove(e) == churn.remove(e);
+			} else {
+				same &= expected.add(e) == churn.add(e);
+			}
+		}
+		int seen = 0;
+		int sizeBefore = churn.size();
+		for (Iterator<Integer> it = churn.iterator(); it.hasNext();) { // remove the odd ones while iterating
+			Integer e = it.next();
+			seen++;
+			if ((e & 1) == 1) {
+				it.remove();
+			}
+		}
+		expected.removeIf(e -> (e & 1) == 1);
+		if (same && seen == sizeBefore && churn.equals(expected)
+				&& expected.equals(churn)) {
+			System.out.println("Yay 3");
+		}
+
+		ThreeTenHashSet<Integer> big = new ThreeTenHashSet<>(expected);
+		ThreeTenHashSet<Integer> evens = new ThreeTenHashSet<>();
+		int common = 0;
+		for (int i = 0; i < 100; i += 2) {
+			evens.add(i);
+			common += expected.contains(i) ? 1 : 0;
+		}
+		big.removeAll(evens);
+		boolean disjoint = !evens.removeAll(big); // the larger set is probed from the smaller one
+		if (disjoint && big.size() == expected.size() - common && evens.size() == 50
+				&& evens.toArray(new Integer[0]).length == 50) {
+			System.out.println("Yay 4");
+		}
+	}
 }
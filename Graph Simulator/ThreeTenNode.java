@@ -34,6 +34,19 @@ class ThreeTenNode extends ThreeTenGraphComponent {
 		}
 	}
 	
+	/**
+	 *  Creates a new ThreeTenNode with the given id and no text, for loading
+	 *  saved graphs. nodeCount moves past the id, so nodes created
+	 *  later with the default constructor do not reuse it.
+	 *  @param id the identifier for this node
+	 */
+	public ThreeTenNode(int id) {
+		super(id);
+		if(nodeCount <= id) {
+			nodeCount = id + 1;
+		}
+	}
+	
 	/**
      * Creates a {@code Factory} that in turn creates an instance of this node type.
      * @return the created factory
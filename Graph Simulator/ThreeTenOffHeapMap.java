@@ -0,0 +1,922 @@
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Hash map that keeps its keys and values outside the Java heap, in direct
+ * ByteBuffers, so tables of many gigabytes add nothing to what the garbage
+ * collector has to trace. Keys and values are written with a Codec on put and
+ * decoded again on every read, so get() hands out new objects.
+ *
+ * <p>Storage is an index of 16 byte slots (hash, key length, record address)
+ * using linear probing with backward-shift deletion, and a list of data chunks
+ * that records are appended to: [value length][key bytes][value bytes]. Growing
+ * the map only rewrites the index. Removed and replaced records leave garbage
+ * that is compacted away once it outweighs the live data. close() (or clear())
+ * releases the buffers right away rather than waiting for the collector.
+ *
+ * <p>Keys are compared by their encoded bytes. Null keys and values are not
+ * allowed. Iterators of the views do not support remove(); use the map's
+ * remove. Like ThreeTenHashMap this class is not thread safe.
+ *
+ * @author Jacob Strokus
+ *
+ * @param <K> generic type of the keys.
+ * @param <V> generic type of the values.
+ */
+class ThreeTenOffHeapMap<K, V> implements Map<K, V>, AutoCloseable {
+
+	/**
+	 * Bytes per index slot: int hash, int key length, long record address + 1.
+	 */
+	private static final int SLOT_BYTES = 16;
+
+	/**
+	 * Largest index, in slots (the index is one buffer of at most 1 GB).
+	 */
+	private static final int MAX_SLOTS = 1 << 26;
+
+	/**
+	 * Length of the first data chunk.
+	 */
+	private static final int MIN_CHUNK = 1 << 16;
+
+	/**
+	 * Largest data chunk; a record must fit in one chunk.
+	 */
+	private static final int MAX_CHUNK = 1 << 30;
+
+	/**
+	 * Garbage below this many bytes is never compacted.
+	 */
+	private static final long MIN_COMPACT_BYTES = 1 << 20;
+
+	/**
+	 * Method that frees a direct buffer (Unsafe.invokeCleaner), or null if the JVM
+	 * does not offer one.
+	 */
+	private static final Method INVOKE_CLEANER;
+
+	/**
+	 * Receiver of INVOKE_CLEANER.
+	 */
+	private static final Object UNSAFE;
+
+	static {
+		Method cleaner = null;
+		Object unsafe = null;
+		try {
+			Class<?> type = Class.forName("sun.misc.Unsafe");
+			Field field = type.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			unsafe = field.get(null);
+			cleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			cleaner = null; // buffers are then freed by the garbage collector
+		}
+		INVOKE_CLEANER = cleaner;
+		UNSAFE = unsafe;
+	}
+
+	/**
+	 * Codec of the keys.
+	 */
+	private final Codec<K> keyCodec;
+
+	/**
+	 * Codec of the values.
+	 */
+	private final Codec<V> valueCodec;
+
+	/**
+	 * Index slots.
+	 */
+	private ByteBuffer index;
+
+	/**
+	 * Number of slots in the index (a power of two).
+	 */
+	private int slots;
+
+	/**
+	 * Data chunks records are appended to.
+	 */
+	private List<ByteBuffer> chunks = new ArrayList<>();
+
+	/**
+	 * Write position in the last chunk.
+	 */
+	private int chunkEnd;
+
+	/**
+	 * Number of keys in the map.
+	 */
+	private int numElements = 0;
+
+	/**
+	 * Bytes of records that are no longer referenced.
+	 */
+	private long garbageBytes = 0;
+
+	/**
+	 * Total bytes of all records, live or not.
+	 */
+	private long recordBytes = 0;
+
+	/**
+	 * Heap buffer holding the encoded key of the current operation.
+	 */
+	private ByteBuffer scratch = ByteBuffer.allocate(64);
+
+	/**
+	 * Number of slots the map was created with.
+	 */
+	private final int originalSlots;
+
+	/**
+	 * Whether close() was called.
+	 */
+	private boolean closed = false;
+
+	/**
+	 * Constructor to create an off-heap map.
+	 *
+	 * @param expected   Number of keys expected.
+	 * @param keyCodec   Codec of the keys.
+	 * @param valueCodec Codec of the values.
+	 */
+	public ThreeTenOffHeapMap(int expected, Codec<K> keyCodec, Codec<V> valueCodec) {
+
+		this.keyCodec = Objects.requireNonNull(keyCodec);
+		this.valueCodec = Objects.requireNonNull(valueCodec);
+		originalSlots = Math.min(MAX_SLOTS, IntObjectMap.capacityFor(expected));
+		allocate();
+	}
+
+	/**
+	 * Method to allocate an empty index and first chunk.
+	 */
+	private void allocate() {
+
+		slots = originalSlots;
+		index = ByteBuffer.allocateDirect(slots * SLOT_BYTES);
+		chunks = new ArrayList<>();
+		chunks.add(ByteBuffer.allocateDirect(MIN_CHUNK));
+		chunkEnd = 0;
+		numElements = 0;
+		garbageBytes = 0;
+		recordBytes = 0;
+	}
+
+	/**
+	 * Method to free a direct buffer now, if the JVM allows it. The buffer must
+	 * not be used afterwards.
+	 *
+	 * @param buffer The buffer.
+	 */
+	static void free(ByteBuffer buffer) {
+
+		if (INVOKE_CLEANER != null && buffer.isDirect()) {
+			try {
+				INVOKE_CLEANER.invoke(UNSAFE, buffer);
+			} catch (ReflectiveOperationException e) {
+				// left to the garbage collector
+			}
+		}
+	}
+
+	/**
+	 * Method to free the index and every chunk.
+	 */
+	private void freeAll() {
+
+		free(index);
+		for (ByteBuffer chunk : chunks) {
+			free(chunk);
+		}
+		index = null;
+		chunks = new ArrayList<>();
+	}
+
+	/**
+	 * Method to release the off-heap memory. The map cannot be used afterwards.
+	 */
+	public void close() {
+
+		if (!closed) {
+			closed = true;
+			freeAll();
+			numElements = 0;
+		}
+	}
+
+	/**
+	 * Method to fail if the map was closed.
+	 *
+	 * @throws IllegalStateException if the map was closed.
+	 */
+	private void checkOpen() {
+
+		if (closed) {
+			throw new IllegalStateException("The map was closed.");
+		}
+	}
+
+	/**
+	 * Method to get the hash of a key.
+	 *
+	 * @param key The key.
+	 * @return The hash.
+	 */
+	private static int hash(Object key) {
+
+		return HashStrategy.fmix(key.hashCode());
+	}
+
+	/**
+	 * Method to encode a key into the scratch buffer.
+	 *
+	 * @param key The key.
+	 * @return Number of bytes written.
+	 */
+	private int encodeKey(K key) {
+
+		int length = keyCodec.size(key);
+		if (scratch.capacity() < length) {
+			scratch = ByteBuffer.allocate(Math.max(length, scratch.capacity() * 2));
+		}
+		keyCodec.write(scratch, 0, key);
+		return length;
+	}
+
+	/**
+	 * Method to get the record address stored in a slot.
+	 *
+	 * @param slot The slot.
+	 * @return The address, or -1 if the slot is empty.
+	 */
+	private long addressAt(int slot) {
+
+		return index.getLong(slot * SLOT_BYTES + 8) - 1;
+	}
+
+	/**
+	 * Method to get the chunk of a record address.
+	 *
+	 * @param address The address.
+	 * @return The chunk.
+	 */
+	private ByteBuffer chunkOf(long address) {
+
+		return chunks.get((int) (address >>> 32));
+	}
+
+	/**
+	 * Method to check whether the scratch key equals the key of a record.
+	 *
+	 * @param address Address of the record.
+	 * @param length  Key length.
+	 * @return Boolean whether the bytes are the same.
+	 */
+	private boolean keyMatches(long address, int length) {
+
+		ByteBuffer chunk = chunkOf(address);
+		int offset = (int) address + Integer.BYTES;
+		int i = 0;
+		for (; i + Long.BYTES <= length; i += Long.BYTES) {
+			if (chunk.getLong(offset + i) != scratch.getLong(i)) {
+				return false;
+			}
+		}
+		for (; i < length; i++) {
+			if (chunk.get(offset + i) != scratch.get(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Method to find the slot of the key in the scratch buffer.
+	 *
+	 * @param hash   Hash of the key.
+	 * @param length Key length.
+	 * @return The slot holding the key, or -(free slot) - 1 if it is absent.
+	 */
+	private int find(int hash, int length) {
+
+		int mask = slots - 1;
+		int slot = hash & mask;
+		long address;
+		while ((address = addressAt(slot)) >= 0) {
+			int base = slot * SLOT_BYTES;
+			if (index.getInt(base) == hash && index.getInt(base + 4) == length && keyMatches(address, length)) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -slot - 1;
+	}
+
+	/**
+	 * Method to find the slot of a key.
+	 *
+	 * @param key The key, possibly of the wrong type.
+	 * @return The slot holding the key, or -1 if it is absent.
+	 */
+	@SuppressWarnings("unchecked")
+	private int slotOf(Object key) {
+
+		checkOpen();
+		if (key == null) {
+			return -1;
+		}
+		int length;
+		try {
+			length = encodeKey((K) key);
+		} catch (ClassCastException e) {
+			return -1;
+		}
+		int slot = find(hash(key), length);
+		return slot < 0 ? -1 : slot;
+	}
+
+	/**
+	 * Method to decode the value of the record in a slot.
+	 *
+	 * @param slot The slot.
+	 * @return The value.
+	 */
+	private V valueAt(int slot) {
+
+		long address = addressAt(slot);
+		ByteBuffer chunk = chunkOf(address);
+		int offset = (int) address;
+		int keyLength = index.getInt(slot * SLOT_BYTES + 4);
+		return valueCodec.read(chunk, offset + Integer.BYTES + keyLength, chunk.getInt(offset));
+	}
+
+	/**
+	 * Method to decode the key of the record in a slot.
+	 *
+	 * @param slot The slot.
+	 * @return The key.
+	 */
+	private K keyAt(int slot) {
+
+		long address = addressAt(slot);
+		return keyCodec.read(chunkOf(address), (int) address + Integer.BYTES, index.getInt(slot * SLOT_BYTES + 4));
+	}
+
+	/**
+	 * Method to get the length of the record in a slot.
+	 *
+	 * @param slot The slot.
+	 * @return Record length in bytes.
+	 */
+	private int recordLength(int slot) {
+
+		long address = addressAt(slot);
+		return Integer.BYTES + index.getInt(slot * SLOT_BYTES + 4) + chunkOf(address).getInt((int) address);
+	}
+
+	/**
+	 * Method to reserve room for a record at the end of the data.
+	 *
+	 * @param length Record length.
+	 * @return Address of the reserved room.
+	 * @throws IllegalArgumentException if the record does not fit in a chunk.
+	 */
+	private long reserve(int length) {
+
+		if (length > MAX_CHUNK) {
+			throw new IllegalArgumentException("Record of " + length + " bytes is too big.");
+		}
+		ByteBuffer last = chunks.get(chunks.size() - 1);
+		if (last.capacity() - chunkEnd < length) {
+			int capacity = (int) Math.min(MAX_CHUNK, Math.max((long) last.capacity() * 2, length));
+			chunks.add(ByteBuffer.allocateDirect(capacity));
+			chunkEnd = 0;
+		}
+		long address = ((long) (chunks.size() - 1) << 32) | chunkEnd;
+		chunkEnd += length;
+		recordBytes += length;
+		return address;
+	}
+
+	/**
+	 * Method to append a record holding the scratch key and a value.
+	 *
+	 * @param keyLength Key length.
+	 * @param value     The value.
+	 * @return Address of the record.
+	 */
+	private long writeRecord(int keyLength, V value) {
+
+		int valueLength = valueCodec.size(value);
+		long address = reserve(Integer.BYTES + keyLength + valueLength);
+		ByteBuffer chunk = chunkOf(address);
+		int offset = (int) address;
+		chunk.putInt(offset, valueLength);
+		for (int i = 0; i < keyLength; i++) {
+			chunk.put(offset + Integer.BYTES + i, scratch.get(i));
+		}
+		valueCodec.write(chunk, offset + Integer.BYTES + keyLength, value);
+		return address;
+	}
+
+	/**
+	 * Method to fill a slot.
+	 *
+	 * @param slot      The slot.
+	 * @param hash      Hash of the key.
+	 * @param keyLength Key length.
+	 * @param address   Address of the record.
+	 */
+	private void setSlot(int slot, int hash, int keyLength, long address) {
+
+		int base = slot * SLOT_BYTES;
+		index.putInt(base, hash);
+		index.putInt(base + 4, keyLength);
+		index.putLong(base + 8, address + 1);
+	}
+
+	/**
+	 * Method to get a value in the map given a key.
+	 *
+	 * @param key The key.
+	 * @return A decoded copy of the value, or null if the key is not in the map.
+	 */
+	public V get(Object key) {
+
+		int slot = slotOf(key);
+		return slot < 0 ? null : valueAt(slot);
+	}
+
+	/**
+	 * Returns true if this map contains a mapping for the specified key.
+	 *
+	 * @param key Object to check whether the given key is in the map.
+	 * @return Boolean whether the map contains the key.
+	 */
+	public boolean containsKey(Object key) {
+
+		return slotOf(key) >= 0;
+	}
+
+	/**
+	 * Associates the specified value with the specified key. A value of the same
+	 * encoded length is overwritten in place, otherwise a new record is written.
+	 *
+	 * @param key   The key.
+	 * @param value The value.
+	 * @return The previous value for the key, or null if there was none.
+	 */
+	public V put(K key, V value) {
+
+		checkOpen();
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(value);
+
+		int keyLength = encodeKey(key);
+		int hash = hash(key);
+		int slot = find(hash, keyLength);
+
+		if (slot >= 0) {
+
+			V old = valueAt(slot);
+			long address = addressAt(slot);
+			ByteBuffer chunk = chunkOf(address);
+			if (chunk.getInt((int) address) == valueCodec.size(value)) {
+				valueCodec.write(chunk, (int) address + Integer.BYTES + keyLength, value);
+			} else {
+				garbageBytes += recordLength(slot);
+				setSlot(slot, hash, keyLength, writeRecord(keyLength, value));
+				compactIfNeeded();
+			}
+			return old;
+		}
+
+		if (numElements + 1 > (slots >>> 2) * 3) {
+			growIndex();
+			slot = find(hash, keyLength);
+		}
+		setSlot(-slot - 1, hash, keyLength, writeRecord(keyLength, value));
+		numElements++;
+		return null;
+	}
+
+	/**
+	 * Method to double the index. Records stay where they are.
+	 *
+	 * @throws IllegalStateException if the index is at its largest.
+	 */
+	private void growIndex() {
+
+		if (slots >= MAX_SLOTS) {
+			throw new IllegalStateException("Off-heap map is full.");
+		}
+		ByteBuffer old = index;
+		int oldSlots = slots;
+		slots *= 2;
+		index = ByteBuffer.allocateDirect(slots * SLOT_BYTES);
+
+		int mask = slots - 1;
+		for (int i = 0; i < oldSlots; i++) {
+			long stored = old.getLong(i * SLOT_BYTES + 8);
+			if (stored != 0) {
+				int hash = old.getInt(i * SLOT_BYTES);
+				int slot = hash & mask;
+				while (addressAt(slot) >= 0) {
+					slot = (slot + 1) & mask;
+				}
+				setSlot(slot, hash, old.getInt(i * SLOT_BYTES + 4), stored - 1);
+			}
+		}
+		free(old);
+	}
+
+	/**
+	 * Method to remove a pair from the map. Later slots of the cluster are shifted
+	 * back so no tombstones are left.
+	 *
+	 * @param key The key.
+	 * @return The value of the pair removed, or null if the key was not found.
+	 */
+	public V remove(Object key) {
+
+		int slot = slotOf(key);
+		if (slot < 0) {
+			return null;
+		}
+		V old = valueAt(slot);
+		garbageBytes += recordLength(slot);
+		numElements--;
+
+		int mask = slots - 1;
+		int hole = slot;
+		int next = (hole + 1) & mask;
+		while (addressAt(next) >= 0) {
+			int home = index.getInt(next * SLOT_BYTES) & mask;
+			if (((next - home) & mask) >= ((next - hole) & mask)) {
+				setSlot(hole, index.getInt(next * SLOT_BYTES), index.getInt(next * SLOT_BYTES + 4), addressAt(next));
+				hole = next;
+			}
+			next = (next + 1) & mask;
+		}
+		index.putLong(hole * SLOT_BYTES + 8, 0);
+
+		compactIfNeeded();
+		return old;
+	}
+
+	/**
+	 * Method to copy the live records into new chunks once garbage outweighs
+	 * them, then free the old chunks.
+	 */
+	private void compactIfNeeded() {
+
+		if (garbageBytes < MIN_COMPACT_BYTES || garbageBytes < recordBytes - garbageBytes) {
+			return;
+		}
+		List<ByteBuffer> old = chunks;
+		long live = recordBytes - garbageBytes;
+		chunks = new ArrayList<>();
+		chunks.add(ByteBuffer.allocateDirect((int) Math.min(MAX_CHUNK, Math.max(MIN_CHUNK, live))));
+		chunkEnd = 0;
+		recordBytes = 0;
+		garbageBytes = 0;
+
+		for (int slot = 0; slot < slots; slot++) {
+			long from = index.getLong(slot * SLOT_BYTES + 8) - 1;
+			if (from >= 0) {
+				ByteBuffer source = old.get((int) (from >>> 32));
+				int length = Integer.BYTES + index.getInt(slot * SLOT_BYTES + 4) + source.getInt((int) from);
+				long to = reserve(length);
+				ByteBuffer target = chunkOf(to);
+				for (int i = 0; i < length; i++) {
+					target.put((int) to + i, source.get((int) from + i));
+				}
+				index.putLong(slot * SLOT_BYTES + 8, to + 1);
+			}
+		}
+		for (ByteBuffer chunk : old) {
+			free(chunk);
+		}
+	}
+
+	/**
+	 * Copies all of the mappings from the specified map to this map.
+	 *
+	 * @param m Map that extends generic types K and V.
+	 */
+	public void putAll(Map<? extends K, ? extends V> m) {
+
+		for (Map.Entry<? extends K, ? extends V> e : m.entrySet()) {
+			put(e.getKey(), e.getValue());
+		}
+	}
+
+	/**
+	 * Method to get the size of the map.
+	 *
+	 * @return Number of mappings.
+	 */
+	public int size() {
+
+		return numElements;
+	}
+
+	/**
+	 * Method to check if the map is empty.
+	 *
+	 * @return Boolean whether the map is empty.
+	 */
+	public boolean isEmpty() {
+
+		return numElements == 0;
+	}
+
+	/**
+	 * Method to remove every mapping. The off-heap memory is released and a table
+	 * of the original size is allocated.
+	 */
+	public void clear() {
+
+		checkOpen();
+		freeAll();
+		allocate();
+	}
+
+	/**
+	 * Method to get the number of off-heap bytes the map holds.
+	 *
+	 * @return Bytes of the index and every data chunk.
+	 */
+	public long offHeapBytes() {
+
+		long bytes = index == null ? 0 : index.capacity();
+		for (ByteBuffer chunk : chunks) {
+			bytes += chunk.capacity();
+		}
+		return bytes;
+	}
+
+	/**
+	 * Returns true if this map maps one or more keys to the specified value. This
+	 * decodes every value.
+	 *
+	 * @param value Object to look for.
+	 * @return Boolean whether some key maps to value.
+	 */
+	public boolean containsValue(Object value) {
+
+		for (V v : values()) {
+			if (v.equals(value)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Iterator over the used slots of the index.
+	 *
+	 * @param <T> type handed out for each slot.
+	 */
+	private abstract class SlotIterator<T> implements Iterator<T> {
+
+		/**
+		 * Next used slot, or slots if there is none.
+		 */
+		private int slot = advance(0);
+
+		/**
+		 * Method to get the element handed out for a slot.
+		 *
+		 * @param slot The slot.
+		 * @return The element.
+		 */
+		abstract T get(int slot);
+
+		/**
+		 * Method to find the first used slot at or after the given one.
+		 *
+		 * @param from Slot to start at.
+		 * @return The used slot, or slots if there is none.
+		 */
+		private int advance(int from) {
+			checkOpen();
+			while (from < slots && addressAt(from) < 0) {
+				from++;
+			}
+			return from;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public boolean hasNext() {
+			return slot < slots;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public T next() {
+			if (slot >= slots) {
+				throw new NoSuchElementException();
+			}
+			T element = get(slot);
+			slot = advance(slot + 1);
+			return element;
+		}
+	}
+
+	/**
+	 * Returns a Set view of the keys in this map. Each key is decoded as it is
+	 * handed out.
+	 *
+	 * @return Set containing all the keys in the map.
+	 */
+	public Set<K> keySet() {
+
+		return new AbstractSet<K>() {
+			public Iterator<K> iterator() {
+				return new SlotIterator<K>() {
+					K get(int slot) {
+						return keyAt(slot);
+					}
+				};
+			}
+
+			public int size() {
+				return numElements;
+			}
+
+			public boolean contains(Object o) {
+				return containsKey(o);
+			}
+		};
+	}
+
+	/**
+	 * Returns a Collection view of the values in this map.
+	 *
+	 * @return Collection of values from the map.
+	 */
+	public Collection<V> values() {
+
+		return new AbstractCollection<V>() {
+			public Iterator<V> iterator() {
+				return new SlotIterator<V>() {
+					V get(int slot) {
+						return valueAt(slot);
+					}
+				};
+			}
+
+			public int size() {
+				return numElements;
+			}
+		};
+	}
+
+	/**
+	 * Returns a Set view of the mappings in this map. The entries are read-only
+	 * decoded copies of each pair.
+	 *
+	 * @return Set of the mappings contained in the map.
+	 */
+	public Set<Map.Entry<K, V>> entrySet() {
+
+		return new AbstractSet<Map.Entry<K, V>>() {
+			public Iterator<Map.Entry<K, V>> iterator() {
+				return new SlotIterator<Map.Entry<K, V>>() {
+					Map.Entry<K, V> get(int slot) {
+						return new AbstractMap.SimpleImmutableEntry<>(keyAt(slot), valueAt(slot));
+					}
+				};
+			}
+
+			public int size() {
+				return numElements;
+			}
+		};
+	}
+
+	/**
+	 * Compares the specified object with this map for equality.
+	 *
+	 * @param o Object to be compared to.
+	 * @return Boolean whether both maps hold the same mappings.
+	 */
+	public boolean equals(Object o) {
+
+		if (o == this) {
+			return true;
+		}
+		if (!(o instanceof Map) || ((Map<?, ?>) o).size() != size()) {
+			return false;
+		}
+		Map<?, ?> m = (Map<?, ?>) o;
+		for (Map.Entry<K, V> e : entrySet()) {
+			if (!e.getValue().equals(m.get(e.getKey()))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the hash code value for this map, the sum of the hash codes of its
+	 * entries.
+	 *
+	 * @return Integer representing the hashCode of the map.
+	 */
+	public int hashCode() {
+
+		int h = 0;
+		for (Map.Entry<K, V> e : entrySet()) {
+			h += e.hashCode();
+		}
+		return h;
+	}
+
+	/**
+	 * toString method.
+	 *
+	 * @return String literal representing the data in the map.
+	 */
+	public String toString() {
+
+		StringBuilder s = new StringBuilder();
+		for (Map.Entry<K, V> e : entrySet()) {
+			s.append(e.getKey()).append(":").append(e.getValue()).append("\n");
+		}
+		return s.toString().trim();
+	}
+
+	/**
+	 * Controls the flow of the program. Used for testing purposes.
+	 *
+	 * @param args Command-line arguments supplied as an Array of String Objects.
+	 */
+	public static void main(String[] args) {
+
+		try (ThreeTenOffHeapMap<String, Integer> map = new ThreeTenOffHeapMap<>(4, Codec.STRING, Codec.INTEGER)) {
+
+			map.put("a", 1);
+			map.put("banana", 2);
+			map.put("a", 3);
+
+			if (map.size() == 2 && map.get("a") == 3 && map.get("banana") == 2 && map.get("b") == null
+					&& map.get(7) == null && map.containsKey("banana") && map.containsValue(3)) {
+				System.out.println("Yay 1");
+			}
+
+			if (map.remove("a") == 3 && map.remove("a") == null && map.size() == 1
+					&& map.toString().equals("banana:2")) {
+				System.out.println("Yay 2");
+			}
+		}
+
+		ThreeTenOffHeapMap<Long, String> churn = new ThreeTenOffHeapMap<>(1, Codec.LONG, Codec.STRING);
+		java.util.HashMap<Long, String> expected = new java.util.HashMap<>();
+		java.util.Random random = new java.util.Random(5);
+		boolean same = true;
+		for (int i = 0; i < 400000; i++) { // values change length, so records are replaced and compacted
+			long k = random.nextInt(20000);
+			if (random.nextInt(3) == 0) {
+				same &= Objects.equals(expected.remove(k), churn.remove(k));
+			} else {
+				String v = "v" + i;
+				same &= Objects.equals(expected.put(k, v), churn.put(k, v));
+			}
+		}
+		if (same && churn.equals(expected) && expected.equals(churn) && churn.hashCode() == expected.hashCode()
+				&& churn.keySet().equals(expected.keySet()) && churn.offHeapBytes() < 8 << 20) {
+			System.out.println("Yay 3");
+		}
+
+		churn.close();
+		try {
+			churn.get(1L);
+		} catch (IllegalStateException e) {
+			if (churn.size() == 0) {
+				System.out.println("Yay 4");
+			}
+		}
+	}
+}
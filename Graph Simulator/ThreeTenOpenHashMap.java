@@ -0,0 +1,1080 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Class to create open addressing hash maps of generic type that implements the
+ * Map interface. Unlike ThreeTenHashMap there are no per entry Nodes: keys,
+ * values, cached hashes and one byte control fingerprints live in flat parallel
+ * arrays so a lookup touches a few adjacent slots instead of chasing pointers.
+ *
+ * <p>The probing strategy is chosen at construction:
+ * <ul>
+ * <li>{@link Probing#LINEAR} probes slot after slot and removes with backward
+ * shifting, so no tombstones are left behind.
+ * <li>{@link Probing#ROBIN_HOOD} is linear probing that keeps every entry
+ * ordered by its distance from home, which lets a miss stop early.
+ * <li>{@link Probing#GROUP} scans groups of eight control bytes at once (Swiss
+ * table style), comparing seven bit fingerprints in a single long word.
+ * </ul>
+ *
+ * @author Jacob Strokus
+ *
+ * @param <K> generic type.
+ * @param <V> generic type.
+ */
+class ThreeTenOpenHashMap<K, V> implements Map<K, V> {
+
+	/**
+	 * The probing strategies supported by this map.
+	 */
+	public enum Probing {
+		/**
+		 * Plain linear probing with backward shift deletion.
+		 */
+		LINEAR,
+
+		/**
+		 * Linear probing ordered by probe distance (Robin Hood hashing).
+		 */
+		ROBIN_HOOD,
+
+		/**
+		 * Group probing over eight control bytes at a time.
+		 */
+		GROUP
+	}
+
+	/**
+	 * Number of control bytes scanned together by the GROUP strategy.
+	 */
+	private static final int GROUP_WIDTH = 8;
+
+	/**
+	 * Control byte for a slot that has never been used.
+	 */
+	private static final byte EMPTY = (byte) 0x80;
+
+	/**
+	 * Control byte for a slot whose entry was removed (GROUP strategy only).
+	 */
+	private static final byte DELETED = (byte) 0xFE;
+
+	/**
+	 * Every byte of a long set to 0x01.
+	 */
+	private static final long LSBS = 0x0101010101010101L;
+
+	/**
+	 * Every byte of a long set to 0x80.
+	 */
+	private static final long MSBS = 0x8080808080808080L;
+
+	/**
+	 * View used to read eight control bytes as one long.
+	 */
+	private static final VarHandle GROUP_WORD = MethodHandles.byteArrayViewVarHandle(long[].class,
+			ByteOrder.LITTLE_ENDIAN);
+
+	/**
+	 * Probing strategy of this map.
+	 */
+	private final Probing probing;
+
+	/**
+	 * Control byte per slot: EMPTY, DELETED or a seven bit hash fingerprint.
+	 */
+	private byte[] control;
+
+	/**
+	 * Cached spread hash per slot.
+	 */
+	private int[] hashes;
+
+	/**
+	 * Key per slot.
+	 */
+	private Object[] keys;
+
+	/**
+	 * Value per slot.
+	 */
+	private Object[] values;
+
+	/**
+	 * Current number of elements in table.
+	 */
+	private int numElements = 0;
+
+	/**
+	 * Number of DELETED control bytes in the table.
+	 */
+	private int numDeleted = 0;
+
+	/**
+	 * Integer representing the original size of the table.
+	 */
+	private final int originalSize;
+
+	/**
+	 * Constructor to create the map with the given size using Robin Hood probing.
+	 *
+	 * @param size Number of slots in the table, rounded up to a power of two.
+	 */
+	public ThreeTenOpenHashMap(int size) {
+
+		this(size, Probing.ROBIN_HOOD);
+	}
+
+	/**
+	 * Constructor to create the map with the given size and probing strategy.
+	 *
+	 * @param size    Number of slots in the table, rounded up to a power of two.
+	 * @param probing The probing strategy to use.
+	 * @throws IllegalArgumentException if probing is null.
+	 */
+	public ThreeTenOpenHashMap(int size, Probing probing) {
+
+		if (probing == null) {
+			throw new IllegalArgumentException("Probing strategy is null.");
+		}
+		this.probing = probing;
+		this.originalSize = tableSizeFor(size);
+		allocate(originalSize);
+	}
+
+	/**
+	 * Method to round a requested slot count up to a legal table size (a power of
+	 * two holding at least one group).
+	 *
+	 * @param size Requested number of slots.
+	 * @return Legal number of slots.
+	 */
+	private static int tableSizeFor(int size) {
+
+		if (size <= GROUP_WIDTH) {
+			return GROUP_WIDTH;
+		}
+		if (size > (1 << 30)) {
+			return 1 << 30;
+		}
+		return Integer.highestOneBit(size - 1) << 1;
+	}
+
+	/**
+	 * Method to allocate empty parallel arrays of the given size.
+	 *
+	 * @param size Number of slots (a power of two).
+	 */
+	private void allocate(int size) {
+
+		control = new byte[size];
+		Arrays.fill(control, EMPTY);
+		hashes = new int[size];
+		keys = new Object[size];
+		values = new Object[size];
+		numDeleted = 0;
+	}
+
+	/**
+	 * Method to spread the bits of a hash code so that both the low bits (home
+	 * slot) and the high bits (fingerprint) are well mixed.
+	 *
+	 * @param key The key to hash.
+	 * @return The spread hash.
+	 */
+	private static int hash(Object key) {
+
+		int h = key.hashCode() * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Method to get the seven bit fingerprint stored in the control byte.
+	 *
+	 * @param hash Spread hash.
+	 * @return The fingerprint, always in [0, 127].
+	 */
+	private static byte fingerprint(int hash) {
+
+		return (byte) (hash >>> 25);
+	}
+
+	/**
+	 * Method to get the number of entries the table may hold before it grows.
+	 *
+	 * @return Maximum number of used (full or deleted) slots.
+	 */
+	private int maxFill() {
+
+		int length = control.length;
+		if (probing == Probing.LINEAR) {
+			return length - (length >>> 2);
+		}
+		return length - (length >>> 3);
+	}
+
+	/**
+	 * Method to get the probe distance of the entry in a slot from its home slot.
+	 *
+	 * @param slot Occupied slot.
+	 * @return Distance from home.
+	 */
+	private int distance(int slot) {
+
+		int mask = control.length - 1;
+		return (slot - (hashes[slot] & mask)) & mask;
+	}
+
+	/**
+	 * Method to find the slot holding a key.
+	 *
+	 * @param key  The key to find.
+	 * @param hash Spread hash of the key.
+	 * @return Slot index, or -1 if the key is not in the table.
+	 */
+	private int findSlot(Object key, int hash) {
+
+		if (probing == Probing.GROUP) {
+			return findSlotGroup(key, hash);
+		}
+
+		int mask = control.length - 1;
+		int slot = hash & mask;
+		for (int dist = 0; dist <= mask; dist++) {
+			if (control[slot] == EMPTY) {
+				return -1;
+			}
+			if (probing == Probing.ROBIN_HOOD && distance(slot) < dist) {
+				return -1; // the key would have displaced this entry
+			}
+			if (hashes[slot] == hash && key.equals(keys[slot])) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Method to find the slot holding a key using group probing.
+	 *
+	 * @param key  The key to find.
+	 * @param hash Spread hash of the key.
+	 * @return Slot index, or -1 if the key is not in the table.
+	 */
+	private int findSlotGroup(Object key, int hash) {
+
+		int groupMask = (control.length / GROUP_WIDTH) - 1;
+		long pattern = LSBS * fingerprint(hash);
+		int group = hash & groupMask;
+
+		for (int step = 1; step <= groupMask + 1; step++) {
+			int base = group * GROUP_WIDTH;
+			long word = (long) GROUP_WORD.get(control, base);
+
+			long x = word ^ pattern;
+			long matches = (x - LSBS) & ~x & MSBS;
+			while (matches != 0) {
+				int slot = base + (Long.numberOfTrailingZeros(matches) >>> 3);
+				if (hashes[slot] == hash && key.equals(keys[slot])) {
+					return slot;
+				}
+				matches &= matches - 1;
+			}
+
+			if ((word & ~(word << 6) & MSBS) != 0) { // group has an EMPTY byte
+				return -1;
+			}
+			group = (group + step) & groupMask; // triangular probing
+		}
+		return -1;
+	}
+
+	/**
+	 * Method to find the first EMPTY or DELETED slot along a key's group probe
+	 * sequence.
+	 *
+	 * @param hash Spread hash of the key.
+	 * @return Slot index available for insertion.
+	 */
+	private int findFreeSlotGroup(int hash) {
+
+		int groupMask = (control.length / GROUP_WIDTH) - 1;
+		int group = hash & groupMask;
+
+		for (int step = 1;; step++) {
+			int base = group * GROUP_WIDTH;
+			long free = (long) GROUP_WORD.get(control, base) & MSBS;
+			if (free != 0) {
+				return base + (Long.numberOfTrailingZeros(free) >>> 3);
+			}
+			group = (group + step) & groupMask;
+		}
+	}
+
+	/**
+	 * Method to get a value in the table given a key.
+	 *
+	 * @param key The key passed in to to use to get the corresponding value.
+	 *
+	 * @return V value to be return if matching key. If value not found return null.
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(Object key) {
+
+		int slot = findSlot(key, hash(key));
+		return slot < 0 ? null : (V) values[slot];
+	}
+
+	/**
+	 * Returns true if this map contains a mapping for the specified key.
+	 *
+	 * @param key Object to check whether the given key is in the hash table.
+	 *
+	 * @return Boolean whether the map contains the key.
+	 */
+	public boolean containsKey(Object key) {
+
+		return findSlot(key, hash(key)) >= 0;
+	}
+
+	/**
+	 * Associates the specified value with the specified key in this map. If the map
+	 * previously contained a mapping for the key, the old value is replaced by the
+	 * specified value.
+	 *
+	 * @param key   The key.
+	 * @param value The value.
+	 *
+	 * @return The previous value for the key, or null if there was none.
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(K key, V value) {
+
+		int hash = hash(key);
+		int slot = findSlot(key, hash);
+		if (slot >= 0) {
+			V old = (V) values[slot];
+			values[slot] = value;
+			return old;
+		}
+
+		if (numElements + numDeleted + 1 > maxFill()) {
+			// mostly tombstones: clean up in place, otherwise double
+			rehash(numElements + 1 > maxFill() / 2 ? control.length * 2 : control.length);
+		}
+		insertNew(key, value, hash);
+		return null;
+	}
+
+	/**
+	 * Method to insert a key known not to be in the table. The table must have a
+	 * free slot.
+	 *
+	 * @param key   The key.
+	 * @param value The value.
+	 * @param hash  Spread hash of the key.
+	 */
+	private void insertNew(Object key, Object value, int hash) {
+
+		numElements++;
+
+		if (probing == Probing.GROUP) {
+			int slot = findFreeSlotGroup(hash);
+			if (control[slot] == DELETED) {
+				numDeleted--;
+			}
+			setSlot(slot, key, value, hash);
+			return;
+		}
+
+		int mask = control.length - 1;
+		int slot = hash & mask;
+		int dist = 0;
+		while (control[slot] != EMPTY) {
+			if (probing == Probing.ROBIN_HOOD && distance(slot) < dist) {
+				// take from the rich: swap with the entry closer to home
+				Object k = keys[slot];
+				Object v = values[slot];
+				int h = hashes[slot];
+				int d = distance(slot);
+				setSlot(slot, key, value, hash);
+				key = k;
+				value = v;
+				hash = h;
+				dist = d;
+			}
+			slot = (slot + 1) & mask;
+			dist++;
+		}
+		setSlot(slot, key, value, hash);
+	}
+
+	/**
+	 * Method to fill a slot.
+	 *
+	 * @param slot  Slot index.
+	 * @param key   The key.
+	 * @param value The value.
+	 * @param hash  Spread hash of the key.
+	 */
+	private void setSlot(int slot, Object key, Object value, int hash) {
+
+		control[slot] = fingerprint(hash);
+		hashes[slot] = hash;
+		keys[slot] = key;
+		values[slot] = value;
+	}
+
+	/**
+	 * Method to remove a pair from the table.
+	 *
+	 * @param key The corresponding key to a value in the map.
+	 *
+	 * @return V the value of the pair removed. If value not found return null.
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(Object key) {
+
+		int slot = findSlot(key, hash(key));
+		if (slot < 0) {
+			return null;
+		}
+		V old = (V) values[slot];
+		removeSlot(slot);
+		return old;
+	}
+
+	/**
+	 * Method to remove the entry in a slot. LINEAR and ROBIN_HOOD shift the rest
+	 * of the cluster back; GROUP leaves a tombstone unless the group still has an
+	 * EMPTY byte (then no probe sequence can pass through it).
+	 *
+	 * @param slot Occupied slot.
+	 */
+	private void removeSlot(int slot) {
+
+		numElements--;
+
+		if (probing == Probing.GROUP) {
+			int base = slot & -GROUP_WIDTH;
+			long word = (long) GROUP_WORD.get(control, base);
+			if ((word & ~(word << 6) & MSBS) != 0) {
+				control[slot] = EMPTY;
+			} else {
+				control[slot] = DELETED;
+				numDeleted++;
+			}
+			keys[slot] = null;
+			values[slot] = null;
+			return;
+		}
+
+		int mask = control.length - 1;
+		int hole = slot;
+		int next = (hole + 1) & mask;
+		while (control[next] != EMPTY) {
+			int home = hashes[next] & mask;
+			boolean movable;
+			if (probing == Probing.ROBIN_HOOD) {
+				movable = distance(next) > 0;
+			} else {
+				// move only if the hole lies cyclically in [home, next)
+				movable = ((next - home) & mask) >= ((next - hole) & mask);
+			}
+			if (movable) {
+				setSlot(hole, keys[next], values[next], hashes[next]);
+				hole = next;
+			} else if (probing == Probing.ROBIN_HOOD) {
+				break;
+			}
+			next = (next + 1) & mask;
+		}
+		control[hole] = EMPTY;
+		keys[hole] = null;
+		values[hole] = null;
+	}
+
+	/**
+	 * Method to rehash the current table.
+	 *
+	 * @param size Integer representing the number of slots wanted, rounded up to a
+	 *             power of two.
+	 * @return Boolean whether rehash was success (false if the entries would not
+	 *         fit).
+	 */
+	public boolean rehash(int size) {
+
+		if (size < 1) {
+			return false;
+		}
+
+		byte[] oldControl = control;
+		int[] oldHashes = hashes;
+		Object[] oldKeys = keys;
+		Object[] oldValues = values;
+		int oldDeleted = numDeleted;
+
+		allocate(tableSizeFor(size));
+		if (numElements > maxFill()) {
+			control = oldControl;
+			hashes = oldHashes;
+			keys = oldKeys;
+			values = oldValues;
+			numDeleted = oldDeleted;
+			return false;
+		}
+
+		numElements = 0;
+		for (int i = 0; i < oldControl.length; i++) {
+			if (oldControl[i] >= 0) {
+				insertNew(oldKeys[i], oldValues[i], oldHashes[i]);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Method to reset the table to it's original size it had when constructed.
+	 */
+	public void clear() {
+
+		allocate(originalSize);
+		numElements = 0;
+	}
+
+	/**
+	 * Method to check if the table is empty.
+	 *
+	 * @return Boolean expression whether the table is empty or not.
+	 */
+	public boolean isEmpty() {
+
+		return numElements == 0;
+	}
+
+	/**
+	 * Method to get the number of slots in the table.
+	 *
+	 * @return number of slots.
+	 */
+	public int getSlots() {
+
+		return control.length;
+	}
+
+	/**
+	 * Method to get the probing strategy of this map.
+	 *
+	 * @return the probing strategy.
+	 */
+	public Probing getProbing() {
+
+		return probing;
+	}
+
+	/**
+	 * Method to get the size of the table.
+	 *
+	 * @return Number of elements in the table.
+	 */
+	public int size() {
+
+		return numElements;
+	}
+
+	/**
+	 * Returns true if this map maps one or more keys to the specified value. This
+	 * scans the value array and runs in O(slots) time.
+	 *
+	 * @param value Object to check if the hash table contains.
+	 *
+	 * @return Boolean whether map maps one or more keys to the specified value.
+	 */
+	public boolean containsValue(Object value) {
+
+		for (int i = 0; i < control.length; i++) {
+			if (control[i] >= 0 && Objects.equals(value, values[i])) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Copies all of the mappings from the specified map to this map, growing the
+	 * table once up front.
+	 *
+	 * @param m Map that extends generic types K and V.
+	 */
+	public void putAll(Map<? extends K, ? extends V> m) {
+
+		int needed = numElements + m.size();
+		int size = control.length;
+		while (size < (1 << 30) && needed > size - (size >>> 2)) {
+			size <<= 1;
+		}
+		if (size > control.length) {
+			rehash(size);
+		}
+		for (Map.Entry<? extends K, ? extends V> e : m.entrySet()) {
+			put(e.getKey(), e.getValue());
+		}
+	}
+
+	/**
+	 * Returns a Set view of the keys contained in this map. The set is backed by
+	 * the map, so changes to the map are reflected in the set, and vice-versa.
+	 *
+	 * @return Set containing all the keys in the table.
+	 */
+	public Set<K> keySet() {
+
+		return new AbstractSet<K>() {
+			public Iterator<K> iterator() {
+				return new SlotIterator<K>() {
+					@SuppressWarnings("unchecked")
+					K get(int slot) {
+						return (K) keys[slot];
+					}
+				};
+			}
+
+			public int size() {
+				return numElements;
+			}
+
+			public boolean contains(Object o) {
+				return containsKey(o);
+			}
+
+			public boolean remove(Object o) {
+				int slot = findSlot(o, hash(o));
+				if (slot < 0) {
+					return false;
+				}
+				removeSlot(slot);
+				return true;
+			}
+
+			public void clear() {
+				ThreeTenOpenHashMap.this.clear();
+			}
+		};
+	}
+
+	/**
+	 * Returns a Collection view of the values contained in this map. The collection
+	 * is backed by the map, so changes to the map are reflected in the collection,
+	 * and vice-versa.
+	 *
+	 * @return Collection of values from the hash table.
+	 */
+	public Collection<V> values() {
+
+		return new AbstractCollection<V>() {
+			public Iterator<V> iterator() {
+				return new SlotIterator<V>() {
+					@SuppressWarnings("unchecked")
+					V get(int slot) {
+						return (V) values[slot];
+					}
+				};
+			}
+
+			public int size() {
+				return numElements;
+			}
+
+			public boolean contains(Object o) {
+				return containsValue(o);
+			}
+
+			public void clear() {
+				ThreeTenOpenHashMap.this.clear();
+			}
+		};
+	}
+
+	/**
+	 * Returns a Set view of the mappings contained in this map. The set is backed
+	 * by the map, so changes to the map are reflected in the set, and vice-versa.
+	 *
+	 * @return Set of the mappings contained in the map.
+	 */
+	public Set<Map.Entry<K, V>> entrySet() {
+
+		return new AbstractSet<Map.Entry<K, V>>() {
+			public Iterator<Map.Entry<K, V>> iterator() {
+				return new SlotIterator<Map.Entry<K, V>>() {
+					Map.Entry<K, V> get(int slot) {
+						return new SlotEntry(slot);
+					}
+				};
+			}
+
+			public int size() {
+				return numElements;
+			}
+
+			public void clear() {
+				ThreeTenOpenHashMap.this.clear();
+			}
+		};
+	}
+
+	/**
+	 * Entry handed out by the entry set iterator. It reads through to the slot,
+	 * so setValue writes into the table.
+	 */
+	private final class SlotEntry implements Map.Entry<K, V> {
+
+		/**
+		 * Key of this entry.
+		 */
+		private final K key;
+
+		/**
+		 * Slot the entry was found in.
+		 */
+		private final int slot;
+
+		/**
+		 * Constructor to create an entry for an occupied slot.
+		 *
+		 * @param slot Occupied slot.
+		 */
+		@SuppressWarnings("unchecked")
+		SlotEntry(int slot) {
+			this.slot = slot;
+			this.key = (K) keys[slot];
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public K getKey() {
+			return key;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@SuppressWarnings("unchecked")
+		public V getValue() {
+			return keys[slot] == key ? (V) values[slot] : get(key);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@SuppressWarnings("unchecked")
+		public V setValue(V value) {
+			if (keys[slot] != key) {
+				return put(key, value);
+			}
+			V old = (V) values[slot];
+			values[slot] = value;
+			return old;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public boolean equals(Object o) {
+			if (!(o instanceof Map.Entry)) {
+				return false;
+			}
+			Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+			return key.equals(e.getKey()) && Objects.equals(getValue(), e.getValue());
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public int hashCode() {
+			return key.hashCode() ^ Objects.hashCode(getValue());
+		}
+
+		/**
+		 * toString method.
+		 *
+		 * @return Key and Value pair as String literal.
+		 */
+		public String toString() {
+			return key + ":" + getValue();
+		}
+	}
+
+	/**
+	 * Iterator over the occupied slots of the table. Iteration starts just past
+	 * an EMPTY slot; backward shift deletion only ever moves entries toward that
+	 * slot, so after remove() the current slot is simply examined again.
+	 *
+	 * @param <T> type handed out for each slot.
+	 */
+	private abstract class SlotIterator<T> implements Iterator<T> {
+
+		/**
+		 * Slot the iteration started after.
+		 */
+		private final int start;
+
+		/**
+		 * Number of slots visited so far.
+		 */
+		private int visited = 0;
+
+		/**
+		 * Slot of the last element returned, or -1.
+		 */
+		private int last = -1;
+
+		/**
+		 * Constructor to position the iterator after an EMPTY slot.
+		 */
+		SlotIterator() {
+			int s = 0;
+			while (s < control.length && control[s] != EMPTY) {
+				s++;
+			}
+			start = s == control.length ? control.length - 1 : s;
+			advance();
+		}
+
+		/**
+		 * Method to get the element handed out for a slot.
+		 *
+		 * @param slot Occupied slot.
+		 * @return The element.
+		 */
+		abstract T get(int slot);
+
+		/**
+		 * Method to get the slot a visit count corresponds to.
+		 *
+		 * @param count Visit count.
+		 * @return Slot index.
+		 */
+		private int slotAt(int count) {
+			return (start + 1 + count) & (control.length - 1);
+		}
+
+		/**
+		 * Method to skip over unoccupied slots.
+		 */
+		private void advance() {
+			while (visited < control.length && control[slotAt(visited)] < 0) {
+				visited++;
+			}
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public boolean hasNext() {
+			return visited < control.length;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public T next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			last = visited;
+			T ret = get(slotAt(visited++));
+			advance();
+			return ret;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public void remove() {
+			if (last < 0) {
+				throw new IllegalStateException();
+			}
+			removeSlot(slotAt(last));
+			visited = last; // an entry may have shifted into the freed slot
+			last = -1;
+			advance();
+		}
+	}
+
+	/**
+	 * Compares the specified object with this map for equality. Returns true if the
+	 * given object is also a map and the two maps represent the same mappings.
+	 *
+	 * @param o Object to be compared to. See if two objects are equal.
+	 *
+	 * @return Boolean whether two objects are equal.
+	 */
+	public boolean equals(Object o) {
+
+		if (o == this) {
+			return true;
+		}
+		if (!(o instanceof Map)) {
+			return false;
+		}
+		Map<?, ?> m = (Map<?, ?>) o;
+		if (m.size() != numElements) {
+			return false;
+		}
+		for (int i = 0; i < control.length; i++) {
+			if (control[i] >= 0) {
+				Object v = m.get(keys[i]);
+				if (!Objects.equals(v, values[i]) || (v == null && !m.containsKey(keys[i]))) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the hash code value for this map. The hash code of a map is defined
+	 * to be the sum of the hash codes of each entry in the map's entrySet() view.
+	 *
+	 * @return Integer representing the hashCode of the map.
+	 */
+	public int hashCode() {
+
+		int h = 0;
+		for (int i = 0; i < control.length; i++) {
+			if (control[i] >= 0) {
+				h += keys[i].hashCode() ^ Objects.hashCode(values[i]);
+			}
+		}
+		return h;
+	}
+
+	/**
+	 * toString method.
+	 *
+	 * @return String literal representing the data in the table.
+	 */
+	public String toString() {
+
+		StringBuilder s = new StringBuilder();
+		for (int i = 0; i < control.length; i++) {
+			if (control[i] >= 0) {
+				s.append(keys[i]).append(":").append(values[i]).append("\n");
+			}
+		}
+		return s.toString().trim();
+	}
+
+	/**
+	 * Method to debug the table.
+	 *
+	 * @return String literal representing every slot in the table. Used for
+	 *         debugging.
+	 */
+	public String toStringDebug() {
+
+		StringBuilder s = new StringBuilder();
+		for (int i = 0; i < control.length; i++) {
+			s.append("[" + i + "]: ");
+			if (control[i] >= 0) {
+				s.append("[" + keys[i] + ":" + values[i] + "]\n");
+			} else if (control[i] == DELETED) {
+				s.append("deleted\n");
+			} else {
+				s.append("null\n");
+			}
+		}
+		return s.toString().trim();
+	}
+
+	/**
+	 * Controls the flow of the program. Used for testing purposes.
+	 *
+	 * @param args Command-line arguments supplied as an Array of String Objects.
+	 */
+	public static void main(String[] args) {
+
+		for (Probing probing : Probing.values()) {
+			System.out.println("---------------- " + probing);
+
+			ThreeTenOpenHashMap<String, String> st1 = new ThreeTenOpenHashMap<>(10, probing);
+			st1.put("a", "apple");
+			st1.put("b", "banana");
+			st1.put("banana", "b");
+			st1.put("b", "butter");
+
+			if (st1.getSlots() == 16 && st1.size() == 3 && st1.get("a").equals("apple")
+					&& st1.get("b").equals("butter") && st1.get("c") == null) {
+				System.out.println("Yay 1");
+			}
+
+			ThreeTenOpenHashMap<String, Integer> st2 = new ThreeTenOpenHashMap<>(5, probing);
+			if (st2.put("a", 1) == null && st2.put("b", 2) == null && st2.put("e", 3) == null
+					&& st2.put("y", 4) == null && st2.remove("e").equals(3) && st2.remove("e") == null
+					&& st2.size() == 3 && st2.rehash(64) && st2.getSlots() == 64 && st2.get("y").equals(4)
+					&& !st2.rehash(0)) {
+				System.out.println("Yay 2");
+			}
+
+			ThreeTenOpenHashMap<String, String> st3 = new ThreeTenOpenHashMap<>(2, probing);
+			st3.put("a", "a");
+			st3.remove("a");
+			if (st3.toString().equals("") && st3.isEmpty()) {
+				st3.put("a", "a");
+				if (st3.toString().equals("a:a")) {
+					System.out.println("Yay 3");
+				}
+			}
+
+			ThreeTenOpenHashMap<Integer, Integer> st5 = new ThreeTenOpenHashMap<>(10, probing);
+			if (st5.put(Integer.MIN_VALUE, 17) == null && !st5.isEmpty()
+					&& st5.put(Integer.MIN_VALUE, 18).equals(17)) {
+				System.out.println("Yay 4");
+			}
+
+			// churn: compare against java.util.HashMap
+			java.util.HashMap<Integer, Integer> expected = new java.util.HashMap<>();
+			ThreeTenOpenHashMap<Integer, Integer> churn = new ThreeTenOpenHashMap<>(1, probing);
+			java.util.Random random = new java.util.Random(42);
+			boolean same = true;
+			for (int i = 0; i < 200000; i++) {
+				int k = random.nextInt(5000);
+				if (random.nextInt(3) == 0) {
+					same &= Objects.equals(expected.remove(k), churn.remove(k));
+				} else {
+					same &= Objects.equals(expected.put(k, i), churn.put(k, i));
+				}
+			}
+			same &= expected.equals(churn) && churn.equals(expected) && expected.hashCode() == churn.hashCode();
+			if (same && churn.size() == expected.size()) {
+				System.out.println("Yay 5");
+			}
+
+			// remove every odd key through the iterator
+			int before = churn.size();
+			int removed = 0;
+			for (Iterator<Integer> it = churn.keySet().iterator(); it.hasNext();) {
+				if (it.next() % 2 == 1) {
+					it.remove();
+					removed++;
+				}
+			}
+			expected.keySet().removeIf(k -> k % 2 == 1);
+			if (churn.size() == before - removed && churn.equals(expected)) {
+				System.out.println("Yay 6");
+			}
+		}
+	}
+}
@@ -0,0 +1,780 @@
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Immutable hash map stored as a hash array mapped trie. Each level of the trie
+ * uses five bits of the (mixed) hash to pick one of up to 32 slots, and a
+ * bitmap says which slots are used, so nodes hold only their used slots. A
+ * slot holds either a key and its value or a child node; keys whose whole
+ * hashes are equal share a collision node at the bottom.
+ *
+ * <p>plus() and minus() return a new map that copies only the nodes on the path
+ * to the key, at most seven for 32 bit hashes, and shares everything else with
+ * the map they were called on. A map never changes once built, so it can be
+ * read by any number of threads without locking.
+ *
+ * @author Jacob Strokus
+ *
+ * @param <K> generic type of the keys.
+ * @param <V> generic type of the values.
+ */
+class ThreeTenPersistentHashMap<K, V> extends AbstractMap<K, V> {
+
+	/**
+	 * Hash bits used per level.
+	 */
+	private static final int BITS = 5;
+
+	/**
+	 * Mask of the hash bits of one level.
+	 */
+	private static final int MASK = (1 << BITS) - 1;
+
+	/**
+	 * Most nodes on the path from the root to a key: seven bitmap levels and a
+	 * collision node.
+	 */
+	private static final int MAX_DEPTH = 8;
+
+	/**
+	 * Returned by find() when a key is missing, since values may be null.
+	 */
+	private static final Object NOT_FOUND = new Object();
+
+	/**
+	 * Root without any slots.
+	 */
+	private static final BitmapNode EMPTY_ROOT = new BitmapNode(null, 0, new Object[0]);
+
+	/**
+	 * Root of the trie, never null.
+	 */
+	private final BitmapNode root;
+
+	/**
+	 * Number of mappings.
+	 */
+	private final int size;
+
+	/**
+	 * Strategy that hashes the keys.
+	 */
+	private final HashStrategy strategy;
+
+	/**
+	 * Constructor to create ThreeTenPersistentHashMap Objects.
+	 *
+	 * @param root     Root of the trie.
+	 * @param size     Number of mappings.
+	 * @param strategy Strategy that hashes the keys.
+	 */
+	private ThreeTenPersistentHashMap(BitmapNode root, int size, HashStrategy strategy) {
+		this.root = root;
+		this.size = size;
+		this.strategy = strategy;
+	}
+
+	/**
+	 * Method to get an empty map hashing keys by their hashCode().
+	 *
+	 * @param <K> generic type of the keys.
+	 * @param <V> generic type of the values.
+	 * @return An empty map.
+	 */
+	public static <K, V> ThreeTenPersistentHashMap<K, V> empty() {
+
+		return empty(HashStrategy.IDENTITY);
+	}
+
+	/**
+	 * Method to get an empty map hashing keys with the given strategy.
+	 *
+	 * @param strategy Strategy that hashes the keys.
+	 * @param <K>      generic type of the keys.
+	 * @param <V>      generic type of the values.
+	 * @return An empty map.
+	 */
+	public static <K, V> ThreeTenPersistentHashMap<K, V> empty(HashStrategy strategy) {
+
+		return new ThreeTenPersistentHashMap<K, V>(EMPTY_ROOT, 0, Objects.requireNonNull(strategy));
+	}
+
+	/**
+	 * Method to build a map holding the mappings of another map. Nodes created
+	 * here belong to this call and are filled in place, so building costs one
+	 * node allocation per node of the result instead of a path copy per key.
+	 *
+	 * @param m        Map to copy. Keys must not be null.
+	 * @param strategy Strategy that hashes the keys.
+	 * @param <K>      generic type of the keys.
+	 * @param <V>      generic type of the values.
+	 * @return A new map.
+	 */
+	public static <K, V> ThreeTenPersistentHashMap<K, V> copyOf(Map<? extends K, ? extends V> m,
+			HashStrategy strategy) {
+
+		Object edit = new Object(); // owner of the nodes created by this call
+		boolean[] added = new boolean[1];
+		BitmapNode root = EMPTY_ROOT;
+		int size = 0;
+
+		for (Map.Entry<? extends K, ? extends V> e : m.entrySet()) {
+			K key = Objects.requireNonNull(e.getKey());
+			added[0] = false;
+			root = (BitmapNode) root.assoc(edit, strategy, 0, spread(strategy, key), key, e.getValue(), added);
+			if (added[0]) {
+				size++;
+			}
+		}
+		return new ThreeTenPersistentHashMap<K, V>(root, size, strategy);
+	}
+
+	/**
+	 * Method to hash a key for the trie. The strategy's hash is mixed so every
+	 * level sees well spread bits even for sequential hash codes.
+	 *
+	 * @param strategy Strategy that hashes the keys.
+	 * @param key      The key.
+	 * @return Mixed hash.
+	 */
+	private static int spread(HashStrategy strategy, Object key) {
+
+		return HashStrategy.fmix(strategy.hash(key));
+	}
+
+	/**
+	 * Method to get a map with one more (or one changed) mapping. This map is
+	 * left as it is.
+	 *
+	 * @param key   The key, not null.
+	 * @param value The value.
+	 * @return A map with key mapped to value, or this map if it already was.
+	 */
+	public ThreeTenPersistentHashMap<K, V> plus(K key, V value) {
+
+		Objects.requireNonNull(key);
+		boolean[] added = new boolean[1];
+		BitmapNode newRoot = (BitmapNode) root.assoc(null, strategy, 0, spread(strategy, key), key, value, added);
+
+		if (newRoot == root) {
+			return this;
+		}
+		return new ThreeTenPersistentHashMap<K, V>(newRoot, added[0] ? size + 1 : size, strategy);
+	}
+
+	/**
+	 * Method to get a map without the mapping of a key. This map is left as it
+	 * is.
+	 *
+	 * @param key The key.
+	 * @return A map without key, or this map if key was not in it.
+	 */
+	public ThreeTenPersistentHashMap<K, V> minus(Object key) {
+
+		if (key == null) {
+			return this;
+		}
+		Node newRoot = root.without(0, spread(strategy, key), key);
+
+		if (newRoot == root) {
+			return this;
+		}
+		return new ThreeTenPersistentHashMap<K, V>((BitmapNode) newRoot, size - 1, strategy);
+	}
+
+	/**
+	 * Method to get the value of a key.
+	 *
+	 * @param key The key.
+	 * @return The value, or null if the key is not in the map.
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(Object key) {
+
+		if (key == null) {
+			return null;
+		}
+		Object value = root.find(0, spread(strategy, key), key);
+		return value == NOT_FOUND ? null : (V) value;
+	}
+
+	/**
+	 * Returns true if this map contains a mapping for the specified key.
+	 *
+	 * @param key Object to check whether the given key is in the map.
+	 * @return Boolean whether the map contains the key.
+	 */
+	public boolean containsKey(Object key) {
+
+		return key != null && root.find(0, spread(strategy, key), key) != NOT_FOUND;
+	}
+
+	/**
+	 * Method to get the size of the map.
+	 *
+	 * @return Number of mappings.
+	 */
+	public int size() {
+
+		return size;
+	}
+
+	/**
+	 * Method to get the strategy that hashes the keys.
+	 *
+	 * @return The hash strategy.
+	 */
+	public HashStrategy getHashStrategy() {
+
+		return strategy;
+	}
+
+	/**
+	 * Returns a read-only Set view of the mappings in this map.
+	 *
+	 * @return Set of the mappings contained in the map.
+	 */
+	public Set<Map.Entry<K, V>> entrySet() {
+
+		return new AbstractSet<Map.Entry<K, V>>() {
+			public Iterator<Map.Entry<K, V>> iterator() {
+				return new EntryIterator();
+			}
+
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+	/**
+	 * Depth-first iterator over the trie.
+	 */
+	private final class EntryIterator implements Iterator<Map.Entry<K, V>> {
+
+		/**
+		 * Slot arrays of the nodes on the current path.
+		 */
+		private final Object[][] arrays = new Object[MAX_DEPTH][];
+
+		/**
+		 * Next slot to look at in each array.
+		 */
+		private final int[] positions = new int[MAX_DEPTH];
+
+		/**
+		 * Index of the deepest node on the path, -1 when done.
+		 */
+		private int depth;
+
+		/**
+		 * Key of the next entry, or null if there is none.
+		 */
+		private Object nextKey;
+
+		/**
+		 * Value of the next entry.
+		 */
+		private Object nextValue;
+
+		/**
+		 * Constructor to create EntryIterator Objects.
+		 */
+		EntryIterator() {
+			arrays[0] = root.array;
+			advance();
+		}
+
+		/**
+		 * Method to move to the next entry.
+		 */
+		private void advance() {
+
+			while (depth >= 0) {
+				Object[] array = arrays[depth];
+				int i = positions[depth];
+				if (i >= array.length) {
+					depth--;
+					continue;
+				}
+				positions[depth] = i + 2;
+				if (array[i] != null) {
+					nextKey = array[i];
+					nextValue = array[i + 1];
+					return;
+				}
+				depth++;
+				arrays[depth] = ((Node) array[i + 1]).array;
+				positions[depth] = 0;
+			}
+			nextKey = null;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public boolean hasNext() {
+			return nextKey != null;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@SuppressWarnings("unchecked")
+		public Map.Entry<K, V> next() {
+
+			if (nextKey == null) {
+				throw new NoSuchElementException();
+			}
+			Map.Entry<K, V> entry = new AbstractMap.SimpleImmutableEntry<K, V>((K) nextKey, (V) nextValue);
+			advance();
+			return entry;
+		}
+	}
+
+	/**
+	 * Node of the trie. Slots are pairs in array: a key and its value, or null
+	 * and a child node.
+	 */
+	private abstract static class Node {
+
+		/**
+		 * Owner allowed to change this node in place, or null if nobody is.
+		 */
+		final Object edit;
+
+		/**
+		 * The slots, two array elements each.
+		 */
+		Object[] array;
+
+		/**
+		 * Constructor to create Node Objects.
+		 *
+		 * @param edit  Owner allowed to change the node in place, or null.
+		 * @param array The slots.
+		 */
+		Node(Object edit, Object[] array) {
+			this.edit = edit;
+			this.array = array;
+		}
+
+		/**
+		 * Method to check whether this node holds exactly one key and no children,
+		 * so its parent can hold the key itself.
+		 *
+		 * @return Boolean whether the node is a single entry.
+		 */
+		boolean isSingleEntry() {
+			return array.length == 2 && array[0] != null;
+		}
+
+		/**
+		 * Method to find the value of a key below this node.
+		 *
+		 * @param shift Hash bits used by the levels above.
+		 * @param hash  Mixed hash of the key.
+		 * @param key   The key.
+		 * @return The value, or NOT_FOUND.
+		 */
+		abstract Object find(int shift, int hash, Object key);
+
+		/**
+		 * Method to map a key to a value below this node.
+		 *
+		 * @param edit     Owner whose nodes may be changed in place, or null to copy
+		 *                 every changed node.
+		 * @param strategy Strategy that hashes the keys, for keys that move down.
+		 * @param shift    Hash bits used by the levels above.
+		 * @param hash     Mixed hash of the key.
+		 * @param key      The key.
+		 * @param value    The value.
+		 * @param added    Set to true if the key is new.
+		 * @return The node to use instead of this one, this if nothing changed.
+		 */
+		abstract Node assoc(Object edit, HashStrategy strategy, int shift, int hash, Object key, Object value,
+				boolean[] added);
+
+		/**
+		 * Method to remove a key below this node, copying every changed node.
+		 *
+		 * @param shift Hash bits used by the levels above.
+		 * @param hash  Mixed hash of the key.
+		 * @param key   The key.
+		 * @return The node to use instead of this one, this if the key was missing.
+		 */
+		abstract Node without(int shift, int hash, Object key);
+	}
+
+	/**
+	 * Node whose bitmap says which of its 32 slots are used.
+	 */
+	private static final class BitmapNode extends Node {
+
+		/**
+		 * Bit i is set if slot i is used.
+		 */
+		int bitmap;
+
+		/**
+		 * Constructor to create BitmapNode Objects.
+		 *
+		 * @param edit   Owner allowed to change the node in place, or null.
+		 * @param bitmap Used slots.
+		 * @param array  The used slots, in slot order.
+		 */
+		BitmapNode(Object edit, int bitmap, Object[] array) {
+			super(edit, array);
+			this.bitmap = bitmap;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		Object find(int shift, int hash, Object key) {
+
+			int bit = 1 << ((hash >>> shift) & MASK);
+			if ((bitmap & bit) == 0) {
+				return NOT_FOUND;
+			}
+			int i = 2 * Integer.bitCount(bitmap & (bit - 1));
+			Object k = array[i];
+			if (k == null) {
+				return ((Node) array[i + 1]).find(shift + BITS, hash, key);
+			}
+			return key.equals(k) ? array[i + 1] : NOT_FOUND;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		Node assoc(Object edit, HashStrategy strategy, int shift, int hash, Object key, Object value,
+				boolean[] added) {
+
+			int bit = 1 << ((hash >>> shift) & MASK);
+			int i = 2 * Integer.bitCount(bitmap & (bit - 1));
+
+			if ((bitmap & bit) == 0) { // free slot: insert the key here
+				added[0] = true;
+				Object[] a = new Object[array.length + 2];
+				System.arraycopy(array, 0, a, 0, i);
+				a[i] = key;
+				a[i + 1] = value;
+				System.arraycopy(array, i, a, i + 2, array.length - i);
+				if (edit != null && this.edit == edit) {
+					bitmap |= bit;
+					array = a;
+					return this;
+				}
+				return new BitmapNode(edit, bitmap | bit, a);
+			}
+
+			Object k = array[i];
+			Object v = array[i + 1];
+
+			if (k == null) { // child node
+				Node child = (Node) v;
+				Node newChild = child.assoc(edit, strategy, shift + BITS, hash, key, value, added);
+				return newChild == child ? this : with(edit, i, null, newChild);
+			}
+			if (key.equals(k)) {
+				return v == value ? this : with(edit, i, k, value);
+			}
+
+			// another key: both move into a new child
+			added[0] = true;
+			Node child = pair(edit, shift + BITS, spread(strategy, k), k, v, hash, key, value);
+			return with(edit, i, null, child);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		Node without(int shift, int hash, Object key) {
+
+			int bit = 1 << ((hash >>> shift) & MASK);
+			if ((bitmap & bit) == 0) {
+				return this;
+			}
+			int i = 2 * Integer.bitCount(bitmap & (bit - 1));
+			Object k = array[i];
+
+			if (k == null) {
+				Node child = (Node) array[i + 1];
+				Node newChild = child.without(shift + BITS, hash, key);
+				if (newChild == child) {
+					return this;
+				}
+				if (newChild.isSingleEntry()) { // pull the last key up
+					return with(null, i, newChild.array[0], newChild.array[1]);
+				}
+				if (newChild.array.length == 0) {
+					return withoutSlot(bit, i);
+				}
+				return with(null, i, null, newChild);
+			}
+			return key.equals(k) ? withoutSlot(bit, i) : this;
+		}
+
+		/**
+		 * Method to set one slot, in place if edit owns this node.
+		 *
+		 * @param edit  Owner whose nodes may be changed in place, or null.
+		 * @param i     Array index of the slot.
+		 * @param key   Key of the slot, or null for a child.
+		 * @param value Value or child of the slot.
+		 * @return This node or its changed copy.
+		 */
+		private BitmapNode with(Object edit, int i, Object key, Object value) {
+
+			if (edit != null && this.edit == edit) {
+				array[i] = key;
+				array[i + 1] = value;
+				return this;
+			}
+			Object[] a = array.clone();
+			a[i] = key;
+			a[i + 1] = value;
+			return new BitmapNode(edit, bitmap, a);
+		}
+
+		/**
+		 * Method to copy this node without one slot.
+		 *
+		 * @param bit Bitmap bit of the slot.
+		 * @param i   Array index of the slot.
+		 * @return The copy.
+		 */
+		private BitmapNode withoutSlot(int bit, int i) {
+
+			Object[] a = new Object[array.length - 2];
+			System.arraycopy(array, 0, a, 0, i);
+			System.arraycopy(array, i + 2, a, i, a.length - i);
+			return new BitmapNode(null, bitmap & ~bit, a);
+		}
+	}
+
+	/**
+	 * Node holding keys whose mixed hashes are all equal, searched linearly.
+	 */
+	private static final class CollisionNode extends Node {
+
+		/**
+		 * Mixed hash shared by the keys.
+		 */
+		final int hash;
+
+		/**
+		 * Constructor to create CollisionNode Objects.
+		 *
+		 * @param edit  Owner allowed to change the node in place, or null.
+		 * @param hash  Mixed hash shared by the keys.
+		 * @param array Keys and values.
+		 */
+		CollisionNode(Object edit, int hash, Object[] array) {
+			super(edit, array);
+			this.hash = hash;
+		}
+
+		/**
+		 * Method to find the array index of a key.
+		 *
+		 * @param key The key.
+		 * @return Index of the key, or -1.
+		 */
+		private int indexOf(Object key) {
+
+			for (int i = 0; i < array.length; i += 2) {
+				if (key.equals(array[i])) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		Object find(int shift, int hash, Object key) {
+
+			if (hash != this.hash) {
+				return NOT_FOUND;
+			}
+			int i = indexOf(key);
+			return i < 0 ? NOT_FOUND : array[i + 1];
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		Node assoc(Object edit, HashStrategy strategy, int shift, int hash, Object key, Object value,
+				boolean[] added) {
+
+			if (hash != this.hash) { // put this node under a bitmap node and add the key there
+				BitmapNode parent = new BitmapNode(edit, 1 << ((this.hash >>> shift) & MASK),
+						new Object[] { null, this });
+				return parent.assoc(edit, strategy, shift, hash, key, value, added);
+			}
+
+			int i = indexOf(key);
+			Object[] a;
+			if (i < 0) {
+				added[0] = true;
+				a = new Object[array.length + 2];
+				System.arraycopy(array, 0, a, 0, array.length);
+				a[array.length] = key;
+				a[array.length + 1] = value;
+			} else if (array[i + 1] == value) {
+				return this;
+			} else if (edit != null && this.edit == edit) {
+				array[i + 1] = value;
+				return this;
+			} else {
+				a = array.clone();
+				a[i + 1] = value;
+			}
+
+			if (edit != null && this.edit == edit) {
+				array = a;
+				return this;
+			}
+			return new CollisionNode(edit, hash, a);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		Node without(int shift, int hash, Object key) {
+
+			int i = hash == this.hash ? indexOf(key) : -1;
+			if (i < 0) {
+				return this;
+			}
+			Object[] a = new Object[array.length - 2];
+			System.arraycopy(array, 0, a, 0, i);
+			System.arraycopy(array, i + 2, a, i, a.length - i);
+			return new CollisionNode(null, hash, a);
+		}
+	}
+
+	/**
+	 * Method to build the smallest node holding two keys with different slots or
+	 * equal hashes.
+	 *
+	 * @param edit  Owner of the new nodes, or null.
+	 * @param shift Hash bits used by the levels above.
+	 * @param hash1 Mixed hash of the first key.
+	 * @param key1  The first key.
+	 * @param val1  Value of the first key.
+	 * @param hash2 Mixed hash of the second key.
+	 * @param key2  The second key.
+	 * @param val2  Value of the second key.
+	 * @return The new node.
+	 */
+	private static Node pair(Object edit, int shift, int hash1, Object key1, Object val1, int hash2, Object key2,
+			Object val2) {
+
+		if (hash1 == hash2) {
+			return new CollisionNode(edit, hash1, new Object[] { key1, val1, key2, val2 });
+		}
+		int slot1 = (hash1 >>> shift) & MASK;
+		int slot2 = (hash2 >>> shift) & MASK;
+		if (slot1 == slot2) { // same slot at this level too: one child, one level down
+			Node child = pair(edit, shift + BITS, hash1, key1, val1, hash2, key2, val2);
+			return new BitmapNode(edit, 1 << slot1, new Object[] { null, child });
+		}
+		Object[] a = slot1 < slot2 ? new Object[] { key1, val1, key2, val2 }
+				: new Object[] { key2, val2, key1, val1 };
+		return new BitmapNode(edit, (1 << slot1) | (1 << slot2), a);
+	}
+
+	/**
+	 * Controls the flow of the program. Used for testing purposes.
+	 *
+	 * @param args Command-line arguments supplied as an Array of String Objects.
+	 * @throws InterruptedException if interrupted while waiting for the reader.
+	 */
+	public static void main(String[] args) throws InterruptedException {
+
+		// versions share structure but never change
+		ThreeTenPersistentHashMap<Integer, String> v0 = empty();
+		ThreeTenPersistentHashMap<Integer, String> v1 = v0;
+		for (int i = 0; i < 100000; i++) {
+			v1 = v1.plus(i, "v" + i);
+		}
+		ThreeTenPersistentHashMap<Integer, String> v2 = v1.minus(42).plus(7, "seven");
+		if (v0.isEmpty() && v1.size() == 100000 && v2.size() == 99999 && "v42".equals(v1.get(42))
+				&& v2.get(42) == null && "v7".equals(v1.get(7)) && "seven".equals(v2.get(7))
+				&& v1.plus(3, v1.get(3)) == v1 && v1.minus(-1) == v1) {
+			System.out.println("Yay 1");
+		}
+
+		// keys with equal hash codes end up in a collision node
+		String[] colliding = { "AaAa", "AaBB", "BBAa", "BBBB" };
+		ThreeTenPersistentHashMap<String, Integer> c = empty();
+		for (int i = 0; i < colliding.length; i++) {
+			c = c.plus(colliding[i], i);
+		}
+		c = c.plus("other", 9);
+		ThreeTenPersistentHashMap<String, Integer> c2 = c.minus("AaBB").minus("BBAa").minus("BBBB");
+		if (c.size() == 5 && c.get("BBAa") == 2 && c2.size() == 2 && c2.get("AaAa") == 0 && c2.get("BBBB") == null
+				&& c2.minus("AaAa").minus("other").isEmpty()) {
+			System.out.println("Yay 2");
+		}
+
+		// random operations against java.util.HashMap, with a null value now and then
+		Random random = new Random(5);
+		HashMap<Integer, Integer> expected = new HashMap<>();
+		ThreeTenPersistentHashMap<Integer, Integer> actual = empty(HashStrategy.seeded(3));
+		boolean agrees = true;
+		for (int i = 0; i < 200000; i++) {
+			int key = random.nextInt(5000);
+			if (random.nextInt(3) == 0) {
+				expected.remove(key);
+				actual = actual.minus(key);
+			} else {
+				Integer value = random.nextInt(10) == 0 ? null : i;
+				expected.put(key, value);
+				actual = actual.plus(key, value);
+			}
+			agrees &= actual.size() == expected.size() && Objects.equals(expected.get(key), actual.get(key))
+					&& expected.containsKey(key) == actual.containsKey(key);
+		}
+		if (agrees && actual.equals(expected) && expected.equals(actual)
+				&& actual.hashCode() == expected.hashCode()
+				&& copyOf(expected, HashStrategy.MURMUR).equals(actual)) {
+			System.out.println("Yay 3");
+		}
+
+		// a reader polling snapshots while the writer keeps adding keys in order
+		ThreeTenHashMap<Integer, Integer> map = new ThreeTenHashMap<>(16, true);
+		map.setSnapshotsEnabled(true);
+		boolean[] consistent = { true };
+		Thread reader = new Thread(() -> {
+			int last = 0;
+			while (last < 50000) {
+				ThreeTenPersistentHashMap<Integer, Integer> s = map.snapshot();
+				int n = s.size();
+				consistent[0] &= n >= last && (n == 0 || s.get(n - 1) == n - 1) && s.get(n) == null;
+				last = n;
+			}
+		});
+		reader.start();
+		for (int i = 0; i < 50000; i++) {
+			map.put(i, i);
+		}
+		reader.join();
+		ThreeTenPersistentHashMap<Integer, Integer> before = map.snapshot();
+		map.remove(0);
+		if (consistent[0] && before.size() == 50000 && before.get(0) == 0 && map.snapshot().size() == 49999) {
+			System.out.println("Yay 4");
+		}
+	}
+}
@@ -0,0 +1,591 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Shortest paths over a ThreeTenCsrGraph snapshot: single-source Dijkstra, and
+ * bidirectional Dijkstra or A* between two vertices. Edge weights come from an
+ * optional ToDoubleFunction, read once per edge when the engine is built and
+ * stored next to the CSR targets; without one every edge weighs 1.
+ *
+ * <p>Each thread gets its own workspace (distances, parent edges and an
+ * IndexedDaryHeap per direction) the first time it queries, and reuses it
+ * afterwards. Entries are valid only when their stamp matches the current
+ * query, so nothing is cleared between queries and a point-to-point query
+ * allocates nothing but the path it returns. Any number of threads can query
+ * one engine at the same time.
+ *
+ * @author Jacob Strokus
+ *
+ * @param <V> generic type for Vertices.
+ * @param <E> generic type for Edges.
+ */
+class ThreeTenShortestPaths<V extends ThreeTenGraphComponent, E extends ThreeTenGraphComponent> {
+
+	/**
+	 * The snapshot searched.
+	 */
+	private final ThreeTenCsrGraph<V, E> graph;
+
+	/**
+	 * Row offsets of the snapshot.
+	 */
+	private final int[] offsets;
+
+	/**
+	 * Neighbor ids of the snapshot.
+	 */
+	private final int[] targets;
+
+	/**
+	 * Edge id of each entry of targets.
+	 */
+	private final int[] edgeIds;
+
+	/**
+	 * Weight of the edge of each entry of targets.
+	 */
+	private final double[] weights;
+
+	/**
+	 * Workspace of each thread.
+	 */
+	private final ThreadLocal<Workspace> workspaces;
+
+	/**
+	 * Constructor to search a CSR snapshot of a graph with unit weights.
+	 *
+	 * @param graph The graph.
+	 */
+	public ThreeTenShortestPaths(ThreeTenGraph<V, E> graph) {
+
+		this(graph.toCsr(), null);
+	}
+
+	/**
+	 * Constructor to search a CSR snapshot of a graph.
+	 *
+	 * @param graph  The graph.
+	 * @param weight Weight of each edge, or null for 1.
+	 */
+	public ThreeTenShortestPaths(ThreeTenGraph<V, E> graph, ToDoubleFunction<? super E> weight) {
+
+		this(graph.toCsr(), weight);
+	}
+
+	/**
+	 * Constructor to search a snapshot.
+	 *
+	 * @param graph  The snapshot.
+	 * @param weight Weight of each edge, or null for 1.
+	 * @throws IllegalArgumentException if a weight is negative or NaN.
+	 */
+	public ThreeTenShortestPaths(ThreeTenCsrGraph<V, E> graph, ToDoubleFunction<? super E> weight) {
+
+		this.graph = graph;
+		this.offsets = graph.getOffsets();
+		this.targets = graph.getTargets();
+		this.edgeIds = graph.getEdgeIds();
+
+		double[] byEdge = new double[graph.getEdgeCount()];
+		for (int e = 0; e < byEdge.length; e++) {
+			byEdge[e] = weight == null ? 1.0 : weight.applyAsDouble(graph.edgeAt(e));
+			if (!(byEdge[e] >= 0)) {
+				throw new IllegalArgumentException("Edge " + graph.edgeAt(e) + " has weight " + byEdge[e]);
+			}
+		}
+		this.weights = new double[targets.length];
+		for (int i = 0; i < targets.length; i++) {
+			weights[i] = byEdge[edgeIds[i]];
+		}
+
+		int n = graph.getVertexCount();
+		this.workspaces = ThreadLocal.withInitial(() -> new Workspace(n));
+	}
+
+	/**
+	 * Method to get the snapshot searched, to map ids to vertices.
+	 *
+	 * @return The snapshot.
+	 */
+	public ThreeTenCsrGraph<V, E> getGraph() {
+
+		return graph;
+	}
+
+	/**
+	 * Labels of one search direction.
+	 */
+	private static final class Side {
+
+		/**
+		 * Tentative distance of each vertex, valid where stamps match.
+		 */
+		final double[] distances;
+
+		/**
+		 * Edge id each vertex was reached by, -1 for the start.
+		 */
+		final int[] parents;
+
+		/**
+		 * Query that last labelled each vertex.
+		 */
+		final int[] stamps;
+
+		/**
+		 * Open vertices.
+		 */
+		final IndexedDaryHeap heap;
+
+		/**
+		 * Constructor to create Side Objects.
+		 *
+		 * @param n Number of vertices.
+		 */
+		Side(int n) {
+			distances = new double[n];
+			parents = new int[n];
+			stamps = new int[n];
+			heap = new IndexedDaryHeap(n);
+		}
+	}
+
+	/**
+	 * Per-thread search state.
+	 */
+	private static final class Workspace {
+
+		/**
+		 * Forward search from the source.
+		 */
+		final Side forward;
+
+		/**
+		 * Backward search from the target.
+		 */
+		final Side backward;
+
+		/**
+		 * Current query, never 0.
+		 */
+		int stamp = 0;
+
+		/**
+		 * Constructor to create Workspace Objects.
+		 *
+		 * @param n Number of vertices.
+		 */
+		Workspace(int n) {
+			forward = new Side(n);
+			backward = new Side(n);
+		}
+
+		/**
+		 * Method to start a query, invalidating every label.
+		 */
+		void next() {
+			if (++stamp == 0) { // wrapped: clear the stamps once
+				Arrays.fill(forward.stamps, 0);
+				Arrays.fill(backward.stamps, 0);
+				stamp = 1;
+			}
+			forward.heap.clear();
+			backward.heap.clear();
+		}
+	}
+
+	/**
+	 * Method to get the distance of a vertex in a side for the current query.
+	 *
+	 * @param side  The side.
+	 * @param stamp The current query.
+	 * @param v     The vertex id.
+	 * @return The distance, or positive infinity if not reached.
+	 */
+	private static double distance(Side side, int stamp, int v) {
+
+		return side.stamps[v] == stamp ? side.distances[v] : Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Method to label a vertex and put it in the side's heap.
+	 *
+	 * @param side     The side.
+	 * @param stamp    The current query.
+	 * @param v        The vertex id.
+	 * @param distance Its distance.
+	 * @param parent   Edge id it was reached by, -1 for the start.
+	 * @param key      Its heap key.
+	 */
+	private static void label(Side side, int stamp, int v, double distance, int parent, double key) {
+
+		side.stamps[v] = stamp;
+		side.distances[v] = distance;
+		side.parents[v] = parent;
+		side.heap.push(v, key);
+	}
+
+	/**
+	 * Method to get the id of a vertex.
+	 *
+	 * @param vertex The vertex.
+	 * @return Its id.
+	 * @throws IllegalArgumentException if vertex is not in the graph.
+	 */
+	private int idOf(V vertex) {
+
+		int v = graph.indexOf(vertex);
+		if (v < 0) {
+			throw new IllegalArgumentException("Vertex " + vertex + " is not in the graph.");
+		}
+		return v;
+	}
+
+	/**
+	 * Method to get the distances from a vertex to every vertex.
+	 *
+	 * @param source The start vertex.
+	 * @return The distance to each vertex id, positive infinity if unreachable.
+	 * @throws IllegalArgumentException if source is not in the graph.
+	 */
+	public double[] distances(V source) {
+
+		int n = graph.getVertexCount();
+		double[] distances = new double[n];
+		distances(idOf(source), distances, null);
+		return distances;
+	}
+
+	/**
+	 * Method to run Dijkstra from a vertex id into caller arrays, which allocates
+	 * nothing.
+	 *
+	 * @param source    Id of the start vertex.
+	 * @param distances Array of at least n doubles that receives the distance to
+	 *                  each vertex id, positive infinity if unreachable.
+	 * @param parents   Array of at least n ints that receives the edge id each
+	 *                  vertex was reached by (-1 for the source and unreachable
+	 *                  vertices), or null.
+	 */
+	public void distances(int source, double[] distances, int[] parents) {
+
+		int n = graph.getVertexCount();
+		Workspace ws = workspaces.get();
+		ws.next();
+		int stamp = ws.stamp;
+		Side side = ws.forward;
+		label(side, stamp, source, 0.0, -1, 0.0);
+		while (!side.heap.isEmpty()) {
+			int u = side.heap.poll();
+			relax(side, stamp, u, null);
+		}
+		for (int v = 0; v < n; v++) {
+			boolean reached = side.stamps[v] == stamp;
+			distances[v] = reached ? side.distances[v] : Double.POSITIVE_INFINITY;
+			if (parents != null) {
+				parents[v] = reached ? side.parents[v] : -1;
+			}
+		}
+	}
+
+	/**
+	 * Method to relax the edges of a vertex just taken from a side's heap.
+	 *
+	 * @param side      The side.
+	 * @param stamp     The current query.
+	 * @param u         The vertex id.
+	 * @param heuristic A* estimate of the distance to the target, or null for
+	 *                  plain Dijkstra.
+	 */
+	private void relax(Side side, int stamp, int u, ToDoubleFunction<? super V> heuristic) {
+
+		double du = side.distances[u];
+		for (int i = offsets[u]; i < offsets[u + 1]; i++) {
+			int w = targets[i];
+			double dw = du + weights[i];
+			if (dw < distance(side, stamp, w)) {
+				double key = heuristic == null ? dw : dw + heuristic.applyAsDouble(graph.vertexAt(w));
+				label(side, stamp, w, dw, edgeIds[i], key);
+			}
+		}
+	}
+
+	/**
+	 * Method to get the length of a shortest path between two vertices, with
+	 * bidirectional Dijkstra.
+	 *
+	 * @param from The start vertex.
+	 * @param to   The end vertex.
+	 * @return The distance, or positive infinity if to is unreachable.
+	 * @throws IllegalArgumentException if a vertex is not in the graph.
+	 */
+	public double distance(V from, V to) {
+
+		Workspace ws = workspaces.get();
+		int meet = bidirectional(ws, idOf(from), idOf(to));
+		return meet < 0 ? Double.POSITIVE_INFINITY
+				: ws.forward.distances[meet] + ws.backward.distances[meet];
+	}
+
+	/**
+	 * Method to find a shortest path between two vertices, with bidirectional
+	 * Dijkstra.
+	 *
+	 * @param from The start vertex.
+	 * @param to   The end vertex.
+	 * @return The edges of the path in order, empty if from is to, or null if to
+	 *         is unreachable.
+	 * @throws IllegalArgumentException if a vertex is not in the graph.
+	 */
+	public List<E> path(V from, V to) {
+
+		Workspace ws = workspaces.get();
+		int meet = bidirectional(ws, idOf(from), idOf(to));
+		if (meet < 0) {
+			return null;
+		}
+		List<E> path = walk(ws.forward, meet);
+		Collections.reverse(path);
+		path.addAll(walk(ws.backward, meet));
+		return path;
+	}
+
+	/**
+	 * Method to find a shortest path between two vertices with A*. The heuristic
+	 * must never overestimate the distance to the target (admissible); vertices
+	 * are reopened if it is not also consistent.
+	 *
+	 * @param from      The start vertex.
+	 * @param to        The end vertex.
+	 * @param heuristic Lower bound of the distance from a vertex to to.
+	 * @return The edges of the path in order, empty if from is to, or null if to
+	 *         is unreachable.
+	 * @throws IllegalArgumentException if a vertex is not in the graph.
+	 */
+	public List<E> path(V from, V to, ToDoubleFunction<? super V> heuristic) {
+
+		int source = idOf(from);
+		int target = idOf(to);
+		Workspace ws = workspaces.get();
+		ws.next();
+		int stamp = ws.stamp;
+		Side side = ws.forward;
+		label(side, stamp, source, 0.0, -1, heuristic.applyAsDouble(from));
+		while (!side.heap.isEmpty()) {
+			int u = side.heap.poll();
+			if (u == target) {
+				List<E> path = walk(side, target);
+				Collections.reverse(path);
+				return path;
+			}
+			relax(side, stamp, u, heuristic);
+		}
+		return null;
+	}
+
+	/**
+	 * Method to run bidirectional Dijkstra. Both searches advance the side with
+	 * the smaller heap top, and stop once the two tops together reach the best
+	 * meeting found.
+	 *
+	 * @param ws     The workspace.
+	 * @param source Id of the start vertex.
+	 * @param target Id of the end vertex.
+	 * @return Id of the vertex where the shortest path meets, or -1 if none.
+	 */
+	private int bidirectional(Workspace ws, int source, int target) {
+
+		ws.next();
+		int stamp = ws.stamp;
+		Side forward = ws.forward;
+		Side backward = ws.backward;
+		label(forward, stamp, source, 0.0, -1, 0.0);
+		label(backward, stamp, target, 0.0, -1, 0.0);
+
+		int meet = source == target ? source : -1;
+		double best = source == target ? 0.0 : Double.POSITIVE_INFINITY;
+		while (!forward.heap.isEmpty() && !backward.heap.isEmpty()
+				&& forward.heap.peekKey() + backward.heap.peekKey() < best) {
+			boolean ahead = forward.heap.peekKey() <= backward.heap.peekKey();
+			Side side = ahead ? forward : backward;
+			Side other = ahead ? backward : forward;
+			int u = side.heap.poll();
+			double du = side.distances[u];
+			for (int i = offsets[u]; i < offsets[u + 1]; i++) {
+				int w = targets[i];
+				double dw = du + weights[i];
+				if (dw < distance(side, stamp, w)) {
+					label(side, stamp, w, dw, edgeIds[i], dw);
+					double through = dw + distance(other, stamp, w);
+					if (through < best) {
+						best = through;
+						meet = w;
+					}
+				}
+			}
+		}
+		return meet;
+	}
+
+	/**
+	 * Method to follow parent edges from a vertex back to the start of a side.
+	 *
+	 * @param side The side.
+	 * @param v    The vertex id.
+	 * @return The edges, from v towards the start.
+	 */
+	private List<E> walk(Side side, int v) {
+
+		List<E> edges = new ArrayList<>();
+		for (int e = side.parents[v]; e >= 0; e = side.parents[v]) {
+			edges.add(graph.edgeAt(e));
+			v = graph.sourceAt(e) == v ? graph.targetAt(e) : graph.sourceAt(e);
+		}
+		return edges;
+	}
+
+	/**
+	 * Main method used for testing purposes.
+	 *
+	 * @param args Command-line arguments supplied as an Array of String Objects.
+	 */
+	public static void main(String[] args) {
+
+		/**
+		 * Graph component used for the tests, with a position in the plane.
+		 */
+		class Item extends ThreeTenGraphComponent {
+
+			/**
+			 * Coordinates.
+			 */
+			final double x, y;
+
+			/**
+			 * Constructor to create Item Objects.
+			 *
+			 * @param id Integer representing the component id.
+			 * @param x  X coordinate.
+			 * @param y  Y coordinate.
+			 */
+			Item(int id, double x, double y) {
+				super(id);
+				this.x = x;
+				this.y = y;
+			}
+		}
+
+		// random points, edges weighted by their length, some unreachable points
+		Random random = new Random(22);
+		int n = 3000;
+		ThreeTenGraph<Item, Item> graph = new ThreeTenGraph<>();
+		Item[] items = new Item[n];
+		for (int i = 0; i < n; i++) {
+			items[i] = new Item(i, random.nextDouble(), random.nextDouble());
+			graph.addVertex(items[i]);
+		}
+		int edgeId = 0;
+		for (int i = 0; i < 12000; i++) {
+			Item a = items[random.nextInt(n - 50)];
+			Item b = items[random.nextInt(n - 50)];
+			graph.addEdge(new Item(edgeId++, Math.hypot(a.x - b.x, a.y - b.y), 0), a, b);
+		}
+		ThreeTenShortestPaths<Item, Item> paths = new ThreeTenShortestPaths<>(graph, e -> e.x);
+
+		// Bellman-Ford reference
+		ThreeTenCsrGraph<Item, Item> csr = paths.getGraph();
+		int source = csr.indexOf(items[0]);
+		double[] reference = new double[n];
+		Arrays.fill(reference, Double.POSITIVE_INFINITY);
+		reference[source] = 0;
+		for (boolean changed = true; changed;) {
+			changed = false;
+			for (int e = 0; e < csr.getEdgeCount(); e++) {
+				int a = csr.sourceAt(e);
+				int b = csr.targetAt(e);
+				double w = csr.edgeAt(e).x;
+				if (reference[a] + w < reference[b] || reference[b] + w < reference[a]) {
+					reference[b] = Math.min(reference[b], reference[a] + w);
+					reference[a] = Math.min(reference[a], reference[b] + w);
+					changed = true;
+				}
+			}
+		}
+		double[] dijkstra = paths.distances(items[0]);
+		boolean same = true;
+		for (int v = 0; v < n; v++) {
+			same &= Math.abs(dijkstra[v] - reference[v]) < 1e-9 || dijkstra[v] == reference[v];
+		}
+		if (same) {
+			System.out.println("Yay 1");
+		}
+
+		// bidirectional and A* agree with single-source, paths add up
+		boolean agree = true;
+		for (int q = 0; q < 300; q++) {
+			Item to = items[random.nextInt(n)];
+			double expected = dijkstra[csr.indexOf(to)];
+			double bidirectional = paths.distance(items[0], to);
+			List<Item> path = paths.path(items[0], to);
+			List<Item> aStar = paths.path(items[0], to, v -> Math.hypot(v.x - to.x, v.y - to.y));
+			if (expected == Double.POSITIVE_INFINITY) {
+				agree &= bidirectional == expected && path == null && aStar == null;
+				continue;
+			}
+			double pathLength = 0;
+			Item at = items[0];
+			for (Item e : path) {
+				pathLength += e.x;
+				at = csr.getOpposite(at, e);
+			}
+			double aStarLength = 0;
+			for (Item e : aStar) {
+				aStarLength += e.x;
+			}
+			agree &= Math.abs(bidirectional - expected) < 1e-9 && Math.abs(pathLength - expected) < 1e-9
+					&& Math.abs(aStarLength - expected) < 1e-9 && at.equals(to);
+		}
+		if (agree && paths.path(items[1], items[1]).isEmpty() && paths.distance(items[1], items[1]) == 0) {
+			System.out.println("Yay 2");
+		}
+
+		// repeated queries reuse the workspace
+		Item far = items[n / 2];
+		for (int q = 0; q < 200; q++) {
+			paths.distance(items[q], far);
+		}
+		long before = ThreeTenHashMapBenchmark.allocatedBytes();
+		for (int q = 0; q < 1000; q++) {
+			paths.distance(items[q], far);
+		}
+		long allocated = ThreeTenHashMapBenchmark.allocatedBytes() - before;
+		if (before < 0 || allocated < 1000 * 16) {
+			System.out.println("Yay 3");
+		}
+
+		// unit weights are hop counts, and negative weights are refused
+		ThreeTenShortestPaths<Item, Item> hops = new ThreeTenShortestPaths<>(graph);
+		int[] levels = new ThreeTenGraphTraversal<>(csr, java.util.concurrent.ForkJoinPool.commonPool()).bfs(source, null);
+		double[] unit = new double[n];
+		int[] parents = new int[n];
+		hops.distances(source, unit, parents);
+		boolean hopCounts = parents[source] == -1;
+		for (int v = 0; v < n; v++) {
+			hopCounts &= levels[v] < 0 ? unit[v] == Double.POSITIVE_INFINITY : unit[v] == levels[v];
+		}
+		boolean refused;
+		try {
+			new ThreeTenShortestPaths<>(graph, e -> -1.0);
+			refused = false;
+		} catch (IllegalArgumentException e) {
+			refused = true;
+		}
+		if (hopCounts && refused) {
+			System.out.println("Yay 4");
+		}
+	}
+}
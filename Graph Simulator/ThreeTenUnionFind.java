@@ -0,0 +1,259 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Union-find (disjoint sets) over arbitrary items, with path halving and union
+ * by rank, so find, union and connected run in near-constant amortized time.
+ * Each item gets a slot in flat parent and rank arrays when it is added; a
+ * ThreeTenHashMap maps items to their slots.
+ *
+ * <p>Sets cannot be split. An item can only be removed while it is alone in
+ * its set (a root of rank 0 never had anything joined to it); anything else
+ * calls for building a new structure.
+ *
+ * @author Jacob Strokus
+ *
+ * @param <T> generic type of the items.
+ */
+class ThreeTenUnionFind<T> {
+
+	/**
+	 * Slot of each item.
+	 */
+	private final ThreeTenHashMap<T, Integer> slots;
+
+	/**
+	 * Parent slot of each slot; a root is its own parent.
+	 */
+	private int[] parents;
+
+	/**
+	 * Upper bound of the height of each root's tree.
+	 */
+	private byte[] ranks;
+
+	/**
+	 * Number of slots handed out.
+	 */
+	private int used = 0;
+
+	/**
+	 * Number of sets.
+	 */
+	private int count = 0;
+
+	/**
+	 * Constructor to create an empty structure.
+	 *
+	 * @param expected Number of items expected.
+	 */
+	public ThreeTenUnionFind(int expected) {
+
+		int capacity = Math.max(expected, 4);
+		slots = new ThreeTenHashMap<>(capacity);
+		parents = new int[capacity];
+		ranks = new byte[capacity];
+	}
+
+	/**
+	 * Method to add an item in a set of its own.
+	 *
+	 * @param item The item.
+	 * @return false if the item was already present.
+	 */
+	public boolean add(T item) {
+
+		if (slots.containsKey(item)) {
+			return false;
+		}
+		if (used == parents.length) {
+			parents = Arrays.copyOf(parents, used * 2);
+			ranks = Arrays.copyOf(ranks, used * 2);
+		}
+		parents[used] = used;
+		ranks[used] = 0;
+		slots.put(item, used++);
+		count++;
+		return true;
+	}
+
+	/**
+	 * Method to check if an item is present.
+	 *
+	 * @param item The item.
+	 * @return Whether it is present.
+	 */
+	public boolean contains(T item) {
+
+		return slots.containsKey(item);
+	}
+
+	/**
+	 * Method to find the root of a slot, halving the path on the way.
+	 *
+	 * @param slot The slot.
+	 * @return Its root.
+	 */
+	private int find(int slot) {
+
+		while (parents[slot] != slot) {
+			parents[slot] = parents[parents[slot]];
+			slot = parents[slot];
+		}
+		return slot;
+	}
+
+	/**
+	 * Method to merge the sets of two items.
+	 *
+	 * @param a The first item.
+	 * @param b The second item.
+	 * @return true if two sets were merged, false if they were already one.
+	 * @throws IllegalArgumentException if an item is not present.
+	 */
+	public boolean union(T a, T b) {
+
+		int ra = find(slotOf(a));
+		int rb = find(slotOf(b));
+		if (ra == rb) {
+			return false;
+		}
+		if (ranks[ra] < ranks[rb]) {
+			parents[ra] = rb;
+		} else if (ranks[ra] > ranks[rb]) {
+			parents[rb] = ra;
+		} else {
+			parents[rb] = ra;
+			ranks[ra]++;
+		}
+		count--;
+		return true;
+	}
+
+	/**
+	 * Method to check if two items are in the same set.
+	 *
+	 * @param a The first item.
+	 * @param b The second item.
+	 * @return Whether they are in the same set.
+	 * @throws IllegalArgumentException if an item is not present.
+	 */
+	public boolean connected(T a, T b) {
+
+		return find(slotOf(a)) == find(slotOf(b));
+	}
+
+	/**
+	 * Method to remove an item that is alone in its set. Its slot is not reused.
+	 *
+	 * @param item The item.
+	 * @return false if the item is absent or shares its set.
+	 */
+	public boolean removeSingleton(T item) {
+
+		Integer slot = slots.get(item);
+		if (slot == null || parents[slot] != slot || ranks[slot] != 0) {
+			return false;
+		}
+		slots.remove(item);
+		count--;
+		return true;
+	}
+
+	/**
+	 * Method to get the number of sets.
+	 *
+	 * @return The number of sets.
+	 */
+	public int count() {
+
+		return count;
+	}
+
+	/**
+	 * Method to get the number of items.
+	 *
+	 * @return The number of items.
+	 */
+	public int size() {
+
+		return slots.size();
+	}
+
+	/**
+	 * Method to get the slot of an item.
+	 *
+	 * @param item The item.
+	 * @return Its slot.
+	 * @throws IllegalArgumentException if the item is not present.
+	 */
+	private int slotOf(T item) {
+
+		Integer slot = item == null ? null : slots.get(item);
+		if (slot == null) {
+			throw new IllegalArgumentException("Item " + item + " is not present.");
+		}
+		return slot;
+	}
+
+	/**
+	 * Main method used for testing purposes.
+	 *
+	 * @param args Command-line arguments supplied as an Array of String Objects.
+	 */
+	public static void main(String[] args) {
+
+		// random unions against a naive labelling
+		Random random = new Random(23);
+		int n = 2000;
+		ThreeTenUnionFind<String> sets = new ThreeTenUnionFind<>(16);
+		int[] naive = new int[n];
+		for (int i = 0; i < n; i++) {
+			sets.add("item" + i);
+			naive[i] = i;
+		}
+		int components = n;
+		boolean same = !sets.add("item0");
+		for (int k = 0; k < 1500; k++) {
+			int a = random.nextInt(n);
+			int b = random.nextInt(n);
+			boolean merged = naive[a] != naive[b];
+			if (merged) {
+				int from = naive[b];
+				for (int i = 0; i < n; i++) {
+					if (naive[i] == from) {
+						naive[i] = naive[a];
+					}
+				}
+				components--;
+			}
+			same &= sets.union("item" + a, "item" + b) == merged;
+		}
+		for (int k = 0; k < 5000; k++) {
+			int a = random.nextInt(n);
+			int b = random.nextInt(n);
+			same &= sets.connected("item" + a, "item" + b) == (naive[a] == naive[b]);
+		}
+		if (same && sets.count() == components && sets.size() == n) {
+			System.out.println("Yay 1");
+		}
+
+		// only singletons can be removed
+		ThreeTenUnionFind<String> small = new ThreeTenUnionFind<>(0);
+		small.add("a");
+		small.add("b");
+		small.add("c");
+		small.union("a", "b");
+		boolean refused;
+		try {
+			small.connected("a", "zzz");
+			refused = false;
+		} catch (IllegalArgumentException e) {
+			refused = true;
+		}
+		if (refused && !small.removeSingleton("a") && !small.removeSingleton("b") && small.removeSingleton("c")
+				&& small.count() == 1 && !small.contains("c") && small.connected("b", "a")) {
+			System.out.println("Yay 2");
+		}
+	}
+}
@@ -0,0 +1,138 @@
+package threeten.jmh;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Class to create the collections and keys under test. They live in the
+ * default package, which a named package cannot import, and JMH refuses
+ * benchmarks in the default package, so the benchmarks reach them by
+ * reflection. Only creating objects goes through here; the benchmarks call
+ * them through the Map and Set interfaces, like HashMap and HashSet.
+ *
+ * @author Jacob Strokus
+ */
+final class Subjects {
+
+	/**
+	 * ThreeTenHashMap(int size).
+	 */
+	private static final Constructor<?> MAP = constructor("ThreeTenHashMap", int.class);
+
+	/**
+	 * ThreeTenHashSet(int expected).
+	 */
+	private static final Constructor<?> SET = constructor("ThreeTenHashSet", int.class);
+
+	/**
+	 * ThreeTenNode().
+	 */
+	private static final Constructor<?> NODE = constructor("ThreeTenNode");
+
+	/**
+	 * ThreeTenGraphComponent.getId().
+	 */
+	private static final Method GET_ID;
+
+	/**
+	 * ThreeTenGraphComponent.setText(String).
+	 */
+	private static final Method SET_TEXT;
+
+	static {
+		try {
+			Class<?> component = Class.forName("ThreeTenGraphComponent");
+			GET_ID = component.getMethod("getId");
+			SET_TEXT = component.getMethod("setText", String.class);
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	/**
+	 * Constructor that only holds static methods.
+	 */
+	private Subjects() {
+	}
+
+	/**
+	 * Method to look up a constructor of a default-package class.
+	 *
+	 * @param name       Name of the class.
+	 * @param parameters Parameter types of the constructor.
+	 * @return The constructor, made accessible.
+	 */
+	private static Constructor<?> constructor(String name, Class<?>... parameters) {
+
+		try {
+			Constructor<?> c = Class.forName(name).getConstructor(parameters);
+			c.setAccessible(true);
+			return c;
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	/**
+	 * Method to call a constructor, rethrowing what it throws unchecked.
+	 *
+	 * @param c         The constructor.
+	 * @param arguments Its arguments.
+	 * @return The new object.
+	 */
+	private static Object create(Constructor<?> c, Object... arguments) {
+
+		try {
+			return c.newInstance(arguments);
+		} catch (InvocationTargetException e) {
+			throw new IllegalStateException(e.getCause());
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Method to create an empty ThreeTenHashMap.
+	 *
+	 * @param slots Number of slots.
+	 * @return The map.
+	 */
+	@SuppressWarnings("unchecked")
+	static Map<Object, Object> newThreeTenHashMap(int slots) {
+
+		return (Map<Object, Object>) create(MAP, slots);
+	}
+
+	/**
+	 * Method to create an empty ThreeTenHashSet.
+	 *
+	 * @param expected Expected number of elements.
+	 * @return The set.
+	 */
+	@SuppressWarnings("unchecked")
+	static Set<Object> newThreeTenHashSet(int expected) {
+
+		return (Set<Object>) create(SET, expected);
+	}
+
+	/**
+	 * Method to create a graph component to use as a key. It takes the next id
+	 * of ThreeTenNode's counter, so no two are equal; their text repeats every
+	 * 1024 ids.
+	 *
+	 * @return The component.
+	 */
+	static Object newComponent() {
+
+		Object node = create(NODE);
+		try {
+			SET_TEXT.invoke(node, "vertex" + ((Integer) GET_ID.invoke(node) & 1023));
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+		return node;
+	}
+}
@@ -0,0 +1,274 @@
+package threeten.jmh;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmarks of ThreeTenHashMap against java.util.HashMap. JMH does not
+ * accept benchmarks in the default package, so they sit in their own source
+ * root, jmh/, and reach the classes under test through Subjects. They need
+ * jmh-core and jmh-generator-annprocess (1.37) on the classpath; the annotation
+ * processor generates the harness at compile time. From Graph Simulator/,
+ * compile the simulator first and the benchmarks against it:
+ *
+ * <pre>
+ * javac -cp jung.jar -d out *.java
+ * javac -cp out:jmh-core.jar:jmh-generator-annprocess.jar -d jmh/out $(find jmh -name '*.java')
+ * java -cp out:jmh/out:jmh-core.jar:jopt-simple.jar:commons-math3.jar threeten.jmh.ThreeTenHashMapJmh
+ * </pre>
+ *
+ * <p>main() runs every benchmark with the GC profiler, which adds the
+ * allocation rate (gc.alloc.rate) and bytes per operation (gc.alloc.rate.norm)
+ * to the ops/s scores. Any JMH option works through org.openjdk.jmh.Main
+ * instead, for example -p size=1000 -p keyType=String -prof gc.
+ *
+ * <p>get, put and removePut run on a filled map; lookups draw from a fixed
+ * random sequence of keys of which hitRatio are in the map. fill builds the map
+ * from initialSlots slots, so comparing initialSlots=16 with initialSlots=0
+ * (presized) gives the cost of the rehashes on the way.
+ *
+ * @author Jacob Strokus
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx6g" })
+public class ThreeTenHashMapJmh {
+
+	/**
+	 * Number of keys in the lookup sequence (a power of two).
+	 */
+	static final int LOOKUPS = 1 << 16;
+
+	/**
+	 * Map under test: ThreeTenHashMap or HashMap.
+	 */
+	@Param({ "ThreeTenHashMap", "HashMap" })
+	public String impl;
+
+	/**
+	 * Type of the keys: Integer, String or Component (a ThreeTenGraphComponent).
+	 */
+	@Param({ "Integer", "String", "Component" })
+	public String keyType;
+
+	/**
+	 * Number of keys in the map.
+	 */
+	@Param({ "1000", "100000", "1000000", "10000000" })
+	public int size;
+
+	/**
+	 * Fraction of the lookups that find their key.
+	 */
+	@Param({ "1.0", "0.5" })
+	public double hitRatio;
+
+	/**
+	 * Slots the map is created with, 0 for size.
+	 */
+	@Param({ "16", "0" })
+	public int initialSlots;
+
+	/**
+	 * Keys in the map.
+	 */
+	Object[] keys;
+
+	/**
+	 * Lookup sequence.
+	 */
+	Object[] lookups;
+
+	/**
+	 * Sequence of keys in the map.
+	 */
+	Object[] hits;
+
+	/**
+	 * The filled map.
+	 */
+	Map<Object, Object> map;
+
+	/**
+	 * Position in the lookup sequence.
+	 */
+	int cursor;
+
+	/**
+	 * Method to make keys of a given type. Keys made from different ids are never
+	 * equal; Component keys take the next ids of ThreeTenNode's counter instead,
+	 * so they never repeat either.
+	 *
+	 * @param keyType Integer, String or Component.
+	 * @param from    First id.
+	 * @param count   Number of keys.
+	 * @return The keys.
+	 */
+	static Object[] keys(String keyType, int from, int count) {
+
+		Object[] keys = new Object[count];
+		for (int i = 0; i < count; i++) {
+			int id = from + i;
+			switch (keyType) {
+			case "Integer":
+				keys[i] = id;
+				break;
+			case "String":
+				keys[i] = "vertex" + id;
+				break;
+			case "Component":
+				keys[i] = Subjects.newComponent();
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown key type: " + keyType);
+			}
+		}
+		return keys;
+	}
+
+	/**
+	 * Method to build a lookup sequence of which hitRatio draws from present and
+	 * the rest from absent.
+	 *
+	 * @param present  Keys in the collection.
+	 * @param absent   Keys not in the collection.
+	 * @param hitRatio Fraction of hits.
+	 * @return The sequence, LOOKUPS long.
+	 */
+	static Object[] lookups(Object[] present, Object[] absent, double hitRatio) {
+
+		Random random = new Random(42);
+		Object[] lookups = new Object[LOOKUPS];
+		for (int i = 0; i < LOOKUPS; i++) {
+			Object[] from = random.nextDouble() < hitRatio ? present : absent;
+			lookups[i] = from[random.nextInt(from.length)];
+		}
+		return lookups;
+	}
+
+	/**
+	 * Method to create an empty map of the benchmarked kind.
+	 *
+	 * @return The map.
+	 */
+	Map<Object, Object> newMap() {
+
+		int slots = initialSlots == 0 ? size : initialSlots;
+		return impl.equals("HashMap") ? new HashMap<>(slots) : Subjects.newThreeTenHashMap(slots);
+	}
+
+	/**
+	 * Method to make the keys and fill the map.
+	 */
+	@Setup
+	public void setup() {
+
+		keys = keys(keyType, 0, size);
+		lookups = lookups(keys, keys(keyType, size, Math.min(size, LOOKUPS)), hitRatio);
+		hits = lookups(keys, keys, 1.0);
+		map = newMap();
+		for (Object k : keys) {
+			map.put(k, k);
+		}
+	}
+
+	/**
+	 * Method to get the next key of the lookup sequence.
+	 *
+	 * @return The key.
+	 */
+	Object next() {
+
+		return lookups[cursor++ & (LOOKUPS - 1)];
+	}
+
+	/**
+	 * Benchmark of get().
+	 *
+	 * @return The value found, consumed by JMH.
+	 */
+	@Benchmark
+	public Object get() {
+
+		return map.get(next());
+	}
+
+	/**
+	 * Benchmark of put() over a present key (hitRatio does not apply).
+	 *
+	 * @return The previous value, consumed by JMH.
+	 */
+	@Benchmark
+	public Object put() {
+
+		Object k = hits[cursor++ & (LOOKUPS - 1)];
+		return map.put(k, k);
+	}
+
+	/**
+	 * Benchmark of remove() followed by put() of the same key, so the map keeps
+	 * its size. Misses remove and put nothing.
+	 *
+	 * @return The removed value, consumed by JMH.
+	 */
+	@Benchmark
+	public Object removePut() {
+
+		Object k = next();
+		Object v = map.remove(k);
+		if (v != null) {
+			map.put(k, v);
+		}
+		return v;
+	}
+
+	/**
+	 * Benchmark of filling a new map with every key, growing from initialSlots.
+	 *
+	 * @return The map, consumed by JMH.
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public Map<Object, Object> fill() {
+
+		Map<Object, Object> m = newMap();
+		for (Object k : keys) {
+			m.put(k, k);
+		}
+		return m;
+	}
+
+	/**
+	 * Runs every benchmark of this class with the GC profiler.
+	 *
+	 * @param args Command-line arguments supplied as an Array of String Objects.
+	 * @throws RunnerException if JMH fails.
+	 */
+	public static void main(String[] args) throws RunnerException {
+
+		new Runner(new OptionsBuilder().include(ThreeTenHashMapJmh.class.getSimpleName())
+				.addProfiler(GCProfiler.class).build()).run();
+	}
+}
@@ -0,0 +1,198 @@
+package threeten.jmh;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmarks of ThreeTenHashSet against java.util.HashSet, with the same
+ * parameters, keys and lookup sequences as ThreeTenHashMapJmh (see there for
+ * how to build and run). initialSlots is the expected size passed to the
+ * constructor, 0 for size.
+ *
+ * @author Jacob Strokus
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx6g" })
+public class ThreeTenHashSetJmh {
+
+	/**
+	 * Set under test: ThreeTenHashSet or HashSet.
+	 */
+	@Param({ "ThreeTenHashSet", "HashSet" })
+	public String impl;
+
+	/**
+	 * Type of the keys: Integer, String or Component (a ThreeTenGraphComponent).
+	 */
+	@Param({ "Integer", "String", "Component" })
+	public String keyType;
+
+	/**
+	 * Number of keys in the set.
+	 */
+	@Param({ "1000", "100000", "1000000", "10000000" })
+	public int size;
+
+	/**
+	 * Fraction of the lookups that find their key.
+	 */
+	@Param({ "1.0", "0.5" })
+	public double hitRatio;
+
+	/**
+	 * Expected size the set is created with, 0 for size.
+	 */
+	@Param({ "16", "0" })
+	public int initialSlots;
+
+	/**
+	 * Keys in the set.
+	 */
+	Object[] keys;
+
+	/**
+	 * Lookup sequence.
+	 */
+	Object[] lookups;
+
+	/**
+	 * Sequence of keys in the set.
+	 */
+	Object[] hits;
+
+	/**
+	 * The filled set.
+	 */
+	Set<Object> set;
+
+	/**
+	 * Position in the lookup sequence.
+	 */
+	int cursor;
+
+	/**
+	 * Method to create an empty set of the benchmarked kind.
+	 *
+	 * @return The set.
+	 */
+	Set<Object> newSet() {
+
+		int expected = initialSlots == 0 ? size : initialSlots;
+		return impl.equals("HashSet") ? new HashSet<>(expected) : Subjects.newThreeTenHashSet(expected);
+	}
+
+	/**
+	 * Method to make the keys and fill the set.
+	 */
+	@Setup
+	public void setup() {
+
+		keys = ThreeTenHashMapJmh.keys(keyType, 0, size);
+		lookups = ThreeTenHashMapJmh.lookups(keys,
+				ThreeTenHashMapJmh.keys(keyType, size, Math.min(size, ThreeTenHashMapJmh.LOOKUPS)), hitRatio);
+		hits = ThreeTenHashMapJmh.lookups(keys, keys, 1.0);
+		set = newSet();
+		for (Object k : keys) {
+			set.add(k);
+		}
+	}
+
+	/**
+	 * Method to get the next key of the lookup sequence.
+	 *
+	 * @return The key.
+	 */
+	Object next() {
+
+		return lookups[cursor++ & (ThreeTenHashMapJmh.LOOKUPS - 1)];
+	}
+
+	/**
+	 * Benchmark of contains().
+	 *
+	 * @return Whether the key was found, consumed by JMH.
+	 */
+	@Benchmark
+	public boolean contains() {
+
+		return set.contains(next());
+	}
+
+	/**
+	 * Benchmark of add() of a present key (hitRatio does not apply).
+	 *
+	 * @return Whether the set changed, consumed by JMH.
+	 */
+	@Benchmark
+	public boolean add() {
+
+		return set.add(hits[cursor++ & (ThreeTenHashMapJmh.LOOKUPS - 1)]);
+	}
+
+	/**
+	 * Benchmark of remove() followed by add() of the same key, so the set keeps
+	 * its size. Misses remove and add nothing.
+	 *
+	 * @return Whether the key was removed, consumed by JMH.
+	 */
+	@Benchmark
+	public boolean removeAdd() {
+
+		Object k = next();
+		boolean removed = set.remove(k);
+		if (removed) {
+			set.add(k);
+		}
+		return removed;
+	}
+
+	/**
+	 * Benchmark of filling a new set with every key, growing from initialSlots.
+	 *
+	 * @return The set, consumed by JMH.
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public Set<Object> fill() {
+
+		Set<Object> s = newSet();
+		for (Object k : keys) {
+			s.add(k);
+		}
+		return s;
+	}
+
+	/**
+	 * Runs every benchmark of this class with the GC profiler.
+	 *
+	 * @param args Command-line arguments supplied as an Array of String Objects.
+	 * @throws RunnerException if JMH fails.
+	 */
+	public static void main(String[] args) throws RunnerException {
+
+		new Runner(new OptionsBuilder().include(ThreeTenHashSetJmh.class.getSimpleName())
+				.addProfiler(GCProfiler.class).build()).run();
+	}
+}